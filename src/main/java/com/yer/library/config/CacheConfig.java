@@ -0,0 +1,39 @@
+package com.yer.library.config;
+
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+/**
+ * In-process caches for the single-entity lookups of the services, bounded in size and time by the
+ * {@code spring.cache.caffeine.spec} property.
+ * <p>
+ * The caches are transaction-aware: entries are only put or evicted once the surrounding transaction commits, so that
+ * a rolled back update does not evict anything, and an entry is not evicted before the update is visible to the
+ * lookups that would cache it again.
+ */
+@Configuration
+@EnableCaching
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfig {
+    public static final String BOOKS = "books";
+    public static final String BOOK_COPIES = "book_copies";
+    public static final String MEMBERS = "members";
+    public static final String MEMBERSHIPS = "memberships";
+
+    @Bean
+    public CacheManager cacheManager(CacheProperties cacheProperties) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(BOOKS, BOOK_COPIES, MEMBERS, MEMBERSHIPS);
+        String specification = cacheProperties.getCaffeine().getSpec();
+        if (StringUtils.hasText(specification)) {
+            cacheManager.setCacheSpecification(specification);
+        }
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
@@ -5,6 +5,8 @@ import com.yer.library.model.enums.BookGenre;
 import com.yer.library.model.enums.BookType;
 import com.yer.library.model.enums.MembershipTypeName;
 import com.yer.library.repository.*;
+import com.yer.library.service.BookSearchIndex;
+import com.yer.library.service.InventoryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
@@ -19,6 +21,7 @@ import java.time.Month;
 import java.time.Year;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 @Configuration
 public class Initializer {
@@ -34,11 +37,19 @@ public class Initializer {
     CommandLineRunner commandLineRunner(
             BookRepository bookRepository,
             BookCopyRepository bookCopyRepository,
+            BookAvailabilityRepository bookAvailabilityRepository,
+            InventoryService inventoryService,
+            BookSearchIndex bookSearchIndex,
             MembershipTypeRepository membershipTypeRepository,
             MembershipRepository membershipRepository,
             MemberRepository memberRepository,
             UserRepository userRepository) {
         return args -> {
+            // the database outlives the application, so the sample data is only added once
+            if (membershipTypeRepository.count() > 0) {
+                return;
+            }
+
             Book book1 = new Book(
                     "978-2-3915-3957-4",
                     "The Girl in the Veil",
@@ -108,6 +119,12 @@ public class Initializer {
             bookCopyRepository.saveAll(Collections.unmodifiableList(Arrays.asList(
                     bookCopy1, bookCopy2, bookCopy3, bookCopy4, bookCopy5, bookCopy6, bookCopy7, bookCopy8)));
 
+            List<Long> bookIds = Arrays.asList(book1.getId(), book2.getId(), book3.getId(), book4.getId(), book5.getId());
+            bookAvailabilityRepository.register(bookIds);
+            bookAvailabilityRepository.recount(bookIds);
+            inventoryService.rebuild();
+            bookSearchIndex.indexAfterCommit(Arrays.asList(book1, book2, book3, book4, book5));
+
 
             MembershipType childMembershipType = new MembershipType(MembershipTypeName.CHILD, 0);
             MembershipType adultMembershipType = new MembershipType(MembershipTypeName.ADULT, 500);
@@ -1,10 +1,16 @@
 package com.yer.library.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.yer.library.model.attributeconverters.YearAttributeConverter;
 import com.yer.library.model.enums.BookGenre;
 import com.yer.library.model.enums.BookType;
 import lombok.*;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.hibernate.validator.constraints.ISBN;
 
 import javax.persistence.*;
@@ -12,11 +18,14 @@ import javax.validation.constraints.*;
 import java.time.Year;
 import java.util.Objects;
 
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "books")
+@DynamicUpdate
 @Entity(name = "Book")
 @Table(
         name = "books" //,                               We shouldn't make ISBN unique because of soft delete.
-//        uniqueConstraints = {                          ISBN of non-deleted books should be unique, should be
-//                @UniqueConstraint(                     implemented with business logic.
+//        uniqueConstraints = {                          ISBN of non-deleted books is unique by an index on a
+//                @UniqueConstraint(                     generated column instead (see db/migration).
 //                        name = "book_isbn_unique",
 //                        columnNames = "isbn"
 //                )
@@ -29,10 +38,10 @@ import java.util.Objects;
 @NoArgsConstructor
 public class Book {
     @Id
-    @SequenceGenerator(
+    @GenericGenerator(
             name = "book_sequence",
-            sequenceName = "book_sequence",
-            allocationSize = 1
+            strategy = "com.yer.library.model.generators.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "book_sequence")
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -107,6 +116,14 @@ public class Book {
     )
     private Boolean deleted = false;
 
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(
+            name = "version",
+            nullable = false
+    )
+    private Long version;
+
     public Book(String isbn, String title, Year year, String author, BookType type, BookGenre genre, Integer value) {
         this.isbn = isbn;
         this.title = title;
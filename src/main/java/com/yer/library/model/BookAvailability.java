@@ -0,0 +1,64 @@
+package com.yer.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.Hibernate;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.util.Objects;
+
+/**
+ * The number of copies of a book that are on the shelf (not deleted and not lent), and of all its copies that have not
+ * been deleted. The counters are changed together with the copies (see {@code BookAvailabilityRepository#adjust}), so
+ * they are never counted from the copies when they are read.
+ */
+@Entity(name = "BookAvailability")
+@Table(name = "book_availability")
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookAvailability {
+    @Id
+    @Column(
+            name = "book_id",
+            updatable = false
+    )
+    private Long bookId;
+
+    @Column(
+            name = "available_copies",
+            nullable = false
+    )
+    private int availableCopies;
+
+    @Column(
+            name = "total_copies",
+            nullable = false
+    )
+    private int totalCopies;
+
+    public BookAvailability(Long bookId) {
+        this(bookId, 0, 0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+        BookAvailability bookAvailability = (BookAvailability) o;
+        return bookId != null && Objects.equals(bookId, bookAvailability.bookId);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+}
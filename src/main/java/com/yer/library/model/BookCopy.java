@@ -1,14 +1,20 @@
 package com.yer.library.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.yer.library.model.enums.BookCopyStatus;
 import com.yer.library.model.validators.ValidLocationConstraint;
 import lombok.*;
 import org.hibernate.Hibernate;
 import org.hibernate.annotations.Columns;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.Type;
 
 import javax.persistence.*;
 import java.util.Objects;
 
+@DynamicUpdate
 @Entity(name = "BookCopy")
 @Table(name = "book_copies")
 @Getter
@@ -18,10 +24,10 @@ import java.util.Objects;
 @NoArgsConstructor
 public class BookCopy {
     @Id
-    @SequenceGenerator(
+    @GenericGenerator(
             name = "book_copy_sequence",
-            sequenceName = "book_copy_sequence",
-            allocationSize = 1
+            strategy = "com.yer.library.model.generators.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "book_copy_sequence")
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -50,9 +56,29 @@ public class BookCopy {
     @ValidLocationConstraint
     private Location location;
 
+    /**
+     * Whether the book copy can be lent. The status is only changed by the (conditional) updates of
+     * {@code BookCopyRepository}, never by updates of the book copy itself.
+     */
+    @Enumerated(EnumType.STRING)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(
+            name = "status",
+            nullable = false
+    )
+    private BookCopyStatus status = BookCopyStatus.AVAILABLE;
+
     @Column(name = "deleted")
     private Boolean deleted = false;
 
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(
+            name = "version",
+            nullable = false
+    )
+    private Long version;
+
     public BookCopy(Book book, Location location) {
         this.book = book;
         this.location = location;
@@ -0,0 +1,116 @@
+package com.yer.library.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.yer.library.model.enums.HoldStatus;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+
+/**
+ * A hold (reservation) of a member on a book. A hold waits in the queue of its book until a copy is returned for it,
+ * which is then kept for the member (the hold is ready) until the member collects it by borrowing it.
+ */
+@DynamicUpdate
+@Entity(name = "Hold")
+@Table(name = "holds")
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+public class Hold {
+    @Id
+    @GenericGenerator(
+            name = "hold_sequence",
+            strategy = "com.yer.library.model.generators.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "hold_sequence")
+    )
+    @GeneratedValue(
+            strategy = GenerationType.SEQUENCE,
+            generator = "hold_sequence"
+    )
+    @Column(
+            name = "id",
+            updatable = false
+    )
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(
+            name = "book_id",
+            nullable = false,
+            updatable = false,
+            foreignKey = @ForeignKey(name = "FK_holds_books")
+    )
+    private Book book;
+
+    @ManyToOne
+    @JoinColumn(
+            name = "member_id",
+            nullable = false,
+            updatable = false,
+            foreignKey = @ForeignKey(name = "FK_holds_members")
+    )
+    private Member member;
+
+    /**
+     * When the hold was placed, which orders the queue of the book.
+     */
+    @Column(
+            name = "placed_at",
+            nullable = false,
+            updatable = false
+    )
+    private LocalDateTime placedAt;
+
+    /**
+     * Whether the hold is waiting, ready, collected or cancelled. Like the status of a book copy, it is only changed by
+     * the (conditional) updates of {@code HoldRepository}.
+     */
+    @Enumerated(EnumType.STRING)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(
+            name = "status",
+            nullable = false
+    )
+    private HoldStatus status = HoldStatus.WAITING;
+
+    /**
+     * The book copy kept for the member, or {@code null} while the hold is waiting.
+     */
+    @ManyToOne
+    @JoinColumn(
+            name = "book_copy_id",
+            foreignKey = @ForeignKey(name = "FK_holds_book_copies")
+    )
+    private BookCopy bookCopy;
+
+    public Hold(Book book, Member member, LocalDateTime placedAt) {
+        this.book = book;
+        this.member = member;
+        // the queues in memory are ordered by the time as it is stored, which has no more than microsecond precision
+        this.placedAt = placedAt.truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+        Hold hold = (Hold) o;
+        return id != null && Objects.equals(id, hold.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+}
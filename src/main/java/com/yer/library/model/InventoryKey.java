@@ -0,0 +1,89 @@
+package com.yer.library.model;
+
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import java.io.Serializable;
+import java.time.Year;
+import java.util.Comparator;
+
+/**
+ * The genre, type and decade of publication of a book, and the floor a copy of it is on: the columns the copies are
+ * summarized by in the {@link InventorySummary}.
+ * <p>
+ * Keys are ordered by the names of their genre and type, and then by their decade and floor, so that the summary rows
+ * of a change are locked in the same order as the rows are read by {@code InventorySummaryRepository#findAllForUpdate}.
+ */
+@Embeddable
+@Getter
+@EqualsAndHashCode
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryKey implements Serializable, Comparable<InventoryKey> {
+    public static final short UNKNOWN_FLOOR = -1;
+
+    private static final Comparator<InventoryKey> ORDER = Comparator
+            .comparing((InventoryKey key) -> key.getGenre().name())
+            .thenComparing(key -> key.getType().name())
+            .thenComparingInt(InventoryKey::getDecade)
+            .thenComparingInt(InventoryKey::getFloor);
+
+    @Column(
+            name = "genre",
+            nullable = false,
+            updatable = false
+    )
+    @Enumerated(EnumType.STRING)
+    private BookGenre genre;
+
+    @Column(
+            name = "type",
+            nullable = false,
+            updatable = false
+    )
+    @Enumerated(EnumType.STRING)
+    private BookType type;
+
+    @Column(
+            name = "decade",
+            nullable = false,
+            updatable = false
+    )
+    private short decade;
+
+    @Column(
+            name = "loc_floor",
+            nullable = false,
+            updatable = false
+    )
+    private short floor;
+
+    /**
+     * Returns the first year of the decade of the given year, like 1940 for 1948.
+     */
+    public static short decadeOf(Year year) {
+        return (short) (Math.floorDiv(year.getValue(), 10) * 10);
+    }
+
+    /**
+     * Returns the floor of the given location, or {@link #UNKNOWN_FLOOR} for a copy without a location.
+     */
+    public static short floorOf(Location location) {
+        return location == null || location.getFloor() == null ? UNKNOWN_FLOOR : location.getFloor();
+    }
+
+    @Override
+    public int compareTo(InventoryKey other) {
+        return ORDER.compare(this, other);
+    }
+}
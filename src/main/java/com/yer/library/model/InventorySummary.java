@@ -0,0 +1,56 @@
+package com.yer.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.Hibernate;
+
+import javax.persistence.Column;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import java.util.Objects;
+
+/**
+ * The number of copies that have not been deleted, and their total value (the sum of the values of their books), of
+ * the books of a genre, type and decade on a floor. The rows are changed together with the copies and books (see
+ * {@code InventoryService}), so the inventory statistics are never summed from the copies when they are read.
+ */
+@Entity(name = "InventorySummary")
+@Table(name = "inventory_summary")
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventorySummary {
+    @EmbeddedId
+    private InventoryKey id;
+
+    @Column(
+            name = "copies",
+            nullable = false
+    )
+    private long copies;
+
+    @Column(
+            name = "total_value",
+            nullable = false
+    )
+    private long value;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+        InventorySummary inventorySummary = (InventorySummary) o;
+        return id != null && Objects.equals(id, inventorySummary.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+}
@@ -0,0 +1,137 @@
+package com.yer.library.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.Hibernate;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Version;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * The progress of a run of a batch job that works through rows in chunks, in the order of their (date, ID) keys: the
+ * key of the last row of the last committed chunk, and the number of rows processed so far. A run that was
+ * interrupted is resumed from its checkpoint, with the cutoff date it started with.
+ * <p>
+ * The checkpoint is versioned, so that of two instances running the same job at the same time, only one can commit
+ * its next chunk.
+ */
+@Entity(name = "JobCheckpoint")
+@Table(name = "job_checkpoints")
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+public class JobCheckpoint {
+    /**
+     * The date before the first date of any row, which is the position of a run that has not processed any rows yet.
+     */
+    public static final LocalDate FIRST_DATE = LocalDate.of(1000, 1, 1);
+
+    @Id
+    @Column(
+            name = "name",
+            updatable = false
+    )
+    private String name;
+
+    @Column(
+            name = "cutoff_date",
+            nullable = false
+    )
+    private LocalDate cutoffDate;
+
+    @Column(
+            name = "last_end_date",
+            nullable = false
+    )
+    private LocalDate lastEndDate;
+
+    @Column(
+            name = "last_id",
+            nullable = false
+    )
+    private Long lastId;
+
+    @Column(
+            name = "processed",
+            nullable = false
+    )
+    private long processed;
+
+    @Column(
+            name = "detached",
+            nullable = false
+    )
+    private long detached;
+
+    @Column(
+            name = "chunks",
+            nullable = false
+    )
+    private long chunks;
+
+    @Column(
+            name = "completed",
+            nullable = false
+    )
+    private boolean completed;
+
+    @Column(
+            name = "started_at",
+            nullable = false
+    )
+    private LocalDateTime startedAt;
+
+    @Column(
+            name = "updated_at",
+            nullable = false
+    )
+    private LocalDateTime updatedAt;
+
+    @Version
+    @Column(
+            name = "version",
+            nullable = false
+    )
+    private Long version;
+
+    public JobCheckpoint(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Starts a new run with the given cutoff date, from the first row.
+     */
+    public void restart(LocalDate cutoffDate, LocalDateTime startedAt) {
+        this.cutoffDate = cutoffDate;
+        this.lastEndDate = FIRST_DATE;
+        this.lastId = 0L;
+        this.processed = 0;
+        this.detached = 0;
+        this.chunks = 0;
+        this.completed = false;
+        this.startedAt = startedAt;
+        this.updatedAt = startedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+        JobCheckpoint jobCheckpoint = (JobCheckpoint) o;
+        return name != null && Objects.equals(name, jobCheckpoint.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+}
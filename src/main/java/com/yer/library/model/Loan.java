@@ -0,0 +1,101 @@
+package com.yer.library.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.Objects;
+
+@DynamicUpdate
+@Entity(name = "Loan")
+@Table(name = "loans")
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+public class Loan {
+    public static final Period LOAN_PERIOD = Period.ofWeeks(3);
+
+    @Id
+    @GenericGenerator(
+            name = "loan_sequence",
+            strategy = "com.yer.library.model.generators.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "loan_sequence")
+    )
+    @GeneratedValue(
+            strategy = GenerationType.SEQUENCE,
+            generator = "loan_sequence"
+    )
+    @Column(
+            name = "id",
+            updatable = false
+    )
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(
+            name = "book_copy_id",
+            nullable = false,
+            updatable = false,
+            foreignKey = @ForeignKey(name = "FK_loans_book_copies")
+    )
+    private BookCopy bookCopy;
+
+    @ManyToOne
+    @JoinColumn(
+            name = "member_id",
+            nullable = false,
+            updatable = false,
+            foreignKey = @ForeignKey(name = "FK_loans_members")
+    )
+    private Member member;
+
+    @Column(
+            name = "loan_date",
+            nullable = false,
+            updatable = false
+    )
+    private LocalDate loanDate;
+
+    @Column(
+            name = "due_date",
+            nullable = false
+    )
+    private LocalDate dueDate;
+
+    /**
+     * The date the book copy was returned, or {@code null} while the loan is active.
+     */
+    @Column(
+            name = "return_date"
+    )
+    private LocalDate returnDate;
+
+    public Loan(BookCopy bookCopy, Member member, LocalDate loanDate) {
+        this.bookCopy = bookCopy;
+        this.member = member;
+        this.loanDate = loanDate;
+        this.dueDate = loanDate.plus(LOAN_PERIOD);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+        Loan loan = (Loan) o;
+        return id != null && Objects.equals(id, loan.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+}
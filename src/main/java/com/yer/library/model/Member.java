@@ -1,9 +1,13 @@
 package com.yer.library.model;
 
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.yer.library.model.validators.ApacheEmailConstraint;
 import lombok.*;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotEmpty;
@@ -11,6 +15,7 @@ import javax.validation.constraints.Past;
 import java.time.LocalDate;
 import java.util.Objects;
 
+@DynamicUpdate
 @Entity(name = "Member")
 @Table(
         name = "members"
@@ -28,10 +33,10 @@ import java.util.Objects;
 @NoArgsConstructor
 public class Member {
     @Id
-    @SequenceGenerator(
+    @GenericGenerator(
             name = "member_sequence",
-            sequenceName = "member_sequence",
-            allocationSize = 1
+            strategy = "com.yer.library.model.generators.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "member_sequence")
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -85,6 +90,14 @@ public class Member {
     )
     private Boolean deleted = false;
 
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(
+            name = "version",
+            nullable = false
+    )
+    private Long version;
+
     public Member(String name, String homeAddress, String emailAddress, LocalDate birthday, Membership membership) {
         this.name = name;
         this.homeAddress = homeAddress;
@@ -93,6 +106,14 @@ public class Member {
         this.membership = membership;
     }
 
+    /**
+     * Returns whether the member may borrow book copies (or have them held) on the given date: the member must not
+     * have been deleted, and must have a membership that is active on that date.
+     */
+    public boolean canBorrowOn(LocalDate date) {
+        return !deleted && membership != null && membership.isActiveOn(date);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -1,11 +1,15 @@
 package com.yer.library.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import javax.validation.constraints.AssertTrue;
@@ -17,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Objects;
 
+@DynamicUpdate
 @Entity(name = "Membership")
 @Table(name = "memberships")
 @Getter
@@ -27,10 +32,10 @@ public class Membership {
     public static final Period MAX_MEMBERSHIP_TIME = Period.ofYears(5);
 
     @Id
-    @SequenceGenerator(
+    @GenericGenerator(
             name = "membership_sequence",
-            sequenceName = "membership_sequence",
-            allocationSize = 1
+            strategy = "com.yer.library.model.generators.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "membership_sequence")
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -73,6 +78,23 @@ public class Membership {
     )
     private Boolean deleted = false;
 
+    // set (together with deleted) by the expiry job, so that an expired membership still counts in the revenue of the
+    // dates it was active on, unlike a cancelled one
+    @Column(
+            name = "expired",
+            nullable = false
+    )
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Boolean expired = false;
+
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(
+            name = "version",
+            nullable = false
+    )
+    private Long version;
+
     public Membership(MembershipType membershipType, LocalDate startDate, LocalDate endDate) {
         this.membershipType = membershipType;
         this.startDate = startDate;
@@ -99,7 +121,15 @@ public class Membership {
                 "membershipType = " + membershipType + ", " +
                 "startDate = " + startDate + ", " +
                 "endDate = " + endDate + ", " +
-                "deleted = " + deleted + ")";
+                "deleted = " + deleted + ", " +
+                "expired = " + expired + ")";
+    }
+
+    /**
+     * Returns whether the membership has not been deleted, and has started but not ended on the given date.
+     */
+    public boolean isActiveOn(LocalDate date) {
+        return !deleted && !date.isBefore(startDate) && !date.isAfter(endDate);
     }
 
     @AssertTrue(message = "Field `startDate` should be later than `endDate`")
@@ -3,6 +3,10 @@ package com.yer.library.model;
 import com.yer.library.model.enums.MembershipTypeName;
 import lombok.*;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import javax.validation.constraints.Max;
@@ -10,6 +14,8 @@ import javax.validation.constraints.NotNull;
 import javax.validation.constraints.PositiveOrZero;
 import java.util.Objects;
 
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "membership_types")
 @Entity(name = "MembershipType")
 @Table(name = "membership_types",
         uniqueConstraints = {
@@ -25,10 +31,10 @@ import java.util.Objects;
 @NoArgsConstructor
 public class MembershipType {
     @Id
-    @SequenceGenerator(
+    @GenericGenerator(
             name = "membership_type_sequence",
-            sequenceName = "membership_type_sequence",
-            allocationSize = 1
+            strategy = "com.yer.library.model.generators.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "membership_type_sequence")
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -2,6 +2,8 @@ package com.yer.library.model;
 
 import lombok.*;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
@@ -26,10 +28,10 @@ import java.util.Objects;
 public class User {
 
     @Id
-    @SequenceGenerator(
+    @GenericGenerator(
             name = "user_sequence",
-            sequenceName = "user_sequence",
-            allocationSize = 1
+            strategy = "com.yer.library.model.generators.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "user_sequence")
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -36,10 +36,11 @@ public class LocationType implements UserType {
 
     @Override
     public Object nullSafeGet(ResultSet resultSet, String[] names, SharedSessionContractImplementor session, Object owner) throws HibernateException, SQLException {
+        Short floor = resultSet.getShort(names[0]);
+        // a copy without a location has none of its columns set
         if (resultSet.wasNull()) {
             return null;
         }
-        Short floor = resultSet.getShort(names[0]);
         Short bookcase = resultSet.getShort(names[1]);
         Short plank = resultSet.getShort(names[2]);
 
@@ -0,0 +1,21 @@
+package com.yer.library.model.dtos;
+
+import com.github.fge.jsonpatch.JsonPatch;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A JSON patch for the object with the given ID, as one item of a batch of patches.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchPatch {
+    @NotNull
+    private Long id;
+    @NotNull
+    private JsonPatch patch;
+}
@@ -0,0 +1,45 @@
+package com.yer.library.model.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a batch write, with one item per object of the batch, in the order of the batch.
+ */
+@Data
+public class BatchReport<T> {
+    private int succeeded;
+    private int failed;
+    private List<Item<T>> items;
+
+    public BatchReport(int size) {
+        this.items = new ArrayList<>(Collections.nCopies(size, null));
+    }
+
+    public void succeed(int index, T object) {
+        items.set(index, new Item<>(index, Status.SUCCEEDED, object, Collections.emptyList()));
+        succeeded++;
+    }
+
+    public void fail(int index, List<String> errors) {
+        items.set(index, new Item<>(index, Status.FAILED, null, errors));
+        failed++;
+    }
+
+    public enum Status {
+        SUCCEEDED, FAILED
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Item<T> {
+        private int index;
+        private Status status;
+        private T object;
+        private List<String> errors;
+    }
+}
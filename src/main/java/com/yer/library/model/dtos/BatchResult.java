@@ -0,0 +1,46 @@
+package com.yer.library.model.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The result of fetching several objects by ID at once: the objects that were found, in the order their IDs were
+ * requested in, and the requested IDs of objects that do not exist or have been deleted.
+ */
+@Data
+@AllArgsConstructor
+public class BatchResult<T> {
+    private List<T> found;
+    private List<Long> missingIds;
+
+    /**
+     * Orders the objects by the requested IDs, and collects the IDs without an object. IDs requested more than once
+     * are only reported once.
+     */
+    public static <T> BatchResult<T> of(Collection<Long> requestedIds, Collection<T> objects, Function<T, Long> idGetter) {
+        Map<Long, T> objectsById = new HashMap<>(objects.size() * 2);
+        for (T object : objects) {
+            objectsById.put(idGetter.apply(object), object);
+        }
+
+        List<T> found = new ArrayList<>(objects.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(requestedIds)) {
+            T object = objectsById.get(id);
+            if (object == null) {
+                missingIds.add(id);
+            } else {
+                found.add(object);
+            }
+        }
+        return new BatchResult<>(found, missingIds);
+    }
+}
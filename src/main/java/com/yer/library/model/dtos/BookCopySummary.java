@@ -0,0 +1,43 @@
+package com.yer.library.model.dtos;
+
+import com.yer.library.model.Location;
+import com.yer.library.model.enums.BookCopyStatus;
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import lombok.Value;
+
+import java.time.Year;
+
+/**
+ * A read-only view of an available book copy and its book, like {@link BookSummary}.
+ */
+@Value
+public class BookCopySummary {
+    Long id;
+    BookSummary book;
+    Location location;
+    BookCopyStatus status;
+    Long version;
+
+    public BookCopySummary(
+            Long id,
+            Location location,
+            BookCopyStatus status,
+            Long version,
+            Long bookId,
+            String isbn,
+            String title,
+            Year year,
+            String author,
+            BookType type,
+            BookGenre genre,
+            Integer value,
+            Long bookVersion
+    ) {
+        this.id = id;
+        this.book = new BookSummary(bookId, isbn, title, year, author, type, genre, value, bookVersion);
+        this.location = location;
+        this.status = status;
+        this.version = version;
+    }
+}
@@ -0,0 +1,12 @@
+package com.yer.library.model.dtos;
+
+import lombok.Value;
+
+/**
+ * A book found by a search, with the relevance score it was ranked by (higher is more relevant).
+ */
+@Value
+public class BookSearchHit {
+    BookSummary book;
+    float score;
+}
@@ -0,0 +1,15 @@
+package com.yer.library.model.dtos;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * A page of books found by a search, ranked by relevance, together with the cursor to pass to retrieve the next page.
+ * The cursor is {@code null} if there are no more pages.
+ */
+@Value
+public class BookSearchResult {
+    List<BookSearchHit> hits;
+    SearchCursor nextCursor;
+}
@@ -0,0 +1,24 @@
+package com.yer.library.model.dtos;
+
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import lombok.Value;
+
+import java.time.Year;
+
+/**
+ * A read-only view of an available book, as listed by the list endpoints. It is selected with a constructor
+ * expression, so it is never managed (or snapshotted for dirty checking) by the persistence context.
+ */
+@Value
+public class BookSummary {
+    Long id;
+    String isbn;
+    String title;
+    Year year;
+    String author;
+    BookType type;
+    BookGenre genre;
+    Integer value;
+    Long version;
+}
@@ -0,0 +1,14 @@
+package com.yer.library.model.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ConflictStatistics {
+    private String operation;
+    private long conflictCount;
+    private long retryCount;
+    private long recoveredCount;
+    private long exhaustedCount;
+}
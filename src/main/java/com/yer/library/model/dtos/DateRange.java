@@ -0,0 +1,15 @@
+package com.yer.library.model.dtos;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * The dates from the first start date to the last end date of a set of memberships; both are {@code null} if the set
+ * is empty.
+ */
+@Value
+public class DateRange {
+    LocalDate from;
+    LocalDate to;
+}
@@ -0,0 +1,22 @@
+package com.yer.library.model.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ImportReport {
+    private long rowsRead;
+    private long imported;
+    private List<RowError> errors = new ArrayList<>();
+
+    @Data
+    @AllArgsConstructor
+    public static class RowError {
+        private long row;
+        private String isbn;
+        private List<String> messages;
+    }
+}
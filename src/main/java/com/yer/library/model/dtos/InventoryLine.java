@@ -0,0 +1,23 @@
+package com.yer.library.model.dtos;
+
+import lombok.Data;
+
+/**
+ * The number of copies that have not been deleted in a group of the inventory (a genre, type, decade or floor), and
+ * their total value (in cents).
+ */
+@Data
+public class InventoryLine {
+    private Object group;
+    private long copies;
+    private long value;
+
+    /**
+     * Creates a line, also from the {@code SUM}s of a {@code GROUP BY} query.
+     */
+    public InventoryLine(Object group, Long copies, Long value) {
+        this.group = group;
+        this.copies = copies == null ? 0 : copies;
+        this.value = value == null ? 0 : value;
+    }
+}
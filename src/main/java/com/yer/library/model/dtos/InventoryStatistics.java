@@ -0,0 +1,34 @@
+package com.yer.library.model.dtos;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * The number and total value (in cents) of the copies that have not been deleted, in all, and per genre, type and
+ * decade of publication of their book and per floor (a {@code null} floor for copies without a location). Groups
+ * without copies are left out.
+ */
+@Value
+public class InventoryStatistics {
+    long copies;
+    long value;
+    List<InventoryLine> genres;
+    List<InventoryLine> types;
+    List<InventoryLine> decades;
+    List<InventoryLine> floors;
+
+    public InventoryStatistics(
+            List<InventoryLine> genres,
+            List<InventoryLine> types,
+            List<InventoryLine> decades,
+            List<InventoryLine> floors
+    ) {
+        this.copies = genres.stream().mapToLong(InventoryLine::getCopies).sum();
+        this.value = genres.stream().mapToLong(InventoryLine::getValue).sum();
+        this.genres = genres;
+        this.types = types;
+        this.decades = decades;
+        this.floors = floors;
+    }
+}
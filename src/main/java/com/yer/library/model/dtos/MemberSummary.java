@@ -0,0 +1,46 @@
+package com.yer.library.model.dtos;
+
+import com.yer.library.model.enums.MembershipTypeName;
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * A read-only view of an available member and their membership (if any), like {@link BookSummary}.
+ */
+@Value
+public class MemberSummary {
+    Long id;
+    String name;
+    String homeAddress;
+    String emailAddress;
+    LocalDate birthday;
+    MembershipSummary membership;
+    Long version;
+
+    public MemberSummary(
+            Long id,
+            String name,
+            String homeAddress,
+            String emailAddress,
+            LocalDate birthday,
+            Long version,
+            Long membershipId,
+            LocalDate startDate,
+            LocalDate endDate,
+            Long membershipVersion,
+            Long membershipTypeId,
+            MembershipTypeName membershipTypeName,
+            Integer costPerMonth
+    ) {
+        this.id = id;
+        this.name = name;
+        this.homeAddress = homeAddress;
+        this.emailAddress = emailAddress;
+        this.birthday = birthday;
+        this.membership = membershipId == null ? null : new MembershipSummary(
+                membershipId, startDate, endDate, membershipVersion, membershipTypeId, membershipTypeName, costPerMonth
+        );
+        this.version = version;
+    }
+}
@@ -0,0 +1,24 @@
+package com.yer.library.model.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class MembershipExpiryStatistics {
+    private boolean running;
+    private LocalDate cutoffDate;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    private long chunkCount;
+    private long expiredCount;
+    private long detachedCount;
+    /**
+     * The number of memberships expired per second by the last run in this application instance.
+     */
+    private double expiredPerSecond;
+    private double averageChunkMillis;
+}
@@ -0,0 +1,14 @@
+package com.yer.library.model.dtos;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * The ID and end date of a membership, which together order the memberships a batch job works through.
+ */
+@Value
+public class MembershipKey {
+    Long id;
+    LocalDate endDate;
+}
@@ -0,0 +1,17 @@
+package com.yer.library.model.dtos;
+
+import com.yer.library.model.enums.MembershipTypeName;
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * The type, monthly fee and dates of a membership, read without loading the membership.
+ */
+@Value
+public class MembershipPeriod {
+    MembershipTypeName type;
+    int costPerMonth;
+    LocalDate startDate;
+    LocalDate endDate;
+}
@@ -0,0 +1,34 @@
+package com.yer.library.model.dtos;
+
+import com.yer.library.model.enums.MembershipTypeName;
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * A read-only view of an available membership and its type, like {@link BookSummary}.
+ */
+@Value
+public class MembershipSummary {
+    Long id;
+    MembershipTypeSummary membershipType;
+    LocalDate startDate;
+    LocalDate endDate;
+    Long version;
+
+    public MembershipSummary(
+            Long id,
+            LocalDate startDate,
+            LocalDate endDate,
+            Long version,
+            Long membershipTypeId,
+            MembershipTypeName membershipTypeName,
+            int costPerMonth
+    ) {
+        this.id = id;
+        this.membershipType = new MembershipTypeSummary(membershipTypeId, membershipTypeName, costPerMonth);
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.version = version;
+    }
+}
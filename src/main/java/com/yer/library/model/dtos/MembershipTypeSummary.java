@@ -0,0 +1,14 @@
+package com.yer.library.model.dtos;
+
+import com.yer.library.model.enums.MembershipTypeName;
+import lombok.Value;
+
+/**
+ * A read-only view of a membership type, as nested in {@link MembershipSummary}.
+ */
+@Value
+public class MembershipTypeSummary {
+    Long id;
+    MembershipTypeName type;
+    int costPerMonth;
+}
@@ -0,0 +1,16 @@
+package com.yer.library.model.dtos;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * A waiting hold as it is kept in the queue of its book, read without loading the hold, its book and its member.
+ */
+@Value
+public class QueuedHold {
+    Long holdId;
+    Long bookId;
+    Long memberId;
+    LocalDateTime placedAt;
+}
@@ -0,0 +1,14 @@
+package com.yer.library.model.dtos;
+
+import lombok.Value;
+
+/**
+ * The number of books indexed by a full reindex of the search index, the number of threads that indexed them, and
+ * how long it took.
+ */
+@Value
+public class ReindexReport {
+    long books;
+    int threads;
+    long millis;
+}
@@ -0,0 +1,24 @@
+package com.yer.library.model.dtos;
+
+import com.yer.library.model.enums.MembershipTypeName;
+import lombok.Data;
+
+/**
+ * The number of memberships of a membership type that are active on a date, and the sum of their monthly fees (in
+ * cents).
+ */
+@Data
+public class RevenueLine {
+    private MembershipTypeName type;
+    private long memberships;
+    private long monthlyRevenue;
+
+    /**
+     * Creates a line, also from the {@code COUNT} and {@code SUM} of a {@code GROUP BY} query.
+     */
+    public RevenueLine(MembershipTypeName type, Long memberships, Long monthlyRevenue) {
+        this.type = type;
+        this.memberships = memberships == null ? 0 : memberships;
+        this.monthlyRevenue = monthlyRevenue == null ? 0 : monthlyRevenue;
+    }
+}
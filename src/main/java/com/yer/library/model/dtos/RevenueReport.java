@@ -0,0 +1,25 @@
+package com.yer.library.model.dtos;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * The monthly recurring revenue (in cents) of the memberships that are active on a date, per membership type. Types
+ * without active memberships are included with zero revenue.
+ */
+@Value
+public class RevenueReport {
+    LocalDate date;
+    List<RevenueLine> lines;
+    long memberships;
+    long monthlyRevenue;
+
+    public RevenueReport(LocalDate date, List<RevenueLine> lines) {
+        this.date = date;
+        this.lines = lines;
+        this.memberships = lines.stream().mapToLong(RevenueLine::getMemberships).sum();
+        this.monthlyRevenue = lines.stream().mapToLong(RevenueLine::getMonthlyRevenue).sum();
+    }
+}
@@ -0,0 +1,14 @@
+package com.yer.library.model.dtos;
+
+import lombok.Value;
+
+/**
+ * The position of the last hit of a page of search results: the version of the index the page was searched in, and
+ * the score and (internal) document number of the hit, after which the next page starts.
+ */
+@Value
+public class SearchCursor {
+    long version;
+    float score;
+    int doc;
+}
@@ -0,0 +1,14 @@
+package com.yer.library.model.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class SecondLevelCacheStatistics {
+    private String name;
+    private long hitCount;
+    private long missCount;
+    private long putCount;
+    private double hitRate;
+}
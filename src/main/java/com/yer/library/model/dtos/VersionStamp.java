@@ -0,0 +1,53 @@
+package com.yer.library.model.dtos;
+
+import com.yer.library.model.Book;
+import com.yer.library.model.BookCopy;
+import com.yer.library.model.Member;
+import com.yer.library.model.Membership;
+import lombok.Value;
+
+/**
+ * The version of an object, together with the version of the associated object it is returned with (like the book of a
+ * book copy), if any. Versions are read without loading the objects, to answer conditional requests cheaply.
+ */
+@Value
+public class VersionStamp {
+    Long id;
+    Long version;
+    Long associationVersion;
+
+    public VersionStamp(Long id, Long version) {
+        this(id, version, null);
+    }
+
+    public VersionStamp(Long id, Long version, Long associationVersion) {
+        this.id = id;
+        this.version = version;
+        this.associationVersion = associationVersion;
+    }
+
+    public static VersionStamp of(Book book) {
+        return new VersionStamp(book.getId(), book.getVersion());
+    }
+
+    public static VersionStamp of(BookCopy bookCopy) {
+        return new VersionStamp(bookCopy.getId(), bookCopy.getVersion(), bookCopy.getBook().getVersion());
+    }
+
+    public static VersionStamp of(Member member) {
+        Membership membership = member.getMembership();
+        return new VersionStamp(member.getId(), member.getVersion(), membership == null ? null : membership.getVersion());
+    }
+
+    public static VersionStamp of(Membership membership) {
+        return new VersionStamp(membership.getId(), membership.getVersion());
+    }
+
+    /**
+     * Returns the versions as the (opaque) value of an entity tag, like {@code 3}, or {@code 3.1} with the version of
+     * the associated object.
+     */
+    public String getTag() {
+        return associationVersion == null ? String.valueOf(version) : version + "." + associationVersion;
+    }
+}
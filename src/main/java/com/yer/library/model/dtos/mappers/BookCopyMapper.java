@@ -15,8 +15,20 @@ public interface BookCopyMapper {
     BookCopyDTO toBookCopyDTO(BookCopy bookCopy);
 
     @Mapping(target = "book", ignore = true)
+    @Mapping(target = "status", ignore = true)
+    @Mapping(target = "version", ignore = true)
     BookCopy toBookCopy(BookCopyDTO bookCopyDTO, @Context BookRepository bookRepository);
 
+    /**
+     * Copies the state of the updated book copy onto the (managed) book copy, so that only the changed columns are
+     * updated.
+     */
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "status", ignore = true)
+    @Mapping(target = "deleted", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    void updateBookCopy(BookCopy updatedBookCopy, @MappingTarget BookCopy bookCopy);
+
     @AfterMapping
     default void toBookCopy(@MappingTarget BookCopy bookCopy, BookCopyDTO bookCopyDTO, @Context BookRepository bookRepository) {
         Long bookId = bookCopyDTO.getBookId();
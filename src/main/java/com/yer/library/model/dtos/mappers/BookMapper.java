@@ -3,6 +3,8 @@ package com.yer.library.model.dtos.mappers;
 import com.yer.library.model.Book;
 import com.yer.library.model.dtos.BookDTO;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
 import org.mapstruct.factory.Mappers;
 
 @Mapper(componentModel = "spring")
@@ -11,5 +13,14 @@ public interface BookMapper {
 
     BookDTO toBookDTO(Book book);
 
+    @Mapping(target = "version", ignore = true)
     Book toBook(BookDTO bookDTO);
+
+    /**
+     * Copies the state of the updated book onto the (managed) book, so that only the changed columns are updated.
+     */
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "deleted", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    void updateBook(Book updatedBook, @MappingTarget Book book);
 }
@@ -15,8 +15,17 @@ public interface MemberMapper {
     MemberDTO toMemberDTO(Member member);
 
     @Mapping(target = "membership", ignore = true)
+    @Mapping(target = "version", ignore = true)
     Member toMember(MemberDTO memberDTO, @Context MembershipRepository membershipRepository);
 
+    /**
+     * Copies the state of the updated member onto the (managed) member, so that only the changed columns are updated.
+     */
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "deleted", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    void updateMember(Member updatedMember, @MappingTarget Member member);
+
     @AfterMapping
     default void toMember(@MappingTarget Member member, MemberDTO memberDTO, @Context MembershipRepository membershipRepository) {
         Long membershipId = memberDTO.getMembershipId();
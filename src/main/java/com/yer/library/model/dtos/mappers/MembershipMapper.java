@@ -15,8 +15,21 @@ public interface MembershipMapper {
     MembershipDTO toMembershipDTO(Membership membership);
 
     @Mapping(target = "membershipType", ignore = true)
+    @Mapping(target = "expired", ignore = true)
+    @Mapping(target = "version", ignore = true)
     Membership toMembership(MembershipDTO membershipDTO, @Context MembershipTypeRepository membershipTypeRepository);
 
+    /**
+     * Copies the state of the updated membership onto the (managed) membership, so that only the changed columns are
+     * updated.
+     */
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "deleted", ignore = true)
+    @Mapping(target = "expired", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "members", ignore = true)
+    void updateMembership(Membership updatedMembership, @MappingTarget Membership membership);
+
     @AfterMapping
     default void toMembership(@MappingTarget Membership membership, MembershipDTO membershipDTO, @Context MembershipTypeRepository membershipTypeRepository) {
         Long membershipTypeId = membershipDTO.getMembershipTypeId();
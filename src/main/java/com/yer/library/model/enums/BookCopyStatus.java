@@ -0,0 +1,35 @@
+package com.yer.library.model.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public enum BookCopyStatus {
+    AVAILABLE("available"), ON_LOAN("on loan"), ON_HOLD("on hold");
+
+    private static final Map<String, BookCopyStatus> BOOK_COPY_STATUS_MAP = Stream
+            .of(BookCopyStatus.values())
+            .collect(Collectors.toMap(s -> s.text, Function.identity()));
+
+    private final String text;
+
+    BookCopyStatus(String text) {
+        this.text = text;
+    }
+
+    @JsonCreator // This is the factory method and must be static
+    public static BookCopyStatus fromString(String string) {
+        return Optional
+                .ofNullable(BOOK_COPY_STATUS_MAP.get(string))
+                .orElseThrow(() -> new IllegalArgumentException(string));
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,35 @@
+package com.yer.library.model.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public enum HoldStatus {
+    WAITING("waiting"), READY("ready"), COLLECTED("collected"), CANCELLED("cancelled");
+
+    private static final Map<String, HoldStatus> HOLD_STATUS_MAP = Stream
+            .of(HoldStatus.values())
+            .collect(Collectors.toMap(s -> s.text, Function.identity()));
+
+    private final String text;
+
+    HoldStatus(String text) {
+        this.text = text;
+    }
+
+    @JsonCreator // This is the factory method and must be static
+    public static HoldStatus fromString(String string) {
+        return Optional
+                .ofNullable(HOLD_STATUS_MAP.get(string))
+                .orElseThrow(() -> new IllegalArgumentException(string));
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
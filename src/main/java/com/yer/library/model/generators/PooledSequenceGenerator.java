@@ -0,0 +1,36 @@
+package com.yer.library.model.generators;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Sequence generator that hands out IDs from a pool, so that a database round trip to the sequence is only needed once
+ * every {@code increment_size} inserts, and inserts can be batched.
+ * <p>
+ * The increment size is read from the {@value #INCREMENT_SIZE_SETTING} setting (default
+ * {@value #DEFAULT_POOL_SIZE}) unless the generator specifies one itself. The optimizer can be chosen with the standard
+ * {@code hibernate.id.optimizer.pooled.preferred} setting ({@code pooled} or {@code pooled-lo}).
+ * <p>
+ * The increment size has to match the increment of the sequences in an existing database.
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+    public static final String INCREMENT_SIZE_SETTING = "library.id.increment_size";
+    public static final int DEFAULT_POOL_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        if (!params.containsKey(INCREMENT_PARAM)) {
+            String incrementSize = serviceRegistry.getService(ConfigurationService.class).getSetting(
+                    INCREMENT_SIZE_SETTING, StandardConverters.STRING, String.valueOf(DEFAULT_POOL_SIZE)
+            );
+            params.setProperty(INCREMENT_PARAM, incrementSize);
+        }
+        super.configure(type, params, serviceRegistry);
+    }
+}
@@ -0,0 +1,60 @@
+package com.yer.library.repository;
+
+import com.yer.library.model.BookAvailability;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BookAvailabilityRepository extends JpaRepository<BookAvailability, Long> {
+    /**
+     * Finds the availability of the available book with the given ID.
+     */
+    @Query("SELECT a FROM BookAvailability a, Book b WHERE b.id = a.bookId AND a.bookId = ?1 AND b.deleted = false")
+    Optional<BookAvailability> findAvailableById(Long bookId);
+
+    /**
+     * Finds the availability of the available books with any of the given IDs, in no particular order.
+     */
+    @Query("SELECT a FROM BookAvailability a, Book b WHERE b.id = a.bookId AND a.bookId IN ?1 AND b.deleted = false")
+    List<BookAvailability> findAvailableByIds(Collection<Long> bookIds);
+
+    /**
+     * Starts counting the copies of the books with the given IDs (at zero), unless they are counted already, like the
+     * books that have been deleted and added again.
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("INSERT INTO BookAvailability (bookId, availableCopies, totalCopies) SELECT b.id, 0, 0 FROM Book b " +
+            "WHERE b.id IN ?1 AND NOT EXISTS (SELECT a FROM BookAvailability a WHERE a.bookId = b.id)")
+    int register(Collection<Long> bookIds);
+
+    /**
+     * Adds the given numbers (which may be negative) to the counters of the book with the given ID.
+     * <p>
+     * The counter row stays locked until the transaction ends, so a transaction that also changes copies should change
+     * them first, like a checkout does, to lock the rows of two transactions in the same order.
+     */
+    @Modifying
+    @Query("UPDATE BookAvailability a SET a.availableCopies = a.availableCopies + ?2, a.totalCopies = a.totalCopies + ?3 " +
+            "WHERE a.bookId = ?1")
+    int adjust(Long bookId, int availableCopies, int totalCopies);
+
+    /**
+     * Counts the copies of the books with the given IDs again, after copies were changed in bulk.
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE BookAvailability a SET " +
+            "a.availableCopies = (SELECT COUNT(c) FROM BookCopy c WHERE c.book.id = a.bookId AND c.deleted = false " +
+            "AND c.status = com.yer.library.model.enums.BookCopyStatus.AVAILABLE), " +
+            "a.totalCopies = (SELECT COUNT(c) FROM BookCopy c WHERE c.book.id = a.bookId AND c.deleted = false) " +
+            "WHERE a.bookId IN ?1")
+    int recount(Collection<Long> bookIds);
+}
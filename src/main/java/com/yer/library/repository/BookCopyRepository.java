@@ -1,18 +1,153 @@
 package com.yer.library.repository;
 
 import com.yer.library.model.BookCopy;
+import com.yer.library.model.dtos.BookCopySummary;
+import com.yer.library.model.dtos.VersionStamp;
+import com.yer.library.model.enums.BookCopyStatus;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface BookCopyRepository extends JpaRepository<BookCopy, Long> {
-    @Query("SELECT b FROM BookCopy b WHERE b.deleted = false AND b.book.deleted = false")
+    @Query("SELECT b FROM BookCopy b JOIN FETCH b.book bk WHERE b.deleted = false AND bk.deleted = false")
     List<BookCopy> listAvailable(Pageable pageable);
 
-    @Query("SELECT b FROM BookCopy b WHERE b.book.id = ?1 AND b.book.deleted = false AND b.deleted = false")
+    @Query("SELECT b FROM BookCopy b JOIN FETCH b.book bk WHERE bk.id = ?1 AND bk.deleted = false AND b.deleted = false")
     List<BookCopy> listByBook(Long bookId, Pageable pageable);
+
+    @Query("SELECT b FROM BookCopy b JOIN FETCH b.book bk WHERE b.id > ?1 AND b.deleted = false AND bk.deleted = false ORDER BY b.id")
+    List<BookCopy> listAvailableAfter(Long afterId, Pageable pageable);
+
+    @Query("SELECT b FROM BookCopy b JOIN FETCH b.book bk WHERE bk.id = ?1 AND b.id > ?2 AND bk.deleted = false AND b.deleted = false ORDER BY b.id")
+    List<BookCopy> listByBookAfter(Long bookId, Long afterId, Pageable pageable);
+
+    /**
+     * Lists the available book copies of available books with an ID greater than {@code afterId} as read-only
+     * summaries, ordered by ID.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.BookCopySummary(b.id, b.location, b.status, b.version, bk.id, bk.isbn, bk.title, bk.year, bk.author, bk.type, bk.genre, bk.value, bk.version) " +
+            "FROM BookCopy b JOIN b.book bk WHERE b.id > ?1 AND b.deleted = false AND bk.deleted = false ORDER BY b.id")
+    List<BookCopySummary> listSummariesAfter(Long afterId, Pageable pageable);
+
+    /**
+     * Lists the available book copies of the book with an ID greater than {@code afterId} as read-only summaries,
+     * ordered by ID.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.BookCopySummary(b.id, b.location, b.status, b.version, bk.id, bk.isbn, bk.title, bk.year, bk.author, bk.type, bk.genre, bk.value, bk.version) " +
+            "FROM BookCopy b JOIN b.book bk WHERE bk.id = ?1 AND b.id > ?2 AND bk.deleted = false AND b.deleted = false ORDER BY b.id")
+    List<BookCopySummary> listSummariesByBookAfter(Long bookId, Long afterId, Pageable pageable);
+
+    /**
+     * Finds the version of the available book copy with the given ID (and the version of its book), without loading
+     * the book copy.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.VersionStamp(b.id, b.version, bk.version) " +
+            "FROM BookCopy b JOIN b.book bk WHERE b.id = ?1 AND b.deleted = false AND bk.deleted = false")
+    Optional<VersionStamp> findVersionById(Long bookCopyId);
+
+    /**
+     * Lists the versions of the book copies listed by {@link #listSummariesAfter}.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.VersionStamp(b.id, b.version, bk.version) " +
+            "FROM BookCopy b JOIN b.book bk WHERE b.id > ?1 AND b.deleted = false AND bk.deleted = false ORDER BY b.id")
+    List<VersionStamp> listVersionsAfter(Long afterId, Pageable pageable);
+
+    /**
+     * Lists the versions of the book copies listed by {@link #listSummariesByBookAfter}.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.VersionStamp(b.id, b.version, bk.version) " +
+            "FROM BookCopy b JOIN b.book bk WHERE bk.id = ?1 AND b.id > ?2 AND bk.deleted = false AND b.deleted = false ORDER BY b.id")
+    List<VersionStamp> listVersionsByBookAfter(Long bookId, Long afterId, Pageable pageable);
+
+    /**
+     * Finds the available book copies of available books with any of the given IDs, in no particular order.
+     */
+    @Query("SELECT b FROM BookCopy b JOIN FETCH b.book bk WHERE b.id IN ?1 AND b.deleted = false AND bk.deleted = false")
+    List<BookCopy> findAvailableByIds(Collection<Long> bookCopyIds);
+
+    /**
+     * Finds the book copies with any of the given IDs that have not been deleted, and locks them until the transaction
+     * ends, so that they cannot be changed by another transaction before they are deleted in bulk.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM BookCopy b WHERE b.id IN ?1 AND b.deleted = false ORDER BY b.id")
+    List<BookCopy> findActiveByIdsForUpdate(Collection<Long> bookCopyIds);
+
+    /**
+     * Finds the copies of the books with the given IDs that have not been deleted, and locks them until the
+     * transaction ends, like {@link #findActiveByIdsForUpdate} does.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM BookCopy b WHERE b.book.id IN ?1 AND b.deleted = false ORDER BY b.id")
+    List<BookCopy> findActiveByBookIdsForUpdate(Collection<Long> bookIds);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("SELECT b FROM BookCopy b JOIN FETCH b.book bk WHERE b.deleted = false AND bk.deleted = false ORDER BY b.id")
+    Stream<BookCopy> streamAvailable();
+
+    /**
+     * Soft deletes the non-deleted book copies with the given IDs, and returns the number of book copies deleted.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE BookCopy b SET b.deleted = true, b.version = b.version + 1 WHERE b.id IN ?1 AND b.deleted = false")
+    int softDeleteByIds(Collection<Long> bookCopyIds);
+
+    /**
+     * Soft deletes the non-deleted copies of the books with the given IDs, and returns the number of book copies
+     * deleted.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE BookCopy b SET b.deleted = true, b.version = b.version + 1 WHERE b.book.id IN ?1 AND b.deleted = false")
+    int softDeleteByBookIds(Collection<Long> bookIds);
+
+    /**
+     * Lends the book copy with the given ID if it is available, and returns whether it was. The status is checked and
+     * changed by a single statement, which locks the row, so of two concurrent checkouts of the same copy only the
+     * first changes it.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE BookCopy b SET b.status = com.yer.library.model.enums.BookCopyStatus.ON_LOAN, b.version = b.version + 1 " +
+            "WHERE b.id = ?1 AND b.status = com.yer.library.model.enums.BookCopyStatus.AVAILABLE AND b.deleted = false")
+    int checkOut(Long bookCopyId);
+
+    /**
+     * Makes the lent book copy with the given ID available again, and returns whether it was lent.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE BookCopy b SET b.status = com.yer.library.model.enums.BookCopyStatus.AVAILABLE, b.version = b.version + 1 " +
+            "WHERE b.id = ?1 AND b.status = com.yer.library.model.enums.BookCopyStatus.ON_LOAN")
+    int checkIn(Long bookCopyId);
+
+    /**
+     * Lends the book copy with the given ID, that was kept for a hold, and returns whether it was kept.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE BookCopy b SET b.status = com.yer.library.model.enums.BookCopyStatus.ON_LOAN, b.version = b.version + 1 " +
+            "WHERE b.id = ?1 AND b.status = com.yer.library.model.enums.BookCopyStatus.ON_HOLD AND b.deleted = false")
+    int collect(Long bookCopyId);
+
+    /**
+     * Changes the status of the book copy with the given ID if it has the expected status, and returns whether it had.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE BookCopy b SET b.status = ?3, b.version = b.version + 1 WHERE b.id = ?1 AND b.status = ?2")
+    int changeStatus(Long bookCopyId, BookCopyStatus expectedStatus, BookCopyStatus status);
 }
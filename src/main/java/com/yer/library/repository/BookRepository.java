@@ -1,19 +1,110 @@
 package com.yer.library.repository;
 
 import com.yer.library.model.Book;
+import com.yer.library.model.dtos.BookSummary;
+import com.yer.library.model.dtos.VersionStamp;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
     @Query("SELECT b FROM Book b WHERE b.isbn = ?1 AND b.deleted = false")
     Optional<Book> findByIsbn(String isbn);
 
+    /**
+     * Finds all books with any of the given ISBNs, including deleted ones.
+     */
+    @Query("SELECT b FROM Book b WHERE b.isbn IN ?1")
+    List<Book> findAllByIsbnIn(Collection<String> isbns);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
     @Query("SELECT b FROM Book b WHERE b.deleted = false")
     List<Book> listAvailable(Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("SELECT b FROM Book b WHERE b.id > ?1 AND b.deleted = false ORDER BY b.id")
+    List<Book> listAvailableAfter(Long afterId, Pageable pageable);
+
+    /**
+     * Lists the available books with an ID greater than {@code afterId} as read-only summaries, ordered by ID.
+     */
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("SELECT new com.yer.library.model.dtos.BookSummary(b.id, b.isbn, b.title, b.year, b.author, b.type, b.genre, b.value, b.version) " +
+            "FROM Book b WHERE b.id > ?1 AND b.deleted = false ORDER BY b.id")
+    List<BookSummary> listSummariesAfter(Long afterId, Pageable pageable);
+
+    /**
+     * Lists the available books with an ID from {@code fromId} (inclusive) to {@code toId} (exclusive) as read-only
+     * summaries, in no particular order.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.yer.library.model.dtos.BookSummary(b.id, b.isbn, b.title, b.year, b.author, b.type, b.genre, b.value, b.version) " +
+            "FROM Book b WHERE b.id >= ?1 AND b.id < ?2 AND b.deleted = false")
+    List<BookSummary> listSummariesBetween(Long fromId, Long toId);
+
+    /**
+     * Lists the available books with the given IDs as read-only summaries, in no particular order. The summaries are
+     * always read from the database, not from a cache.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.BookSummary(b.id, b.isbn, b.title, b.year, b.author, b.type, b.genre, b.value, b.version) " +
+            "FROM Book b WHERE b.id IN ?1 AND b.deleted = false")
+    List<BookSummary> listSummariesByIds(Collection<Long> ids);
+
+    /**
+     * Finds the lowest ID of all books, or {@code null} if there are none.
+     */
+    @Query("SELECT MIN(b.id) FROM Book b")
+    Long findMinId();
+
+    /**
+     * Finds the highest ID of all books, or {@code null} if there are none.
+     */
+    @Query("SELECT MAX(b.id) FROM Book b")
+    Long findMaxId();
+
+    /**
+     * Finds the version of the available book with the given ID, without loading the book.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.VersionStamp(b.id, b.version) FROM Book b WHERE b.id = ?1 AND b.deleted = false")
+    Optional<VersionStamp> findVersionById(Long bookId);
+
+    /**
+     * Lists the versions of the books listed by {@link #listSummariesAfter}.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.VersionStamp(b.id, b.version) FROM Book b WHERE b.id > ?1 AND b.deleted = false ORDER BY b.id")
+    List<VersionStamp> listVersionsAfter(Long afterId, Pageable pageable);
+
+    /**
+     * Finds the available books with any of the given IDs, in no particular order.
+     */
+    @Query("SELECT b FROM Book b WHERE b.id IN ?1 AND b.deleted = false")
+    List<Book> findAvailableByIds(Collection<Long> bookIds);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("SELECT b FROM Book b WHERE b.deleted = false ORDER BY b.id")
+    Stream<Book> streamAvailable();
+
+    /**
+     * Soft deletes the non-deleted books with the given IDs, and returns the number of books deleted.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Book b SET b.deleted = true, b.version = b.version + 1 WHERE b.id IN ?1 AND b.deleted = false")
+    int softDeleteByIds(Collection<Long> bookIds);
 }
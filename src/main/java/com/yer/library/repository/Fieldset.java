@@ -0,0 +1,166 @@
+package com.yer.library.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The fields of an entity that can be selected on their own (a sparse fieldset), and how to select them in JPQL.
+ * <p>
+ * Fields of associated entities have dotted names, like {@code membership.startDate}. The associated entity is only
+ * joined if one of its selected fields is not its ID, since the ID of an association is read from the foreign key.
+ */
+public final class Fieldset {
+    public static final String ID = "id";
+
+    public static final Fieldset BOOKS = new Fieldset("Book", "Book b", "b", "b.deleted = false")
+            .field("isbn", "b.isbn")
+            .field("title", "b.title")
+            .field("year", "b.year")
+            .field("author", "b.author")
+            .field("type", "b.type")
+            .field("genre", "b.genre")
+            .field("value", "b.value");
+
+    public static final Fieldset BOOK_COPIES = new Fieldset(
+            "BookCopy", "BookCopy c JOIN c.book bk", "c", "c.deleted = false AND bk.deleted = false"
+    )
+            .field("location", "c.location")
+            .field("book.id", "bk.id")
+            .field("book.isbn", "bk.isbn")
+            .field("book.title", "bk.title")
+            .field("book.year", "bk.year")
+            .field("book.author", "bk.author")
+            .field("book.type", "bk.type")
+            .field("book.genre", "bk.genre")
+            .field("book.value", "bk.value")
+            .owner("book", "bk.id");
+
+    public static final Fieldset MEMBERS = new Fieldset("Member", "Member m", "m", "m.deleted = false")
+            .field("name", "m.name")
+            .field("homeAddress", "m.homeAddress")
+            .field("emailAddress", "m.emailAddress")
+            .field("birthday", "m.birthday")
+            .join("ms", "LEFT JOIN m.membership ms")
+            .join("t", "LEFT JOIN ms.membershipType t")
+            .field("membership.id", "m.membership.id")
+            .field("membership.startDate", "ms.startDate")
+            .field("membership.endDate", "ms.endDate")
+            .field("membership.membershipType.id", "ms.membershipType.id")
+            .field("membership.membershipType.type", "t.type")
+            .field("membership.membershipType.costPerMonth", "t.costPerMonth")
+            .owner("membership", "m.membership.id");
+
+    public static final Fieldset MEMBERSHIPS = new Fieldset("Membership", "Membership ms", "ms", "ms.deleted = false")
+            .field("startDate", "ms.startDate")
+            .field("endDate", "ms.endDate")
+            .join("t", "JOIN ms.membershipType t")
+            .field("membershipType.id", "ms.membershipType.id")
+            .field("membershipType.type", "t.type")
+            .field("membershipType.costPerMonth", "t.costPerMonth")
+            .owner("membershipType", "ms.membershipType.id");
+
+    private final String entityName;
+    private final String from;
+    private final String alias;
+    private final String availableCondition;
+    private final Map<String, String> paths = new LinkedHashMap<>();
+    private final Map<String, String> joins = new LinkedHashMap<>();
+    private final Map<String, String> ownerPaths = new LinkedHashMap<>();
+
+    private Fieldset(String entityName, String from, String alias, String availableCondition) {
+        this.entityName = entityName;
+        this.from = from;
+        this.alias = alias;
+        this.availableCondition = availableCondition;
+        paths.put(ID, alias + ".id");
+    }
+
+    private Fieldset field(String name, String path) {
+        paths.put(name, path);
+        return this;
+    }
+
+    private Fieldset join(String joinAlias, String clause) {
+        joins.put(joinAlias, clause);
+        return this;
+    }
+
+    private Fieldset owner(String name, String path) {
+        ownerPaths.put(name, path);
+        return this;
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    public String getAvailableCondition() {
+        return availableCondition;
+    }
+
+    /**
+     * Returns the fields to select for the requested field names, in the order they were requested in. The ID is
+     * always selected (as the first field), since it identifies the object and is the cursor of a page.
+     *
+     * @throws IllegalArgumentException if a field name is not selectable
+     */
+    public List<String> resolve(Collection<String> fieldNames) {
+        List<String> fields = new ArrayList<>(fieldNames.size() + 1);
+        fields.add(ID);
+        for (String fieldName : fieldNames) {
+            if (!paths.containsKey(fieldName)) {
+                throw new IllegalArgumentException(
+                        "unknown field " + fieldName + " of " + entityName + "; selectable fields are " + paths.keySet()
+                );
+            }
+            if (!fields.contains(fieldName)) {
+                fields.add(fieldName);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Returns the {@code SELECT ... FROM ...} clauses that select the (resolved) fields, with only the joins they
+     * need.
+     */
+    public String selectFrom(List<String> fields) {
+        List<String> selectedPaths = fields.stream().map(paths::get).collect(Collectors.toList());
+
+        // a join is needed if a selected path or a later needed join refers to its alias
+        List<String> neededJoins = new ArrayList<>();
+        List<String> joinAliases = new ArrayList<>(joins.keySet());
+        for (int i = joinAliases.size() - 1; i >= 0; i--) {
+            String prefix = joinAliases.get(i) + ".";
+            boolean needed = selectedPaths.stream().anyMatch(path -> path.startsWith(prefix))
+                    || neededJoins.stream().anyMatch(join -> join.contains(" " + prefix));
+            if (needed) {
+                neededJoins.add(0, joins.get(joinAliases.get(i)));
+            }
+        }
+
+        StringBuilder jpql = new StringBuilder("SELECT ")
+                .append(String.join(", ", selectedPaths))
+                .append(" FROM ")
+                .append(from);
+        neededJoins.forEach(join -> jpql.append(' ').append(join));
+        return jpql.toString();
+    }
+
+    /**
+     * Returns the path of the ID of the owning entity with the given name, like {@code book} for book copies.
+     *
+     * @throws IllegalArgumentException if the entity is not owned by an entity with that name
+     */
+    public String ownerPath(String ownerName) {
+        String path = ownerPaths.get(ownerName);
+        if (path == null) {
+            throw new IllegalArgumentException(entityName + " is not listed by " + ownerName);
+        }
+        return path;
+    }
+}
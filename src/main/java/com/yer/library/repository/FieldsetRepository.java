@@ -0,0 +1,146 @@
+package com.yer.library.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+/**
+ * Selects only the requested fields of available entities (see {@link Fieldset}), as maps from field name to value.
+ * Fields of associated entities are nested, so that {@code book.title} is returned as {@code {"book": {"title": ...}}}.
+ * <p>
+ * Since only the requested columns are read, and no entities are managed, these queries read less than the queries
+ * of the entity repositories when only a few fields are needed.
+ */
+@Repository
+@RequiredArgsConstructor
+public class FieldsetRepository {
+    private final EntityManager entityManager;
+
+    /**
+     * Finds the available entity with the given ID.
+     */
+    public Optional<Map<String, Object>> findAvailableById(Fieldset fieldset, Collection<String> fieldNames, Long id) {
+        List<String> fields = fieldset.resolve(fieldNames);
+        TypedQuery<Tuple> query = createQuery(fieldset, fields, " AND " + fieldset.getAlias() + ".id = :id")
+                .setParameter("id", id);
+        return toRows(fields, query.getResultList()).stream().findFirst();
+    }
+
+    /**
+     * Finds the available entities with any of the given IDs, in no particular order.
+     */
+    public List<Map<String, Object>> findAvailableByIds(
+            Fieldset fieldset,
+            Collection<String> fieldNames,
+            Collection<Long> ids
+    ) {
+        List<String> fields = fieldset.resolve(fieldNames);
+        TypedQuery<Tuple> query = createQuery(fieldset, fields, " AND " + fieldset.getAlias() + ".id IN :ids")
+                .setParameter("ids", ids);
+        return toRows(fields, query.getResultList());
+    }
+
+    /**
+     * Lists the available entities with an ID greater than {@code afterId}, ordered by ID.
+     */
+    public List<Map<String, Object>> listAvailableAfter(
+            Fieldset fieldset,
+            Collection<String> fieldNames,
+            Long afterId,
+            int limit
+    ) {
+        List<String> fields = fieldset.resolve(fieldNames);
+        TypedQuery<Tuple> query = createQuery(
+                fieldset,
+                fields,
+                " AND " + fieldset.getAlias() + ".id > :afterId ORDER BY " + fieldset.getAlias() + ".id"
+        )
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit);
+        return toRows(fields, query.getResultList());
+    }
+
+    /**
+     * Lists the available entities of an owning entity (like the copies of a book) with an ID greater than
+     * {@code afterId}, ordered by ID.
+     */
+    public List<Map<String, Object>> listAvailableByOwnerAfter(
+            Fieldset fieldset,
+            Collection<String> fieldNames,
+            String ownerName,
+            Long ownerId,
+            Long afterId,
+            int limit
+    ) {
+        List<String> fields = fieldset.resolve(fieldNames);
+        TypedQuery<Tuple> query = createQuery(
+                fieldset,
+                fields,
+                " AND " + fieldset.ownerPath(ownerName) + " = :ownerId" +
+                        " AND " + fieldset.getAlias() + ".id > :afterId ORDER BY " + fieldset.getAlias() + ".id"
+        )
+                .setParameter("ownerId", ownerId)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit);
+        return toRows(fields, query.getResultList());
+    }
+
+    private TypedQuery<Tuple> createQuery(Fieldset fieldset, List<String> fields, String conditions) {
+        String jpql = fieldset.selectFrom(fields) + " WHERE " + fieldset.getAvailableCondition() + conditions;
+        return entityManager.createQuery(jpql, Tuple.class)
+                .setHint(HINT_READONLY, true);
+    }
+
+    private static List<Map<String, Object>> toRows(List<String> fields, List<Tuple> results) {
+        List<Map<String, Object>> rows = new ArrayList<>(results.size());
+        for (Tuple result : results) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < fields.size(); i++) {
+                put(row, fields.get(i), result.get(i));
+            }
+            rows.add(withoutEmptyAssociations(row));
+        }
+        return rows;
+    }
+
+    /**
+     * Replaces the nested maps of associations that are not set (like the membership of a member without one) by
+     * {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> withoutEmptyAssociations(Map<String, Object> row) {
+        row.replaceAll((name, value) -> {
+            if (!(value instanceof Map)) {
+                return value;
+            }
+            Map<String, Object> nested = withoutEmptyAssociations((Map<String, Object>) value);
+            return nested.values().stream().allMatch(Objects::isNull) ? null : nested;
+        });
+        return row;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void put(Map<String, Object> row, String field, Object value) {
+        int dot = field.indexOf('.');
+        if (dot < 0) {
+            row.put(field, value);
+            return;
+        }
+        Map<String, Object> nested = (Map<String, Object>) row.computeIfAbsent(
+                field.substring(0, dot), name -> new LinkedHashMap<String, Object>()
+        );
+        put(nested, field.substring(dot + 1), value);
+    }
+}
@@ -0,0 +1,145 @@
+package com.yer.library.repository;
+
+import com.yer.library.model.BookCopy;
+import com.yer.library.model.Hold;
+import com.yer.library.model.dtos.QueuedHold;
+import com.yer.library.model.enums.HoldStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface HoldRepository extends JpaRepository<Hold, Long> {
+    /**
+     * Lists the holds of the member with an ID greater than {@code afterId} (only the waiting and ready ones if
+     * {@code activeOnly} is set), ordered by ID.
+     */
+    @Query("SELECT h FROM Hold h JOIN FETCH h.book WHERE h.member.id = ?1 AND (?2 = false OR h.status IN " +
+            "(com.yer.library.model.enums.HoldStatus.WAITING, com.yer.library.model.enums.HoldStatus.READY)) " +
+            "AND h.id > ?3 ORDER BY h.id")
+    List<Hold> listByMemberAfter(Long memberId, boolean activeOnly, Long afterId, Pageable pageable);
+
+    /**
+     * Lists the waiting holds of the book with the given ID, in the order of its queue.
+     */
+    @Query("SELECT h FROM Hold h JOIN FETCH h.member WHERE h.book.id = ?1 " +
+            "AND h.status = com.yer.library.model.enums.HoldStatus.WAITING ORDER BY h.placedAt, h.id")
+    List<Hold> listWaitingByBook(Long bookId, Pageable pageable);
+
+    /**
+     * Lists the waiting holds of all books with an ID greater than {@code afterId}, ordered by ID, to fill the queues
+     * in memory.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.QueuedHold(h.id, h.book.id, h.member.id, h.placedAt) FROM Hold h " +
+            "WHERE h.id > ?1 AND h.status = com.yer.library.model.enums.HoldStatus.WAITING ORDER BY h.id")
+    List<QueuedHold> listWaitingAfter(Long afterId, Pageable pageable);
+
+    /**
+     * Returns whether the member with the given ID has a waiting or ready hold on the book with the given ID.
+     */
+    @Query("SELECT COUNT(h) > 0 FROM Hold h WHERE h.book.id = ?1 AND h.member.id = ?2 AND h.status IN " +
+            "(com.yer.library.model.enums.HoldStatus.WAITING, com.yer.library.model.enums.HoldStatus.READY)")
+    boolean existsActive(Long bookId, Long memberId);
+
+    /**
+     * Finds the ready hold the book copy with the given ID is kept for, of which there is at most one.
+     */
+    @Query("SELECT h FROM Hold h WHERE h.bookCopy.id = ?1 AND h.status = com.yer.library.model.enums.HoldStatus.READY")
+    Optional<Hold> findReadyByBookCopyId(Long bookCopyId);
+
+    /**
+     * Lists the ready holds the book copies with the given IDs are kept for.
+     */
+    @Query("SELECT h FROM Hold h WHERE h.bookCopy.id IN ?1 AND h.status = com.yer.library.model.enums.HoldStatus.READY")
+    List<Hold> listReadyByBookCopyIds(Collection<Long> bookCopyIds);
+
+    /**
+     * Lists the waiting holds of the books with the given IDs, to remove them from the queues in memory.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.QueuedHold(h.id, h.book.id, h.member.id, h.placedAt) FROM Hold h " +
+            "WHERE h.book.id IN ?1 AND h.status = com.yer.library.model.enums.HoldStatus.WAITING")
+    List<QueuedHold> listWaitingByBookIds(Collection<Long> bookIds);
+
+    /**
+     * Lists the waiting holds of the members with the given IDs, to remove them from the queues in memory.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.QueuedHold(h.id, h.book.id, h.member.id, h.placedAt) FROM Hold h " +
+            "WHERE h.member.id IN ?1 AND h.status = com.yer.library.model.enums.HoldStatus.WAITING")
+    List<QueuedHold> listWaitingByMemberIds(Collection<Long> memberIds);
+
+    /**
+     * Lists the ready holds of the members with the given IDs, with the book copies they are kept for.
+     */
+    @Query("SELECT h FROM Hold h JOIN FETCH h.bookCopy WHERE h.member.id IN ?1 " +
+            "AND h.status = com.yer.library.model.enums.HoldStatus.READY")
+    List<Hold> listReadyByMemberIds(Collection<Long> memberIds);
+
+    /**
+     * Finds the book copy kept for the hold with the given ID, if any.
+     */
+    @Query("SELECT h.bookCopy FROM Hold h WHERE h.id = ?1")
+    Optional<BookCopy> findBookCopyById(Long holdId);
+
+    /**
+     * Keeps the given book copy for the hold with the given ID if the hold is waiting, and returns whether it was. Of
+     * two copies returned at the same time, only the first is kept for the hold.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Hold h SET h.status = com.yer.library.model.enums.HoldStatus.READY, h.bookCopy = ?2 " +
+            "WHERE h.id = ?1 AND h.status = com.yer.library.model.enums.HoldStatus.WAITING")
+    int markReady(Long holdId, BookCopy bookCopy);
+
+    /**
+     * Makes the ready hold with the given ID wait again, without a book copy, and returns whether it was ready.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Hold h SET h.status = com.yer.library.model.enums.HoldStatus.WAITING, h.bookCopy = NULL " +
+            "WHERE h.id = ?1 AND h.status = com.yer.library.model.enums.HoldStatus.READY")
+    int markWaiting(Long holdId);
+
+    /**
+     * Marks the ready hold with the given ID as collected, and returns whether it was ready.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Hold h SET h.status = com.yer.library.model.enums.HoldStatus.COLLECTED " +
+            "WHERE h.id = ?1 AND h.status = com.yer.library.model.enums.HoldStatus.READY")
+    int markCollected(Long holdId);
+
+    /**
+     * Cancels the hold with the given ID if it has the given status, and returns whether it had.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Hold h SET h.status = com.yer.library.model.enums.HoldStatus.CANCELLED WHERE h.id = ?1 AND h.status = ?2")
+    int cancel(Long holdId, HoldStatus status);
+
+    /**
+     * Cancels the waiting hold with the given ID, and returns whether it was waiting. Unlike {@link #cancel}, it keeps
+     * the persistence context, as it is done while a returned copy is kept for a hold.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Hold h SET h.status = com.yer.library.model.enums.HoldStatus.CANCELLED WHERE h.id = ?1 " +
+            "AND h.status = com.yer.library.model.enums.HoldStatus.WAITING")
+    int cancelWaiting(Long holdId);
+
+    /**
+     * Cancels the waiting and ready holds of the books with the given IDs, and returns how many there were.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Hold h SET h.status = com.yer.library.model.enums.HoldStatus.CANCELLED WHERE h.book.id IN ?1 " +
+            "AND h.status IN (com.yer.library.model.enums.HoldStatus.WAITING, com.yer.library.model.enums.HoldStatus.READY)")
+    int cancelByBookIds(Collection<Long> bookIds);
+
+    /**
+     * Cancels the waiting and ready holds of the members with the given IDs, and returns how many there were.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Hold h SET h.status = com.yer.library.model.enums.HoldStatus.CANCELLED WHERE h.member.id IN ?1 " +
+            "AND h.status IN (com.yer.library.model.enums.HoldStatus.WAITING, com.yer.library.model.enums.HoldStatus.READY)")
+    int cancelByMemberIds(Collection<Long> memberIds);
+}
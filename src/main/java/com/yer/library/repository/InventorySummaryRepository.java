@@ -0,0 +1,53 @@
+package com.yer.library.repository;
+
+import com.yer.library.model.InventoryKey;
+import com.yer.library.model.InventorySummary;
+import com.yer.library.model.dtos.InventoryLine;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+
+@Repository
+public interface InventorySummaryRepository extends JpaRepository<InventorySummary, InventoryKey>,
+        InventorySummaryRepositoryCustom {
+    @Query("SELECT new com.yer.library.model.dtos.InventoryLine(s.id.genre, SUM(s.copies), SUM(s.value)) " +
+            "FROM InventorySummary s GROUP BY s.id.genre HAVING SUM(s.copies) > 0 ORDER BY s.id.genre")
+    List<InventoryLine> sumByGenre();
+
+    @Query("SELECT new com.yer.library.model.dtos.InventoryLine(s.id.type, SUM(s.copies), SUM(s.value)) " +
+            "FROM InventorySummary s GROUP BY s.id.type HAVING SUM(s.copies) > 0 ORDER BY s.id.type")
+    List<InventoryLine> sumByType();
+
+    @Query("SELECT new com.yer.library.model.dtos.InventoryLine(s.id.decade, SUM(s.copies), SUM(s.value)) " +
+            "FROM InventorySummary s GROUP BY s.id.decade HAVING SUM(s.copies) > 0 ORDER BY s.id.decade")
+    List<InventoryLine> sumByDecade();
+
+    @Query("SELECT new com.yer.library.model.dtos.InventoryLine(s.id.floor, SUM(s.copies), SUM(s.value)) " +
+            "FROM InventorySummary s GROUP BY s.id.floor HAVING SUM(s.copies) > 0 ORDER BY s.id.floor")
+    List<InventoryLine> sumByFloor();
+
+    /**
+     * Finds all summary rows, in the order of their keys, and locks them until the transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM InventorySummary s ORDER BY s.id.genre, s.id.type, s.id.decade, s.id.floor")
+    List<InventorySummary> findAllForUpdate();
+
+    /**
+     * Counts the copies that have not been deleted, and sums the values of their books, per genre, type and decade of
+     * publication of their book and per floor, as rows of genre, type, decade, floor, copies and value.
+     * <p>
+     * The location of a copy is a single (user) type for Hibernate, so its floor is only grouped by in SQL.
+     */
+    @Query(value = "SELECT b.genre, b.type, FLOOR(b.year_published / 10.0) * 10, COALESCE(c.loc_floor, -1), " +
+            "COUNT(*), SUM(b.book_value) " +
+            "FROM book_copies c JOIN books b ON b.id = c.book_id " +
+            "WHERE c.deleted = false AND b.deleted = false " +
+            "GROUP BY b.genre, b.type, FLOOR(b.year_published / 10.0) * 10, COALESCE(c.loc_floor, -1)",
+            nativeQuery = true)
+    List<Object[]> countFromCopies();
+}
@@ -0,0 +1,15 @@
+package com.yer.library.repository;
+
+import com.yer.library.model.InventoryKey;
+
+public interface InventorySummaryRepositoryCustom {
+    /**
+     * Adds the given numbers (which may be negative) to the summary row with the given key, and inserts the row with
+     * these numbers if it does not exist yet, in a single statement.
+     * <p>
+     * The row stays locked until the transaction ends, so a transaction that also changes copies or books should
+     * change them first, and change the rows in the order of their keys, to lock the rows of two transactions in the
+     * same order.
+     */
+    void upsert(InventoryKey key, long copies, long value);
+}
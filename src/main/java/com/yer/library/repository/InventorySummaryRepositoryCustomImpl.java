@@ -0,0 +1,64 @@
+package com.yer.library.repository;
+
+import com.yer.library.model.InventoryKey;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Upserts inventory summary rows with the statement of the database: {@code INSERT ... ON DUPLICATE KEY UPDATE} on
+ * MySQL, which inserts or updates the row atomically, and a standard {@code MERGE} on other databases (H2 in tests),
+ * which is run again if it fails because a concurrent transaction inserted the row first.
+ */
+@RequiredArgsConstructor
+public class InventorySummaryRepositoryCustomImpl implements InventorySummaryRepositoryCustom {
+    private static final String MYSQL_UPSERT = "INSERT INTO inventory_summary " +
+            "(genre, type, decade, loc_floor, copies, total_value) VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE copies = copies + VALUES(copies), total_value = total_value + VALUES(total_value)";
+    private static final String MERGE = "MERGE INTO inventory_summary s " +
+            "USING (SELECT CAST(? AS VARCHAR(255)) AS genre, CAST(? AS VARCHAR(255)) AS type, " +
+            "CAST(? AS SMALLINT) AS decade, CAST(? AS SMALLINT) AS loc_floor, " +
+            "CAST(? AS BIGINT) AS copies, CAST(? AS BIGINT) AS total_value) n " +
+            "ON s.genre = n.genre AND s.type = n.type AND s.decade = n.decade AND s.loc_floor = n.loc_floor " +
+            "WHEN MATCHED THEN UPDATE SET copies = s.copies + n.copies, total_value = s.total_value + n.total_value " +
+            "WHEN NOT MATCHED THEN INSERT (genre, type, decade, loc_floor, copies, total_value) " +
+            "VALUES (n.genre, n.type, n.decade, n.loc_floor, n.copies, n.total_value)";
+
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private final EntityManager entityManager;
+
+    @Override
+    public void upsert(InventoryKey key, long copies, long value) {
+        // the statement is run on the connection of the transaction, after the changes of the session
+        entityManager.flush();
+        Session session = entityManager.unwrap(Session.class);
+        boolean mySql = session.getSessionFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect() instanceof MySQLDialect;
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(mySql ? MYSQL_UPSERT : MERGE)) {
+                statement.setString(1, key.getGenre().name());
+                statement.setString(2, key.getType().name());
+                statement.setShort(3, key.getDecade());
+                statement.setShort(4, key.getFloor());
+                statement.setLong(5, copies);
+                statement.setLong(6, value);
+                try {
+                    statement.executeUpdate();
+                } catch (SQLException e) {
+                    if (mySql || !UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                        throw e;
+                    }
+                    // a MERGE that did not see the row of a concurrent transaction waits for it to commit and then
+                    // fails (only the statement, not the transaction); run again, it finds the row
+                    statement.executeUpdate();
+                }
+            }
+        });
+    }
+}
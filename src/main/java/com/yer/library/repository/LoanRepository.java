@@ -0,0 +1,36 @@
+package com.yer.library.repository;
+
+import com.yer.library.model.Loan;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface LoanRepository extends JpaRepository<Loan, Long> {
+    /**
+     * Finds the active (not returned) loan of the book copy with the given ID, of which there is at most one.
+     */
+    @Query("SELECT l FROM Loan l WHERE l.bookCopy.id = ?1 AND l.returnDate IS NULL")
+    Optional<Loan> findActiveByBookCopyId(Long bookCopyId);
+
+    /**
+     * Lists the loans of the member with an ID greater than {@code afterId} (only the active ones if
+     * {@code activeOnly} is set), ordered by ID.
+     */
+    @Query("SELECT l FROM Loan l JOIN FETCH l.bookCopy c JOIN FETCH c.book " +
+            "WHERE l.member.id = ?1 AND (?2 = false OR l.returnDate IS NULL) AND l.id > ?3 ORDER BY l.id")
+    List<Loan> listByMemberAfter(Long memberId, boolean activeOnly, Long afterId, Pageable pageable);
+
+    /**
+     * Marks the loan with the given ID as returned if it is still active, and returns whether it was.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Loan l SET l.returnDate = ?2 WHERE l.id = ?1 AND l.returnDate IS NULL")
+    int markReturned(Long loanId, LocalDate returnDate);
+}
@@ -1,22 +1,129 @@
 package com.yer.library.repository;
 
 import com.yer.library.model.Member;
+import com.yer.library.model.dtos.MemberSummary;
+import com.yer.library.model.dtos.VersionStamp;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface MemberRepository extends JpaRepository<Member, Long> {
-    @Query("SELECT m FROM Member m WHERE m.emailAddress = ?1 AND m.deleted = false")
+    @Query("SELECT m FROM Member m LEFT JOIN FETCH m.membership ms WHERE m.emailAddress = ?1 AND m.deleted = false")
     Optional<Member> findByEmail(String emailAddress);
 
-    @Query("SELECT m FROM Member m WHERE m.deleted = false")
+    @Query("SELECT m FROM Member m LEFT JOIN FETCH m.membership ms WHERE m.deleted = false")
     List<Member> listAvailable(Pageable pageable);
 
-    @Query("SELECT m FROM Member m WHERE m.membership.id = ?1 AND m.deleted = false")
+    @Query("SELECT m FROM Member m LEFT JOIN FETCH m.membership ms WHERE ms.id = ?1 AND m.deleted = false")
     List<Member> listByMembership(Long membershipId, Pageable pageable);
+
+    @Query("SELECT m FROM Member m LEFT JOIN FETCH m.membership ms WHERE m.id > ?1 AND m.deleted = false ORDER BY m.id")
+    List<Member> listAvailableAfter(Long afterId, Pageable pageable);
+
+    @Query("SELECT m FROM Member m LEFT JOIN FETCH m.membership ms WHERE ms.id = ?1 AND m.id > ?2 AND m.deleted = false ORDER BY m.id")
+    List<Member> listByMembershipAfter(Long membershipId, Long afterId, Pageable pageable);
+
+    /**
+     * Lists the available members with an ID greater than {@code afterId} as read-only summaries, ordered by ID.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.MemberSummary(m.id, m.name, m.homeAddress, m.emailAddress, m.birthday, " +
+            "m.version, ms.id, ms.startDate, ms.endDate, ms.version, t.id, t.type, t.costPerMonth) " +
+            "FROM Member m LEFT JOIN m.membership ms LEFT JOIN ms.membershipType t " +
+            "WHERE m.id > ?1 AND m.deleted = false ORDER BY m.id")
+    List<MemberSummary> listSummariesAfter(Long afterId, Pageable pageable);
+
+    /**
+     * Lists the available members of the membership with an ID greater than {@code afterId} as read-only summaries,
+     * ordered by ID.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.MemberSummary(m.id, m.name, m.homeAddress, m.emailAddress, m.birthday, " +
+            "m.version, ms.id, ms.startDate, ms.endDate, ms.version, t.id, t.type, t.costPerMonth) " +
+            "FROM Member m LEFT JOIN m.membership ms LEFT JOIN ms.membershipType t " +
+            "WHERE ms.id = ?1 AND m.id > ?2 AND m.deleted = false ORDER BY m.id")
+    List<MemberSummary> listSummariesByMembershipAfter(Long membershipId, Long afterId, Pageable pageable);
+
+    /**
+     * Finds the version of the available member with the given ID (and the version of its membership, if any), without
+     * loading the member.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.VersionStamp(m.id, m.version, ms.version) " +
+            "FROM Member m LEFT JOIN m.membership ms WHERE m.id = ?1 AND m.deleted = false")
+    Optional<VersionStamp> findVersionById(Long memberId);
+
+    /**
+     * Lists the versions of the members listed by {@link #listSummariesAfter}.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.VersionStamp(m.id, m.version, ms.version) " +
+            "FROM Member m LEFT JOIN m.membership ms WHERE m.id > ?1 AND m.deleted = false ORDER BY m.id")
+    List<VersionStamp> listVersionsAfter(Long afterId, Pageable pageable);
+
+    /**
+     * Lists the versions of the members listed by {@link #listSummariesByMembershipAfter}.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.VersionStamp(m.id, m.version, ms.version) " +
+            "FROM Member m JOIN m.membership ms WHERE ms.id = ?1 AND m.id > ?2 AND m.deleted = false ORDER BY m.id")
+    List<VersionStamp> listVersionsByMembershipAfter(Long membershipId, Long afterId, Pageable pageable);
+
+    /**
+     * Finds the available members with any of the given IDs, in no particular order.
+     */
+    @Query("SELECT m FROM Member m LEFT JOIN FETCH m.membership ms WHERE m.id IN ?1 AND m.deleted = false")
+    List<Member> findAvailableByIds(Collection<Long> memberIds);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("SELECT m FROM Member m LEFT JOIN FETCH m.membership ms LEFT JOIN FETCH ms.membershipType WHERE m.deleted = false ORDER BY m.id")
+    Stream<Member> streamAvailable();
+
+    /**
+     * Soft deletes the non-deleted members with the given IDs, and returns the number of members deleted.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Member m SET m.deleted = true, m.version = m.version + 1 WHERE m.id IN ?1 AND m.deleted = false")
+    int softDeleteByIds(Collection<Long> memberIds);
+
+    /**
+     * Lists the IDs of the members of the memberships with the given IDs.
+     */
+    @Query("SELECT m.id FROM Member m WHERE m.membership.id IN ?1")
+    List<Long> listIdsByMembershipIds(Collection<Long> membershipIds);
+
+    /**
+     * Lists the IDs of the members of those memberships with the given IDs that have been deleted.
+     */
+    @Query("SELECT m.id FROM Member m WHERE m.membership.id IN " +
+            "(SELECT ms.id FROM Membership ms WHERE ms.id IN ?1 AND ms.deleted = true)")
+    List<Long> listIdsByDeletedMemberships(Collection<Long> membershipIds);
+
+    /**
+     * Removes the members of the memberships with the given IDs from their membership, and returns the number of
+     * members detached.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Member m SET m.membership = NULL, m.version = m.version + 1 WHERE m.membership.id IN ?1")
+    int detachFromMemberships(Collection<Long> membershipIds);
+
+    /**
+     * Removes the members of those memberships with the given IDs that have been deleted from their membership, and
+     * returns the number of members detached.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Member m SET m.membership = NULL, m.version = m.version + 1 WHERE m.membership.id IN " +
+            "(SELECT ms.id FROM Membership ms WHERE ms.id IN ?1 AND ms.deleted = true)")
+    int detachFromDeletedMemberships(Collection<Long> membershipIds);
 }
@@ -1,11 +1,27 @@
 package com.yer.library.repository;
 
 import com.yer.library.model.Membership;
+import com.yer.library.model.dtos.DateRange;
+import com.yer.library.model.dtos.MembershipKey;
+import com.yer.library.model.dtos.MembershipPeriod;
+import com.yer.library.model.dtos.MembershipSummary;
+import com.yer.library.model.dtos.RevenueLine;
+import com.yer.library.model.dtos.VersionStamp;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 public interface MembershipRepository extends JpaRepository<Membership, Long> {
     @Query("SELECT m FROM Membership m WHERE m.deleted = false")
@@ -13,4 +29,114 @@ public interface MembershipRepository extends JpaRepository<Membership, Long> {
 
     @Query("SELECT m FROM Membership m WHERE m.membershipType.id = ?1 AND m.deleted = false")
     List<Membership> listByMembershipType(Long membershipTypeId, Pageable pageable);
+
+    @Query("SELECT m FROM Membership m WHERE m.id > ?1 AND m.deleted = false ORDER BY m.id")
+    List<Membership> listAvailableAfter(Long afterId, Pageable pageable);
+
+    @Query("SELECT m FROM Membership m WHERE m.membershipType.id = ?1 AND m.id > ?2 AND m.deleted = false ORDER BY m.id")
+    List<Membership> listByMembershipTypeAfter(Long membershipTypeId, Long afterId, Pageable pageable);
+
+    /**
+     * Lists the available memberships with an ID greater than {@code afterId} as read-only summaries, ordered by ID.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.MembershipSummary(m.id, m.startDate, m.endDate, m.version, t.id, t.type, t.costPerMonth) " +
+            "FROM Membership m JOIN m.membershipType t " +
+            "WHERE m.id > ?1 AND m.deleted = false ORDER BY m.id")
+    List<MembershipSummary> listSummariesAfter(Long afterId, Pageable pageable);
+
+    /**
+     * Lists the available memberships of the membership type with an ID greater than {@code afterId} as read-only
+     * summaries, ordered by ID.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.MembershipSummary(m.id, m.startDate, m.endDate, m.version, t.id, t.type, t.costPerMonth) " +
+            "FROM Membership m JOIN m.membershipType t " +
+            "WHERE t.id = ?1 AND m.id > ?2 AND m.deleted = false ORDER BY m.id")
+    List<MembershipSummary> listSummariesByMembershipTypeAfter(Long membershipTypeId, Long afterId, Pageable pageable);
+
+    /**
+     * Finds the version of the available membership with the given ID, without loading the membership.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.VersionStamp(m.id, m.version) FROM Membership m WHERE m.id = ?1 AND m.deleted = false")
+    Optional<VersionStamp> findVersionById(Long membershipId);
+
+    /**
+     * Lists the versions of the memberships listed by {@link #listSummariesAfter}.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.VersionStamp(m.id, m.version) FROM Membership m WHERE m.id > ?1 AND m.deleted = false ORDER BY m.id")
+    List<VersionStamp> listVersionsAfter(Long afterId, Pageable pageable);
+
+    /**
+     * Lists the versions of the memberships listed by {@link #listSummariesByMembershipTypeAfter}.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.VersionStamp(m.id, m.version) " +
+            "FROM Membership m WHERE m.membershipType.id = ?1 AND m.id > ?2 AND m.deleted = false ORDER BY m.id")
+    List<VersionStamp> listVersionsByMembershipTypeAfter(Long membershipTypeId, Long afterId, Pageable pageable);
+
+    /**
+     * Finds the available memberships with any of the given IDs, in no particular order.
+     */
+    @Query("SELECT m FROM Membership m WHERE m.id IN ?1 AND m.deleted = false")
+    List<Membership> findAvailableByIds(Collection<Long> membershipIds);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("SELECT m FROM Membership m JOIN FETCH m.membershipType t WHERE m.deleted = false ORDER BY m.id")
+    Stream<Membership> streamAvailable();
+
+    /**
+     * Soft deletes the non-deleted memberships with the given IDs, and returns the number of memberships deleted.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Membership m SET m.deleted = true, m.version = m.version + 1 WHERE m.id IN ?1 AND m.deleted = false")
+    int softDeleteByIds(Collection<Long> membershipIds);
+
+    /**
+     * Lists the keys of the available memberships that ended before the cutoff date, after the given (end date, ID)
+     * key, in the order of their end date and ID. The memberships are found by a range scan of the index on their
+     * end date.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.MembershipKey(m.id, m.endDate) FROM Membership m " +
+            "WHERE m.deleted = false AND m.endDate < ?1 AND (m.endDate > ?2 OR (m.endDate = ?2 AND m.id > ?3)) " +
+            "ORDER BY m.endDate, m.id")
+    List<MembershipKey> listExpiredAfter(LocalDate cutoffDate, LocalDate afterEndDate, Long afterId, Pageable pageable);
+
+    /**
+     * Soft deletes the available memberships with the given IDs that (still) ended before the cutoff date, marking them
+     * as expired rather than cancelled, and returns the number of memberships deleted.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Membership m SET m.deleted = true, m.expired = true, m.version = m.version + 1 " +
+            "WHERE m.id IN ?1 AND m.deleted = false AND m.endDate < ?2")
+    int expireByIds(Collection<Long> membershipIds, LocalDate cutoffDate);
+
+    /**
+     * Finds the first start date and the last end date of the available memberships with any of the given IDs.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.DateRange(MIN(m.startDate), MAX(m.endDate)) FROM Membership m " +
+            "WHERE m.id IN ?1 AND m.deleted = false")
+    DateRange findDateRangeByIds(Collection<Long> membershipIds);
+
+    /**
+     * Sums the monthly fees of the memberships that have not been cancelled (they may have expired since) and are
+     * active on the given date, per membership type.
+     */
+    @Query("SELECT new com.yer.library.model.dtos.RevenueLine(t.type, COUNT(m), SUM(t.costPerMonth)) " +
+            "FROM Membership m JOIN m.membershipType t " +
+            "WHERE (m.deleted = false OR m.expired = true) AND m.startDate <= ?1 AND m.endDate >= ?1 GROUP BY t.type")
+    List<RevenueLine> sumRevenueOn(LocalDate date);
+
+    /**
+     * Streams the periods of the memberships that have not been cancelled (like {@link #sumRevenueOn}) that are active
+     * on any day from {@code from} to {@code to}, as read-only projections instead of managed entities.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("SELECT new com.yer.library.model.dtos.MembershipPeriod(t.type, t.costPerMonth, m.startDate, m.endDate) " +
+            "FROM Membership m JOIN m.membershipType t " +
+            "WHERE (m.deleted = false OR m.expired = true) AND m.startDate <= ?2 AND m.endDate >= ?1")
+    Stream<MembershipPeriod> streamPeriods(LocalDate from, LocalDate to);
 }
@@ -2,6 +2,15 @@ package com.yer.library.repository;
 
 import com.yer.library.model.MembershipType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
 
 public interface MembershipTypeRepository extends JpaRepository<MembershipType, Long> {
+    @Override
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    List<MembershipType> findAll();
 }
@@ -4,16 +4,36 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.github.fge.jsonpatch.JsonPatch;
 import com.github.fge.jsonpatch.JsonPatchException;
 import com.yer.library.model.Book;
+import com.yer.library.model.BookAvailability;
 import com.yer.library.model.Response;
+import com.yer.library.model.dtos.BatchPatch;
+import com.yer.library.model.dtos.BatchReport;
+import com.yer.library.model.dtos.BatchResult;
+import com.yer.library.model.dtos.BookSearchResult;
+import com.yer.library.model.dtos.BookSummary;
+import com.yer.library.model.dtos.ImportReport;
+import com.yer.library.model.dtos.ReindexReport;
+import com.yer.library.model.dtos.VersionStamp;
+import com.yer.library.service.BookImportService;
 import com.yer.library.service.BookService;
+import com.yer.library.service.ExportService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
 
 import static com.yer.library.resource.Constants.MAX_PAGE_SIZE;
-import static com.yer.library.resource.ControllerUtil.getDataMap;
+import static com.yer.library.resource.ControllerUtil.*;
 import static java.time.LocalDateTime.now;
 import static org.springframework.http.HttpStatus.*;
 
@@ -22,14 +42,36 @@ import static org.springframework.http.HttpStatus.*;
 @RequiredArgsConstructor
 public class BookController {
 
+    private static final MediaType TEXT_CSV = MediaType.valueOf("text/csv");
+
     private final BookService bookService;
+    private final ExportService exportService;
+    private final BookImportService bookImportService;
 
     @GetMapping(path = "{bookId}")
-    public ResponseEntity<Response> getBook(@PathVariable("bookId") Long bookId) {
-        return ResponseEntity.ok(
+    public ResponseEntity<Response> getBook(
+            @PathVariable("bookId") Long bookId,
+            @RequestParam(required = false) String fields,
+            WebRequest request
+    ) {
+        String eTag = getETag(bookService.getVersion(bookId));
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build();
+        }
+        List<String> fieldNames = getFields(fields);
+        Object book;
+        if (fieldNames == null) {
+            // the (possibly cached) book is tagged with its own version, not the one read above
+            Book fullBook = bookService.get(bookId);
+            eTag = getETag(VersionStamp.of(fullBook));
+            book = fullBook;
+        } else {
+            book = bookService.get(bookId, fieldNames);
+        }
+        return ResponseEntity.ok().eTag(eTag).body(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("book", bookService.get(bookId)))
+                        .data(getDataMap("book", book))
                         .message("Book " + bookId + " retrieved")
                         .status(OK)
                         .statusCode(OK.value())
@@ -37,12 +79,92 @@ public class BookController {
         );
     }
 
-    @GetMapping
-    public ResponseEntity<Response> getBooks() {
+    /**
+     * Gets the books with the given (comma-separated) IDs at once, in the order of the IDs. The IDs of books
+     * that do not exist or have been deleted are listed under {@code missing_ids}.
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<Response> getBooks(
+            @RequestParam List<Long> ids,
+            @RequestParam(required = false) String fields
+    ) {
+        List<String> fieldNames = getFields(fields);
+        BatchResult<?> result = fieldNames == null
+                ? bookService.getAll(getBatchIds(ids))
+                : bookService.getAll(getBatchIds(ids), fieldNames);
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getBatchDataMap("books", result))
+                        .message(result.getFound().size() + " books retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Gets the number of copies of a book that are on the shelf (and of all its copies), which is kept up to date as
+     * copies are added, deleted, lent and returned, rather than counted.
+     */
+    @GetMapping(path = "{bookId}/availability")
+    public ResponseEntity<Response> getAvailability(@PathVariable("bookId") Long bookId) {
         return ResponseEntity.ok(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("books", bookService.list(MAX_PAGE_SIZE)))
+                        .data(getDataMap("availability", bookService.getAvailability(bookId)))
+                        .message("Availability of book " + bookId + " retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Gets the availability of the books with the given (comma-separated) IDs at once, like {@code GET ?ids=...}.
+     */
+    @GetMapping(path = "availability", params = "ids")
+    public ResponseEntity<Response> getAvailability(@RequestParam List<Long> ids) {
+        BatchResult<BookAvailability> result = bookService.getAvailability(getBatchIds(ids));
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getBatchDataMap("availability", result))
+                        .message("Availability of " + result.getFound().size() + " books retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    @GetMapping
+    public ResponseEntity<Response> getBooks(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int limit,
+            @RequestParam(required = false) String fields,
+            WebRequest request
+    ) {
+        int pageSize = getPageSize(limit);
+        Long afterId = decodeCursor(after);
+        // the versions are read before the page, so that a page modified in between gets an outdated tag (and is
+        // sent again next time) rather than the other way around
+        String eTag = getPageETag(bookService.listVersions(afterId, pageSize));
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build();
+        }
+        List<String> fieldNames = getFields(fields);
+        Map<String, Object> data;
+        if (fieldNames == null) {
+            List<BookSummary> books = bookService.listSummaries(afterId, pageSize);
+            data = getPageDataMap("books", books, pageSize, BookSummary::getId);
+        } else {
+            List<Map<String, Object>> books = bookService.list(afterId, pageSize, fieldNames);
+            data = getPageDataMap("books", books, pageSize, ControllerUtil::getRowId);
+        }
+        return ResponseEntity.ok().eTag(eTag).body(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(data)
                         .message("Books retrieved")
                         .status(OK)
                         .statusCode(OK.value())
@@ -50,6 +172,59 @@ public class BookController {
         );
     }
 
+    /**
+     * Finds the books that match every word of the query in their title, author, genre or type, best matches first.
+     * The next page of results is read from the same version of the search index as the first page, by passing the
+     * {@code next_cursor} as {@code after}.
+     */
+    @GetMapping(path = "search")
+    public ResponseEntity<Response> searchBooks(
+            @RequestParam String q,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int limit
+    ) {
+        BookSearchResult result = bookService.search(q, decodeSearchCursor(after), getPageSize(limit));
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getSearchDataMap("books", result))
+                        .message(result.getHits().size() + " books found")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Builds the search index again from all books, on all processors.
+     */
+    @PostMapping(path = "search/reindex")
+    public ResponseEntity<Response> reindexBooks() {
+        ReindexReport report = bookService.reindexSearch();
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("reindex", report))
+                        .message(report.getBooks() + " books indexed")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Streams all books as NDJSON, optionally compressed with gzip.
+     */
+    @GetMapping(path = "export", produces = NDJSON)
+    public void exportBooks(
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response
+    ) throws IOException {
+        try (OutputStream outputStream = openExportStream(response, gzip)) {
+            exportService.exportBooks(outputStream);
+        }
+    }
+
     @PostMapping
     public ResponseEntity<Response> addBook(@RequestBody @Valid Book book) {
         return ResponseEntity.ok(
@@ -63,15 +238,38 @@ public class BookController {
         );
     }
 
+    @PostMapping(path = "import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<Response> importBooks(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body
+    ) throws IOException {
+        BookImportService.Format format = contentType.isCompatibleWith(TEXT_CSV)
+                ? BookImportService.Format.CSV
+                : BookImportService.Format.NDJSON;
+        ImportReport report = bookImportService.importBooks(body, format);
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("import_report", report))
+                        .message(report.getImported() + " of " + report.getRowsRead() + " books imported")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
     @PutMapping(path = "{bookId}")
     public ResponseEntity<Response> fullUpdateBook(
             @PathVariable("bookId") Long bookId,
-            @RequestBody @Valid Book book
+            @RequestBody @Valid Book book,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) {
-        return ResponseEntity.ok(
+        book.setVersion(getExpectedVersion(ifMatch));
+        Book updatedBook = bookService.fullUpdate(bookId, book);
+        return ResponseEntity.ok().eTag(getETag(VersionStamp.of(updatedBook))).body(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("book", bookService.fullUpdate(bookId, book)))
+                        .data(getDataMap("book", updatedBook))
                         .message("Book " + bookId + " updated")
                         .status(OK)
                         .statusCode(OK.value())
@@ -82,12 +280,14 @@ public class BookController {
     @PatchMapping(path = "{bookId}", consumes = "application/json-patch+json")
     public ResponseEntity<Response> partiallyUpdateBook(
             @PathVariable("bookId") Long bookId,
-            @RequestBody JsonPatch jsonPatch
+            @RequestBody JsonPatch jsonPatch,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws JsonPatchException, JsonProcessingException {
-        return ResponseEntity.ok(
+        Book updatedBook = bookService.partialUpdate(bookId, jsonPatch, getExpectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(getETag(VersionStamp.of(updatedBook))).body(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("book", bookService.partialUpdate(bookId, jsonPatch)))
+                        .data(getDataMap("book", updatedBook))
                         .message("Book " + bookId + " updated")
                         .status(OK)
                         .statusCode(OK.value())
@@ -95,6 +295,59 @@ public class BookController {
         );
     }
 
+    /**
+     * Adds all books of the batch at once, and reports per book whether it was added.
+     */
+    @PostMapping(path = "batch")
+    public ResponseEntity<Response> addBooks(@RequestBody List<Book> books) {
+        BatchReport<Book> report = bookService.addAll(getBatchItems(books));
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("batch_report", report))
+                        .message(report.getSucceeded() + " of " + books.size() + " books created")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Replaces all books of the batch (identified by their {@code id}) at once, and reports per book whether it was
+     * updated.
+     */
+    @PutMapping(path = "batch")
+    public ResponseEntity<Response> fullUpdateBooks(@RequestBody List<Book> books) {
+        BatchReport<Book> report = bookService.fullUpdateAll(getBatchItems(books));
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("batch_report", report))
+                        .message(report.getSucceeded() + " of " + books.size() + " books updated")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Applies a batch of JSON patches, each to the book with its {@code id}, and reports per patch whether it was
+     * applied.
+     */
+    @PatchMapping(path = "batch", consumes = "application/json")
+    public ResponseEntity<Response> partiallyUpdateBooks(@RequestBody List<BatchPatch> patches) {
+        BatchReport<Book> report = bookService.partialUpdateAll(getBatchItems(patches));
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("batch_report", report))
+                        .message(report.getSucceeded() + " of " + patches.size() + " books updated")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
     @DeleteMapping(path = "{bookId}")
     public ResponseEntity<Response> deleteBook(@PathVariable("bookId") Long bookId) {
         return ResponseEntity.ok(
@@ -107,4 +360,21 @@ public class BookController {
                         .build()
         );
     }
+
+    /**
+     * Soft deletes all books with the given (comma-separated) IDs at once.
+     */
+    @DeleteMapping
+    public ResponseEntity<Response> deleteBooks(@RequestParam List<Long> ids) {
+        int deleted = bookService.delete(ids);
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("soft deleted", deleted))
+                        .message(deleted + " books deleted")
+                        .status(NO_CONTENT)
+                        .statusCode(NO_CONTENT.value())
+                        .build()
+        );
+    }
 }
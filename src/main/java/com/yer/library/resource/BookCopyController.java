@@ -5,15 +5,28 @@ import com.github.fge.jsonpatch.JsonPatch;
 import com.github.fge.jsonpatch.JsonPatchException;
 import com.yer.library.model.BookCopy;
 import com.yer.library.model.Response;
+import com.yer.library.model.dtos.BatchPatch;
+import com.yer.library.model.dtos.BatchReport;
+import com.yer.library.model.dtos.BatchResult;
+import com.yer.library.model.dtos.BookCopySummary;
+import com.yer.library.model.dtos.VersionStamp;
 import com.yer.library.service.BookCopyService;
+import com.yer.library.service.ExportService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
 
 import static com.yer.library.resource.Constants.MAX_PAGE_SIZE;
-import static com.yer.library.resource.ControllerUtil.getDataMap;
+import static com.yer.library.resource.ControllerUtil.*;
 import static java.time.LocalDateTime.now;
 import static org.springframework.http.HttpStatus.*;
 
@@ -22,13 +35,31 @@ import static org.springframework.http.HttpStatus.*;
 @RequiredArgsConstructor
 public class BookCopyController {
     private final BookCopyService bookCopyService;
+    private final ExportService exportService;
 
     @GetMapping(path = "{bookCopyId}")
-    public ResponseEntity<Response> getBookCopy(@PathVariable("bookCopyId") Long bookCopyId) {
-        return ResponseEntity.ok(
+    public ResponseEntity<Response> getBookCopy(
+            @PathVariable("bookCopyId") Long bookCopyId,
+            @RequestParam(required = false) String fields,
+            WebRequest request
+    ) {
+        String eTag = getETag(bookCopyService.getVersion(bookCopyId));
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build();
+        }
+        List<String> fieldNames = getFields(fields);
+        Object bookCopy;
+        if (fieldNames == null) {
+            BookCopy fullBookCopy = bookCopyService.get(bookCopyId);
+            eTag = getETag(VersionStamp.of(fullBookCopy));
+            bookCopy = fullBookCopy;
+        } else {
+            bookCopy = bookCopyService.get(bookCopyId, fieldNames);
+        }
+        return ResponseEntity.ok().eTag(eTag).body(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("book_copy", bookCopyService.get(bookCopyId)))
+                        .data(getDataMap("book_copy", bookCopy))
                         .message("Book copy " + bookCopyId + " retrieved")
                         .status(OK)
                         .statusCode(OK.value())
@@ -36,12 +67,58 @@ public class BookCopyController {
         );
     }
 
-    @GetMapping
-    public ResponseEntity<Response> getBookCopies() {
+    /**
+     * Gets the book copies with the given (comma-separated) IDs at once, in the order of the IDs. The IDs of
+     * book copies that do not exist or have been deleted are listed under {@code missing_ids}.
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<Response> getBookCopies(
+            @RequestParam List<Long> ids,
+            @RequestParam(required = false) String fields
+    ) {
+        List<String> fieldNames = getFields(fields);
+        BatchResult<?> result = fieldNames == null
+                ? bookCopyService.getAll(getBatchIds(ids))
+                : bookCopyService.getAll(getBatchIds(ids), fieldNames);
         return ResponseEntity.ok(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("book_copies", bookCopyService.list(MAX_PAGE_SIZE)))
+                        .data(getBatchDataMap("book_copies", result))
+                        .message(result.getFound().size() + " book copies retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    @GetMapping
+    public ResponseEntity<Response> getBookCopies(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int limit,
+            @RequestParam(required = false) String fields,
+            WebRequest request
+    ) {
+        int pageSize = getPageSize(limit);
+        Long afterId = decodeCursor(after);
+        // the versions are read before the page, so that a page modified in between gets an outdated tag (and is
+        // sent again next time) rather than the other way around
+        String eTag = getPageETag(bookCopyService.listVersions(afterId, pageSize));
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build();
+        }
+        List<String> fieldNames = getFields(fields);
+        Map<String, Object> data;
+        if (fieldNames == null) {
+            List<BookCopySummary> bookCopies = bookCopyService.listSummaries(afterId, pageSize);
+            data = getPageDataMap("book_copies", bookCopies, pageSize, BookCopySummary::getId);
+        } else {
+            List<Map<String, Object>> bookCopies = bookCopyService.list(afterId, pageSize, fieldNames);
+            data = getPageDataMap("book_copies", bookCopies, pageSize, ControllerUtil::getRowId);
+        }
+        return ResponseEntity.ok().eTag(eTag).body(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(data)
                         .message("Book copies retrieved")
                         .status(OK)
                         .statusCode(OK.value())
@@ -50,11 +127,32 @@ public class BookCopyController {
     }
 
     @GetMapping(path = "/list_by_book/{bookId}")
-    public ResponseEntity<Response> getBookCopies(@PathVariable("bookId") Long bookId) {
-        return ResponseEntity.ok(
+    public ResponseEntity<Response> getBookCopies(
+            @PathVariable("bookId") Long bookId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int limit,
+            @RequestParam(required = false) String fields,
+            WebRequest request
+    ) {
+        int pageSize = getPageSize(limit);
+        Long afterId = decodeCursor(after);
+        String eTag = getPageETag(bookCopyService.listVersionsByBook(bookId, afterId, pageSize));
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build();
+        }
+        List<String> fieldNames = getFields(fields);
+        Map<String, Object> data;
+        if (fieldNames == null) {
+            List<BookCopySummary> bookCopies = bookCopyService.listSummariesByBook(bookId, afterId, pageSize);
+            data = getPageDataMap("book_copy", bookCopies, pageSize, BookCopySummary::getId);
+        } else {
+            List<Map<String, Object>> bookCopies = bookCopyService.listByBook(bookId, afterId, pageSize, fieldNames);
+            data = getPageDataMap("book_copy", bookCopies, pageSize, ControllerUtil::getRowId);
+        }
+        return ResponseEntity.ok().eTag(eTag).body(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("book_copy", bookCopyService.listByBook(bookId, MAX_PAGE_SIZE)))
+                        .data(data)
                         .message("Book copies for book with ID " + bookId + " retrieved")
                         .status(OK)
                         .statusCode(OK.value())
@@ -62,6 +160,19 @@ public class BookCopyController {
         );
     }
 
+    /**
+     * Streams all book copies as NDJSON, optionally compressed with gzip.
+     */
+    @GetMapping(path = "export", produces = NDJSON)
+    public void exportBookCopies(
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response
+    ) throws IOException {
+        try (OutputStream outputStream = openExportStream(response, gzip)) {
+            exportService.exportBookCopies(outputStream);
+        }
+    }
+
     @PostMapping
     public ResponseEntity<Response> addBookCopy(@RequestParam Long bookId, @RequestBody @Valid BookCopy bookCopy) {
         return ResponseEntity.ok(
@@ -79,12 +190,15 @@ public class BookCopyController {
     public ResponseEntity<Response> updateBookCopy(
             @RequestParam Long bookId,
             @PathVariable("bookCopyId") Long bookCopyId,
-            @RequestBody @Valid BookCopy bookCopy
+            @RequestBody @Valid BookCopy bookCopy,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) {
-        return ResponseEntity.ok(
+        bookCopy.setVersion(getExpectedVersion(ifMatch));
+        BookCopy updatedBookCopy = bookCopyService.fullUpdate(bookCopyId, bookCopy, bookId);
+        return ResponseEntity.ok().eTag(getETag(VersionStamp.of(updatedBookCopy))).body(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("book_copy", bookCopyService.fullUpdate(bookCopyId, bookCopy, bookId)))
+                        .data(getDataMap("book_copy", updatedBookCopy))
                         .message("Book copy " + bookCopyId + " updated")
                         .status(OK)
                         .statusCode(OK.value())
@@ -95,12 +209,14 @@ public class BookCopyController {
     @PatchMapping(path = "{bookCopyId}")
     public ResponseEntity<Response> partiallyUpdateBookCopy(
             @PathVariable("bookCopyId") Long bookCopyId,
-            @RequestBody JsonPatch jsonPatch
+            @RequestBody JsonPatch jsonPatch,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws JsonPatchException, JsonProcessingException {
-        return ResponseEntity.ok(
+        BookCopy updatedBookCopy = bookCopyService.partialUpdate(bookCopyId, jsonPatch, getExpectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(getETag(VersionStamp.of(updatedBookCopy))).body(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("book_copy", bookCopyService.partialUpdate(bookCopyId, jsonPatch)))
+                        .data(getDataMap("book_copy", updatedBookCopy))
                         .message("Book " + bookCopyId + " updated")
                         .status(OK)
                         .statusCode(OK.value())
@@ -108,6 +224,59 @@ public class BookCopyController {
         );
     }
 
+    /**
+     * Adds all book copies of the batch at once, and reports per book copy whether it was added.
+     */
+    @PostMapping(path = "batch")
+    public ResponseEntity<Response> addBookCopies(@RequestBody List<BookCopy> bookCopies) {
+        BatchReport<BookCopy> report = bookCopyService.addAll(getBatchItems(bookCopies));
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("batch_report", report))
+                        .message(report.getSucceeded() + " of " + bookCopies.size() + " book copies created")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Replaces all book copies of the batch (identified by their {@code id}) at once, and reports per book copy whether
+     * it was updated.
+     */
+    @PutMapping(path = "batch")
+    public ResponseEntity<Response> fullUpdateBookCopies(@RequestBody List<BookCopy> bookCopies) {
+        BatchReport<BookCopy> report = bookCopyService.fullUpdateAll(getBatchItems(bookCopies));
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("batch_report", report))
+                        .message(report.getSucceeded() + " of " + bookCopies.size() + " book copies updated")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Applies a batch of JSON patches, each to the book copy with its {@code id}, and reports per patch whether it was
+     * applied.
+     */
+    @PatchMapping(path = "batch", consumes = "application/json")
+    public ResponseEntity<Response> partiallyUpdateBookCopies(@RequestBody List<BatchPatch> patches) {
+        BatchReport<BookCopy> report = bookCopyService.partialUpdateAll(getBatchItems(patches));
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("batch_report", report))
+                        .message(report.getSucceeded() + " of " + patches.size() + " book copies updated")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
     @DeleteMapping(path = "{bookCopyId}")
     public ResponseEntity<Response> deleteBookCopy(@PathVariable("bookCopyId") Long bookCopyId) {
         return ResponseEntity.ok(
@@ -120,4 +289,21 @@ public class BookCopyController {
                         .build()
         );
     }
+
+    /**
+     * Soft deletes all book copies with the given (comma-separated) IDs at once.
+     */
+    @DeleteMapping
+    public ResponseEntity<Response> deleteBookCopies(@RequestParam List<Long> ids) {
+        int deleted = bookCopyService.delete(ids);
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("soft deleted", deleted))
+                        .message(deleted + " book copies deleted")
+                        .status(NO_CONTENT)
+                        .statusCode(NO_CONTENT.value())
+                        .build()
+        );
+    }
 }
@@ -2,4 +2,7 @@ package com.yer.library.resource;
 
 public class Constants {
     public static final int MAX_PAGE_SIZE = 50;
+    public static final int MAX_BATCH_SIZE = 200;
+    public static final int MAX_BATCH_WRITE_SIZE = 5000;
+    public static final int MAX_FIELDS = 20;
 }
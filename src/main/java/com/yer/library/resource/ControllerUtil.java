@@ -1,10 +1,37 @@
 package com.yer.library.resource;
 
+import com.yer.library.model.dtos.BatchResult;
+import com.yer.library.model.dtos.BookSearchResult;
+import com.yer.library.model.dtos.SearchCursor;
+import com.yer.library.model.dtos.VersionStamp;
+import com.yer.library.repository.Fieldset;
+import org.springframework.util.DigestUtils;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import static com.yer.library.resource.Constants.MAX_BATCH_SIZE;
+import static com.yer.library.resource.Constants.MAX_BATCH_WRITE_SIZE;
+import static com.yer.library.resource.Constants.MAX_FIELDS;
+import static com.yer.library.resource.Constants.MAX_PAGE_SIZE;
 
 public class ControllerUtil {
+    public static final String NDJSON = "application/x-ndjson";
+
+    private static final String CURSOR_PREFIX = "id:";
+    private static final String SEARCH_CURSOR_PREFIX = "search:";
+
     public static Map<String, Object> getDataMap(String name, Object data) {
         // Java 8 equivalent of ``Map.of(test1, test2)''
         return Collections.unmodifiableMap(
@@ -15,4 +42,206 @@ public class ControllerUtil {
                 }
         );
     }
+
+    /**
+     * Wraps a page of a keyset-paginated list, together with the cursor to pass as {@code after} to retrieve the
+     * next page. The cursor is {@code null} if there are no more pages.
+     */
+    public static <T> Map<String, Object> getPageDataMap(String name, List<T> page, int limit, Function<T, Long> idGetter) {
+        String nextCursor = page.size() < limit ? null : encodeCursor(idGetter.apply(page.get(page.size() - 1)));
+        return Collections.unmodifiableMap(
+                new HashMap<String, Object>() {
+                    {
+                        put(name, page);
+                        put("next_cursor", nextCursor);
+                    }
+                }
+        );
+    }
+
+    /**
+     * Wraps a page of search results, together with the cursor to pass as {@code after} to retrieve the next page, like
+     * {@link #getPageDataMap}.
+     */
+    public static Map<String, Object> getSearchDataMap(String name, BookSearchResult result) {
+        String nextCursor = encodeSearchCursor(result.getNextCursor());
+        return Collections.unmodifiableMap(
+                new HashMap<String, Object>() {
+                    {
+                        put(name, result.getHits());
+                        put("next_cursor", nextCursor);
+                    }
+                }
+        );
+    }
+
+    /**
+     * Wraps the objects fetched by ID, in the order they were requested in, together with the requested IDs that were
+     * not found.
+     */
+    public static <T> Map<String, Object> getBatchDataMap(String name, BatchResult<T> result) {
+        return Collections.unmodifiableMap(
+                new HashMap<String, Object>() {
+                    {
+                        put(name, result.getFound());
+                        put("missing_ids", result.getMissingIds());
+                    }
+                }
+        );
+    }
+
+    /**
+     * Parses the comma-separated names of the fields to return (a sparse fieldset), like {@code id,title,author}.
+     * Returns {@code null} if no fields are requested, in which case all fields are returned.
+     */
+    public static List<String> getFields(String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return null;
+        }
+        List<String> fieldNames = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(fieldName -> !fieldName.isEmpty())
+                .collect(Collectors.toList());
+        if (fieldNames.size() > MAX_FIELDS) {
+            throw new IllegalArgumentException("at most " + MAX_FIELDS + " fields can be requested at once");
+        }
+        return fieldNames;
+    }
+
+    /**
+     * Returns the ID of a row with a sparse fieldset, which always includes the ID.
+     */
+    public static Long getRowId(Map<String, Object> row) {
+        return (Long) row.get(Fieldset.ID);
+    }
+
+    /**
+     * Returns the (strong) entity tag of a single object, like {@code "3"}.
+     */
+    public static String getETag(VersionStamp versionStamp) {
+        return "\"" + versionStamp.getTag() + "\"";
+    }
+
+    /**
+     * Returns the entity tag of a page of objects, which changes whenever an object is added to, removed from or
+     * modified on the page.
+     */
+    public static String getPageETag(List<VersionStamp> versionStamps) {
+        StringBuilder versions = new StringBuilder();
+        for (VersionStamp versionStamp : versionStamps) {
+            versions.append(versionStamp.getId()).append(':').append(versionStamp.getTag()).append(',');
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(versions.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * Parses the version that an {@code If-Match} header (with the entity tag of a single object) expects the object
+     * to be at. Returns {@code null} if there is no such header, or if it matches any version ({@code *}).
+     */
+    public static Long getExpectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String eTag = ifMatch.trim();
+        if (eTag.length() < 3 || !eTag.startsWith("\"") || !eTag.endsWith("\"")) {
+            throw new IllegalArgumentException("invalid If-Match header " + ifMatch);
+        }
+        String tag = eTag.substring(1, eTag.length() - 1);
+        int dot = tag.indexOf('.');
+        try {
+            // the tag of an object returned with an associated object also has the version of the latter
+            return Long.valueOf(dot < 0 ? tag : tag.substring(0, dot));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid If-Match header " + ifMatch, e);
+        }
+    }
+
+    public static List<Long> getBatchIds(List<Long> ids) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("at most " + MAX_BATCH_SIZE + " IDs can be fetched at once");
+        }
+        return ids;
+    }
+
+    public static <T> List<T> getBatchItems(List<T> items) {
+        if (items.size() > MAX_BATCH_WRITE_SIZE) {
+            throw new IllegalArgumentException("at most " + MAX_BATCH_WRITE_SIZE + " objects can be written at once");
+        }
+        return items;
+    }
+
+    public static int getPageSize(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    public static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(CURSOR_PREFIX)) {
+                throw new IllegalArgumentException("invalid cursor " + cursor);
+            }
+            return Long.valueOf(decoded.substring(CURSOR_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor " + cursor, e);
+        }
+    }
+
+    /**
+     * Encodes the position after the last result of a page of search results, in the version of the search index the
+     * page was read from.
+     */
+    public static String encodeSearchCursor(SearchCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        String position = cursor.getVersion() + ":" + Float.floatToIntBits(cursor.getScore()) + ":" + cursor.getDoc();
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((SEARCH_CURSOR_PREFIX + position).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SearchCursor decodeSearchCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] position = decoded.startsWith(SEARCH_CURSOR_PREFIX)
+                    ? decoded.substring(SEARCH_CURSOR_PREFIX.length()).split(":")
+                    : new String[0];
+            if (position.length != 3) {
+                throw new IllegalArgumentException("invalid cursor " + cursor);
+            }
+            return new SearchCursor(
+                    Long.parseLong(position[0]),
+                    Float.intBitsToFloat(Integer.parseInt(position[1])),
+                    Integer.parseInt(position[2])
+            );
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor " + cursor, e);
+        }
+    }
+
+    /**
+     * Prepares the response for an NDJSON export and returns the stream to write the rows to, compressed with gzip if
+     * requested. The returned stream must be closed to complete the response.
+     */
+    public static OutputStream openExportStream(HttpServletResponse response, boolean gzip) throws IOException {
+        response.setContentType(NDJSON);
+        if (!gzip) {
+            return response.getOutputStream();
+        }
+        response.setHeader("Content-Encoding", "gzip");
+        return new GZIPOutputStream(response.getOutputStream(), 8192);
+    }
 }
@@ -0,0 +1,104 @@
+package com.yer.library.resource;
+
+import com.yer.library.model.Hold;
+import com.yer.library.model.Response;
+import com.yer.library.service.HoldService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+import static com.yer.library.resource.Constants.MAX_PAGE_SIZE;
+import static com.yer.library.resource.ControllerUtil.*;
+import static java.time.LocalDateTime.now;
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.OK;
+
+@RestController
+@RequestMapping(path = "api/v1/holds")
+@RequiredArgsConstructor
+public class HoldController {
+    private final HoldService holdService;
+
+    @GetMapping(path = "{holdId}")
+    public ResponseEntity<Response> getHold(@PathVariable("holdId") Long holdId) {
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("hold", holdService.get(holdId)))
+                        .message("Hold " + holdId + " retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Lists the holds of a member, or only the holds that are waiting or ready with {@code active=true}.
+     */
+    @GetMapping(path = "/list_by_member/{memberId}")
+    public ResponseEntity<Response> getHoldsByMember(
+            @PathVariable("memberId") Long memberId,
+            @RequestParam(defaultValue = "false") boolean active,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int limit
+    ) {
+        int pageSize = getPageSize(limit);
+        List<Hold> holds = holdService.listByMember(memberId, active, decodeCursor(after), pageSize);
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getPageDataMap("holds", holds, pageSize, Hold::getId))
+                        .message("Holds for member with ID " + memberId + " retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Lists the first waiting holds of a book, in the order in which copies will be kept for them.
+     */
+    @GetMapping(path = "/list_by_book/{bookId}")
+    public ResponseEntity<Response> getHoldsByBook(
+            @PathVariable("bookId") Long bookId,
+            @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int limit
+    ) {
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("holds", holdService.listWaitingByBook(bookId, getPageSize(limit))))
+                        .message("Waiting holds for book with ID " + bookId + " retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    @PostMapping
+    public ResponseEntity<Response> placeHold(@RequestParam Long bookId, @RequestParam Long memberId) {
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("hold", holdService.place(bookId, memberId)))
+                        .message("Hold on book " + bookId + " placed for member " + memberId)
+                        .status(CREATED)
+                        .statusCode(CREATED.value())
+                        .build()
+        );
+    }
+
+    @DeleteMapping(path = "{holdId}")
+    public ResponseEntity<Response> cancelHold(@PathVariable("holdId") Long holdId) {
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("hold", holdService.cancel(holdId)))
+                        .message("Hold " + holdId + " cancelled")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+}
@@ -0,0 +1,104 @@
+package com.yer.library.resource;
+
+import com.yer.library.model.Loan;
+import com.yer.library.model.Response;
+import com.yer.library.model.dtos.BatchReport;
+import com.yer.library.service.LoanService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+import static com.yer.library.resource.Constants.MAX_PAGE_SIZE;
+import static com.yer.library.resource.ControllerUtil.*;
+import static java.time.LocalDateTime.now;
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.OK;
+
+@RestController
+@RequestMapping(path = "api/v1/loans")
+@RequiredArgsConstructor
+public class LoanController {
+    private final LoanService loanService;
+
+    @GetMapping(path = "{loanId}")
+    public ResponseEntity<Response> getLoan(@PathVariable("loanId") Long loanId) {
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("loan", loanService.get(loanId)))
+                        .message("Loan " + loanId + " retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Lists the loans of a member, or only the loans that have not been returned yet with {@code active=true}.
+     */
+    @GetMapping(path = "/list_by_member/{memberId}")
+    public ResponseEntity<Response> getLoans(
+            @PathVariable("memberId") Long memberId,
+            @RequestParam(defaultValue = "false") boolean active,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int limit
+    ) {
+        int pageSize = getPageSize(limit);
+        List<Loan> loans = loanService.listByMember(memberId, active, decodeCursor(after), pageSize);
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getPageDataMap("loans", loans, pageSize, Loan::getId))
+                        .message("Loans for member with ID " + memberId + " retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    @PostMapping
+    public ResponseEntity<Response> checkOut(@RequestParam Long bookCopyId, @RequestParam Long memberId) {
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("loan", loanService.checkOut(bookCopyId, memberId)))
+                        .message("Book copy " + bookCopyId + " lent to member " + memberId)
+                        .status(CREATED)
+                        .statusCode(CREATED.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Lends all book copies of the basket (a list of book copy IDs) to a member at once, and reports per book copy
+     * whether it was lent.
+     */
+    @PostMapping(path = "batch")
+    public ResponseEntity<Response> checkOutAll(@RequestParam Long memberId, @RequestBody List<Long> bookCopyIds) {
+        BatchReport<Loan> report = loanService.checkOutAll(getBatchItems(bookCopyIds), memberId);
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("batch_report", report))
+                        .message(report.getSucceeded() + " of " + bookCopyIds.size() + " book copies lent")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    @PostMapping(path = "return")
+    public ResponseEntity<Response> returnBookCopy(@RequestParam Long bookCopyId) {
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("loan", loanService.returnBookCopy(bookCopyId)))
+                        .message("Book copy " + bookCopyId + " returned")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+}
@@ -5,15 +5,28 @@ import com.github.fge.jsonpatch.JsonPatch;
 import com.github.fge.jsonpatch.JsonPatchException;
 import com.yer.library.model.Member;
 import com.yer.library.model.Response;
+import com.yer.library.model.dtos.BatchPatch;
+import com.yer.library.model.dtos.BatchReport;
+import com.yer.library.model.dtos.BatchResult;
+import com.yer.library.model.dtos.MemberSummary;
+import com.yer.library.model.dtos.VersionStamp;
+import com.yer.library.service.ExportService;
 import com.yer.library.service.MemberService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
 
 import static com.yer.library.resource.Constants.MAX_PAGE_SIZE;
-import static com.yer.library.resource.ControllerUtil.getDataMap;
+import static com.yer.library.resource.ControllerUtil.*;
 import static java.time.LocalDateTime.now;
 import static org.springframework.http.HttpStatus.*;
 
@@ -22,13 +35,31 @@ import static org.springframework.http.HttpStatus.*;
 @RequiredArgsConstructor
 public class MemberController {
     private final MemberService memberService;
+    private final ExportService exportService;
 
     @GetMapping(path = "{memberId}")
-    public ResponseEntity<Response> getMember(@PathVariable("memberId") Long memberId) {
-        return ResponseEntity.ok(
+    public ResponseEntity<Response> getMember(
+            @PathVariable("memberId") Long memberId,
+            @RequestParam(required = false) String fields,
+            WebRequest request
+    ) {
+        String eTag = getETag(memberService.getVersion(memberId));
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build();
+        }
+        List<String> fieldNames = getFields(fields);
+        Object member;
+        if (fieldNames == null) {
+            Member fullMember = memberService.get(memberId);
+            eTag = getETag(VersionStamp.of(fullMember));
+            member = fullMember;
+        } else {
+            member = memberService.get(memberId, fieldNames);
+        }
+        return ResponseEntity.ok().eTag(eTag).body(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("member", memberService.get(memberId)))
+                        .data(getDataMap("member", member))
                         .message("Member " + memberId + " retrieved")
                         .status(OK)
                         .statusCode(OK.value())
@@ -36,12 +67,58 @@ public class MemberController {
         );
     }
 
-    @GetMapping
-    public ResponseEntity<Response> getMembers() {
+    /**
+     * Gets the members with the given (comma-separated) IDs at once, in the order of the IDs. The IDs of members
+     * that do not exist or have been deleted are listed under {@code missing_ids}.
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<Response> getMembers(
+            @RequestParam List<Long> ids,
+            @RequestParam(required = false) String fields
+    ) {
+        List<String> fieldNames = getFields(fields);
+        BatchResult<?> result = fieldNames == null
+                ? memberService.getAll(getBatchIds(ids))
+                : memberService.getAll(getBatchIds(ids), fieldNames);
         return ResponseEntity.ok(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("members", memberService.list(MAX_PAGE_SIZE)))
+                        .data(getBatchDataMap("members", result))
+                        .message(result.getFound().size() + " members retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    @GetMapping
+    public ResponseEntity<Response> getMembers(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int limit,
+            @RequestParam(required = false) String fields,
+            WebRequest request
+    ) {
+        int pageSize = getPageSize(limit);
+        Long afterId = decodeCursor(after);
+        // the versions are read before the page, so that a page modified in between gets an outdated tag (and is
+        // sent again next time) rather than the other way around
+        String eTag = getPageETag(memberService.listVersions(afterId, pageSize));
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build();
+        }
+        List<String> fieldNames = getFields(fields);
+        Map<String, Object> data;
+        if (fieldNames == null) {
+            List<MemberSummary> members = memberService.listSummaries(afterId, pageSize);
+            data = getPageDataMap("members", members, pageSize, MemberSummary::getId);
+        } else {
+            List<Map<String, Object>> members = memberService.list(afterId, pageSize, fieldNames);
+            data = getPageDataMap("members", members, pageSize, ControllerUtil::getRowId);
+        }
+        return ResponseEntity.ok().eTag(eTag).body(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(data)
                         .message("Members retrieved")
                         .status(OK)
                         .statusCode(OK.value())
@@ -50,11 +127,32 @@ public class MemberController {
     }
 
     @GetMapping(path = "/list_by_membership/{membershipId}")
-    public ResponseEntity<Response> getMembers(@PathVariable("membershipId") Long membershipId) {
-        return ResponseEntity.ok(
+    public ResponseEntity<Response> getMembers(
+            @PathVariable("membershipId") Long membershipId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int limit,
+            @RequestParam(required = false) String fields,
+            WebRequest request
+    ) {
+        int pageSize = getPageSize(limit);
+        Long afterId = decodeCursor(after);
+        String eTag = getPageETag(memberService.listVersionsByMembership(membershipId, afterId, pageSize));
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build();
+        }
+        List<String> fieldNames = getFields(fields);
+        Map<String, Object> data;
+        if (fieldNames == null) {
+            List<MemberSummary> members = memberService.listSummariesByMembership(membershipId, afterId, pageSize);
+            data = getPageDataMap("members", members, pageSize, MemberSummary::getId);
+        } else {
+            List<Map<String, Object>> members = memberService.listByMembership(membershipId, afterId, pageSize, fieldNames);
+            data = getPageDataMap("members", members, pageSize, ControllerUtil::getRowId);
+        }
+        return ResponseEntity.ok().eTag(eTag).body(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("members", memberService.listByMembership(membershipId, MAX_PAGE_SIZE)))
+                        .data(data)
                         .message("Members retrieved")
                         .status(OK)
                         .statusCode(OK.value())
@@ -62,6 +160,19 @@ public class MemberController {
         );
     }
 
+    /**
+     * Streams all members as NDJSON, optionally compressed with gzip.
+     */
+    @GetMapping(path = "export", produces = NDJSON)
+    public void exportMembers(
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response
+    ) throws IOException {
+        try (OutputStream outputStream = openExportStream(response, gzip)) {
+            exportService.exportMembers(outputStream);
+        }
+    }
+
     @PostMapping
     public ResponseEntity<Response> addMember(
             @RequestParam Long membershipId,
@@ -82,12 +193,15 @@ public class MemberController {
     public ResponseEntity<Response> updateMember(
             @RequestParam Long membershipId,
             @PathVariable("memberId") Long memberId,
-            @RequestBody @Valid Member member
+            @RequestBody @Valid Member member,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) {
-        return ResponseEntity.ok(
+        member.setVersion(getExpectedVersion(ifMatch));
+        Member updatedMember = memberService.fullUpdate(memberId, member, membershipId);
+        return ResponseEntity.ok().eTag(getETag(VersionStamp.of(updatedMember))).body(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("member", memberService.fullUpdate(memberId, member, membershipId)))
+                        .data(getDataMap("member", updatedMember))
                         .message("Member " + memberId + " updated")
                         .status(OK)
                         .statusCode(OK.value())
@@ -98,12 +212,14 @@ public class MemberController {
     @PatchMapping(path = "{memberId}")
     public ResponseEntity<Response> partiallyUpdateMember(
             @PathVariable("memberId") Long memberId,
-            @RequestBody JsonPatch jsonPatch
+            @RequestBody JsonPatch jsonPatch,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws JsonPatchException, JsonProcessingException {
-        return ResponseEntity.ok(
+        Member updatedMember = memberService.partialUpdate(memberId, jsonPatch, getExpectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(getETag(VersionStamp.of(updatedMember))).body(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("member", memberService.partialUpdate(memberId, jsonPatch)))
+                        .data(getDataMap("member", updatedMember))
                         .message("Member " + memberId + " updated")
                         .status(OK)
                         .statusCode(OK.value())
@@ -111,6 +227,59 @@ public class MemberController {
         );
     }
 
+    /**
+     * Adds all members of the batch at once, and reports per member whether it was added.
+     */
+    @PostMapping(path = "batch")
+    public ResponseEntity<Response> addMembers(@RequestBody List<Member> members) {
+        BatchReport<Member> report = memberService.addAll(getBatchItems(members));
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("batch_report", report))
+                        .message(report.getSucceeded() + " of " + members.size() + " members created")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Replaces all members of the batch (identified by their {@code id}) at once, and reports per member whether it was
+     * updated.
+     */
+    @PutMapping(path = "batch")
+    public ResponseEntity<Response> fullUpdateMembers(@RequestBody List<Member> members) {
+        BatchReport<Member> report = memberService.fullUpdateAll(getBatchItems(members));
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("batch_report", report))
+                        .message(report.getSucceeded() + " of " + members.size() + " members updated")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Applies a batch of JSON patches, each to the member with its {@code id}, and reports per patch whether it was
+     * applied.
+     */
+    @PatchMapping(path = "batch", consumes = "application/json")
+    public ResponseEntity<Response> partiallyUpdateMembers(@RequestBody List<BatchPatch> patches) {
+        BatchReport<Member> report = memberService.partialUpdateAll(getBatchItems(patches));
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("batch_report", report))
+                        .message(report.getSucceeded() + " of " + patches.size() + " members updated")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
     @DeleteMapping(path = "{memberId}")
     public ResponseEntity<Response> deleteMember(@PathVariable("memberId") Long memberId) {
         return ResponseEntity.ok(
@@ -123,4 +292,21 @@ public class MemberController {
                         .build()
         );
     }
+
+    /**
+     * Soft deletes all members with the given (comma-separated) IDs at once.
+     */
+    @DeleteMapping
+    public ResponseEntity<Response> deleteMembers(@RequestParam List<Long> ids) {
+        int deleted = memberService.delete(ids);
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("soft deleted", deleted))
+                        .message(deleted + " members deleted")
+                        .status(NO_CONTENT)
+                        .statusCode(NO_CONTENT.value())
+                        .build()
+        );
+    }
 }
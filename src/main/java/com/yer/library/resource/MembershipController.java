@@ -5,15 +5,28 @@ import com.github.fge.jsonpatch.JsonPatch;
 import com.github.fge.jsonpatch.JsonPatchException;
 import com.yer.library.model.Membership;
 import com.yer.library.model.Response;
+import com.yer.library.model.dtos.BatchPatch;
+import com.yer.library.model.dtos.BatchReport;
+import com.yer.library.model.dtos.BatchResult;
+import com.yer.library.model.dtos.MembershipSummary;
+import com.yer.library.model.dtos.VersionStamp;
+import com.yer.library.service.ExportService;
 import com.yer.library.service.MembershipService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
 
 import static com.yer.library.resource.Constants.MAX_PAGE_SIZE;
-import static com.yer.library.resource.ControllerUtil.getDataMap;
+import static com.yer.library.resource.ControllerUtil.*;
 import static java.time.LocalDateTime.now;
 import static org.springframework.http.HttpStatus.*;
 
@@ -22,13 +35,31 @@ import static org.springframework.http.HttpStatus.*;
 @RequiredArgsConstructor
 public class MembershipController {
     private final MembershipService membershipService;
+    private final ExportService exportService;
 
     @GetMapping(path = "{membershipId}")
-    public ResponseEntity<Response> getMembership(@PathVariable("membershipId") Long membershipId) {
-        return ResponseEntity.ok(
+    public ResponseEntity<Response> getMembership(
+            @PathVariable("membershipId") Long membershipId,
+            @RequestParam(required = false) String fields,
+            WebRequest request
+    ) {
+        String eTag = getETag(membershipService.getVersion(membershipId));
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build();
+        }
+        List<String> fieldNames = getFields(fields);
+        Object membership;
+        if (fieldNames == null) {
+            Membership fullMembership = membershipService.get(membershipId);
+            eTag = getETag(VersionStamp.of(fullMembership));
+            membership = fullMembership;
+        } else {
+            membership = membershipService.get(membershipId, fieldNames);
+        }
+        return ResponseEntity.ok().eTag(eTag).body(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("membership", membershipService.get(membershipId)))
+                        .data(getDataMap("membership", membership))
                         .message("Membership " + membershipId + " retrieved")
                         .status(OK)
                         .statusCode(OK.value())
@@ -36,12 +67,58 @@ public class MembershipController {
         );
     }
 
-    @GetMapping
-    public ResponseEntity<Response> getMemberships() {
+    /**
+     * Gets the memberships with the given (comma-separated) IDs at once, in the order of the IDs. The IDs of
+     * memberships that do not exist or have been deleted are listed under {@code missing_ids}.
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<Response> getMemberships(
+            @RequestParam List<Long> ids,
+            @RequestParam(required = false) String fields
+    ) {
+        List<String> fieldNames = getFields(fields);
+        BatchResult<?> result = fieldNames == null
+                ? membershipService.getAll(getBatchIds(ids))
+                : membershipService.getAll(getBatchIds(ids), fieldNames);
         return ResponseEntity.ok(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("memberships", membershipService.list(MAX_PAGE_SIZE)))
+                        .data(getBatchDataMap("memberships", result))
+                        .message(result.getFound().size() + " memberships retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    @GetMapping
+    public ResponseEntity<Response> getMemberships(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int limit,
+            @RequestParam(required = false) String fields,
+            WebRequest request
+    ) {
+        int pageSize = getPageSize(limit);
+        Long afterId = decodeCursor(after);
+        // the versions are read before the page, so that a page modified in between gets an outdated tag (and is
+        // sent again next time) rather than the other way around
+        String eTag = getPageETag(membershipService.listVersions(afterId, pageSize));
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build();
+        }
+        List<String> fieldNames = getFields(fields);
+        Map<String, Object> data;
+        if (fieldNames == null) {
+            List<MembershipSummary> memberships = membershipService.listSummaries(afterId, pageSize);
+            data = getPageDataMap("memberships", memberships, pageSize, MembershipSummary::getId);
+        } else {
+            List<Map<String, Object>> memberships = membershipService.list(afterId, pageSize, fieldNames);
+            data = getPageDataMap("memberships", memberships, pageSize, ControllerUtil::getRowId);
+        }
+        return ResponseEntity.ok().eTag(eTag).body(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(data)
                         .message("Memberships retrieved")
                         .status(OK)
                         .statusCode(OK.value())
@@ -50,11 +127,32 @@ public class MembershipController {
     }
 
     @GetMapping(path = "/list_by_type/{membershipTypeId}")
-    public ResponseEntity<Response> getMemberships(@PathVariable("membershipTypeId") Long membershipTypeId) {
-        return ResponseEntity.ok(
+    public ResponseEntity<Response> getMemberships(
+            @PathVariable("membershipTypeId") Long membershipTypeId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int limit,
+            @RequestParam(required = false) String fields,
+            WebRequest request
+    ) {
+        int pageSize = getPageSize(limit);
+        Long afterId = decodeCursor(after);
+        String eTag = getPageETag(membershipService.listVersionsByMembershipType(membershipTypeId, afterId, pageSize));
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build();
+        }
+        List<String> fieldNames = getFields(fields);
+        Map<String, Object> data;
+        if (fieldNames == null) {
+            List<MembershipSummary> memberships = membershipService.listSummariesByMembershipType(membershipTypeId, afterId, pageSize);
+            data = getPageDataMap("memberships", memberships, pageSize, MembershipSummary::getId);
+        } else {
+            List<Map<String, Object>> memberships = membershipService.listByMembershipType(membershipTypeId, afterId, pageSize, fieldNames);
+            data = getPageDataMap("memberships", memberships, pageSize, ControllerUtil::getRowId);
+        }
+        return ResponseEntity.ok().eTag(eTag).body(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("memberships", membershipService.listByMembershipType(membershipTypeId, MAX_PAGE_SIZE)))
+                        .data(data)
                         .message("Memberships for membership type with ID " + membershipTypeId + " retrieved")
                         .status(OK)
                         .statusCode(OK.value())
@@ -63,6 +161,19 @@ public class MembershipController {
     }
 
 
+    /**
+     * Streams all memberships as NDJSON, optionally compressed with gzip.
+     */
+    @GetMapping(path = "export", produces = NDJSON)
+    public void exportMemberships(
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response
+    ) throws IOException {
+        try (OutputStream outputStream = openExportStream(response, gzip)) {
+            exportService.exportMemberships(outputStream);
+        }
+    }
+
     @PostMapping
     public ResponseEntity<Response> addMembership(
             @RequestParam Long membershipTypeId,
@@ -83,12 +194,15 @@ public class MembershipController {
     public ResponseEntity<Response> updateMembership(
             @RequestParam Long membershipTypeId,
             @PathVariable("membershipId") Long membershipId,
-            @RequestBody @Valid Membership membership
+            @RequestBody @Valid Membership membership,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) {
-        return ResponseEntity.ok(
+        membership.setVersion(getExpectedVersion(ifMatch));
+        Membership updatedMembership = membershipService.fullUpdate(membershipId, membership, membershipTypeId);
+        return ResponseEntity.ok().eTag(getETag(VersionStamp.of(updatedMembership))).body(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("membership", membershipService.fullUpdate(membershipId, membership, membershipTypeId)))
+                        .data(getDataMap("membership", updatedMembership))
                         .message("Membership " + membershipId + " updated")
                         .status(OK)
                         .statusCode(OK.value())
@@ -99,12 +213,14 @@ public class MembershipController {
     @PatchMapping(path = "{membershipId}")
     public ResponseEntity<Response> partiallyUpdateMembership(
             @PathVariable("membershipId") Long membershipId,
-            @RequestBody JsonPatch jsonPatch
+            @RequestBody JsonPatch jsonPatch,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws JsonPatchException, JsonProcessingException {
-        return ResponseEntity.ok(
+        Membership updatedMembership = membershipService.partialUpdate(membershipId, jsonPatch, getExpectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(getETag(VersionStamp.of(updatedMembership))).body(
                 Response.builder()
                         .timeStamp(now())
-                        .data(getDataMap("membership", membershipService.partialUpdate(membershipId, jsonPatch)))
+                        .data(getDataMap("membership", updatedMembership))
                         .message("Membership " + membershipId + " updated")
                         .status(OK)
                         .statusCode(OK.value())
@@ -112,6 +228,59 @@ public class MembershipController {
         );
     }
 
+    /**
+     * Adds all memberships of the batch at once, and reports per membership whether it was added.
+     */
+    @PostMapping(path = "batch")
+    public ResponseEntity<Response> addMemberships(@RequestBody List<Membership> memberships) {
+        BatchReport<Membership> report = membershipService.addAll(getBatchItems(memberships));
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("batch_report", report))
+                        .message(report.getSucceeded() + " of " + memberships.size() + " memberships created")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Replaces all memberships of the batch (identified by their {@code id}) at once, and reports per membership
+     * whether it was updated.
+     */
+    @PutMapping(path = "batch")
+    public ResponseEntity<Response> fullUpdateMemberships(@RequestBody List<Membership> memberships) {
+        BatchReport<Membership> report = membershipService.fullUpdateAll(getBatchItems(memberships));
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("batch_report", report))
+                        .message(report.getSucceeded() + " of " + memberships.size() + " memberships updated")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Applies a batch of JSON patches, each to the membership with its {@code id}, and reports per patch whether it was
+     * applied.
+     */
+    @PatchMapping(path = "batch", consumes = "application/json")
+    public ResponseEntity<Response> partiallyUpdateMemberships(@RequestBody List<BatchPatch> patches) {
+        BatchReport<Membership> report = membershipService.partialUpdateAll(getBatchItems(patches));
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("batch_report", report))
+                        .message(report.getSucceeded() + " of " + patches.size() + " memberships updated")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
     @DeleteMapping(path = "{membershipId}")
     public ResponseEntity<Response> deleteMembership(@PathVariable("membershipId") Long membershipId) {
         return ResponseEntity.ok(
@@ -124,4 +293,21 @@ public class MembershipController {
                         .build()
         );
     }
+
+    /**
+     * Soft deletes all memberships with the given (comma-separated) IDs at once.
+     */
+    @DeleteMapping
+    public ResponseEntity<Response> deleteMemberships(@RequestParam List<Long> ids) {
+        int deleted = membershipService.delete(ids);
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("soft deleted", deleted))
+                        .message(deleted + " memberships deleted")
+                        .status(NO_CONTENT)
+                        .statusCode(NO_CONTENT.value())
+                        .build()
+        );
+    }
 }
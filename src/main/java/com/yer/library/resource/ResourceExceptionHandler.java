@@ -0,0 +1,39 @@
+package com.yer.library.resource;
+
+import com.yer.library.model.Response;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.WebRequest;
+
+import static java.time.LocalDateTime.now;
+import static org.springframework.http.HttpStatus.CONFLICT;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
+
+@RestControllerAdvice
+public class ResourceExceptionHandler {
+
+    /**
+     * Answers an update of an object that has been modified since it was read with 412 (Precondition Failed) if the
+     * client stated the version it expected in an {@code If-Match} header, and with 409 (Conflict) if the object was
+     * modified concurrently while it was being updated.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Response> handleOptimisticLockingFailure(
+            OptimisticLockingFailureException exception,
+            WebRequest request
+    ) {
+        HttpStatus status = request.getHeader(HttpHeaders.IF_MATCH) == null ? CONFLICT : PRECONDITION_FAILED;
+        return ResponseEntity.status(status).body(
+                Response.builder()
+                        .timeStamp(now())
+                        .message(exception.getMessage())
+                        .status(status)
+                        .statusCode(status.value())
+                        .build()
+        );
+    }
+}
@@ -0,0 +1,78 @@
+package com.yer.library.resource;
+
+import com.yer.library.model.Response;
+import com.yer.library.service.RevenueReportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+
+import static com.yer.library.resource.ControllerUtil.getDataMap;
+import static java.time.LocalDateTime.now;
+import static org.springframework.http.HttpStatus.OK;
+
+@RestController
+@RequestMapping(path = "api/v1/reports/revenue")
+@RequiredArgsConstructor
+public class RevenueController {
+    private final RevenueReportService revenueReportService;
+
+    /**
+     * Reports the monthly recurring revenue per membership type of the memberships that are active on a date (today by
+     * default).
+     */
+    @GetMapping
+    public ResponseEntity<Response> getRevenue(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date
+    ) {
+        LocalDate reportDate = date == null ? LocalDate.now() : date;
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("revenue", revenueReportService.getReport(reportDate)))
+                        .message("Revenue on " + reportDate + " retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    /**
+     * Reports the monthly recurring revenue per membership type on the first day of each of a number of months,
+     * starting with a month formatted like {@code 2022-03} (this month by default).
+     */
+    @GetMapping(path = "monthly")
+    public ResponseEntity<Response> getMonthlyRevenue(
+            @RequestParam(required = false) String from,
+            @RequestParam(defaultValue = "12") int months
+    ) {
+        YearMonth firstMonth = parseMonth(from);
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("revenue", revenueReportService.getMonthlyReports(firstMonth, months)))
+                        .message("Revenue for " + months + " months from " + firstMonth + " retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    private static YearMonth parseMonth(String month) {
+        if (month == null || month.isEmpty()) {
+            return YearMonth.now();
+        }
+        try {
+            return YearMonth.parse(month);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid month " + month + " (expected a month like 2022-03)", e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.yer.library.resource;
+
+import com.yer.library.model.Response;
+import com.yer.library.service.StatisticsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static com.yer.library.resource.ControllerUtil.getDataMap;
+import static java.time.LocalDateTime.now;
+import static org.springframework.http.HttpStatus.OK;
+
+@RestController
+@RequestMapping(path = "api/v1/statistics")
+@RequiredArgsConstructor
+public class StatisticsController {
+    private final StatisticsService statisticsService;
+
+    @GetMapping(path = "caches")
+    public ResponseEntity<Response> getCacheStatistics() {
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("caches", statisticsService.getCacheStatistics()))
+                        .message("Cache statistics retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    @GetMapping(path = "second_level_cache")
+    public ResponseEntity<Response> getSecondLevelCacheStatistics() {
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("regions", statisticsService.getSecondLevelCacheStatistics()))
+                        .message("Second-level cache statistics retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    @GetMapping(path = "conflicts")
+    public ResponseEntity<Response> getConflictStatistics() {
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("operations", statisticsService.getConflictStatistics()))
+                        .message("Conflict statistics retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    @GetMapping(path = "membership_expiry")
+    public ResponseEntity<Response> getMembershipExpiryStatistics() {
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("membership_expiry", statisticsService.getMembershipExpiryStatistics()))
+                        .message("Membership expiry statistics retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+
+    @GetMapping(path = "inventory")
+    public ResponseEntity<Response> getInventoryStatistics() {
+        return ResponseEntity.ok(
+                Response.builder()
+                        .timeStamp(now())
+                        .data(getDataMap("inventory", statisticsService.getInventoryStatistics()))
+                        .message("Inventory statistics retrieved")
+                        .status(OK)
+                        .statusCode(OK.value())
+                        .build()
+        );
+    }
+}
@@ -0,0 +1,139 @@
+package com.yer.library.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchException;
+import com.yer.library.model.dtos.BatchPatch;
+import com.yer.library.model.dtos.BatchReport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Writes a batch of objects with as few transactions as possible, and reports the outcome for every object.
+ * <p>
+ * All objects are validated first; the valid ones are then written in chunks of {@code library.batch.chunk-size}
+ * objects, one transaction (and therefore JDBC batches) per chunk. With the default chunk size of 0, the whole batch
+ * is written in a single transaction. Like {@link BookImportService}, a chunk that fails is rolled back and its
+ * objects are retried one by one, each in its own transaction, so that one bad object only fails itself.
+ */
+@Component
+@Slf4j
+public class BatchExecutor {
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final int chunkSize;
+
+    public BatchExecutor(
+            TransactionTemplate transactionTemplate,
+            Validator validator,
+            @Value("${library.batch.chunk-size:0}") int chunkSize
+    ) {
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Writes the items with the operation, which is called (within a transaction) with a chunk of items, and must
+     * return the written objects in the order of the chunk.
+     */
+    public <I, T> BatchReport<T> execute(List<I> items, Function<List<I>, List<T>> operation) {
+        BatchReport<T> report = new BatchReport<>(items.size());
+
+        List<Integer> validIndexes = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            List<String> errors = validate(items.get(i));
+            if (errors.isEmpty()) {
+                validIndexes.add(i);
+            } else {
+                report.fail(i, errors);
+            }
+        }
+
+        int size = chunkSize > 0 ? chunkSize : Math.max(validIndexes.size(), 1);
+        for (int from = 0; from < validIndexes.size(); from += size) {
+            List<Integer> chunk = validIndexes.subList(from, Math.min(from + size, validIndexes.size()));
+            executeChunk(items, chunk, operation, report);
+        }
+
+        log.info("Wrote {} of {} objects", report.getSucceeded(), items.size());
+        return report;
+    }
+
+    private <I, T> void executeChunk(
+            List<I> items,
+            List<Integer> indexes,
+            Function<List<I>, List<T>> operation,
+            BatchReport<T> report
+    ) {
+        List<I> chunk = indexes.stream().map(items::get).collect(Collectors.toList());
+        try {
+            List<T> objects = transactionTemplate.execute(status -> operation.apply(chunk));
+            for (int i = 0; i < indexes.size(); i++) {
+                report.succeed(indexes.get(i), objects.get(i));
+            }
+        } catch (RuntimeException e) {
+            if (indexes.size() == 1) {
+                report.fail(indexes.get(0), Collections.singletonList(
+                        NestedExceptionUtils.getMostSpecificCause(e).getMessage()
+                ));
+                return;
+            }
+            log.warn("Writing batch chunk failed ({}); retrying its objects one by one", e.getMessage());
+            for (Integer index : indexes) {
+                executeChunk(items, Collections.singletonList(index), operation, report);
+            }
+        }
+    }
+
+    private List<String> validate(Object item) {
+        if (item == null) {
+            return Collections.singletonList("object is missing");
+        }
+        return validator.validate(item).stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns an operation that writes the items of a chunk one at a time.
+     */
+    static <I, T> Function<List<I>, List<T>> each(Function<I, T> operation) {
+        return chunk -> chunk.stream().map(operation).collect(Collectors.toList());
+    }
+
+    /**
+     * Adapts a {@link CrudService#partialUpdate} method to the items of a batch of patches.
+     */
+    static <T> Function<BatchPatch, T> patching(PartialUpdate<T> partialUpdate) {
+        return batchPatch -> {
+            try {
+                return partialUpdate.apply(batchPatch.getId(), batchPatch.getPatch());
+            } catch (JsonPatchException | JsonProcessingException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+        };
+    }
+
+    static Long requireId(Long id) {
+        if (id == null) {
+            throw new IllegalArgumentException("cannot update an object without an ID");
+        }
+        return id;
+    }
+
+    @FunctionalInterface
+    interface PartialUpdate<T> {
+        T apply(Long id, JsonPatch jsonPatch) throws JsonPatchException, JsonProcessingException;
+    }
+}
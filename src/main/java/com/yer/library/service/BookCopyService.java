@@ -1,25 +1,42 @@
 package com.yer.library.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.github.fge.jsonpatch.JsonPatch;
 import com.github.fge.jsonpatch.JsonPatchException;
 import com.yer.library.model.Book;
 import com.yer.library.model.BookCopy;
+import com.yer.library.model.InventoryKey;
+import com.yer.library.model.dtos.BatchPatch;
+import com.yer.library.model.dtos.BatchReport;
+import com.yer.library.model.dtos.BatchResult;
 import com.yer.library.model.dtos.BookCopyDTO;
-import com.yer.library.model.dtos.jsonviews.View;
+import com.yer.library.model.dtos.BookCopySummary;
+import com.yer.library.model.dtos.VersionStamp;
 import com.yer.library.model.dtos.mappers.BookCopyMapper;
+import com.yer.library.model.enums.BookCopyStatus;
+import com.yer.library.repository.BookAvailabilityRepository;
 import com.yer.library.repository.BookCopyRepository;
 import com.yer.library.repository.BookRepository;
+import com.yer.library.repository.Fieldset;
+import com.yer.library.repository.FieldsetRepository;
+import com.yer.library.service.InventoryService.Valuation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
+import static com.yer.library.config.CacheConfig.*;
+import static com.yer.library.service.BatchExecutor.*;
+import static com.yer.library.service.OptimisticLocking.checkVersion;
 import static java.lang.Boolean.TRUE;
 import static org.springframework.data.domain.PageRequest.ofSize;
 
@@ -30,10 +47,14 @@ import static org.springframework.data.domain.PageRequest.ofSize;
 public class BookCopyService implements CrudService<BookCopy> {
     private final BookCopyRepository bookCopyRepository;
     private final BookRepository bookRepository;
-    private final ObjectMapper mapper = JsonMapper.builder()
-            .findAndAddModules()
-            .build();
+    private final BookAvailabilityRepository bookAvailabilityRepository;
+    private final JsonPatchEngine jsonPatchEngine;
+    private final BatchExecutor batchExecutor;
+    private final FieldsetRepository fieldsetRepository;
+    private final InventoryService inventoryService;
+    private final HoldService holdService;
 
+    @Cacheable(cacheNames = BOOK_COPIES, key = "#bookCopyId")
     public BookCopy get(Long bookCopyId) {
         log.info("Fetching book copy with ID: {}", bookCopyId);
         BookCopy bookCopy = bookCopyRepository.findById(bookCopyId).orElseThrow(
@@ -50,6 +71,15 @@ public class BookCopyService implements CrudService<BookCopy> {
         return bookCopy;
     }
 
+    @Override
+    public BatchResult<BookCopy> getAll(List<Long> bookCopyIds) {
+        log.info("Fetching {} book copies by ID", bookCopyIds.size());
+        if (bookCopyIds.isEmpty()) {
+            return new BatchResult<>(Collections.emptyList(), Collections.emptyList());
+        }
+        return BatchResult.of(bookCopyIds, bookCopyRepository.findAvailableByIds(bookCopyIds), BookCopy::getId);
+    }
+
     @Override
     public Collection<BookCopy> list(int limit) {
         log.info("Listing all book copies (up to a limit of {})", limit);
@@ -61,9 +91,108 @@ public class BookCopyService implements CrudService<BookCopy> {
         return bookCopyRepository.listByBook(bookId, ofSize(limit));
     }
 
+    @Override
+    public List<BookCopy> list(Long afterId, int limit) {
+        log.info("Listing book copies after ID {} (up to a limit of {})", afterId, limit);
+        return bookCopyRepository.listAvailableAfter(afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    public List<BookCopy> listByBook(Long bookId, Long afterId, int limit) {
+        log.info("Listing book copies for book with ID {} after ID {} (up to a limit of {})", bookId, afterId, limit);
+        return bookCopyRepository.listByBookAfter(bookId, afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    /**
+     * Lists book copies like {@link #list(Long, int)}, as read-only summaries instead of managed entities.
+     */
+    public List<BookCopySummary> listSummaries(Long afterId, int limit) {
+        log.info("Listing book copy summaries after ID {} (up to a limit of {})", afterId, limit);
+        return bookCopyRepository.listSummariesAfter(afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    /**
+     * Lists book copies like {@link #listByBook(Long, Long, int)}, as read-only summaries instead of managed entities.
+     */
+    public List<BookCopySummary> listSummariesByBook(Long bookId, Long afterId, int limit) {
+        log.info("Listing book copy summaries for book with ID {} after ID {} (up to a limit of {})", bookId, afterId, limit);
+        return bookCopyRepository.listSummariesByBookAfter(bookId, afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    /**
+     * Gets the requested fields of a book copy, reading only their columns (see {@link Fieldset}).
+     */
+    public Map<String, Object> get(Long bookCopyId, Collection<String> fields) {
+        log.info("Fetching fields {} of book copy with ID: {}", fields, bookCopyId);
+        return fieldsetRepository.findAvailableById(Fieldset.BOOK_COPIES, fields, bookCopyId).orElseThrow(
+                () -> new IllegalStateException("book copy with ID " + bookCopyId + " does not exist")
+        );
+    }
+
+    /**
+     * Gets the requested fields of several book copies at once, like {@link #getAll(List)}.
+     */
+    public BatchResult<Map<String, Object>> getAll(List<Long> bookCopyIds, Collection<String> fields) {
+        log.info("Fetching fields {} of {} book copies by ID", fields, bookCopyIds.size());
+        if (bookCopyIds.isEmpty()) {
+            return new BatchResult<>(Collections.emptyList(), Collections.emptyList());
+        }
+        return BatchResult.of(
+                bookCopyIds,
+                fieldsetRepository.findAvailableByIds(Fieldset.BOOK_COPIES, fields, bookCopyIds),
+                row -> (Long) row.get(Fieldset.ID)
+        );
+    }
+
+    /**
+     * Lists the requested fields of book copies like {@link #list(Long, int)}, reading only their columns.
+     */
+    public List<Map<String, Object>> list(Long afterId, int limit, Collection<String> fields) {
+        log.info("Listing fields {} of book copies after ID {} (up to a limit of {})", fields, afterId, limit);
+        return fieldsetRepository.listAvailableAfter(Fieldset.BOOK_COPIES, fields, afterId == null ? 0L : afterId, limit);
+    }
+
+    /**
+     * Lists the requested fields of book copies like {@link #listByBook(Long, Long, int)},
+     * reading only their columns.
+     */
+    public List<Map<String, Object>> listByBook(Long bookId, Long afterId, int limit, Collection<String> fields) {
+        log.info("Listing fields {} of book copies for book with ID {} after ID {} (up to a limit of {})", fields, bookId, afterId, limit);
+        return fieldsetRepository.listAvailableByOwnerAfter(
+                Fieldset.BOOK_COPIES, fields, "book", bookId, afterId == null ? 0L : afterId, limit
+        );
+    }
+
+    /**
+     * Gets the version of a book copy (and of its book), without loading the book copy.
+     */
+    public VersionStamp getVersion(Long bookCopyId) {
+        return bookCopyRepository.findVersionById(bookCopyId).orElseThrow(
+                () -> new IllegalStateException("book copy with ID " + bookCopyId + " does not exist")
+        );
+    }
+
+    /**
+     * Lists the versions of the book copies of a page of {@link #listSummaries(Long, int)}.
+     */
+    public List<VersionStamp> listVersions(Long afterId, int limit) {
+        return bookCopyRepository.listVersionsAfter(afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    /**
+     * Lists the versions of the book copies of a page of {@link #listSummariesByBook(Long, Long, int)}.
+     */
+    public List<VersionStamp> listVersionsByBook(Long bookId, Long afterId, int limit) {
+        return bookCopyRepository.listVersionsByBookAfter(bookId, afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
     @Override
     public BookCopy add(BookCopy bookCopy) {
-        return bookCopyRepository.save(bookCopy);
+        BookCopy addedBookCopy = bookCopyRepository.save(bookCopy);
+        if (!addedBookCopy.getDeleted()) {
+            count(addedBookCopy.getBook().getId(), addedBookCopy, 1);
+            inventoryService.count(addedBookCopy, 1);
+        }
+        return addedBookCopy;
     }
 
     // TODO might want to change the signature to BookCopy add(BookCopy bookCopy, String bookIsbn)
@@ -86,6 +215,8 @@ public class BookCopyService implements CrudService<BookCopy> {
     }
 
     @Override
+    @RetryOnConflict
+    @CacheEvict(cacheNames = BOOK_COPIES, key = "#bookCopyId")
     public BookCopy fullUpdate(Long bookCopyId, BookCopy updatedBookCopy) {
         BookCopy existingBookCopy = bookCopyRepository.findById(bookCopyId).orElseThrow(
                 () -> new IllegalStateException(
@@ -97,11 +228,21 @@ public class BookCopyService implements CrudService<BookCopy> {
                     "book copy with ID " + bookCopyId + " has been deleted"
             );
         }
-        updatedBookCopy.setId(bookCopyId);
+        checkVersion("book copy with ID " + bookCopyId, existingBookCopy.getVersion(), updatedBookCopy.getVersion());
+        Long previousBookId = existingBookCopy.getBook().getId();
+        Valuation previousValuation = Valuation.of(existingBookCopy.getBook());
+        short previousFloor = InventoryKey.floorOf(existingBookCopy.getLocation());
+
+        // only the columns that differ from the loaded state are updated
+        BookCopyMapper.INSTANCE.updateBookCopy(updatedBookCopy, existingBookCopy);
+        countMove(existingBookCopy, previousBookId);
+        inventoryService.move(previousValuation, previousFloor, existingBookCopy);
 
-        return bookCopyRepository.save(updatedBookCopy);
+        return bookCopyRepository.save(existingBookCopy);
     }
 
+    @RetryOnConflict
+    @CacheEvict(cacheNames = BOOK_COPIES, key = "#bookCopyId")
     public BookCopy fullUpdate(Long bookCopyId, BookCopy updatedBookCopy, Long bookId) {
         log.info("Updating book copy with ID: {}", bookCopyId);
 
@@ -123,7 +264,20 @@ public class BookCopyService implements CrudService<BookCopy> {
     }
 
     @Override
+    @RetryOnConflict
+    @CacheEvict(cacheNames = BOOK_COPIES, key = "#bookCopyId")
     public BookCopy partialUpdate(Long bookCopyId, JsonPatch jsonPatch) throws JsonPatchException, JsonProcessingException {
+        return partialUpdate(bookCopyId, jsonPatch, null);
+    }
+
+    /**
+     * Applies the patch like {@link #partialUpdate(Long, JsonPatch)}, if the book copy is (still) at the expected
+     * version (or if no version is expected).
+     */
+    @RetryOnConflict
+    @CacheEvict(cacheNames = BOOK_COPIES, key = "#bookCopyId")
+    public BookCopy partialUpdate(Long bookCopyId, JsonPatch jsonPatch, Long expectedVersion)
+            throws JsonPatchException, JsonProcessingException {
         log.info("Updating book copy with ID: {}", bookCopyId);
 
         BookCopy existingBookCopy = bookCopyRepository.findById(bookCopyId).orElseThrow(
@@ -136,25 +290,26 @@ public class BookCopyService implements CrudService<BookCopy> {
                     "book copy with ID " + bookCopyId + " has been deleted"
             );
         }
+        checkVersion("book copy with ID " + bookCopyId, existingBookCopy.getVersion(), expectedVersion);
+        Long previousBookId = existingBookCopy.getBook().getId();
+        Valuation previousValuation = Valuation.of(existingBookCopy.getBook());
+        short previousFloor = InventoryKey.floorOf(existingBookCopy.getLocation());
 
         BookCopyDTO existingBookCopyDTO = BookCopyMapper.INSTANCE.toBookCopyDTO(existingBookCopy);
 
-        // configure ObjectMapper instance to include JsonView in its deserializer config (View.PatchView.class in this case)
-        mapper.setConfig(mapper.getDeserializationConfig()
-                .withView(View.PatchView.class));
-
-        JsonNode existingBookCopyJson = mapper.convertValue(existingBookCopyDTO, JsonNode.class);
-        JsonNode patched = jsonPatch.apply(existingBookCopyJson);
-
-        BookCopyDTO updatedBookCopyDTO = mapper.treeToValue(patched, BookCopyDTO.class);
+        BookCopyDTO updatedBookCopyDTO = jsonPatchEngine.apply(jsonPatch, existingBookCopyDTO);
         BookCopy updatedBookCopy = BookCopyMapper.INSTANCE.toBookCopy(updatedBookCopyDTO, bookRepository);
 
-        updatedBookCopy.setId(existingBookCopy.getId());
+        BookCopyMapper.INSTANCE.updateBookCopy(updatedBookCopy, existingBookCopy);
+        countMove(existingBookCopy, previousBookId);
+        inventoryService.move(previousValuation, previousFloor, existingBookCopy);
 
-        return bookCopyRepository.save(updatedBookCopy);
+        return bookCopyRepository.save(existingBookCopy);
     }
 
     @Override
+    @RetryOnConflict
+    @CacheEvict(cacheNames = BOOK_COPIES, key = "#bookCopyId")
     public Boolean delete(Long bookCopyId) {
         log.info("Deleting book copy with ID: {}", bookCopyId);
 
@@ -170,7 +325,105 @@ public class BookCopyService implements CrudService<BookCopy> {
             );
         }
         bookCopy.setDeleted(true);
+        // the copy is written before its counters, like a checkout does, so that both lock their rows in the same order
+        bookCopyRepository.flush();
+        count(bookCopy.getBook().getId(), bookCopy, -1);
+        inventoryService.count(bookCopy, -1);
+        holdService.requeue(Collections.singleton(bookCopy));
 
         return TRUE;
     }
+
+    @Override
+    @CacheEvict(cacheNames = BOOK_COPIES, allEntries = true)
+    public int delete(Collection<Long> bookCopyIds) {
+        log.info("Deleting {} book copies", bookCopyIds.size());
+        if (bookCopyIds.isEmpty()) {
+            return 0;
+        }
+
+        // the copies are locked first, so that they are counted out of the inventory as they are deleted
+        List<BookCopy> bookCopies = bookCopyRepository.findActiveByIdsForUpdate(bookCopyIds);
+        List<Long> bookIds = bookCopies.stream()
+                .map(bookCopy -> bookCopy.getBook().getId())
+                .distinct()
+                .collect(Collectors.toList());
+        int deleted = bookCopyRepository.softDeleteByIds(bookCopyIds);
+        if (!bookIds.isEmpty()) {
+            bookAvailabilityRepository.recount(bookIds);
+        }
+        inventoryService.count(bookCopies, -1);
+        holdService.requeue(bookCopies);
+
+        return deleted;
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public BatchReport<BookCopy> addAll(List<BookCopy> bookCopies) {
+        log.info("Adding {} book copies", bookCopies.size());
+        return batchExecutor.execute(bookCopies, each(bookCopy -> {
+            // a retried book copy must not keep the ID it got in the rolled back transaction
+            bookCopy.setId(null);
+            bookCopy.setDeleted(false);
+            bookCopy.setVersion(null);
+            return add(bookCopy, bookCopy.getBook() == null ? null : bookCopy.getBook().getId());
+        }));
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    @CacheEvict(cacheNames = BOOK_COPIES, allEntries = true)
+    public BatchReport<BookCopy> fullUpdateAll(List<BookCopy> bookCopies) {
+        log.info("Updating {} book copies", bookCopies.size());
+        return batchExecutor.execute(bookCopies, each(bookCopy -> fullUpdate(
+                requireId(bookCopy.getId()), bookCopy, requireBookId(bookCopy)
+        )));
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    @CacheEvict(cacheNames = BOOK_COPIES, allEntries = true)
+    public BatchReport<BookCopy> partialUpdateAll(List<BatchPatch> patches) {
+        log.info("Patching {} book copies", patches.size());
+        return batchExecutor.execute(patches, each(patching(this::partialUpdate)));
+    }
+
+    /**
+     * Returns the ID of the book of a book copy to replace, which (like for a single book copy) must be given.
+     */
+    private static Long requireBookId(BookCopy bookCopy) {
+        if (bookCopy.getBook() == null || bookCopy.getBook().getId() == null) {
+            throw new IllegalArgumentException("cannot update a book copy without a book ID");
+        }
+        return bookCopy.getBook().getId();
+    }
+
+    /**
+     * Adds a book copy that has not been deleted to the availability counters of the book with the given ID, or
+     * removes it from them with {@code sign} -1.
+     */
+    private void count(Long bookId, BookCopy bookCopy, int sign) {
+        bookAvailabilityRepository.adjust(bookId, bookCopy.getStatus() == BookCopyStatus.AVAILABLE ? sign : 0, sign);
+    }
+
+    /**
+     * Moves the counts of a book copy that was moved to another book (if it was) to the counters of that book.
+     */
+    private void countMove(BookCopy bookCopy, Long previousBookId) {
+        if (bookCopy.getBook() == null || bookCopy.getBook().getId() == null) {
+            throw new IllegalArgumentException("book copy with ID " + bookCopy.getId() + " must have a book");
+        }
+        Long bookId = bookCopy.getBook().getId();
+        if (previousBookId.equals(bookId)) {
+            return;
+        }
+        // the copy is written before the counters, and the counters are changed in the order of the book IDs, so that
+        // two transactions lock their rows in the same order
+        bookCopyRepository.flush();
+        Map<Long, Integer> signs = new TreeMap<>();
+        signs.put(previousBookId, -1);
+        signs.put(bookId, 1);
+        signs.forEach((id, sign) -> count(id, bookCopy, sign));
+    }
 }
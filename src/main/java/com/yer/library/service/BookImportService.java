@@ -0,0 +1,255 @@
+package com.yer.library.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.yer.library.model.Book;
+import com.yer.library.model.dtos.ImportReport;
+import com.yer.library.repository.BookAvailabilityRepository;
+import com.yer.library.repository.BookRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.Validator;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Imports books in bulk from a CSV (with a header row) or NDJSON stream.
+ * <p>
+ * The stream is read in chunks of {@value #CHUNK_SIZE} rows, so that the import never holds more than one chunk in
+ * memory. The rows of a chunk are validated in parallel, their ISBNs are checked against the database in a single
+ * query, and the valid rows are written in one transaction (and therefore in JDBC batches). Like
+ * {@link BookService#add(Book)}, a book whose ISBN belongs to a deleted book takes over the ID of the deleted book.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BookImportService {
+    public static final int CHUNK_SIZE = 1000;
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    private final BookRepository bookRepository;
+    private final BookAvailabilityRepository bookAvailabilityRepository;
+    private final BookSearchIndex bookSearchIndex;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ObjectReader ndjsonReader = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build()
+            .readerFor(Book.class);
+    private final ObjectReader csvReader = CsvMapper.builder()
+            .findAndAddModules()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build()
+            .readerFor(Book.class)
+            .with(CsvSchema.emptySchema().withHeader());
+
+    public ImportReport importBooks(InputStream inputStream, Format format) throws IOException {
+        log.info("Importing books ({})", format);
+        ImportReport report = new ImportReport();
+
+        try (RowReader rowReader = format == Format.CSV ? new CsvRowReader(inputStream) : new NdjsonRowReader(inputStream)) {
+            List<ImportRow> chunk = new ArrayList<>(CHUNK_SIZE);
+            for (ImportRow row = rowReader.next(); row != null; row = rowReader.next()) {
+                chunk.add(row);
+                if (chunk.size() == CHUNK_SIZE) {
+                    importChunk(chunk, report);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(chunk, report);
+            }
+        }
+
+        log.info("Imported {} of {} books", report.getImported(), report.getRowsRead());
+        return report;
+    }
+
+    private void importChunk(List<ImportRow> chunk, ImportReport report) {
+        chunk.parallelStream()
+                .filter(ImportRow::isValid)
+                .forEach(this::validate);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> saveAll(chunk));
+        } catch (RuntimeException e) {
+            log.warn("Saving import chunk failed ({}); retrying its rows one by one", e.getMessage());
+            for (ImportRow row : chunk) {
+                if (row.isValid()) {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> saveAll(Collections.singletonList(row)));
+                    } catch (RuntimeException rowException) {
+                        row.fail(rowException.getMessage());
+                    }
+                }
+            }
+        }
+
+        for (ImportRow row : chunk) {
+            if (row.isValid()) {
+                report.setImported(report.getImported() + 1);
+            } else {
+                report.getErrors().add(new ImportReport.RowError(row.number, row.getIsbn(), row.errors));
+            }
+        }
+        report.setRowsRead(report.getRowsRead() + chunk.size());
+    }
+
+    private void validate(ImportRow row) {
+        validator.validate(row.book).forEach(violation ->
+                row.fail(violation.getPropertyPath() + ": " + violation.getMessage())
+        );
+    }
+
+    private void saveAll(List<ImportRow> rows) {
+        Set<String> isbns = rows.stream()
+                .filter(ImportRow::isValid)
+                .map(ImportRow::getIsbn)
+                .collect(Collectors.toSet());
+        if (isbns.isEmpty()) {
+            return;
+        }
+
+        // prefer the non-deleted book if there are several books with the same ISBN
+        Map<String, Book> existingBooks = bookRepository.findAllByIsbnIn(isbns).stream()
+                .collect(Collectors.toMap(Book::getIsbn, Function.identity(), (a, b) -> a.getDeleted() ? b : a));
+
+        Set<String> importedIsbns = new HashSet<>();
+        List<Book> books = new ArrayList<>();
+        for (ImportRow row : rows) {
+            if (!row.isValid()) {
+                continue;
+            }
+            String isbn = row.getIsbn();
+            Book existingBook = existingBooks.get(isbn);
+            if (!importedIsbns.add(isbn) || (existingBook != null && !existingBook.getDeleted())) {
+                row.fail("ISBN " + isbn + " already exists");
+                continue;
+            }
+            row.book.setId(existingBook != null ? existingBook.getId() : null);
+            row.book.setVersion(existingBook != null ? existingBook.getVersion() : null);
+            books.add(row.book);
+        }
+        if (books.isEmpty()) {
+            return;
+        }
+        bookRepository.saveAll(books);
+        bookAvailabilityRepository.register(books.stream().map(Book::getId).collect(Collectors.toList()));
+        bookSearchIndex.indexAfterCommit(books);
+    }
+
+    private static class ImportRow {
+        private final long number;
+        private final Book book;
+        private final List<String> errors = new ArrayList<>();
+
+        ImportRow(long number, Book book) {
+            this.number = number;
+            this.book = book;
+            book.setId(null);
+            book.setDeleted(false);
+            book.setVersion(null);
+        }
+
+        ImportRow(long number, String error) {
+            this.number = number;
+            this.book = null;
+            errors.add(error);
+        }
+
+        boolean isValid() {
+            return errors.isEmpty();
+        }
+
+        String getIsbn() {
+            return book != null ? book.getIsbn() : null;
+        }
+
+        synchronized void fail(String error) {
+            errors.add(error);
+        }
+    }
+
+    private interface RowReader extends Closeable {
+        /**
+         * Returns the next row, or {@code null} at the end of the stream.
+         */
+        ImportRow next() throws IOException;
+    }
+
+    private class NdjsonRowReader implements RowReader {
+        private final BufferedReader reader;
+        private long lineNumber = 0;
+
+        NdjsonRowReader(InputStream inputStream) {
+            this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                lineNumber++;
+            } while (line != null && line.trim().isEmpty());
+
+            if (line == null) {
+                return null;
+            }
+            try {
+                return new ImportRow(lineNumber, ndjsonReader.<Book>readValue(line));
+            } catch (JsonProcessingException e) {
+                return new ImportRow(lineNumber, e.getOriginalMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private class CsvRowReader implements RowReader {
+        private final MappingIterator<Book> iterator;
+        private long rowNumber = 0;
+
+        CsvRowReader(InputStream inputStream) throws IOException {
+            this.iterator = csvReader.readValues(inputStream);
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            if (!iterator.hasNextValue()) {
+                return null;
+            }
+            rowNumber++;
+            try {
+                return new ImportRow(rowNumber, iterator.nextValue());
+            } catch (RuntimeJsonMappingException | JsonProcessingException e) {
+                return new ImportRow(rowNumber, e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            iterator.close();
+        }
+    }
+}
@@ -0,0 +1,533 @@
+package com.yer.library.service;
+
+import com.yer.library.model.Book;
+import com.yer.library.model.dtos.BookSearchHit;
+import com.yer.library.model.dtos.BookSearchResult;
+import com.yer.library.model.dtos.BookSummary;
+import com.yer.library.model.dtos.ReindexReport;
+import com.yer.library.model.dtos.SearchCursor;
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import com.yer.library.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherLifetimeManager;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.IOUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * A full-text index of the available books, on the local disk (see {@code library.search.index-dir}), so that books are
+ * found by the words of their title, author, genre and type without scanning the books table.
+ * <p>
+ * The index is a Lucene index: every book is a document with its ID, its searchable fields, and the fields of its
+ * {@link BookSummary}, so that search results are returned from the index alone. A search finds the books that match
+ * every word of the query in any of the fields, ranked by relevance (BM25), with matches in the title weighing most.
+ * Pages of results are read from the same version (snapshot) of the index as the first page, as long as it is younger
+ * than {@value #MAX_SEARCHER_AGE_SECONDS} seconds, so that changes of books do not shift the pages being read.
+ * <p>
+ * Books that are changed within a transaction are only written to the index after it commits, so the index never
+ * contains a change that was rolled back, and changes are searchable as soon as the commit returns. The changed books
+ * are then read again from the books table, one change at a time, so that a change that is written after a later
+ * change of the same book (by a concurrent transaction) does not overwrite it with the older book. Changes are written
+ * to disk every {@code library.search.commit-interval-ms}, and when the application stops. An index that was not closed
+ * when the application stopped may have missed changes, and is built again from the books table when the application
+ * starts; the index can always be built again with {@link #reindex()}. Like {@link HoldQueues}, the index only covers
+ * this application instance.
+ */
+@Component
+@Slf4j
+public class BookSearchIndex {
+    static final String ID = "id";
+    static final String TITLE = "title";
+    static final String AUTHOR = "author";
+    static final String GENRE = "genre";
+    static final String TYPE = "type";
+    static final int MAX_WORDS = 32;
+    private static final String ISBN = "isbn";
+    private static final String YEAR = "year";
+    private static final String VALUE = "value";
+    private static final String VERSION = "version";
+    private static final String GENRE_NAME = "genre_name";
+    private static final String TYPE_NAME = "type_name";
+    // the commit data of an index that was closed when the application stopped
+    private static final String CLEAN = "clean";
+    private static final long MAX_SEARCHER_AGE_SECONDS = 600;
+    private static final int REINDEX_CHUNK_SIZE = 10_000;
+    private static final Map<String, Float> BOOSTS = new LinkedHashMap<>();
+
+    static {
+        BOOSTS.put(TITLE, 3.0f);
+        BOOSTS.put(AUTHOR, 2.0f);
+        BOOSTS.put(GENRE, 1.0f);
+        BOOSTS.put(TYPE, 1.0f);
+    }
+
+    private final BookRepository bookRepository;
+    private final String indexDir;
+    private final int reindexThreads;
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final SearcherLifetimeManager searcherLifetimeManager = new SearcherLifetimeManager();
+    private final AtomicBoolean reindexing = new AtomicBoolean();
+    // held while changed books are read and written, and while the writer is committed or replaced
+    private final Object writeLock = new Object();
+    // the IDs of the books changed while the index is built again; null while it is not
+    private volatile Set<Long> changedWhileReindexing;
+    // set if a change could not be written, so that the index is built again when the application starts
+    private volatile boolean failed;
+
+    private Path path;
+    private Directory directory;
+    private volatile IndexWriter indexWriter;
+    private volatile SearcherManager searcherManager;
+
+    public BookSearchIndex(
+            BookRepository bookRepository,
+            @Value("${library.search.index-dir:}") String indexDir,
+            @Value("${library.search.reindex-threads:0}") int reindexThreads
+    ) {
+        if (reindexThreads < 0) {
+            throw new IllegalArgumentException("library.search.reindex-threads should not be negative");
+        }
+        this.bookRepository = bookRepository;
+        this.indexDir = indexDir;
+        this.reindexThreads = reindexThreads == 0 ? Runtime.getRuntime().availableProcessors() : reindexThreads;
+    }
+
+    /**
+     * Opens the index in {@code library.search.index-dir}, or in a new temporary directory (that is removed when the
+     * index is closed) if no directory is configured, and builds it again if it was not closed.
+     */
+    @PostConstruct
+    void open() throws IOException {
+        path = indexDir.isEmpty() ? Files.createTempDirectory("library-search") : Paths.get(indexDir);
+        directory = FSDirectory.open(path);
+        indexWriter = openWriter();
+        boolean clean = isClean();
+        // until it is closed again, the index on disk may miss the changes since its last commit
+        setClean(false);
+        indexWriter.commit();
+        searcherManager = new SearcherManager(indexWriter, null);
+        if (!clean) {
+            log.info("The search index in {} was not closed, and is built again", path);
+            reindex();
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        searcherLifetimeManager.close();
+        searcherManager.close();
+        setClean(!failed);
+        indexWriter.close();
+        directory.close();
+        if (indexDir.isEmpty()) {
+            IOUtils.rm(path);
+        }
+    }
+
+    /**
+     * Finds the books that match every word of the query in their title, author, genre or type, ranked by relevance,
+     * after the given cursor (if any).
+     */
+    public BookSearchResult search(String text, SearchCursor after, int limit) {
+        Query query = toQuery(text);
+        IndexSearcher searcher = after == null ? null : searcherLifetimeManager.acquire(after.getVersion());
+        // the version of the first page may have been pruned; the next pages are then read from the current version,
+        // and may repeat or skip books that were changed since the first page
+        boolean current = searcher == null;
+        try {
+            if (current) {
+                searcher = searcherManager.acquire();
+            }
+            long version = current ? searcherLifetimeManager.record(searcher) : after.getVersion();
+            TopDocs topDocs = after == null
+                    ? searcher.search(query, limit)
+                    : searcher.searchAfter(new ScoreDoc(after.getDoc(), after.getScore()), query, limit);
+            List<BookSearchHit> hits = new ArrayList<>(topDocs.scoreDocs.length);
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                hits.add(new BookSearchHit(toSummary(searcher.doc(scoreDoc.doc)), scoreDoc.score));
+            }
+            ScoreDoc last = hits.size() < limit ? null : topDocs.scoreDocs[topDocs.scoreDocs.length - 1];
+            return new BookSearchResult(hits, last == null ? null : new SearchCursor(version, last.score, last.doc));
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not search the search index", e);
+        } finally {
+            if (searcher != null) {
+                release(searcher, current);
+            }
+        }
+    }
+
+    /**
+     * Writes the given books to the index once the current transaction commits (or right away outside a transaction),
+     * as they are in the books table by then.
+     */
+    public void indexAfterCommit(Collection<Book> books) {
+        List<Long> bookIds = books.stream().map(Book::getId).collect(Collectors.toList());
+        afterCommit(() -> update(bookIds));
+    }
+
+    public void indexAfterCommit(Book book) {
+        indexAfterCommit(Collections.singleton(book));
+    }
+
+    /**
+     * Removes the books with the given IDs from the index once the current transaction commits (or right away outside a
+     * transaction).
+     */
+    public void removeAfterCommit(Collection<Long> bookIds) {
+        List<Long> removedIds = new ArrayList<>(bookIds);
+        afterCommit(() -> update(removedIds));
+    }
+
+    /**
+     * Builds the index again from the books table, and returns how many books were indexed. The range of book IDs is
+     * split into chunks of {@value #REINDEX_CHUNK_SIZE} IDs, which are read and indexed by
+     * {@code library.search.reindex-threads} threads (by default one per processor) at the same time. Searches are
+     * answered from the previous version of the index until all books have been indexed; if indexing fails, the index
+     * is rolled back to that version, with the books changed in the meantime written again.
+     */
+    public ReindexReport reindex() {
+        if (!reindexing.compareAndSet(false, true)) {
+            throw new IllegalStateException("the search index is already being built again");
+        }
+        long startNanos = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(reindexThreads, new IndexThreadFactory());
+        Set<Long> changed = ConcurrentHashMap.newKeySet();
+        boolean built = false;
+        try {
+            synchronized (writeLock) {
+                changedWhileReindexing = changed;
+                // the version a failed reindex is rolled back to
+                indexWriter.commit();
+            }
+            indexWriter.deleteAll();
+
+            long books = 0;
+            Long minId = bookRepository.findMinId();
+            Long maxId = bookRepository.findMaxId();
+            if (minId != null) {
+                List<Future<Integer>> futures = new ArrayList<>();
+                for (long fromId = minId; fromId <= maxId; fromId += REINDEX_CHUNK_SIZE) {
+                    long chunkFromId = fromId;
+                    futures.add(executor.submit(() -> indexChunk(chunkFromId, chunkFromId + REINDEX_CHUNK_SIZE)));
+                }
+                for (Future<Integer> future : futures) {
+                    books += future.get();
+                }
+            }
+
+            synchronized (writeLock) {
+                // a book that was changed while its chunk was read may have been indexed as it was before the change
+                writeCurrent(changed);
+                indexWriter.commit();
+                changedWhileReindexing = null;
+                refresh();
+            }
+            built = true;
+
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            log.info("Indexed {} books for search with {} threads in {} ms", books, reindexThreads, millis);
+            return new ReindexReport(books, reindexThreads, millis);
+        } catch (IOException e) {
+            failed = true;
+            throw new UncheckedIOException("could not build the search index again", e);
+        } catch (ExecutionException e) {
+            failed = true;
+            throw new IllegalStateException("could not build the search index again", e.getCause());
+        } catch (InterruptedException e) {
+            failed = true;
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while building the search index again", e);
+        } finally {
+            executor.shutdownNow();
+            if (!built) {
+                rollBack(executor, changed);
+            }
+            changedWhileReindexing = null;
+            reindexing.set(false);
+        }
+    }
+
+    /**
+     * Writes the changes of the index to disk, if there are any, unless the index is being built again (and its
+     * changes are only written once all books have been indexed).
+     */
+    @Scheduled(fixedDelayString = "${library.search.commit-interval-ms:10000}")
+    public void commit() {
+        try {
+            synchronized (writeLock) {
+                if (!reindexing.get() && indexWriter.hasUncommittedChanges()) {
+                    indexWriter.commit();
+                }
+            }
+        } catch (IOException e) {
+            log.error("Could not write the search index to disk", e);
+        }
+    }
+
+    private int indexChunk(long fromId, long toId) throws IOException {
+        List<BookSummary> books = bookRepository.listSummariesBetween(fromId, toId);
+        write(books, Collections.emptyList());
+        return books.size();
+    }
+
+    private void update(Collection<Long> bookIds) {
+        // the books are recorded as changed before they are written, so that a book indexed by a running reindex after
+        // this change is always indexed again
+        Set<Long> changed = changedWhileReindexing;
+        if (changed != null) {
+            changed.addAll(bookIds);
+        }
+        synchronized (writeLock) {
+            try {
+                writeCurrent(bookIds);
+                // a running reindex makes the change searchable together with all other books
+                if (changedWhileReindexing == null) {
+                    refresh();
+                }
+            } catch (IOException | DataAccessException e) {
+                failed = true;
+                log.error("Could not write {} books to the search index; it is built again when the application starts",
+                        bookIds.size(), e);
+            }
+        }
+    }
+
+    /**
+     * Writes the books with the given IDs as they are in the books table, and removes those that are not available.
+     */
+    private void writeCurrent(Collection<Long> bookIds) throws IOException {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        List<BookSummary> books = bookRepository.listSummariesByIds(bookIds);
+        Set<Long> removedIds = new LinkedHashSet<>(bookIds);
+        books.forEach(book -> removedIds.remove(book.getId()));
+        write(books, removedIds);
+    }
+
+    /**
+     * Discards the changes since the last commit of the index, when a reindex started, and writes the books changed
+     * since then again.
+     */
+    private void rollBack(ExecutorService executor, Set<Long> changed) {
+        try {
+            // a chunk that is still being indexed would write to the writer that is rolled back
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Chunks of the search index were still being indexed when it was rolled back");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (writeLock) {
+            try {
+                indexWriter.rollback();
+                indexWriter = openWriter();
+                SearcherManager previousSearcherManager = searcherManager;
+                searcherManager = new SearcherManager(indexWriter, null);
+                previousSearcherManager.close();
+                changedWhileReindexing = null;
+                writeCurrent(changed);
+                refresh();
+                log.info("Rolled the search index back to the version before it was built again");
+            } catch (IOException | DataAccessException e) {
+                log.error("Could not roll the search index back; it is built again when the application starts", e);
+            }
+        }
+    }
+
+    private void write(Collection<BookSummary> books, Collection<Long> removedIds) throws IOException {
+        for (BookSummary book : books) {
+            indexWriter.updateDocument(new Term(ID, String.valueOf(book.getId())), toDocument(book));
+        }
+        for (Long bookId : removedIds) {
+            indexWriter.deleteDocuments(new Term(ID, String.valueOf(bookId)));
+        }
+    }
+
+    private void refresh() throws IOException {
+        searcherManager.maybeRefreshBlocking();
+        searcherLifetimeManager.prune(new SearcherLifetimeManager.PruneByAge(MAX_SEARCHER_AGE_SECONDS));
+    }
+
+    private IndexWriter openWriter() throws IOException {
+        return new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND)
+                .setRAMBufferSizeMB(64));
+    }
+
+    private void release(IndexSearcher searcher, boolean current) {
+        try {
+            if (current) {
+                searcherManager.release(searcher);
+            } else {
+                searcherLifetimeManager.release(searcher);
+            }
+        } catch (IOException e) {
+            log.warn("Could not release a searcher of the search index", e);
+        }
+    }
+
+    /**
+     * Requires every word of the query in any of the fields, with a match in the title weighing most.
+     */
+    private Query toQuery(String text) {
+        List<String> words = analyze(text);
+        if (words.isEmpty()) {
+            throw new IllegalArgumentException("search query should contain at least one word");
+        }
+        if (words.size() > MAX_WORDS) {
+            throw new IllegalArgumentException("search query should contain at most " + MAX_WORDS + " words");
+        }
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (String word : words) {
+            BooleanQuery.Builder wordQuery = new BooleanQuery.Builder();
+            BOOSTS.forEach((field, boost) -> wordQuery.add(
+                    new BoostQuery(new TermQuery(new Term(field, word)), boost), BooleanClause.Occur.SHOULD
+            ));
+            query.add(wordQuery.build(), BooleanClause.Occur.MUST);
+        }
+        return query.build();
+    }
+
+    private List<String> analyze(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        try (TokenStream tokenStream = analyzer.tokenStream(TITLE, text == null ? "" : text)) {
+            CharTermAttribute term = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                words.add(term.toString());
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not analyze search query", e);
+        }
+        return new ArrayList<>(words);
+    }
+
+    private boolean isClean() {
+        if (indexWriter.getLiveCommitData() == null) {
+            return false;
+        }
+        for (Map.Entry<String, String> entry : indexWriter.getLiveCommitData()) {
+            if (CLEAN.equals(entry.getKey())) {
+                return Boolean.parseBoolean(entry.getValue());
+            }
+        }
+        return false;
+    }
+
+    private void setClean(boolean clean) {
+        indexWriter.setLiveCommitData(Collections.singletonMap(CLEAN, String.valueOf(clean)).entrySet());
+    }
+
+    private static Document toDocument(BookSummary book) {
+        Document document = new Document();
+        document.add(new StringField(ID, String.valueOf(book.getId()), Field.Store.YES));
+        document.add(new TextField(TITLE, book.getTitle(), Field.Store.YES));
+        document.add(new TextField(AUTHOR, book.getAuthor(), Field.Store.YES));
+        document.add(new TextField(GENRE, book.getGenre().toString(), Field.Store.NO));
+        document.add(new TextField(TYPE, book.getType().toString(), Field.Store.NO));
+        document.add(new StoredField(GENRE_NAME, book.getGenre().name()));
+        document.add(new StoredField(TYPE_NAME, book.getType().name()));
+        document.add(new StoredField(ISBN, book.getIsbn()));
+        document.add(new StoredField(YEAR, book.getYear().getValue()));
+        document.add(new StoredField(VALUE, book.getValue()));
+        document.add(new StoredField(VERSION, book.getVersion()));
+        return document;
+    }
+
+    private static BookSummary toSummary(Document document) {
+        // a document written before versions were stored has none, until the index is built again
+        return new BookSummary(
+                Long.valueOf(document.get(ID)),
+                document.get(ISBN),
+                document.get(TITLE),
+                Year.of(document.getField(YEAR).numericValue().intValue()),
+                document.get(AUTHOR),
+                BookType.valueOf(document.get(TYPE_NAME)),
+                BookGenre.valueOf(document.get(GENRE_NAME)),
+                document.getField(VALUE).numericValue().intValue(),
+                document.getField(VERSION) == null ? null : document.getField(VERSION).numericValue().longValue()
+        );
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static class IndexThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "search-reindex-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
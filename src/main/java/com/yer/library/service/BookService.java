@@ -2,23 +2,45 @@ package com.yer.library.service;
 
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.github.fge.jsonpatch.JsonPatch;
 import com.github.fge.jsonpatch.JsonPatchException;
 import com.yer.library.model.Book;
+import com.yer.library.model.BookAvailability;
+import com.yer.library.model.BookCopy;
+import com.yer.library.model.dtos.BatchPatch;
+import com.yer.library.model.dtos.BatchReport;
+import com.yer.library.model.dtos.BatchResult;
 import com.yer.library.model.dtos.BookDTO;
-import com.yer.library.model.dtos.jsonviews.View;
+import com.yer.library.model.dtos.BookSearchResult;
+import com.yer.library.model.dtos.BookSummary;
+import com.yer.library.model.dtos.ReindexReport;
+import com.yer.library.model.dtos.SearchCursor;
+import com.yer.library.model.dtos.VersionStamp;
 import com.yer.library.model.dtos.mappers.BookMapper;
+import com.yer.library.repository.BookAvailabilityRepository;
+import com.yer.library.repository.BookCopyRepository;
 import com.yer.library.repository.BookRepository;
+import com.yer.library.repository.Fieldset;
+import com.yer.library.repository.FieldsetRepository;
+import com.yer.library.service.InventoryService.Valuation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
+import static com.yer.library.config.CacheConfig.*;
+import static com.yer.library.service.BatchExecutor.*;
+import static com.yer.library.service.OptimisticLocking.checkVersion;
 import static org.springframework.data.domain.PageRequest.ofSize;
 
 @Service
@@ -28,11 +50,18 @@ import static org.springframework.data.domain.PageRequest.ofSize;
 public class BookService implements CrudService<Book> {
 
     private final BookRepository bookRepository;
-    private final ObjectMapper mapper = JsonMapper.builder()
-            .findAndAddModules()
-            .build();
+    private final BookCopyRepository bookCopyRepository;
+    private final BookAvailabilityRepository bookAvailabilityRepository;
+    private final JsonPatchEngine jsonPatchEngine;
+    private final BatchExecutor batchExecutor;
+    private final UniqueKeyLocks uniqueKeyLocks;
+    private final FieldsetRepository fieldsetRepository;
+    private final InventoryService inventoryService;
+    private final BookSearchIndex bookSearchIndex;
+    private final HoldService holdService;
 
     @Override
+    @Cacheable(cacheNames = BOOKS, key = "#bookId")
     public Book get(Long bookId) {
         log.info("Fetching book with ID: {}", bookId);
         Book book = bookRepository.findById(bookId).orElseThrow(
@@ -46,26 +75,162 @@ public class BookService implements CrudService<Book> {
         return book;
     }
 
+    @Override
+    public BatchResult<Book> getAll(List<Long> bookIds) {
+        log.info("Fetching {} books by ID", bookIds.size());
+        if (bookIds.isEmpty()) {
+            return new BatchResult<>(Collections.emptyList(), Collections.emptyList());
+        }
+        return BatchResult.of(bookIds, bookRepository.findAvailableByIds(bookIds), Book::getId);
+    }
+
     @Override
     public Collection<Book> list(int limit) {
         log.info("Listing all books (up to a limit of {})", limit);
         return bookRepository.listAvailable(ofSize(limit));
     }
 
+    @Override
+    public List<Book> list(Long afterId, int limit) {
+        log.info("Listing books after ID {} (up to a limit of {})", afterId, limit);
+        return bookRepository.listAvailableAfter(afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    /**
+     * Lists books like {@link #list(Long, int)}, as read-only summaries instead of managed entities.
+     */
+    public List<BookSummary> listSummaries(Long afterId, int limit) {
+        log.info("Listing book summaries after ID {} (up to a limit of {})", afterId, limit);
+        return bookRepository.listSummariesAfter(afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    /**
+     * Gets the requested fields of a book, reading only their columns (see {@link Fieldset}).
+     */
+    public Map<String, Object> get(Long bookId, Collection<String> fields) {
+        log.info("Fetching fields {} of book with ID: {}", fields, bookId);
+        return fieldsetRepository.findAvailableById(Fieldset.BOOKS, fields, bookId).orElseThrow(
+                () -> new IllegalStateException("book with ID " + bookId + " does not exist")
+        );
+    }
+
+    /**
+     * Gets the requested fields of several books at once, like {@link #getAll(List)}.
+     */
+    public BatchResult<Map<String, Object>> getAll(List<Long> bookIds, Collection<String> fields) {
+        log.info("Fetching fields {} of {} books by ID", fields, bookIds.size());
+        if (bookIds.isEmpty()) {
+            return new BatchResult<>(Collections.emptyList(), Collections.emptyList());
+        }
+        return BatchResult.of(
+                bookIds,
+                fieldsetRepository.findAvailableByIds(Fieldset.BOOKS, fields, bookIds),
+                row -> (Long) row.get(Fieldset.ID)
+        );
+    }
+
+    /**
+     * Lists the requested fields of books like {@link #list(Long, int)}, reading only their columns.
+     */
+    public List<Map<String, Object>> list(Long afterId, int limit, Collection<String> fields) {
+        log.info("Listing fields {} of books after ID {} (up to a limit of {})", fields, afterId, limit);
+        return fieldsetRepository.listAvailableAfter(Fieldset.BOOKS, fields, afterId == null ? 0L : afterId, limit);
+    }
+
+    /**
+     * Gets the version of a book, without loading the book.
+     */
+    public VersionStamp getVersion(Long bookId) {
+        return bookRepository.findVersionById(bookId).orElseThrow(
+                () -> new IllegalStateException("book with ID " + bookId + " does not exist")
+        );
+    }
+
+    /**
+     * Lists the versions of the books of a page of {@link #listSummaries(Long, int)}.
+     */
+    public List<VersionStamp> listVersions(Long afterId, int limit) {
+        return bookRepository.listVersionsAfter(afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    /**
+     * Gets the number of available copies (and of all copies) of a book, without counting its copies.
+     */
+    public BookAvailability getAvailability(Long bookId) {
+        log.info("Fetching availability of book with ID: {}", bookId);
+        return bookAvailabilityRepository.findAvailableById(bookId).orElseThrow(
+                () -> new IllegalStateException("book with ID " + bookId + " does not exist")
+        );
+    }
+
+    /**
+     * Gets the availability of several books at once, like {@link #getAvailability(Long)}.
+     */
+    public BatchResult<BookAvailability> getAvailability(List<Long> bookIds) {
+        log.info("Fetching availability of {} books by ID", bookIds.size());
+        if (bookIds.isEmpty()) {
+            return new BatchResult<>(Collections.emptyList(), Collections.emptyList());
+        }
+        return BatchResult.of(
+                bookIds,
+                bookAvailabilityRepository.findAvailableByIds(bookIds),
+                BookAvailability::getBookId
+        );
+    }
+
+    /**
+     * Finds the available books that match every word of the query in their title, author, genre or type, ranked by
+     * relevance, from the search index rather than the books table (see {@link BookSearchIndex}).
+     */
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public BookSearchResult search(String query, SearchCursor after, int limit) {
+        log.info("Searching books for '{}' (up to a limit of {})", query, limit);
+        return bookSearchIndex.search(query, after, limit);
+    }
+
+    /**
+     * Builds the search index again from all available books.
+     */
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public ReindexReport reindexSearch() {
+        log.info("Building the search index again");
+        return bookSearchIndex.reindex();
+    }
+
     @Override
     public Book add(Book book) {
         log.info("Adding new book (ISBN = {})", book.getIsbn());
-        bookRepository.findByIsbn(book.getIsbn()).ifPresent(existingBook -> {
-            if (existingBook.getDeleted()) {
-                book.setId(existingBook.getId());
-            } else {
-                throw new IllegalStateException("ISBN " + book.getIsbn() + " already exists");
+        return uniqueKeyLocks.withLock("isbn", book.getIsbn(), () -> {
+            bookRepository.findByIsbn(book.getIsbn()).ifPresent(existingBook -> {
+                if (existingBook.getDeleted()) {
+                    book.setId(existingBook.getId());
+                    book.setVersion(existingBook.getVersion());
+                } else {
+                    throw new IllegalStateException("ISBN " + book.getIsbn() + " already exists");
+                }
+            });
+            try {
+                Book addedBook = bookRepository.saveAndFlush(book);
+                bookAvailabilityRepository.register(Collections.singleton(book.getId()));
+                bookSearchIndex.indexAfterCommit(addedBook);
+                return addedBook;
+            } catch (DataIntegrityViolationException e) {
+                // another application instance added a book with the same ISBN since the check above
+                if (UniqueKeyLocks.isViolationOf(e, "uk_books_active_isbn")) {
+                    throw new IllegalStateException("ISBN " + book.getIsbn() + " already exists", e);
+                }
+                throw e;
             }
         });
-        return bookRepository.save(book);
     }
 
 
+    // book copies are cached together with their book
+    @RetryOnConflict
+    @Caching(evict = {
+            @CacheEvict(cacheNames = BOOKS, key = "#bookId"),
+            @CacheEvict(cacheNames = BOOK_COPIES, allEntries = true)
+    })
     public Book fullUpdate(Long bookId, Book updatedBook) {
         log.info("Updating book with ID: {}", bookId);
         Book existingBook = bookRepository.findById(bookId).orElseThrow(
@@ -92,15 +257,39 @@ public class BookService implements CrudService<Book> {
             });
         }
 
-        updatedBook.setId(bookId);
-        bookRepository.save(updatedBook);
+        checkVersion("book with ID " + bookId, existingBook.getVersion(), updatedBook.getVersion());
+
+        // only the columns that differ from the loaded state are updated
+        Valuation previousValuation = Valuation.of(existingBook);
+        BookMapper.INSTANCE.updateBook(updatedBook, existingBook);
+        Book savedBook = bookRepository.save(existingBook);
+        inventoryService.revalue(bookId, previousValuation, Valuation.of(savedBook));
+        bookSearchIndex.indexAfterCommit(savedBook);
 
-        return updatedBook;
+        return savedBook;
     }
 
-    // TODO maybe make sure save() isn't called if the value isn't updated
     @Override
+    @RetryOnConflict
+    @Caching(evict = {
+            @CacheEvict(cacheNames = BOOKS, key = "#bookId"),
+            @CacheEvict(cacheNames = BOOK_COPIES, allEntries = true)
+    })
     public Book partialUpdate(Long bookId, JsonPatch jsonPatch) throws JsonPatchException, JsonProcessingException {
+        return partialUpdate(bookId, jsonPatch, null);
+    }
+
+    /**
+     * Applies the patch like {@link #partialUpdate(Long, JsonPatch)}, if the book is (still) at the expected
+     * version (or if no version is expected).
+     */
+    @RetryOnConflict
+    @Caching(evict = {
+            @CacheEvict(cacheNames = BOOKS, key = "#bookId"),
+            @CacheEvict(cacheNames = BOOK_COPIES, allEntries = true)
+    })
+    public Book partialUpdate(Long bookId, JsonPatch jsonPatch, Long expectedVersion)
+            throws JsonPatchException, JsonProcessingException {
         log.info("Updating book with ID: {}", bookId);
 
         Book existingBook = bookRepository.findById(bookId).orElseThrow(
@@ -113,17 +302,11 @@ public class BookService implements CrudService<Book> {
                     "book with ID " + bookId + " has been deleted"
             );
         }
+        checkVersion("book with ID " + bookId, existingBook.getVersion(), expectedVersion);
 
         BookDTO existingBookDTO = BookMapper.INSTANCE.toBookDTO(existingBook);
 
-        // configure ObjectMapper instance to include JsonView in its deserializer config (View.PatchView.class in this case)
-        mapper.setConfig(mapper.getDeserializationConfig()
-                .withView(View.PatchView.class));
-
-        JsonNode existingBookJson = mapper.convertValue(existingBookDTO, JsonNode.class);
-        JsonNode patched = jsonPatch.apply(existingBookJson);
-
-        BookDTO updatedBookDTO = mapper.treeToValue(patched, BookDTO.class);
+        BookDTO updatedBookDTO = jsonPatchEngine.apply(jsonPatch, existingBookDTO);
         Book updatedBook = BookMapper.INSTANCE.toBook(updatedBookDTO);
 
         String updatedIsbn = updatedBook.getIsbn();
@@ -135,12 +318,21 @@ public class BookService implements CrudService<Book> {
             });
         }
 
-        updatedBook.setId(existingBook.getId());
+        Valuation previousValuation = Valuation.of(existingBook);
+        BookMapper.INSTANCE.updateBook(updatedBook, existingBook);
+        Book savedBook = bookRepository.save(existingBook);
+        inventoryService.revalue(bookId, previousValuation, Valuation.of(savedBook));
+        bookSearchIndex.indexAfterCommit(savedBook);
 
-        return bookRepository.save(updatedBook);
+        return savedBook;
     }
 
     @Override
+    @RetryOnConflict
+    @Caching(evict = {
+            @CacheEvict(cacheNames = BOOKS, key = "#bookId"),
+            @CacheEvict(cacheNames = BOOK_COPIES, allEntries = true)
+    })
     public Boolean delete(Long bookId) {
         log.info("Deleting book with ID: {}", bookId);
 
@@ -156,7 +348,77 @@ public class BookService implements CrudService<Book> {
             );
         }
         book.setDeleted(true);
+        // the copies are locked first, so that they are counted out of the inventory as they are deleted
+        List<BookCopy> bookCopies = bookCopyRepository.findActiveByBookIdsForUpdate(Collections.singleton(bookId));
+        bookCopyRepository.softDeleteByBookIds(Collections.singleton(bookId));
+        bookAvailabilityRepository.recount(Collections.singleton(bookId));
+        inventoryService.count(bookCopies, -1);
+        holdService.cancelByBooks(Collections.singleton(bookId));
+        bookSearchIndex.removeAfterCommit(Collections.singleton(bookId));
 
         return Boolean.TRUE;
     }
+
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = BOOKS, allEntries = true),
+            @CacheEvict(cacheNames = BOOK_COPIES, allEntries = true)
+    })
+    public int delete(Collection<Long> bookIds) {
+        log.info("Deleting {} books", bookIds.size());
+        if (bookIds.isEmpty()) {
+            return 0;
+        }
+
+        // the copies are locked before the books, like a single book is deleted and a book is revalued, so that these
+        // transactions cannot deadlock
+        List<BookCopy> bookCopies = bookCopyRepository.findActiveByBookIdsForUpdate(bookIds);
+        int deleted = bookRepository.softDeleteByIds(bookIds);
+        bookCopyRepository.softDeleteByBookIds(bookIds);
+        bookAvailabilityRepository.recount(bookIds);
+        inventoryService.count(bookCopies, -1);
+        holdService.cancelByBooks(bookIds);
+        bookSearchIndex.removeAfterCommit(bookIds);
+
+        return deleted;
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public BatchReport<Book> addAll(List<Book> books) {
+        log.info("Adding {} books", books.size());
+        return batchExecutor.execute(books, chunk -> uniqueKeyLocks.withLocks(
+                "isbn",
+                chunk.stream().map(Book::getIsbn).collect(Collectors.toList()),
+                () -> chunk.stream().map(book -> {
+                    // a retried book must not keep the ID it got in the rolled back transaction
+                    book.setId(null);
+                    book.setDeleted(false);
+                    book.setVersion(null);
+                    return add(book);
+                }).collect(Collectors.toList())
+        ));
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = BOOKS, allEntries = true),
+            @CacheEvict(cacheNames = BOOK_COPIES, allEntries = true)
+    })
+    public BatchReport<Book> fullUpdateAll(List<Book> books) {
+        log.info("Updating {} books", books.size());
+        return batchExecutor.execute(books, each(book -> fullUpdate(requireId(book.getId()), book)));
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = BOOKS, allEntries = true),
+            @CacheEvict(cacheNames = BOOK_COPIES, allEntries = true)
+    })
+    public BatchReport<Book> partialUpdateAll(List<BatchPatch> patches) {
+        log.info("Patching {} books", patches.size());
+        return batchExecutor.execute(patches, each(patching(this::partialUpdate)));
+    }
 }
@@ -0,0 +1,119 @@
+package com.yer.library.service;
+
+import com.yer.library.model.dtos.ConflictStatistics;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Runs {@link RetryOnConflict} operations again when their transaction fails on the {@code @Version} check of an
+ * updated row, instead of failing the request. The operation then reads the row as modified by the concurrent update,
+ * and applies its change on top of it.
+ * <p>
+ * An operation is run at most {@code library.retry.max-attempts} times. Before each retry, the thread sleeps for a
+ * random time of up to {@code library.retry.initial-backoff-ms} milliseconds, doubled for every retry up to
+ * {@code library.retry.max-backoff-ms}, so that writers that conflicted with each other do not conflict again right
+ * away. The advice runs before (outside) the transaction of the operation; an operation called within an existing
+ * transaction is not retried, since that transaction can only be rolled back as a whole.
+ * <p>
+ * Conflicts that the client asked for (a version in an {@code If-Match} header that is no longer current, see
+ * {@link OptimisticLocking}) are not retried, since they would fail again.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class ConflictRetryAspect {
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    public ConflictRetryAspect(
+            @Value("${library.retry.max-attempts:5}") int maxAttempts,
+            @Value("${library.retry.initial-backoff-ms:5}") long initialBackoffMillis,
+            @Value("${library.retry.max-backoff-ms:100}") long maxBackoffMillis
+    ) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("library.retry.max-attempts must be at least 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    @Around("@annotation(com.yer.library.service.RetryOnConflict)")
+    public Object retryOnConflict(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        String operation = joinPoint.getSignature().getDeclaringType().getSimpleName()
+                + "." + joinPoint.getSignature().getName();
+        Counters operationCounters = counters.computeIfAbsent(operation, name -> new Counters());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Object result = joinPoint.proceed();
+                if (attempt > 1) {
+                    operationCounters.recovered.increment();
+                }
+                return result;
+            } catch (ObjectOptimisticLockingFailureException e) {
+                operationCounters.conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    operationCounters.exhausted.increment();
+                    log.warn("{} still conflicts after {} attempts; giving up", operation, attempt);
+                    throw e;
+                }
+                operationCounters.retries.increment();
+                log.debug("{} conflicted with a concurrent update ({}); retrying", operation, e.getMessage());
+                backOff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Returns the conflict and retry counts of each operation that has been called since the application started.
+     */
+    public List<ConflictStatistics> getStatistics() {
+        return counters.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> new ConflictStatistics(
+                        entry.getKey(),
+                        entry.getValue().conflicts.sum(),
+                        entry.getValue().retries.sum(),
+                        entry.getValue().recovered.sum(),
+                        entry.getValue().exhausted.sum()
+                ))
+                .collect(Collectors.toList());
+    }
+
+    private void backOff(int attempt) throws InterruptedException {
+        // "full jitter": a random time up to the (exponentially growing) backoff
+        long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 30));
+        if (backoff > 0) {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(backoff + 1));
+        }
+    }
+
+    private static class Counters {
+        final LongAdder conflicts = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder recovered = new LongAdder();
+        final LongAdder exhausted = new LongAdder();
+    }
+}
@@ -3,19 +3,57 @@ package com.yer.library.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.github.fge.jsonpatch.JsonPatch;
 import com.github.fge.jsonpatch.JsonPatchException;
+import com.yer.library.model.dtos.BatchPatch;
+import com.yer.library.model.dtos.BatchReport;
+import com.yer.library.model.dtos.BatchResult;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface CrudService<T> {
     T get(Long id);
 
+    /**
+     * Gets the available objects with the given IDs with one query, in the order the IDs are given in. IDs of objects
+     * that do not exist or have been deleted are reported as missing instead.
+     */
+    BatchResult<T> getAll(List<Long> ids);
+
     Collection<T> list(int limit);
 
+    /**
+     * Lists up to {@code limit} available objects with an ID greater than {@code afterId}, ordered by ID.
+     * Passing {@code null} as {@code afterId} starts from the first object.
+     */
+    List<T> list(Long afterId, int limit);
+
     T add(T object);
 
     T partialUpdate(Long id, JsonPatch jsonPatch) throws JsonPatchException, JsonProcessingException;
 
     T fullUpdate(Long id, T object);
 
+    /**
+     * Adds all objects with as few transactions as possible (see {@link BatchExecutor}), and reports per object whether
+     * it was added.
+     */
+    BatchReport<T> addAll(List<T> objects);
+
+    /**
+     * Replaces the objects with the IDs of the given objects by the given objects, like {@link #addAll}.
+     */
+    BatchReport<T> fullUpdateAll(List<T> objects);
+
+    /**
+     * Applies each JSON patch to the object with its ID, like {@link #addAll}.
+     */
+    BatchReport<T> partialUpdateAll(List<BatchPatch> patches);
+
     Boolean delete(Long id);
+
+    /**
+     * Soft deletes the objects with the given IDs in one statement, and returns the number of objects deleted. IDs of
+     * objects that do not exist or have already been deleted are ignored.
+     */
+    int delete(Collection<Long> ids);
 }
@@ -0,0 +1,106 @@
+package com.yer.library.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.yer.library.repository.BookCopyRepository;
+import com.yer.library.repository.BookRepository;
+import com.yer.library.repository.MemberRepository;
+import com.yer.library.repository.MembershipRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Exports all non-deleted rows of an entity as NDJSON (one JSON object per line).
+ * <p>
+ * Rows are read from a database cursor and written to the output stream one at a time, so that an export never holds
+ * more than {@value #CLEAR_INTERVAL} entities in memory, regardless of the size of the table. Each export runs in a
+ * single transaction, and therefore reads a consistent snapshot of the table.
+ */
+@Service
+@Slf4j
+public class ExportService {
+    public static final int CLEAR_INTERVAL = 1000;
+
+    private final BookRepository bookRepository;
+    private final BookCopyRepository bookCopyRepository;
+    private final MemberRepository memberRepository;
+    private final MembershipRepository membershipRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+
+    public ExportService(
+            BookRepository bookRepository,
+            BookCopyRepository bookCopyRepository,
+            MemberRepository memberRepository,
+            MembershipRepository membershipRepository,
+            EntityManager entityManager,
+            ObjectMapper objectMapper
+    ) {
+        this.bookRepository = bookRepository;
+        this.bookCopyRepository = bookCopyRepository;
+        this.memberRepository = memberRepository;
+        this.membershipRepository = membershipRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        // the output stream is flushed by the servlet container as its buffer fills, not after every row
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @Transactional
+    public long exportBooks(OutputStream outputStream) throws IOException {
+        try (Stream<?> books = bookRepository.streamAvailable()) {
+            return write("books", books, outputStream);
+        }
+    }
+
+    @Transactional
+    public long exportBookCopies(OutputStream outputStream) throws IOException {
+        try (Stream<?> bookCopies = bookCopyRepository.streamAvailable()) {
+            return write("book copies", bookCopies, outputStream);
+        }
+    }
+
+    @Transactional
+    public long exportMembers(OutputStream outputStream) throws IOException {
+        try (Stream<?> members = memberRepository.streamAvailable()) {
+            return write("members", members, outputStream);
+        }
+    }
+
+    @Transactional
+    public long exportMemberships(OutputStream outputStream) throws IOException {
+        try (Stream<?> memberships = membershipRepository.streamAvailable()) {
+            return write("memberships", memberships, outputStream);
+        }
+    }
+
+    private long write(String name, Stream<?> rows, OutputStream outputStream) throws IOException {
+        log.info("Exporting {}", name);
+        long count = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            // the caller owns the output stream
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            Iterator<?> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                writer.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+                if (++count % CLEAR_INTERVAL == 0) {
+                    // the rows have been written, so the persistence context no longer needs to track them
+                    entityManager.clear();
+                }
+            }
+        }
+        log.info("Exported {} {}", count, name);
+        return count;
+    }
+}
@@ -0,0 +1,110 @@
+package com.yer.library.service;
+
+import com.yer.library.model.dtos.QueuedHold;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The queues of the waiting holds of all books, in memory, so that the next hold of a book is found without querying
+ * the holds table.
+ * <p>
+ * Every queue is a skip list ordered by the time the holds were placed (and by ID for holds placed at the same time),
+ * so the next hold is its first entry, and a cancelled hold is removed without shifting the others. Changes made within
+ * a transaction are only applied after it commits, so a queue never contains a hold that was rolled back. The holds
+ * table stays the source of truth: a hold taken from a queue is only used if its conditional update succeeds (see
+ * {@code HoldRepository#markReady}), and the queues can always be filled again from the table (see
+ * {@link HoldService#rebuildQueues()}). Like {@link UniqueKeyLocks}, the queues only cover this application instance.
+ */
+@Component
+public class HoldQueues {
+    private static final Comparator<QueuedHold> QUEUE_ORDER = Comparator
+            .comparing(QueuedHold::getPlacedAt)
+            .thenComparing(QueuedHold::getHoldId);
+
+    private final Map<Long, NavigableMap<QueuedHold, Boolean>> queues = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the next waiting hold of the book with the given ID, if any.
+     */
+    public Optional<QueuedHold> next(Long bookId) {
+        NavigableMap<QueuedHold, Boolean> queue = queues.get(bookId);
+        if (queue == null) {
+            return Optional.empty();
+        }
+        Map.Entry<QueuedHold, Boolean> first = queue.firstEntry();
+        return first == null ? Optional.empty() : Optional.of(first.getKey());
+    }
+
+    /**
+     * Returns the waiting holds of the book with the given ID in the order of its queue. The view is not a copy: it
+     * reflects holds added and removed while it is iterated, without failing.
+     */
+    public Collection<QueuedHold> queue(Long bookId) {
+        NavigableMap<QueuedHold, Boolean> queue = queues.get(bookId);
+        return queue == null ? Collections.emptySet() : queue.keySet();
+    }
+
+    public int size(Long bookId) {
+        NavigableMap<QueuedHold, Boolean> queue = queues.get(bookId);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Adds the hold to the queue of its book, after the current transaction commits (or right away outside a
+     * transaction).
+     */
+    public void addAfterCommit(QueuedHold hold) {
+        afterCommit(() -> add(hold));
+    }
+
+    /**
+     * Removes the hold from the queue of its book, after the current transaction commits (or right away outside a
+     * transaction).
+     */
+    public void removeAfterCommit(QueuedHold hold) {
+        afterCommit(() -> remove(hold));
+    }
+
+    void add(QueuedHold hold) {
+        queues.compute(hold.getBookId(), (bookId, queue) -> {
+            NavigableMap<QueuedHold, Boolean> result = queue == null ? new ConcurrentSkipListMap<>(QUEUE_ORDER) : queue;
+            result.put(hold, Boolean.TRUE);
+            return result;
+        });
+    }
+
+    void remove(QueuedHold hold) {
+        // an empty queue is dropped, so that books that were ever held do not keep a queue
+        queues.computeIfPresent(hold.getBookId(), (bookId, queue) -> {
+            queue.remove(hold);
+            return queue.isEmpty() ? null : queue;
+        });
+    }
+
+    void clear() {
+        queues.clear();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
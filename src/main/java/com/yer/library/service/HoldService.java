@@ -0,0 +1,275 @@
+package com.yer.library.service;
+
+import com.yer.library.model.Book;
+import com.yer.library.model.BookCopy;
+import com.yer.library.model.Hold;
+import com.yer.library.model.Member;
+import com.yer.library.model.dtos.QueuedHold;
+import com.yer.library.model.enums.BookCopyStatus;
+import com.yer.library.model.enums.HoldStatus;
+import com.yer.library.repository.BookAvailabilityRepository;
+import com.yer.library.repository.BookCopyRepository;
+import com.yer.library.repository.BookRepository;
+import com.yer.library.repository.HoldRepository;
+import com.yer.library.repository.MemberRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.transaction.Transactional;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static com.yer.library.config.CacheConfig.BOOK_COPIES;
+import static org.springframework.data.domain.PageRequest.ofSize;
+
+/**
+ * Places and cancels holds of members on books, and keeps returned copies for the next hold of their book.
+ * <p>
+ * The waiting holds of every book are queued in memory (see {@link HoldQueues}), so that a returned copy is kept for
+ * the next member in line without searching the holds table. The holds of members that are deleted, or lose their
+ * membership (it is cancelled or expires), are cancelled. Members whose membership has ended but has not been expired
+ * yet are skipped, but keep their place in the queue, in case their membership is renewed.
+ */
+@Service
+@Transactional
+@RequiredArgsConstructor
+@Slf4j
+public class HoldService {
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    private final HoldRepository holdRepository;
+    private final HoldQueues holdQueues;
+    private final BookRepository bookRepository;
+    private final BookCopyRepository bookCopyRepository;
+    private final BookAvailabilityRepository bookAvailabilityRepository;
+    private final MemberRepository memberRepository;
+    private final UniqueKeyLocks uniqueKeyLocks;
+
+    /**
+     * Fills the queues in memory with the waiting holds in the database, which is done when the application starts.
+     */
+    @PostConstruct
+    public void rebuildQueues() {
+        holdQueues.clear();
+        int holds = 0;
+        Long afterId = 0L;
+        List<QueuedHold> page;
+        do {
+            page = holdRepository.listWaitingAfter(afterId, ofSize(REBUILD_PAGE_SIZE));
+            page.forEach(holdQueues::add);
+            holds += page.size();
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getHoldId();
+            }
+        } while (page.size() == REBUILD_PAGE_SIZE);
+        log.info("Queued {} waiting holds", holds);
+    }
+
+    public Hold get(Long holdId) {
+        log.info("Fetching hold with ID: {}", holdId);
+        return holdRepository.findById(holdId).orElseThrow(
+                () -> new IllegalStateException("hold with ID " + holdId + " does not exist")
+        );
+    }
+
+    /**
+     * Lists the holds of a member (only the waiting and ready ones if {@code activeOnly} is set) after the given ID,
+     * ordered by ID.
+     */
+    public List<Hold> listByMember(Long memberId, boolean activeOnly, Long afterId, int limit) {
+        log.info("Listing holds of member with ID {} after ID {} (up to a limit of {})", memberId, afterId, limit);
+        return holdRepository.listByMemberAfter(memberId, activeOnly, afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    /**
+     * Lists the first waiting holds of a book, in the order of its queue.
+     */
+    public List<Hold> listWaitingByBook(Long bookId, int limit) {
+        log.info("Listing waiting holds of book with ID {} (up to a limit of {})", bookId, limit);
+        return holdRepository.listWaitingByBook(bookId, ofSize(limit));
+    }
+
+    /**
+     * Places a hold of a member on a book, at the end of the queue of the book. A member may only hold a book that has
+     * no available copies, and only once at a time.
+     */
+    public Hold place(Long bookId, Long memberId) {
+        log.info("Placing hold on book with ID {} for member with ID {}", bookId, memberId);
+        Member member = memberRepository.findById(memberId).orElseThrow(
+                () -> new IllegalStateException("member with ID " + memberId + " does not exist")
+        );
+        if (!member.canBorrowOn(LocalDate.now())) {
+            throw new IllegalStateException("member with ID " + memberId + " cannot borrow books");
+        }
+        Book book = bookRepository.findById(bookId).filter(b -> !b.getDeleted()).orElseThrow(
+                () -> new IllegalStateException("book with ID " + bookId + " does not exist")
+        );
+        bookAvailabilityRepository.findAvailableById(bookId).ifPresent(availability -> {
+            if (availability.getAvailableCopies() > 0) {
+                throw new IllegalStateException("book with ID " + bookId + " has available copies");
+            }
+        });
+
+        return uniqueKeyLocks.withLock("hold", bookId + ":" + memberId, () -> {
+            if (holdRepository.existsActive(bookId, memberId)) {
+                throw new IllegalStateException(
+                        "member with ID " + memberId + " already holds book with ID " + bookId
+                );
+            }
+            Hold hold;
+            try {
+                hold = holdRepository.saveAndFlush(new Hold(book, member, LocalDateTime.now()));
+            } catch (DataIntegrityViolationException e) {
+                // another application instance placed the same hold since the check above
+                if (UniqueKeyLocks.isViolationOf(e, "uk_holds_book_id_active_member_id")) {
+                    throw new IllegalStateException(
+                            "member with ID " + memberId + " already holds book with ID " + bookId, e
+                    );
+                }
+                throw e;
+            }
+            holdQueues.addAfterCommit(toQueuedHold(hold));
+            return hold;
+        });
+    }
+
+    /**
+     * Cancels a waiting or ready hold. The copy kept for a ready hold is kept for the next hold of its book instead,
+     * or put back on the shelf.
+     */
+    @CacheEvict(cacheNames = BOOK_COPIES, allEntries = true)
+    public Hold cancel(Long holdId) {
+        log.info("Cancelling hold with ID: {}", holdId);
+        Hold hold = get(holdId);
+        // the status is checked again by the updates, since a copy may have been kept for the hold since it was read
+        if (holdRepository.cancel(holdId, HoldStatus.WAITING) == 1) {
+            holdQueues.removeAfterCommit(toQueuedHold(hold));
+        } else if (holdRepository.cancel(holdId, HoldStatus.READY) == 1) {
+            holdRepository.findBookCopyById(holdId).ifPresent(this::release);
+        } else {
+            throw new IllegalStateException("hold with ID " + holdId + " is not active");
+        }
+        return get(holdId);
+    }
+
+    /**
+     * Keeps a book copy that is taken back for the first waiting hold of its book of a member that may borrow, and
+     * returns whether there was one. The copy itself is not changed.
+     */
+    public boolean assign(BookCopy bookCopy) {
+        Long bookId = bookCopy.getBook().getId();
+        LocalDate today = LocalDate.now();
+        for (QueuedHold queuedHold : holdQueues.queue(bookId)) {
+            Optional<Member> member = memberRepository.findById(queuedHold.getMemberId());
+            if (!member.isPresent() || member.get().getDeleted()) {
+                // a deleted member never borrows again, so their hold is not checked again at every return
+                holdRepository.cancelWaiting(queuedHold.getHoldId());
+                holdQueues.removeAfterCommit(queuedHold);
+                continue;
+            }
+            if (!member.get().canBorrowOn(today)) {
+                continue;
+            }
+            // the hold may have been cancelled, or have been given another copy, since it was queued
+            if (holdRepository.markReady(queuedHold.getHoldId(), bookCopy) == 1) {
+                holdQueues.removeAfterCommit(queuedHold);
+                log.info("Keeping book copy with ID {} for hold with ID {}", bookCopy.getId(), queuedHold.getHoldId());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lends the book copy with the given ID, if it is kept for a hold of the member with the given ID, and returns
+     * whether it was.
+     */
+    public boolean collect(Long bookCopyId, Long memberId) {
+        Optional<Hold> hold = holdRepository.findReadyByBookCopyId(bookCopyId)
+                .filter(h -> h.getMember().getId().equals(memberId) && !h.getBookCopy().getDeleted());
+        if (!hold.isPresent() || holdRepository.markCollected(hold.get().getId()) == 0) {
+            return false;
+        }
+        if (bookCopyRepository.collect(bookCopyId) == 0) {
+            throw new IllegalStateException("book copy with ID " + bookCopyId + " is not kept for a hold");
+        }
+        log.info("Book copy with ID {} collected for hold with ID {}", bookCopyId, hold.get().getId());
+        return true;
+    }
+
+    /**
+     * Puts the ready holds that the given book copies (which are being deleted) are kept for back in the queues of
+     * their books, at the place they had, so that they are given the next returned copy instead.
+     */
+    public void requeue(Collection<BookCopy> bookCopies) {
+        List<Long> bookCopyIds = bookCopies.stream()
+                .filter(bookCopy -> bookCopy.getStatus() == BookCopyStatus.ON_HOLD)
+                .map(BookCopy::getId)
+                .collect(Collectors.toList());
+        if (bookCopyIds.isEmpty()) {
+            return;
+        }
+        for (Hold hold : holdRepository.listReadyByBookCopyIds(bookCopyIds)) {
+            if (holdRepository.markWaiting(hold.getId()) == 1) {
+                holdQueues.addAfterCommit(toQueuedHold(hold));
+                log.info("Hold with ID {} is waiting again, as its book copy was deleted", hold.getId());
+            }
+        }
+    }
+
+    /**
+     * Cancels the waiting and ready holds of the given books, which are being deleted.
+     */
+    public void cancelByBooks(Collection<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        List<QueuedHold> waitingHolds = holdRepository.listWaitingByBookIds(bookIds);
+        int cancelled = holdRepository.cancelByBookIds(bookIds);
+        waitingHolds.forEach(holdQueues::removeAfterCommit);
+        log.info("Cancelled {} holds of {} deleted books", cancelled, bookIds.size());
+    }
+
+    /**
+     * Cancels the waiting and ready holds of the given members, which are being deleted or lose their membership. The
+     * copies kept for their ready holds are kept for the next holds of their books instead, or put back on the shelf.
+     */
+    @CacheEvict(cacheNames = BOOK_COPIES, allEntries = true)
+    public void cancelByMembers(Collection<Long> memberIds) {
+        if (memberIds.isEmpty()) {
+            return;
+        }
+        List<QueuedHold> waitingHolds = holdRepository.listWaitingByMemberIds(memberIds);
+        List<Hold> readyHolds = holdRepository.listReadyByMemberIds(memberIds);
+        int cancelled = holdRepository.cancelByMemberIds(memberIds);
+        waitingHolds.forEach(holdQueues::removeAfterCommit);
+        readyHolds.forEach(hold -> release(hold.getBookCopy()));
+        log.info("Cancelled {} holds of {} members", cancelled, memberIds.size());
+    }
+
+    /**
+     * Keeps a book copy that was kept for a cancelled hold for the next hold of its book, or puts it back on the shelf.
+     */
+    private void release(BookCopy bookCopy) {
+        if (!bookCopy.getDeleted() && assign(bookCopy)) {
+            return;
+        }
+        bookCopyRepository.changeStatus(bookCopy.getId(), BookCopyStatus.ON_HOLD, BookCopyStatus.AVAILABLE);
+        // a copy that was deleted while it was kept is not counted anymore
+        if (!bookCopy.getDeleted()) {
+            bookAvailabilityRepository.adjust(bookCopy.getBook().getId(), 1, 0);
+        }
+    }
+
+    private static QueuedHold toQueuedHold(Hold hold) {
+        return new QueuedHold(hold.getId(), hold.getBook().getId(), hold.getMember().getId(), hold.getPlacedAt());
+    }
+}
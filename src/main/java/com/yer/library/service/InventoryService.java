@@ -0,0 +1,191 @@
+package com.yer.library.service;
+
+import com.yer.library.model.Book;
+import com.yer.library.model.BookCopy;
+import com.yer.library.model.InventoryKey;
+import com.yer.library.model.InventorySummary;
+import com.yer.library.model.Location;
+import com.yer.library.model.dtos.InventoryLine;
+import com.yer.library.model.dtos.InventoryStatistics;
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import com.yer.library.repository.BookCopyRepository;
+import com.yer.library.repository.InventorySummaryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the {@link InventorySummary}: the number and total value of the copies that have not been deleted, per genre,
+ * type and decade of publication of their book and per floor. The inventory statistics are summed ({@code GROUP BY})
+ * from these rows, of which there are at most a few per genre, type, decade and floor, however many copies there are.
+ * <p>
+ * The rows are changed in the same transaction as the copies and books they count, after them, in the order of their
+ * keys. A row is inserted the first time a copy is counted under its key, by the same statement that adds to existing
+ * rows (an upsert), so that no lock but the row's own is taken. A copy that is added to a book while the book itself is
+ * changed may be counted under the previous genre, type, decade or value of the book; the rows are counted again from
+ * the copies every night (see {@code library.inventory.rebuild-cron}) to correct that.
+ */
+@Service
+@Transactional
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryService {
+    private final InventorySummaryRepository inventorySummaryRepository;
+    private final BookCopyRepository bookCopyRepository;
+
+    public InventoryStatistics getStatistics() {
+        List<InventoryLine> floors = inventorySummaryRepository.sumByFloor();
+        floors.forEach(line -> {
+            if (line.getGroup() instanceof Number && ((Number) line.getGroup()).shortValue() == InventoryKey.UNKNOWN_FLOOR) {
+                line.setGroup(null);
+            }
+        });
+        return new InventoryStatistics(
+                inventorySummaryRepository.sumByGenre(),
+                inventorySummaryRepository.sumByType(),
+                inventorySummaryRepository.sumByDecade(),
+                floors
+        );
+    }
+
+    /**
+     * Adds book copies that have not been deleted to the summary, or removes them from it with {@code sign} -1. The
+     * copies should be written first.
+     */
+    public void count(Collection<BookCopy> bookCopies, int sign) {
+        Map<InventoryKey, long[]> changes = new TreeMap<>();
+        for (BookCopy bookCopy : bookCopies) {
+            Valuation valuation = Valuation.of(bookCopy.getBook());
+            change(changes, valuation.at(bookCopy.getLocation()), sign, (long) sign * valuation.getValue());
+        }
+        apply(changes);
+    }
+
+    public void count(BookCopy bookCopy, int sign) {
+        count(Collections.singleton(bookCopy), sign);
+    }
+
+    /**
+     * Moves a book copy that was moved to another book or floor (if it was) from the summary row of its previous book
+     * and floor to the row of its current book and floor.
+     */
+    public void move(Valuation previousValuation, short previousFloor, BookCopy bookCopy) {
+        Valuation valuation = Valuation.of(bookCopy.getBook());
+        Map<InventoryKey, long[]> changes = new TreeMap<>();
+        change(changes, previousValuation.at(previousFloor), -1, -previousValuation.getValue());
+        change(changes, valuation.at(InventoryKey.floorOf(bookCopy.getLocation())), 1, valuation.getValue());
+        if (!isEmpty(changes)) {
+            // the copy is written before the summary rows, so that it is locked first
+            bookCopyRepository.flush();
+            apply(changes);
+        }
+    }
+
+    /**
+     * Moves the copies of a book of which the genre, type, year or value was changed (if any was) from the summary rows
+     * of its previous valuation to the rows of its current valuation. The book should be written first.
+     */
+    public void revalue(Long bookId, Valuation previousValuation, Valuation valuation) {
+        if (previousValuation.equals(valuation)) {
+            return;
+        }
+        Map<InventoryKey, long[]> changes = new TreeMap<>();
+        for (BookCopy bookCopy : bookCopyRepository.findActiveByBookIdsForUpdate(Collections.singleton(bookId))) {
+            short floor = InventoryKey.floorOf(bookCopy.getLocation());
+            change(changes, previousValuation.at(floor), -1, -previousValuation.getValue());
+            change(changes, valuation.at(floor), 1, valuation.getValue());
+        }
+        apply(changes);
+    }
+
+    /**
+     * Counts all summary rows again from the copies and their books, to correct counts that drifted.
+     * <p>
+     * The rows are locked before the copies are counted, so a transaction that changed copies and is still to change
+     * a row waits until the rows are counted again, and then changes the counted row (as its copies were not counted
+     * yet); a transaction that already changed a row has committed when the lock is granted, and its copies are
+     * counted.
+     */
+    @Scheduled(cron = "${library.inventory.rebuild-cron:0 0 3 * * *}")
+    public void rebuild() {
+        log.info("Counting the inventory summary again from the book copies");
+        Map<InventoryKey, InventorySummary> stale = new HashMap<>();
+        inventorySummaryRepository.findAllForUpdate().forEach(summary -> stale.put(summary.getId(), summary));
+
+        int changed = 0;
+        for (Object[] row : inventorySummaryRepository.countFromCopies()) {
+            InventoryKey key = new InventoryKey(
+                    BookGenre.valueOf((String) row[0]),
+                    BookType.valueOf((String) row[1]),
+                    ((Number) row[2]).shortValue(),
+                    ((Number) row[3]).shortValue()
+            );
+            long copies = ((Number) row[4]).longValue();
+            long value = ((Number) row[5]).longValue();
+            InventorySummary summary = stale.remove(key);
+            if (summary == null) {
+                inventorySummaryRepository.save(new InventorySummary(key, copies, value));
+                changed++;
+            } else if (summary.getCopies() != copies || summary.getValue() != value) {
+                summary.setCopies(copies);
+                summary.setValue(value);
+                changed++;
+            }
+        }
+        inventorySummaryRepository.deleteAll(stale.values());
+        log.info("Counted the inventory summary again: {} rows changed, {} rows removed", changed, stale.size());
+    }
+
+    private void apply(Map<InventoryKey, long[]> changes) {
+        changes.forEach((key, change) -> {
+            if (change[0] == 0 && change[1] == 0) {
+                return;
+            }
+            inventorySummaryRepository.upsert(key, change[0], change[1]);
+        });
+    }
+
+    private static void change(Map<InventoryKey, long[]> changes, InventoryKey key, long copies, long value) {
+        long[] change = changes.computeIfAbsent(key, k -> new long[2]);
+        change[0] += copies;
+        change[1] += value;
+    }
+
+    private static boolean isEmpty(Map<InventoryKey, long[]> changes) {
+        return changes.values().stream().allMatch(change -> change[0] == 0 && change[1] == 0);
+    }
+
+    /**
+     * The columns of a book that its copies are summarized by, to compare the book before and after a change.
+     */
+    @Value
+    public static class Valuation {
+        BookGenre genre;
+        BookType type;
+        short decade;
+        int value;
+
+        public static Valuation of(Book book) {
+            return new Valuation(book.getGenre(), book.getType(), InventoryKey.decadeOf(book.getYear()), book.getValue());
+        }
+
+        public InventoryKey at(Location location) {
+            return at(InventoryKey.floorOf(location));
+        }
+
+        public InventoryKey at(short floor) {
+            return new InventoryKey(genre, type, decade, floor);
+        }
+    }
+}
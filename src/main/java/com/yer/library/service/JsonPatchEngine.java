@@ -0,0 +1,140 @@
+package com.yer.library.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.github.fge.jackson.jsonpointer.JsonPointer;
+import com.github.fge.jackson.jsonpointer.JsonPointerException;
+import com.github.fge.jackson.jsonpointer.TokenResolver;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchException;
+import com.yer.library.model.dtos.jsonviews.View;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Applies JSON patches to DTOs. Only the properties in {@link View.PatchView} are taken from the patched document.
+ * <p>
+ * The reader and writer for each DTO type are built once and shared between threads; they are immutable, so unlike
+ * a reconfigured {@link ObjectMapper} they cannot leak a view into other requests. Patches that only add, replace or
+ * remove top-level properties (which covers almost all PATCH requests) are applied directly to the DTO, by
+ * deserializing just the patched values into it. Any other patch is applied to the JSON tree of the whole DTO, which
+ * is then deserialized into a new DTO.
+ * <p>
+ * The operations of a patch are read from its JSON tree (a patch serializes itself, see {@link JsonSerializable}),
+ * since the API of json-patch offers no other way to inspect a patch.
+ */
+@Component
+public class JsonPatchEngine {
+    private final ObjectMapper mapper = JsonMapper.builder()
+            .findAndAddModules()
+            .build();
+    private final ConcurrentMap<Class<?>, PatchPlan> plans = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the DTO with the patch applied, which may be the given DTO updated in place.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T apply(JsonPatch jsonPatch, T dto) throws JsonPatchException, JsonProcessingException {
+        Class<T> type = (Class<T>) dto.getClass();
+        PatchPlan plan = plans.computeIfAbsent(type, this::createPlan);
+
+        ObjectNode changes = plan.toChanges(jsonPatch);
+        if (changes != null) {
+            return plan.reader.withValueToUpdate(dto).treeToValue(changes, type);
+        }
+
+        JsonNode patched = jsonPatch.apply(plan.toTree(dto));
+        return plan.reader.treeToValue(patched, type);
+    }
+
+    private PatchPlan createPlan(Class<?> type) {
+        JavaType javaType = mapper.constructType(type);
+        Set<String> properties = mapper.getSerializationConfig().introspect(javaType)
+                .findProperties().stream()
+                .filter(BeanPropertyDefinition::couldSerialize)
+                .map(BeanPropertyDefinition::getName)
+                .collect(Collectors.toSet());
+        return new PatchPlan(
+                mapper.readerFor(javaType).withView(View.PatchView.class),
+                mapper.writerFor(javaType),
+                properties
+        );
+    }
+
+    private class PatchPlan {
+        private final ObjectReader reader;
+        private final ObjectWriter writer;
+        // the top-level properties of the JSON tree of the DTO
+        private final Set<String> properties;
+
+        PatchPlan(ObjectReader reader, ObjectWriter writer, Set<String> properties) {
+            this.reader = reader;
+            this.writer = writer;
+            this.properties = properties;
+        }
+
+        /**
+         * Collects the new values of the properties changed by the operations, or returns {@code null} if the
+         * operations cannot be applied property by property.
+         */
+        ObjectNode toChanges(JsonPatch jsonPatch) {
+            ObjectNode changes = mapper.createObjectNode();
+            for (JsonNode operation : mapper.<ArrayNode>valueToTree(jsonPatch)) {
+                String op = operation.path("op").asText();
+                boolean remove = "remove".equals(op);
+                if (!remove && !"add".equals(op) && !"replace".equals(op)) {
+                    return null;
+                }
+                JsonPointer path;
+                try {
+                    path = new JsonPointer(operation.path("path").asText());
+                } catch (JsonPointerException e) {
+                    return null;
+                }
+                // a single reference token
+                Iterator<TokenResolver<JsonNode>> tokens = path.iterator();
+                if (!tokens.hasNext()) {
+                    return null;
+                }
+                String property = tokens.next().getToken().getRaw();
+                // a property changed more than once is left to the JSON patch implementation, which validates the
+                // order of the operations
+                if (tokens.hasNext() || !properties.contains(property) || changes.has(property)) {
+                    return null;
+                }
+                changes.set(property, remove ? NullNode.getInstance() : operation.get("value"));
+            }
+            return changes;
+        }
+
+        JsonNode toTree(Object dto) throws JsonProcessingException {
+            try (TokenBuffer buffer = new TokenBuffer(mapper, false)) {
+                writer.writeValue(buffer, dto);
+                return reader.readTree(buffer.asParser());
+            } catch (JsonProcessingException e) {
+                throw e;
+            } catch (IOException e) {
+                // cannot happen, the buffer is in memory
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
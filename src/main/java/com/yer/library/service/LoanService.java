@@ -0,0 +1,207 @@
+package com.yer.library.service;
+
+import com.yer.library.model.BookCopy;
+import com.yer.library.model.Loan;
+import com.yer.library.model.Member;
+import com.yer.library.model.dtos.BatchReport;
+import com.yer.library.model.enums.BookCopyStatus;
+import com.yer.library.repository.BookAvailabilityRepository;
+import com.yer.library.repository.BookCopyRepository;
+import com.yer.library.repository.LoanRepository;
+import com.yer.library.repository.MemberRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.yer.library.config.CacheConfig.BOOK_COPIES;
+import static org.springframework.data.domain.PageRequest.ofSize;
+
+/**
+ * Lends book copies to members, and takes them back.
+ * <p>
+ * A book copy is lent by a conditional update of its status (see {@link BookCopyRepository#checkOut}) instead of
+ * reading the status and then writing it, so that two desks lending the same copy at the same time cannot both
+ * succeed: the second update waits for the first to commit, and then no longer finds the copy available. A unique
+ * index on the active loans of a copy guards the same invariant in the database.
+ * <p>
+ * A returned copy is kept for the next hold of its book, if there is one (see {@link HoldService#assign}), and can then
+ * only be lent to the member of that hold.
+ */
+@Service
+@Transactional
+@RequiredArgsConstructor
+@Slf4j
+public class LoanService {
+    private final LoanRepository loanRepository;
+    private final BookCopyRepository bookCopyRepository;
+    private final BookAvailabilityRepository bookAvailabilityRepository;
+    private final MemberRepository memberRepository;
+    private final HoldService holdService;
+
+    public Loan get(Long loanId) {
+        log.info("Fetching loan with ID: {}", loanId);
+        return loanRepository.findById(loanId).orElseThrow(
+                () -> new IllegalStateException("loan with ID " + loanId + " does not exist")
+        );
+    }
+
+    /**
+     * Lists the loans of a member (only the active ones if {@code activeOnly} is set) after the given ID, ordered by
+     * ID.
+     */
+    public List<Loan> listByMember(Long memberId, boolean activeOnly, Long afterId, int limit) {
+        log.info("Listing loans of member with ID {} after ID {} (up to a limit of {})", memberId, afterId, limit);
+        return loanRepository.listByMemberAfter(memberId, activeOnly, afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    @CacheEvict(cacheNames = BOOK_COPIES, key = "#bookCopyId")
+    public Loan checkOut(Long bookCopyId, Long memberId) {
+        log.info("Lending book copy with ID {} to member with ID {}", bookCopyId, memberId);
+        Member member = getBorrower(memberId);
+
+        boolean lentFromShelf = bookCopyRepository.checkOut(bookCopyId) == 1;
+        if (!lentFromShelf && !holdService.collect(bookCopyId, memberId)) {
+            throw new IllegalStateException(
+                    unavailableReason(bookCopyId, bookCopyRepository.findById(bookCopyId).orElse(null))
+            );
+        }
+        BookCopy bookCopy = bookCopyRepository.findById(bookCopyId).orElseThrow(
+                () -> new IllegalStateException("book copy with ID " + bookCopyId + " does not exist")
+        );
+        // a copy kept for a hold was not counted as available
+        if (lentFromShelf) {
+            bookAvailabilityRepository.adjust(bookCopy.getBook().getId(), -1, 0);
+        }
+
+        return loanRepository.save(new Loan(bookCopy, member, LocalDate.now()));
+    }
+
+    /**
+     * Lends all book copies of a basket to a member in a single transaction, and reports per book copy whether it was
+     * lent. A book copy that is not available only fails itself; a member that cannot borrow fails the whole basket.
+     */
+    @CacheEvict(cacheNames = BOOK_COPIES, allEntries = true)
+    public BatchReport<Loan> checkOutAll(List<Long> bookCopyIds, Long memberId) {
+        log.info("Lending {} book copies to member with ID {}", bookCopyIds.size(), memberId);
+        Member member = getBorrower(memberId);
+        BatchReport<Loan> report = new BatchReport<>(bookCopyIds.size());
+
+        // the copies are lent in ID order, so that two baskets with the same copies lock their rows in the same order,
+        // and cannot deadlock by each waiting for a row the other has locked
+        List<Integer> indexes = IntStream.range(0, bookCopyIds.size())
+                .filter(i -> bookCopyIds.get(i) != null)
+                .boxed()
+                .sorted(Comparator.comparing(bookCopyIds::get))
+                .collect(Collectors.toList());
+        List<Integer> lentIndexes = new ArrayList<>(indexes.size());
+        List<Integer> shelfIndexes = new ArrayList<>(indexes.size());
+        for (Integer index : indexes) {
+            if (bookCopyRepository.checkOut(bookCopyIds.get(index)) == 1) {
+                lentIndexes.add(index);
+                shelfIndexes.add(index);
+            } else if (holdService.collect(bookCopyIds.get(index), memberId)) {
+                lentIndexes.add(index);
+            }
+        }
+
+        Map<Long, BookCopy> bookCopies = bookCopyRepository.findAllById(
+                bookCopyIds.stream().filter(Objects::nonNull).collect(Collectors.toSet())
+        ).stream().collect(Collectors.toMap(BookCopy::getId, Function.identity()));
+        // like the copies, the counters of their books are changed in ID order; copies kept for holds were not counted
+        // as available
+        Map<Long, Integer> lentPerBook = new TreeMap<>();
+        for (Integer index : shelfIndexes) {
+            lentPerBook.merge(bookCopies.get(bookCopyIds.get(index)).getBook().getId(), 1, Integer::sum);
+        }
+        lentPerBook.forEach((bookId, lent) -> bookAvailabilityRepository.adjust(bookId, -lent, 0));
+
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < bookCopyIds.size(); i++) {
+            Long bookCopyId = bookCopyIds.get(i);
+            if (bookCopyId == null) {
+                report.fail(i, Collections.singletonList("book copy ID is missing"));
+            } else if (lentIndexes.contains(i)) {
+                report.succeed(i, loanRepository.save(new Loan(bookCopies.get(bookCopyId), member, today)));
+            } else {
+                report.fail(i, Collections.singletonList(unavailableReason(bookCopyId, bookCopies.get(bookCopyId))));
+            }
+        }
+
+        log.info("Lent {} of {} book copies", report.getSucceeded(), bookCopyIds.size());
+        return report;
+    }
+
+    /**
+     * Takes back a lent book copy: ends its active loan, and keeps it for the next hold of its book, or makes it
+     * available again.
+     */
+    @CacheEvict(cacheNames = BOOK_COPIES, key = "#bookCopyId")
+    public Loan returnBookCopy(Long bookCopyId) {
+        log.info("Returning book copy with ID: {}", bookCopyId);
+        Loan loan = loanRepository.findActiveByBookCopyId(bookCopyId).orElseThrow(
+                () -> new IllegalStateException("book copy with ID " + bookCopyId + " is not on loan")
+        );
+
+        LocalDate today = LocalDate.now();
+        // another desk may have taken the copy back since the loan was read
+        if (loanRepository.markReturned(loan.getId(), today) == 0) {
+            throw new IllegalStateException("book copy with ID " + bookCopyId + " is not on loan");
+        }
+        BookCopy bookCopy = loan.getBookCopy();
+        loan.setReturnDate(today);
+        if (!bookCopy.getDeleted() && holdService.assign(bookCopy)) {
+            bookCopyRepository.changeStatus(bookCopyId, BookCopyStatus.ON_LOAN, BookCopyStatus.ON_HOLD);
+            bookCopy.setStatus(BookCopyStatus.ON_HOLD);
+            return loan;
+        }
+
+        bookCopyRepository.checkIn(bookCopyId);
+        // a copy that was deleted while it was lent is not counted anymore
+        if (!bookCopy.getDeleted()) {
+            bookAvailabilityRepository.adjust(bookCopy.getBook().getId(), 1, 0);
+        }
+        bookCopy.setStatus(BookCopyStatus.AVAILABLE);
+        return loan;
+    }
+
+    /**
+     * Gets the member with the given ID, if the member may borrow book copies: the member must not have been deleted,
+     * and must have an active membership.
+     */
+    private Member getBorrower(Long memberId) {
+        Member member = memberRepository.findById(memberId).orElseThrow(
+                () -> new IllegalStateException("member with ID " + memberId + " does not exist")
+        );
+        if (member.getDeleted()) {
+            throw new IllegalStateException("member with ID " + memberId + " has been deleted");
+        }
+        if (member.getMembership() == null || !member.getMembership().isActiveOn(LocalDate.now())) {
+            throw new IllegalStateException("member with ID " + memberId + " has no active membership");
+        }
+        return member;
+    }
+
+    private static String unavailableReason(Long bookCopyId, BookCopy bookCopy) {
+        if (bookCopy == null) {
+            return "book copy with ID " + bookCopyId + " does not exist";
+        }
+        if (bookCopy.getDeleted()) {
+            return "book copy with ID " + bookCopyId + " has been deleted";
+        }
+        return "book copy with ID " + bookCopyId + " is not available";
+    }
+}
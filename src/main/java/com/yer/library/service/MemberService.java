@@ -1,25 +1,38 @@
 package com.yer.library.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.github.fge.jsonpatch.JsonPatch;
 import com.github.fge.jsonpatch.JsonPatchException;
 import com.yer.library.model.Member;
 import com.yer.library.model.Membership;
+import com.yer.library.model.dtos.BatchPatch;
+import com.yer.library.model.dtos.BatchReport;
+import com.yer.library.model.dtos.BatchResult;
 import com.yer.library.model.dtos.MemberDTO;
-import com.yer.library.model.dtos.jsonviews.View;
+import com.yer.library.model.dtos.MemberSummary;
+import com.yer.library.model.dtos.VersionStamp;
 import com.yer.library.model.dtos.mappers.MemberMapper;
+import com.yer.library.repository.Fieldset;
+import com.yer.library.repository.FieldsetRepository;
 import com.yer.library.repository.MemberRepository;
 import com.yer.library.repository.MembershipRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
 import java.util.Collection;
-
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.yer.library.config.CacheConfig.*;
+import static com.yer.library.service.BatchExecutor.*;
+import static com.yer.library.service.OptimisticLocking.checkVersion;
 import static java.lang.Boolean.TRUE;
 import static org.springframework.data.domain.PageRequest.of;
 import static org.springframework.data.domain.PageRequest.ofSize;
@@ -32,11 +45,14 @@ public class MemberService implements CrudService<Member> {
     private final MemberRepository memberRepository;
     private final MembershipRepository membershipRepository;
 
-    private final ObjectMapper mapper = JsonMapper.builder()
-            .findAndAddModules()
-            .build();
+    private final JsonPatchEngine jsonPatchEngine;
+    private final BatchExecutor batchExecutor;
+    private final UniqueKeyLocks uniqueKeyLocks;
+    private final FieldsetRepository fieldsetRepository;
+    private final HoldService holdService;
 
     @Override
+    @Cacheable(cacheNames = MEMBERS, key = "#memberId")
     public Member get(Long memberId) {
         log.info("Fetching member with ID: {}", memberId);
         Member member = memberRepository.findById(memberId).orElseThrow(
@@ -51,6 +67,15 @@ public class MemberService implements CrudService<Member> {
         return member;
     }
 
+    @Override
+    public BatchResult<Member> getAll(List<Long> memberIds) {
+        log.info("Fetching {} members by ID", memberIds.size());
+        if (memberIds.isEmpty()) {
+            return new BatchResult<>(Collections.emptyList(), Collections.emptyList());
+        }
+        return BatchResult.of(memberIds, memberRepository.findAvailableByIds(memberIds), Member::getId);
+    }
+
     @Override
     public Collection<Member> list(int limit) {
         log.info("Listing all members (up to a limit of {})", limit);
@@ -64,16 +89,126 @@ public class MemberService implements CrudService<Member> {
         return memberRepository.listByMembership(membershipId, ofSize(limit));
     }
 
+    @Override
+    public List<Member> list(Long afterId, int limit) {
+        log.info("Listing members after ID {} (up to a limit of {})", afterId, limit);
+
+        return memberRepository.listAvailableAfter(afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    public List<Member> listByMembership(Long membershipId, Long afterId, int limit) {
+        log.info("Listing members for membership with ID {} after ID {} (up to a limit of {})", membershipId, afterId, limit);
+
+        return memberRepository.listByMembershipAfter(membershipId, afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    /**
+     * Lists members like {@link #list(Long, int)}, as read-only summaries instead of managed entities.
+     */
+    public List<MemberSummary> listSummaries(Long afterId, int limit) {
+        log.info("Listing member summaries after ID {} (up to a limit of {})", afterId, limit);
+
+        return memberRepository.listSummariesAfter(afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    /**
+     * Lists members like {@link #listByMembership(Long, Long, int)}, as read-only summaries instead of managed
+     * entities.
+     */
+    public List<MemberSummary> listSummariesByMembership(Long membershipId, Long afterId, int limit) {
+        log.info("Listing member summaries for membership with ID {} after ID {} (up to a limit of {})", membershipId, afterId, limit);
+
+        return memberRepository.listSummariesByMembershipAfter(membershipId, afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    /**
+     * Gets the requested fields of a member, reading only their columns (see {@link Fieldset}).
+     */
+    public Map<String, Object> get(Long memberId, Collection<String> fields) {
+        log.info("Fetching fields {} of member with ID: {}", fields, memberId);
+        return fieldsetRepository.findAvailableById(Fieldset.MEMBERS, fields, memberId).orElseThrow(
+                () -> new IllegalStateException("member with ID " + memberId + " does not exist")
+        );
+    }
+
+    /**
+     * Gets the requested fields of several members at once, like {@link #getAll(List)}.
+     */
+    public BatchResult<Map<String, Object>> getAll(List<Long> memberIds, Collection<String> fields) {
+        log.info("Fetching fields {} of {} members by ID", fields, memberIds.size());
+        if (memberIds.isEmpty()) {
+            return new BatchResult<>(Collections.emptyList(), Collections.emptyList());
+        }
+        return BatchResult.of(
+                memberIds,
+                fieldsetRepository.findAvailableByIds(Fieldset.MEMBERS, fields, memberIds),
+                row -> (Long) row.get(Fieldset.ID)
+        );
+    }
+
+    /**
+     * Lists the requested fields of members like {@link #list(Long, int)}, reading only their columns.
+     */
+    public List<Map<String, Object>> list(Long afterId, int limit, Collection<String> fields) {
+        log.info("Listing fields {} of members after ID {} (up to a limit of {})", fields, afterId, limit);
+        return fieldsetRepository.listAvailableAfter(Fieldset.MEMBERS, fields, afterId == null ? 0L : afterId, limit);
+    }
+
+    /**
+     * Lists the requested fields of members like {@link #listByMembership(Long, Long, int)},
+     * reading only their columns.
+     */
+    public List<Map<String, Object>> listByMembership(Long membershipId, Long afterId, int limit, Collection<String> fields) {
+        log.info("Listing fields {} of members for membership with ID {} after ID {} (up to a limit of {})", fields, membershipId, afterId, limit);
+        return fieldsetRepository.listAvailableByOwnerAfter(
+                Fieldset.MEMBERS, fields, "membership", membershipId, afterId == null ? 0L : afterId, limit
+        );
+    }
+
+    /**
+     * Gets the version of a member (and of its membership), without loading the member.
+     */
+    public VersionStamp getVersion(Long memberId) {
+        return memberRepository.findVersionById(memberId).orElseThrow(
+                () -> new IllegalStateException("member with ID " + memberId + " does not exist")
+        );
+    }
+
+    /**
+     * Lists the versions of the members of a page of {@link #listSummaries(Long, int)}.
+     */
+    public List<VersionStamp> listVersions(Long afterId, int limit) {
+        return memberRepository.listVersionsAfter(afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    /**
+     * Lists the versions of the members of a page of {@link #listSummariesByMembership(Long, Long, int)}.
+     */
+    public List<VersionStamp> listVersionsByMembership(Long membershipId, Long afterId, int limit) {
+        return memberRepository.listVersionsByMembershipAfter(membershipId, afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
     @Override
     public Member add(Member member) {
-        memberRepository.findByEmail(member.getEmailAddress()).ifPresent(existingMember -> {
-            if (existingMember.getDeleted()) {
-                member.setId(existingMember.getId());
-            } else {
-                throw new IllegalStateException("email " + member.getEmailAddress() + " already exists.");
+        return uniqueKeyLocks.withLock("email", member.getEmailAddress(), () -> {
+            memberRepository.findByEmail(member.getEmailAddress()).ifPresent(existingMember -> {
+                if (existingMember.getDeleted()) {
+                    member.setId(existingMember.getId());
+                    member.setVersion(existingMember.getVersion());
+                } else {
+                    throw new IllegalStateException("email " + member.getEmailAddress() + " already exists.");
+                }
+            });
+            try {
+                return memberRepository.saveAndFlush(member);
+            } catch (DataIntegrityViolationException e) {
+                // another application instance added a member with the same email address since the check above
+                if (UniqueKeyLocks.isViolationOf(e, "uk_members_active_email_address")) {
+                    throw new IllegalStateException("email " + member.getEmailAddress() + " already exists.", e);
+                }
+                throw e;
             }
         });
-        return memberRepository.save(member);
     }
 
     public Member add(Member member, Long membershipId) {
@@ -93,12 +228,19 @@ public class MemberService implements CrudService<Member> {
     }
 
     @Override
+    @RetryOnConflict
+    @CacheEvict(cacheNames = MEMBERS, key = "#memberId")
     public Member fullUpdate(Long memberId, Member updatedMember) {
         Member existingMember = memberRepository.findById(memberId).orElseThrow(
                 () -> new IllegalStateException(
                         "member with ID " + memberId + " does not exist"
                 )
         );
+        if (existingMember.getDeleted()) {
+            throw new IllegalStateException(
+                    "member with ID " + memberId + " has been deleted"
+            );
+        }
 
         if (!updatedMember.getEmailAddress().equals(existingMember.getEmailAddress())) {
             memberRepository.findByEmail(updatedMember.getEmailAddress()).ifPresent(memberWithSameEmail -> {
@@ -108,12 +250,16 @@ public class MemberService implements CrudService<Member> {
             });
         }
 
-        updatedMember.setId(memberId);
-        memberRepository.save(updatedMember);
+        checkVersion("member with ID " + memberId, existingMember.getVersion(), updatedMember.getVersion());
 
-        return updatedMember;
+        // only the columns that differ from the loaded state are updated
+        MemberMapper.INSTANCE.updateMember(updatedMember, existingMember);
+
+        return memberRepository.save(existingMember);
     }
 
+    @RetryOnConflict
+    @CacheEvict(cacheNames = MEMBERS, key = "#memberId")
     public Member fullUpdate(Long memberId, Member updatedMember, Long membershipId) {
         log.info("Updating member with ID: {}", memberId);
 
@@ -137,7 +283,20 @@ public class MemberService implements CrudService<Member> {
     }
 
     @Override
+    @RetryOnConflict
+    @CacheEvict(cacheNames = MEMBERS, key = "#memberId")
     public Member partialUpdate(Long memberId, JsonPatch jsonPatch) throws JsonPatchException, JsonProcessingException {
+        return partialUpdate(memberId, jsonPatch, null);
+    }
+
+    /**
+     * Applies the patch like {@link #partialUpdate(Long, JsonPatch)}, if the member is (still) at the expected
+     * version (or if no version is expected).
+     */
+    @RetryOnConflict
+    @CacheEvict(cacheNames = MEMBERS, key = "#memberId")
+    public Member partialUpdate(Long memberId, JsonPatch jsonPatch, Long expectedVersion)
+            throws JsonPatchException, JsonProcessingException {
         log.info("Updating member with ID: {}", memberId);
 
         Member existingMember = memberRepository.findById(memberId).orElseThrow(
@@ -150,25 +309,21 @@ public class MemberService implements CrudService<Member> {
                     "member with ID " + memberId + " has been deleted"
             );
         }
+        checkVersion("member with ID " + memberId, existingMember.getVersion(), expectedVersion);
 
         MemberDTO existingMemberDTO = MemberMapper.INSTANCE.toMemberDTO(existingMember);
 
-        // configure ObjectMapper instance to include JsonView in its deserializer config (View.PatchView.class in this case)
-        mapper.setConfig(mapper.getDeserializationConfig()
-                .withView(View.PatchView.class));
-
-        JsonNode existingMemberJson = mapper.convertValue(existingMemberDTO, JsonNode.class);
-        JsonNode patched = jsonPatch.apply(existingMemberJson);
-
-        MemberDTO updatedMemberDTO = mapper.treeToValue(patched, MemberDTO.class);
+        MemberDTO updatedMemberDTO = jsonPatchEngine.apply(jsonPatch, existingMemberDTO);
         Member updatedMember = MemberMapper.INSTANCE.toMember(updatedMemberDTO, membershipRepository);
 
-        updatedMember.setId(existingMember.getId());
+        MemberMapper.INSTANCE.updateMember(updatedMember, existingMember);
 
-        return memberRepository.save(updatedMember);
+        return memberRepository.save(existingMember);
     }
 
     @Override
+    @RetryOnConflict
+    @CacheEvict(cacheNames = MEMBERS, key = "#memberId")
     public Boolean delete(Long memberId) {
         log.info("Deleting member with ID: {}", memberId);
 
@@ -185,7 +340,58 @@ public class MemberService implements CrudService<Member> {
         }
         member.setDeleted(true);
         member.getMembership().getMembers().remove(member);
+        holdService.cancelByMembers(Collections.singleton(memberId));
 
         return TRUE;
     }
+
+    @Override
+    @CacheEvict(cacheNames = MEMBERS, allEntries = true)
+    public int delete(Collection<Long> memberIds) {
+        log.info("Deleting {} members", memberIds.size());
+        if (memberIds.isEmpty()) {
+            return 0;
+        }
+
+        int deleted = memberRepository.softDeleteByIds(memberIds);
+        holdService.cancelByMembers(memberIds);
+
+        return deleted;
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public BatchReport<Member> addAll(List<Member> members) {
+        log.info("Adding {} members", members.size());
+        return batchExecutor.execute(members, chunk -> uniqueKeyLocks.withLocks(
+                "email",
+                chunk.stream().map(Member::getEmailAddress).collect(Collectors.toList()),
+                () -> chunk.stream().map(member -> {
+                    // a retried member must not keep the ID it got in the rolled back transaction
+                    member.setId(null);
+                    member.setDeleted(false);
+                    member.setVersion(null);
+                    return add(member, member.getMembership() == null ? null : member.getMembership().getId());
+                }).collect(Collectors.toList())
+        ));
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    @CacheEvict(cacheNames = MEMBERS, allEntries = true)
+    public BatchReport<Member> fullUpdateAll(List<Member> members) {
+        log.info("Updating {} members", members.size());
+        return batchExecutor.execute(members, each(member -> member.getMembership() == null
+                ? fullUpdate(requireId(member.getId()), member)
+                : fullUpdate(requireId(member.getId()), member, member.getMembership().getId())
+        ));
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    @CacheEvict(cacheNames = MEMBERS, allEntries = true)
+    public BatchReport<Member> partialUpdateAll(List<BatchPatch> patches) {
+        log.info("Patching {} members", patches.size());
+        return batchExecutor.execute(patches, each(patching(this::partialUpdate)));
+    }
 }
@@ -0,0 +1,196 @@
+package com.yer.library.service;
+
+import com.yer.library.model.JobCheckpoint;
+import com.yer.library.model.dtos.MembershipExpiryStatistics;
+import com.yer.library.model.dtos.MembershipKey;
+import com.yer.library.repository.JobCheckpointRepository;
+import com.yer.library.repository.MemberRepository;
+import com.yer.library.repository.MembershipRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static com.yer.library.config.CacheConfig.MEMBERS;
+import static com.yer.library.config.CacheConfig.MEMBERSHIPS;
+import static org.springframework.data.domain.PageRequest.ofSize;
+
+/**
+ * Expires the memberships that have ended (their end date is before today): soft deletes them, cancels the holds of
+ * their members and detaches them, like {@link MembershipService#delete(java.util.Collection)} does. Unlike cancelled memberships, expired
+ * memberships are marked as such, and keep counting in the revenue of the dates they were active on (see
+ * {@link RevenueReportService}), so the revenue reports stay cached.
+ * <p>
+ * The job runs every night (see {@code library.membership-expiry.cron}), and works through the memberships in chunks
+ * of {@code library.membership-expiry.chunk-size}, in the order of their end date and ID, each chunk in its own
+ * transaction. Only the rows of one chunk are locked at a time, and the persistence context never holds more than one
+ * chunk. The position of the last chunk is written to the {@link JobCheckpoint} of the job in the same transaction as
+ * the chunk, so a run that is interrupted (by a restart, or a failed chunk) resumes after the last committed chunk the
+ * next time the job runs, with the cutoff date it started with.
+ */
+@Component
+@Slf4j
+public class MembershipExpiryJob {
+    static final String NAME = "membership-expiry";
+
+    private final MembershipRepository membershipRepository;
+    private final MemberRepository memberRepository;
+    private final HoldService holdService;
+    private final JobCheckpointRepository jobCheckpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheManager cacheManager;
+    private final int chunkSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    // the throughput of the last run in this application instance; only written by the thread that runs the job
+    private volatile long runExpired;
+    private volatile long runChunks;
+    private volatile long runNanos;
+
+    public MembershipExpiryJob(
+            MembershipRepository membershipRepository,
+            MemberRepository memberRepository,
+            HoldService holdService,
+            JobCheckpointRepository jobCheckpointRepository,
+            TransactionTemplate transactionTemplate,
+            CacheManager cacheManager,
+            @Value("${library.membership-expiry.chunk-size:1000}") int chunkSize
+    ) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("library.membership-expiry.chunk-size should be at least 1");
+        }
+        this.membershipRepository = membershipRepository;
+        this.memberRepository = memberRepository;
+        this.holdService = holdService;
+        this.jobCheckpointRepository = jobCheckpointRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.cacheManager = cacheManager;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(cron = "${library.membership-expiry.cron:0 30 2 * * *}")
+    public void run() {
+        run(LocalDate.now());
+    }
+
+    /**
+     * Expires the memberships that ended before the given date (or resumes the interrupted run), and returns whether
+     * the job ran; it does not run if it is already running in this application instance.
+     */
+    public boolean run(LocalDate today) {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Membership expiry is already running");
+            return false;
+        }
+        try {
+            JobCheckpoint checkpoint = transactionTemplate.execute(status -> start(today));
+            long startNanos = System.nanoTime();
+            runExpired = 0;
+            runChunks = 0;
+            runNanos = 0;
+            while (!checkpoint.isCompleted()) {
+                long processed = checkpoint.getProcessed();
+                checkpoint = transactionTemplate.execute(status -> expireChunk());
+                // the members are cached together with their membership
+                evict(MEMBERSHIPS);
+                evict(MEMBERS);
+                runExpired += checkpoint.getProcessed() - processed;
+                runChunks++;
+                runNanos = System.nanoTime() - startNanos;
+            }
+            log.info(
+                    "Expired {} memberships that ended before {} and detached {} members, in {} chunks ({} per second)",
+                    checkpoint.getProcessed(), checkpoint.getCutoffDate(), checkpoint.getDetached(), checkpoint.getChunks(),
+                    String.format("%.1f", perSecond(runExpired, runNanos))
+            );
+            return true;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Returns the progress of the current (or last) run, and the throughput of the last run in this application
+     * instance.
+     */
+    public MembershipExpiryStatistics getStatistics() {
+        JobCheckpoint checkpoint = jobCheckpointRepository.findById(NAME).orElse(null);
+        long chunks = runChunks;
+        long nanos = runNanos;
+        return new MembershipExpiryStatistics(
+                running.get(),
+                checkpoint == null ? null : checkpoint.getCutoffDate(),
+                checkpoint == null ? null : checkpoint.getStartedAt(),
+                checkpoint == null ? null : checkpoint.getUpdatedAt(),
+                checkpoint == null ? 0 : checkpoint.getChunks(),
+                checkpoint == null ? 0 : checkpoint.getProcessed(),
+                checkpoint == null ? 0 : checkpoint.getDetached(),
+                perSecond(runExpired, nanos),
+                chunks == 0 ? 0.0 : (double) TimeUnit.NANOSECONDS.toMillis(nanos) / chunks
+        );
+    }
+
+    /**
+     * Resumes the run of the checkpoint if it was interrupted, or starts a new run.
+     */
+    private JobCheckpoint start(LocalDate today) {
+        JobCheckpoint checkpoint = jobCheckpointRepository.findById(NAME).orElseGet(() -> new JobCheckpoint(NAME));
+        if (checkpoint.getVersion() != null && !checkpoint.isCompleted()) {
+            log.info(
+                    "Resuming membership expiry of memberships that ended before {}, after {} memberships",
+                    checkpoint.getCutoffDate(), checkpoint.getProcessed()
+            );
+            return checkpoint;
+        }
+        log.info("Expiring memberships that ended before {}", today);
+        checkpoint.restart(today, LocalDateTime.now());
+        return jobCheckpointRepository.save(checkpoint);
+    }
+
+    private JobCheckpoint expireChunk() {
+        JobCheckpoint checkpoint = jobCheckpointRepository.findById(NAME).orElseThrow(
+                () -> new IllegalStateException("checkpoint of job " + NAME + " does not exist")
+        );
+        List<MembershipKey> keys = membershipRepository.listExpiredAfter(
+                checkpoint.getCutoffDate(), checkpoint.getLastEndDate(), checkpoint.getLastId(), ofSize(chunkSize)
+        );
+        if (!keys.isEmpty()) {
+            List<Long> membershipIds = keys.stream().map(MembershipKey::getId).collect(Collectors.toList());
+            // a membership that was extended since it was listed is not expired
+            int expired = membershipRepository.expireByIds(membershipIds, checkpoint.getCutoffDate());
+            holdService.cancelByMembers(memberRepository.listIdsByDeletedMemberships(membershipIds));
+            int detached = memberRepository.detachFromDeletedMemberships(membershipIds);
+            MembershipKey last = keys.get(keys.size() - 1);
+            checkpoint.setLastEndDate(last.getEndDate());
+            checkpoint.setLastId(last.getId());
+            checkpoint.setProcessed(checkpoint.getProcessed() + expired);
+            checkpoint.setDetached(checkpoint.getDetached() + detached);
+            checkpoint.setChunks(checkpoint.getChunks() + 1);
+        }
+        checkpoint.setCompleted(keys.size() < chunkSize);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        // the updates above cleared the persistence context, so the checkpoint is merged (and its version checked)
+        return jobCheckpointRepository.save(checkpoint);
+    }
+
+    private void evict(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private static double perSecond(long count, long nanos) {
+        return nanos == 0 ? 0.0 : count * 1_000_000_000.0 / nanos;
+    }
+}
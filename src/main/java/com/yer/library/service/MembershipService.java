@@ -1,25 +1,39 @@
 package com.yer.library.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.github.fge.jsonpatch.JsonPatch;
 import com.github.fge.jsonpatch.JsonPatchException;
 import com.yer.library.model.Membership;
 import com.yer.library.model.MembershipType;
+import com.yer.library.model.dtos.BatchPatch;
+import com.yer.library.model.dtos.BatchReport;
+import com.yer.library.model.dtos.BatchResult;
+import com.yer.library.model.dtos.DateRange;
 import com.yer.library.model.dtos.MembershipDTO;
-import com.yer.library.model.dtos.jsonviews.View;
+import com.yer.library.model.dtos.MembershipSummary;
+import com.yer.library.model.dtos.VersionStamp;
 import com.yer.library.model.dtos.mappers.MembershipMapper;
+import com.yer.library.repository.Fieldset;
+import com.yer.library.repository.FieldsetRepository;
+import com.yer.library.repository.MemberRepository;
 import com.yer.library.repository.MembershipRepository;
 import com.yer.library.repository.MembershipTypeRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
+import static com.yer.library.config.CacheConfig.*;
+import static com.yer.library.service.BatchExecutor.*;
+import static com.yer.library.service.OptimisticLocking.checkVersion;
 import static java.lang.Boolean.TRUE;
 import static org.springframework.data.domain.PageRequest.ofSize;
 
@@ -30,12 +44,16 @@ import static org.springframework.data.domain.PageRequest.ofSize;
 public class MembershipService implements CrudService<Membership> {
     private final MembershipTypeRepository membershipTypeRepository;
     private final MembershipRepository membershipRepository;
+    private final MemberRepository memberRepository;
 
-    private final ObjectMapper mapper = JsonMapper.builder()
-            .findAndAddModules()
-            .build();
+    private final JsonPatchEngine jsonPatchEngine;
+    private final BatchExecutor batchExecutor;
+    private final FieldsetRepository fieldsetRepository;
+    private final RevenueReportService revenueReportService;
+    private final HoldService holdService;
 
     @Override
+    @Cacheable(cacheNames = MEMBERSHIPS, key = "#membershipId")
     public Membership get(Long membershipId) {
         log.info("Fetching membership with ID: {}", membershipId);
         Membership membership = membershipRepository.findById(membershipId).orElseThrow(
@@ -49,6 +67,15 @@ public class MembershipService implements CrudService<Membership> {
         return membership;
     }
 
+    @Override
+    public BatchResult<Membership> getAll(List<Long> membershipIds) {
+        log.info("Fetching {} memberships by ID", membershipIds.size());
+        if (membershipIds.isEmpty()) {
+            return new BatchResult<>(Collections.emptyList(), Collections.emptyList());
+        }
+        return BatchResult.of(membershipIds, membershipRepository.findAvailableByIds(membershipIds), Membership::getId);
+    }
+
     @Override
     public Collection<Membership> list(int limit) {
         log.info("Listing all memberships (up to a limit of {})", limit);
@@ -60,9 +87,106 @@ public class MembershipService implements CrudService<Membership> {
         return membershipRepository.listByMembershipType(membershipTypeId, ofSize(limit));
     }
 
+    @Override
+    public List<Membership> list(Long afterId, int limit) {
+        log.info("Listing memberships after ID {} (up to a limit of {})", afterId, limit);
+        return membershipRepository.listAvailableAfter(afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    public List<Membership> listByMembershipType(Long membershipTypeId, Long afterId, int limit) {
+        log.info("Listing memberships for membership type with ID {} after ID {} (up to a limit of {})", membershipTypeId, afterId, limit);
+        return membershipRepository.listByMembershipTypeAfter(membershipTypeId, afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    /**
+     * Lists memberships like {@link #list(Long, int)}, as read-only summaries instead of managed entities.
+     */
+    public List<MembershipSummary> listSummaries(Long afterId, int limit) {
+        log.info("Listing membership summaries after ID {} (up to a limit of {})", afterId, limit);
+        return membershipRepository.listSummariesAfter(afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    /**
+     * Lists memberships like {@link #listByMembershipType(Long, Long, int)}, as read-only summaries instead of managed
+     * entities.
+     */
+    public List<MembershipSummary> listSummariesByMembershipType(Long membershipTypeId, Long afterId, int limit) {
+        log.info("Listing membership summaries for membership type with ID {} after ID {} (up to a limit of {})", membershipTypeId, afterId, limit);
+        return membershipRepository.listSummariesByMembershipTypeAfter(membershipTypeId, afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    /**
+     * Gets the requested fields of a membership, reading only their columns (see {@link Fieldset}).
+     */
+    public Map<String, Object> get(Long membershipId, Collection<String> fields) {
+        log.info("Fetching fields {} of membership with ID: {}", fields, membershipId);
+        return fieldsetRepository.findAvailableById(Fieldset.MEMBERSHIPS, fields, membershipId).orElseThrow(
+                () -> new IllegalStateException("membership with ID " + membershipId + " does not exist")
+        );
+    }
+
+    /**
+     * Gets the requested fields of several memberships at once, like {@link #getAll(List)}.
+     */
+    public BatchResult<Map<String, Object>> getAll(List<Long> membershipIds, Collection<String> fields) {
+        log.info("Fetching fields {} of {} memberships by ID", fields, membershipIds.size());
+        if (membershipIds.isEmpty()) {
+            return new BatchResult<>(Collections.emptyList(), Collections.emptyList());
+        }
+        return BatchResult.of(
+                membershipIds,
+                fieldsetRepository.findAvailableByIds(Fieldset.MEMBERSHIPS, fields, membershipIds),
+                row -> (Long) row.get(Fieldset.ID)
+        );
+    }
+
+    /**
+     * Lists the requested fields of memberships like {@link #list(Long, int)}, reading only their columns.
+     */
+    public List<Map<String, Object>> list(Long afterId, int limit, Collection<String> fields) {
+        log.info("Listing fields {} of memberships after ID {} (up to a limit of {})", fields, afterId, limit);
+        return fieldsetRepository.listAvailableAfter(Fieldset.MEMBERSHIPS, fields, afterId == null ? 0L : afterId, limit);
+    }
+
+    /**
+     * Lists the requested fields of memberships like {@link #listByMembershipType(Long, Long, int)},
+     * reading only their columns.
+     */
+    public List<Map<String, Object>> listByMembershipType(Long membershipTypeId, Long afterId, int limit, Collection<String> fields) {
+        log.info("Listing fields {} of memberships for membership type with ID {} after ID {} (up to a limit of {})", fields, membershipTypeId, afterId, limit);
+        return fieldsetRepository.listAvailableByOwnerAfter(
+                Fieldset.MEMBERSHIPS, fields, "membershipType", membershipTypeId, afterId == null ? 0L : afterId, limit
+        );
+    }
+
+    /**
+     * Gets the version of a membership, without loading the membership.
+     */
+    public VersionStamp getVersion(Long membershipId) {
+        return membershipRepository.findVersionById(membershipId).orElseThrow(
+                () -> new IllegalStateException("membership with ID " + membershipId + " does not exist")
+        );
+    }
+
+    /**
+     * Lists the versions of the memberships of a page of {@link #listSummaries(Long, int)}.
+     */
+    public List<VersionStamp> listVersions(Long afterId, int limit) {
+        return membershipRepository.listVersionsAfter(afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
+    /**
+     * Lists the versions of the memberships of a page of {@link #listSummariesByMembershipType(Long, Long, int)}.
+     */
+    public List<VersionStamp> listVersionsByMembershipType(Long membershipTypeId, Long afterId, int limit) {
+        return membershipRepository.listVersionsByMembershipTypeAfter(membershipTypeId, afterId == null ? 0L : afterId, ofSize(limit));
+    }
+
     @Override
     public Membership add(Membership membership) {
-        return membershipRepository.save(membership);
+        Membership savedMembership = membershipRepository.save(membership);
+        revenueReportService.invalidateAfterCommit(savedMembership.getStartDate(), savedMembership.getEndDate());
+        return savedMembership;
     }
 
     // TODO might want to change the signature to Membership add(Membership Membership, String customerEmail, MembershipType membershipType)
@@ -82,18 +206,40 @@ public class MembershipService implements CrudService<Membership> {
         return add(membership);
     }
 
+    // members are cached together with their membership
     @Override
+    @RetryOnConflict
+    @Caching(evict = {
+            @CacheEvict(cacheNames = MEMBERSHIPS, key = "#membershipId"),
+            @CacheEvict(cacheNames = MEMBERS, allEntries = true)
+    })
     public Membership fullUpdate(Long membershipId, Membership membership) {
-        if (!membershipRepository.existsById(membershipId)) {
+        Membership existingMembership = membershipRepository.findById(membershipId).orElseThrow(
+                () -> new IllegalStateException(
+                        "membership with ID " + membershipId + " does not exist"
+                )
+        );
+        if (existingMembership.getDeleted()) {
             throw new IllegalStateException(
-                    "membership with ID " + membershipId + " does not exist"
+                    "membership with ID " + membershipId + " has been deleted"
             );
         }
-        membership.setId(membershipId);
 
-        return membershipRepository.save(membership);
+        checkVersion("membership with ID " + membershipId, existingMembership.getVersion(), membership.getVersion());
+        revenueReportService.invalidateAfterCommit(existingMembership.getStartDate(), existingMembership.getEndDate());
+
+        // only the columns that differ from the loaded state are updated
+        MembershipMapper.INSTANCE.updateMembership(membership, existingMembership);
+
+        revenueReportService.invalidateAfterCommit(existingMembership.getStartDate(), existingMembership.getEndDate());
+        return membershipRepository.save(existingMembership);
     }
 
+    @RetryOnConflict
+    @Caching(evict = {
+            @CacheEvict(cacheNames = MEMBERSHIPS, key = "#membershipId"),
+            @CacheEvict(cacheNames = MEMBERS, allEntries = true)
+    })
     public Membership fullUpdate(Long membershipId, Membership updatedMembership, Long membershipTypeId) {
         log.info("Updating membership with ID: {}", membershipId);
 
@@ -112,7 +258,26 @@ public class MembershipService implements CrudService<Membership> {
     }
 
     @Override
+    @RetryOnConflict
+    @Caching(evict = {
+            @CacheEvict(cacheNames = MEMBERSHIPS, key = "#membershipId"),
+            @CacheEvict(cacheNames = MEMBERS, allEntries = true)
+    })
     public Membership partialUpdate(Long membershipId, JsonPatch jsonPatch) throws JsonPatchException, JsonProcessingException {
+        return partialUpdate(membershipId, jsonPatch, null);
+    }
+
+    /**
+     * Applies the patch like {@link #partialUpdate(Long, JsonPatch)}, if the membership is (still) at the expected
+     * version (or if no version is expected).
+     */
+    @RetryOnConflict
+    @Caching(evict = {
+            @CacheEvict(cacheNames = MEMBERSHIPS, key = "#membershipId"),
+            @CacheEvict(cacheNames = MEMBERS, allEntries = true)
+    })
+    public Membership partialUpdate(Long membershipId, JsonPatch jsonPatch, Long expectedVersion)
+            throws JsonPatchException, JsonProcessingException {
         log.info("Updating membership with ID: {}", membershipId);
 
         Membership existingMembership = membershipRepository.findById(membershipId).orElseThrow(
@@ -125,25 +290,26 @@ public class MembershipService implements CrudService<Membership> {
                     "membership with ID " + membershipId + " has been deleted"
             );
         }
+        checkVersion("membership with ID " + membershipId, existingMembership.getVersion(), expectedVersion);
+        revenueReportService.invalidateAfterCommit(existingMembership.getStartDate(), existingMembership.getEndDate());
 
         MembershipDTO existingMembershipDTO = MembershipMapper.INSTANCE.toMembershipDTO(existingMembership);
 
-        // configure ObjectMapper instance to include JsonView in its deserializer config (View.PatchView.class in this case)
-        mapper.setConfig(mapper.getDeserializationConfig()
-                .withView(View.PatchView.class));
-
-        JsonNode existingMembershipJson = mapper.convertValue(existingMembershipDTO, JsonNode.class);
-        JsonNode patched = jsonPatch.apply(existingMembershipJson);
-
-        MembershipDTO updatedMembershipDTO = mapper.treeToValue(patched, MembershipDTO.class);
+        MembershipDTO updatedMembershipDTO = jsonPatchEngine.apply(jsonPatch, existingMembershipDTO);
         Membership updatedMembership = MembershipMapper.INSTANCE.toMembership(updatedMembershipDTO, membershipTypeRepository);
 
-        updatedMembership.setId(existingMembership.getId());
+        MembershipMapper.INSTANCE.updateMembership(updatedMembership, existingMembership);
 
-        return membershipRepository.save(updatedMembership);
+        revenueReportService.invalidateAfterCommit(existingMembership.getStartDate(), existingMembership.getEndDate());
+        return membershipRepository.save(existingMembership);
     }
 
     @Override
+    @RetryOnConflict
+    @Caching(evict = {
+            @CacheEvict(cacheNames = MEMBERSHIPS, key = "#membershipId"),
+            @CacheEvict(cacheNames = MEMBERS, allEntries = true)
+    })
     public Boolean delete(Long membershipId) {
         log.info("Deleting membership with ID: {}", membershipId);
 
@@ -159,9 +325,70 @@ public class MembershipService implements CrudService<Membership> {
             );
         }
         membership.setDeleted(true);
+        revenueReportService.invalidateAfterCommit(membership.getStartDate(), membership.getEndDate());
 
-        membership.getMembers().forEach(member -> member.setMembership(null));
+        holdService.cancelByMembers(memberRepository.listIdsByMembershipIds(Collections.singleton(membershipId)));
+        memberRepository.detachFromMemberships(Collections.singleton(membershipId));
 
         return TRUE;
     }
+
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = MEMBERSHIPS, allEntries = true),
+            @CacheEvict(cacheNames = MEMBERS, allEntries = true)
+    })
+    public int delete(Collection<Long> membershipIds) {
+        log.info("Deleting {} memberships", membershipIds.size());
+        if (membershipIds.isEmpty()) {
+            return 0;
+        }
+
+        DateRange dateRange = membershipRepository.findDateRangeByIds(membershipIds);
+        int deleted = membershipRepository.softDeleteByIds(membershipIds);
+        revenueReportService.invalidateAfterCommit(dateRange.getFrom(), dateRange.getTo());
+        holdService.cancelByMembers(memberRepository.listIdsByMembershipIds(membershipIds));
+        memberRepository.detachFromMemberships(membershipIds);
+
+        return deleted;
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public BatchReport<Membership> addAll(List<Membership> memberships) {
+        log.info("Adding {} memberships", memberships.size());
+        return batchExecutor.execute(memberships, each(membership -> {
+            // a retried membership must not keep the ID it got in the rolled back transaction
+            membership.setId(null);
+            membership.setDeleted(false);
+            membership.setVersion(null);
+            MembershipType membershipType = membership.getMembershipType();
+            return add(membership, membershipType == null ? null : membershipType.getId());
+        }));
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = MEMBERSHIPS, allEntries = true),
+            @CacheEvict(cacheNames = MEMBERS, allEntries = true)
+    })
+    public BatchReport<Membership> fullUpdateAll(List<Membership> memberships) {
+        log.info("Updating {} memberships", memberships.size());
+        return batchExecutor.execute(memberships, each(membership -> membership.getMembershipType() == null
+                ? fullUpdate(requireId(membership.getId()), membership)
+                : fullUpdate(requireId(membership.getId()), membership, membership.getMembershipType().getId())
+        ));
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = MEMBERSHIPS, allEntries = true),
+            @CacheEvict(cacheNames = MEMBERS, allEntries = true)
+    })
+    public BatchReport<Membership> partialUpdateAll(List<BatchPatch> patches) {
+        log.info("Patching {} memberships", patches.size());
+        return batchExecutor.execute(patches, each(patching(this::partialUpdate)));
+    }
 }
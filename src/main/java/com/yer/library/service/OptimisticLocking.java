@@ -0,0 +1,25 @@
+package com.yer.library.service;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+
+/**
+ * Checks the version an update is based on. The version of the loaded row is also checked when the update is flushed
+ * (by the {@code @Version} of the entity), so that a row modified between the check and the flush is not overwritten
+ * either.
+ */
+final class OptimisticLocking {
+    private OptimisticLocking() {
+    }
+
+    /**
+     * Fails if an expected version is given and the object has another version, since the object has then been
+     * modified after the expected version was read.
+     */
+    static void checkVersion(String object, Long version, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(version)) {
+            throw new OptimisticLockingFailureException(
+                    object + " has been modified (expected version " + expectedVersion + ", but is at version " + version + ")"
+            );
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.yer.library.service;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a service operation that can safely be run again when its transaction fails because a row it updates was
+ * modified concurrently (see {@link ConflictRetryAspect}). The operation must not have effects outside its transaction,
+ * and running it again must have the same effect as running it once, on the state it then finds.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+}
@@ -0,0 +1,214 @@
+package com.yer.library.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yer.library.model.dtos.MembershipPeriod;
+import com.yer.library.model.dtos.RevenueLine;
+import com.yer.library.model.dtos.RevenueReport;
+import com.yer.library.model.enums.MembershipTypeName;
+import com.yer.library.repository.MembershipRepository;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.transaction.Transactional;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Reports the monthly recurring revenue of the memberships per membership type: the sum of the monthly fees of the
+ * memberships that are active on a date (that have started, have not ended, and have not been cancelled). A
+ * membership that has expired since still counts on the dates it was active on, so the reports of past dates do not
+ * change when memberships expire.
+ * <p>
+ * The report of a single date is summed by the database ({@code GROUP BY} the membership type). The reports of a
+ * range of months (on the first day of each month) are computed from a stream of the periods of the memberships
+ * that overlap the range, which are read as projections, so that no memberships are loaded into the persistence
+ * context: each period adds its fee to the first month it is active in, and subtracts it from the month after the last,
+ * so that a single pass over the periods and then over the months sums all months.
+ * <p>
+ * Reports are cached. A change of a membership only evicts the reports of the dates its period overlaps (see
+ * {@link #invalidateAfterCommit}), so changes of memberships that ended long ago, or that start next year, keep the
+ * reports of this month cached.
+ */
+@Service
+@Transactional
+@Slf4j
+public class RevenueReportService {
+    static final int MAX_MONTHS = 60;
+    private static final int CACHE_SIZE = 1000;
+
+    private final MembershipRepository membershipRepository;
+    private final Cache<LocalDate, RevenueReport> reports = Caffeine.newBuilder().maximumSize(CACHE_SIZE).build();
+    private final Cache<MonthRange, List<RevenueReport>> monthlyReports = Caffeine.newBuilder()
+            .maximumSize(CACHE_SIZE)
+            .build();
+    // incremented by every invalidation, so that a report computed while memberships were changed is not kept
+    private final AtomicLong generation = new AtomicLong();
+
+    public RevenueReportService(MembershipRepository membershipRepository) {
+        this.membershipRepository = membershipRepository;
+    }
+
+    /**
+     * Reports the monthly revenue of the memberships that are active on the given date.
+     */
+    public RevenueReport getReport(LocalDate date) {
+        RevenueReport cachedReport = reports.getIfPresent(date);
+        if (cachedReport != null) {
+            return cachedReport;
+        }
+        long currentGeneration = generation.get();
+        log.info("Summing the monthly revenue of the memberships active on {}", date);
+        Map<MembershipTypeName, RevenueLine> lines = newLines();
+        membershipRepository.sumRevenueOn(date).forEach(line -> lines.put(line.getType(), line));
+        RevenueReport report = new RevenueReport(date, new ArrayList<>(lines.values()));
+        putIfCurrent(reports, date, report, currentGeneration);
+        return report;
+    }
+
+    /**
+     * Reports the monthly revenue of the memberships that are active on the first day of each of the given number of
+     * months, starting with the given month.
+     */
+    public List<RevenueReport> getMonthlyReports(YearMonth from, int months) {
+        if (months < 1 || months > MAX_MONTHS) {
+            throw new IllegalArgumentException("number of months should be between 1 and " + MAX_MONTHS);
+        }
+        MonthRange monthRange = new MonthRange(from, months);
+        List<RevenueReport> cachedReports = monthlyReports.getIfPresent(monthRange);
+        if (cachedReports != null) {
+            return cachedReports;
+        }
+        long currentGeneration = generation.get();
+        log.info("Summing the monthly revenue of the memberships for {} months from {}", months, from);
+
+        // the changes of the memberships and revenue per type from one month to the next
+        Map<MembershipTypeName, long[]> membershipChanges = new EnumMap<>(MembershipTypeName.class);
+        Map<MembershipTypeName, long[]> revenueChanges = new EnumMap<>(MembershipTypeName.class);
+        for (MembershipTypeName type : MembershipTypeName.values()) {
+            membershipChanges.put(type, new long[months + 1]);
+            revenueChanges.put(type, new long[months + 1]);
+        }
+        try (Stream<MembershipPeriod> periods = membershipRepository.streamPeriods(
+                monthRange.getFirstDate(), monthRange.getLastDate()
+        )) {
+            periods.forEach(period -> {
+                int first = monthRange.firstMonthActive(period.getStartDate());
+                int last = monthRange.lastMonthActive(period.getEndDate());
+                if (first <= last) {
+                    membershipChanges.get(period.getType())[first]++;
+                    membershipChanges.get(period.getType())[last + 1]--;
+                    revenueChanges.get(period.getType())[first] += period.getCostPerMonth();
+                    revenueChanges.get(period.getType())[last + 1] -= period.getCostPerMonth();
+                }
+            });
+        }
+
+        List<RevenueReport> result = new ArrayList<>(months);
+        Map<MembershipTypeName, RevenueLine> totals = newLines();
+        for (int month = 0; month < months; month++) {
+            List<RevenueLine> lines = new ArrayList<>(totals.size());
+            for (RevenueLine total : totals.values()) {
+                total.setMemberships(total.getMemberships() + membershipChanges.get(total.getType())[month]);
+                total.setMonthlyRevenue(total.getMonthlyRevenue() + revenueChanges.get(total.getType())[month]);
+                lines.add(new RevenueLine(total.getType(), total.getMemberships(), total.getMonthlyRevenue()));
+            }
+            result.add(new RevenueReport(from.plusMonths(month).atDay(1), lines));
+        }
+        putIfCurrent(monthlyReports, monthRange, result, currentGeneration);
+        return result;
+    }
+
+    /**
+     * Evicts the cached reports of the dates from {@code from} to {@code to} (the period of a membership that is
+     * changed), once the current transaction commits (or right away outside a transaction). Does nothing if the dates
+     * are {@code null}.
+     */
+    public void invalidateAfterCommit(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(from, to);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(from, to);
+            }
+        });
+    }
+
+    void invalidate(LocalDate from, LocalDate to) {
+        generation.incrementAndGet();
+        reports.asMap().keySet().removeIf(date -> !date.isBefore(from) && !date.isAfter(to));
+        monthlyReports.asMap().keySet().removeIf(monthRange -> monthRange.overlaps(from, to));
+    }
+
+    /**
+     * Caches the report, unless reports were invalidated since it was computed; the report may then have been computed
+     * from memberships as they were before the change.
+     */
+    private <K, V> void putIfCurrent(Cache<K, V> cache, K key, V value, long reportGeneration) {
+        cache.put(key, value);
+        // an invalidation that starts after this check evicts the report itself
+        if (generation.get() != reportGeneration) {
+            cache.invalidate(key);
+        }
+    }
+
+    private static Map<MembershipTypeName, RevenueLine> newLines() {
+        Map<MembershipTypeName, RevenueLine> lines = new EnumMap<>(MembershipTypeName.class);
+        for (MembershipTypeName type : MembershipTypeName.values()) {
+            lines.put(type, new RevenueLine(type, 0L, 0L));
+        }
+        return lines;
+    }
+
+    /**
+     * A number of months, starting with a given month, of which the first days are reported.
+     */
+    @Value
+    static class MonthRange {
+        YearMonth from;
+        int months;
+
+        LocalDate getFirstDate() {
+            return from.atDay(1);
+        }
+
+        LocalDate getLastDate() {
+            return from.plusMonths(months - 1).atDay(1);
+        }
+
+        /**
+         * Returns the index of the first month of which the first day is on or after the start date.
+         */
+        int firstMonthActive(LocalDate startDate) {
+            long month = ChronoUnit.MONTHS.between(from, YearMonth.from(startDate)) + (startDate.getDayOfMonth() == 1 ? 0 : 1);
+            return (int) Math.max(month, 0);
+        }
+
+        /**
+         * Returns the index of the last month of which the first day is on or before the end date.
+         */
+        int lastMonthActive(LocalDate endDate) {
+            return (int) Math.min(ChronoUnit.MONTHS.between(from, YearMonth.from(endDate)), months - 1);
+        }
+
+        boolean overlaps(LocalDate startDate, LocalDate endDate) {
+            return !startDate.isAfter(getLastDate()) && !endDate.isBefore(getFirstDate());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.yer.library.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.yer.library.model.dtos.CacheStatistics;
+import com.yer.library.model.dtos.ConflictStatistics;
+import com.yer.library.model.dtos.InventoryStatistics;
+import com.yer.library.model.dtos.MembershipExpiryStatistics;
+import com.yer.library.model.dtos.SecondLevelCacheStatistics;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class StatisticsService {
+    private final CacheManager cacheManager;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ConflictRetryAspect conflictRetryAspect;
+    private final MembershipExpiryJob membershipExpiryJob;
+    private final InventoryService inventoryService;
+
+    /**
+     * Returns the hit, miss and eviction counts of each cache since the application started. The counts are only
+     * recorded if the cache specification includes {@code recordStats}.
+     */
+    public List<CacheStatistics> getCacheStatistics() {
+        return cacheManager.getCacheNames().stream()
+                .sorted()
+                .map(cacheManager::getCache)
+                .filter(Objects::nonNull)
+                .map(cache -> {
+                    Cache<?, ?> nativeCache = (Cache<?, ?>) cache.getNativeCache();
+                    CacheStats stats = nativeCache.stats();
+                    return new CacheStatistics(
+                            cache.getName(),
+                            nativeCache.estimatedSize(),
+                            stats.hitCount(),
+                            stats.missCount(),
+                            stats.hitRate(),
+                            stats.evictionCount()
+                    );
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the hit, miss and put counts of each region of the Hibernate second-level cache (including the query
+     * cache) since the application started. The counts are only recorded if {@code hibernate.generate_statistics} is
+     * enabled.
+     */
+    public List<SecondLevelCacheStatistics> getSecondLevelCacheStatistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(regionName -> {
+                    CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(regionName);
+                    long hitCount = regionStatistics.getHitCount();
+                    long lookupCount = hitCount + regionStatistics.getMissCount();
+                    return new SecondLevelCacheStatistics(
+                            regionName,
+                            hitCount,
+                            regionStatistics.getMissCount(),
+                            regionStatistics.getPutCount(),
+                            lookupCount == 0 ? 1.0 : (double) hitCount / lookupCount
+                    );
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns, per {@link RetryOnConflict} operation, how often it conflicted with a concurrent update, how often it
+     * was retried, how many calls succeeded after a retry, and how many failed after the last attempt.
+     */
+    public List<ConflictStatistics> getConflictStatistics() {
+        return conflictRetryAspect.getStatistics();
+    }
+
+    /**
+     * Returns the progress of the current (or last) run of the {@link MembershipExpiryJob}, and the throughput of its
+     * last run in this application instance.
+     */
+    public MembershipExpiryStatistics getMembershipExpiryStatistics() {
+        return membershipExpiryJob.getStatistics();
+    }
+
+    /**
+     * Returns the number and total value of the copies that have not been deleted, per genre, type, decade and floor,
+     * summed from the {@link InventoryService inventory summary}.
+     */
+    public InventoryStatistics getInventoryStatistics() {
+        return inventoryService.getStatistics();
+    }
+}
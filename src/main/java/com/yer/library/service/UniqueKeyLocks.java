@@ -0,0 +1,108 @@
+package com.yer.library.service;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Serializes the check-then-insert of rows with the same unique key (like an ISBN or email address) within this
+ * application instance, without serializing inserts of rows with different keys.
+ * <p>
+ * Keys are hashed onto a fixed number of locks (stripes), so memory use does not grow with the number of keys. A lock
+ * taken within a transaction is held until the transaction completes, so that the next insert of the same key sees
+ * the committed row. Other application instances are not covered; for those, the unique indexes on the active rows
+ * (see {@code db/migration}) reject the second insert.
+ */
+@Component
+public class UniqueKeyLocks {
+    static final int STRIPES = 256;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public UniqueKeyLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Runs the action while holding the lock for the key in the namespace (like "isbn"). Keys that only differ in
+     * case or surrounding whitespace share a lock.
+     */
+    public <T> T withLock(String namespace, String key, Supplier<T> action) {
+        ReentrantLock lock = lockFor(namespace, key);
+        lock.lock();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                return action.get();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+        return action.get();
+    }
+
+    /**
+     * Runs the action while holding the locks for all the keys in the namespace, like {@link #withLock} does for a
+     * single key. The locks are always taken in the same (stripe) order, so that two batches with overlapping keys
+     * cannot deadlock by each waiting for a lock the other holds. The action may still call {@link #withLock} for any
+     * of the keys, since the locks are reentrant.
+     */
+    public <T> T withLocks(String namespace, Collection<String> keys, Supplier<T> action) {
+        List<ReentrantLock> stripeLocks = keys.stream()
+                .map(key -> stripeFor(namespace, key))
+                .distinct()
+                .sorted()
+                .map(stripe -> locks[stripe])
+                .collect(Collectors.toList());
+        stripeLocks.forEach(ReentrantLock::lock);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                return action.get();
+            } finally {
+                stripeLocks.forEach(ReentrantLock::unlock);
+            }
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                stripeLocks.forEach(ReentrantLock::unlock);
+            }
+        });
+        return action.get();
+    }
+
+    /**
+     * Returns whether the exception is caused by a violation of the unique index with the given name.
+     */
+    public static boolean isViolationOf(DataIntegrityViolationException exception, String indexName) {
+        String message = exception.getMostSpecificCause().getMessage();
+        return message != null && message.toLowerCase().contains(indexName.toLowerCase());
+    }
+
+    ReentrantLock lockFor(String namespace, String key) {
+        return locks[stripeFor(namespace, key)];
+    }
+
+    private static int stripeFor(String namespace, String key) {
+        String normalizedKey = key == null ? "" : key.trim().toLowerCase();
+        int hash = (namespace + ':' + normalizedKey).hashCode();
+        // spread the high bits, like HashMap does, before taking the low bits as the stripe
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
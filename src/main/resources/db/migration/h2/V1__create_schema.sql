@@ -0,0 +1,70 @@
+-- The schema as Hibernate generated it before migrations were introduced.
+
+CREATE SEQUENCE book_sequence START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE book_copy_sequence START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE member_sequence START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE membership_sequence START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE membership_type_sequence START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE user_sequence START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE books (
+    id             BIGINT       NOT NULL,
+    author         TEXT         NOT NULL,
+    deleted        BOOLEAN,
+    genre          VARCHAR(255) NOT NULL,
+    isbn           VARCHAR(17)  NOT NULL,
+    title          TEXT         NOT NULL,
+    type           VARCHAR(255) NOT NULL,
+    book_value     INTEGER      NOT NULL CHECK (book_value <= 99999),
+    year_published SMALLINT     NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE book_copies (
+    id           BIGINT NOT NULL,
+    deleted      BOOLEAN,
+    loc_floor    SMALLINT,
+    loc_bookcase SMALLINT,
+    loc_shelve   SMALLINT,
+    book_id      BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT FK_book_copies_books FOREIGN KEY (book_id) REFERENCES books (id)
+);
+
+CREATE TABLE membership_types (
+    id             BIGINT       NOT NULL,
+    cost_per_month INTEGER CHECK (cost_per_month <= 9999),
+    type           VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT membership_type_unique UNIQUE (type)
+);
+
+CREATE TABLE memberships (
+    id                 BIGINT NOT NULL,
+    deleted            BOOLEAN,
+    end_date           DATE   NOT NULL,
+    start_date         DATE   NOT NULL,
+    membership_type_id BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT FK_memberships_membership_type FOREIGN KEY (membership_type_id) REFERENCES membership_types (id)
+);
+
+CREATE TABLE members (
+    id            BIGINT NOT NULL,
+    birthday      DATE,
+    deleted       BOOLEAN,
+    email_address VARCHAR(100),
+    home_address  TEXT,
+    name          TEXT   NOT NULL,
+    membership_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT FK_member_membership FOREIGN KEY (membership_id) REFERENCES memberships (id)
+);
+
+CREATE TABLE users (
+    id       BIGINT       NOT NULL,
+    password VARCHAR(100) NOT NULL,
+    username VARCHAR(25)  NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT username_unique UNIQUE (username)
+);
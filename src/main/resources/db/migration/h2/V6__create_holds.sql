@@ -0,0 +1,27 @@
+-- Holds (reservations) of members on books that have no copy on the shelf. The waiting holds of a book form a queue in
+-- the order they were placed; a returned copy is kept (status ON_HOLD) for the first member in the queue that may
+-- still borrow, until that member collects it or cancels the hold.
+CREATE SEQUENCE hold_sequence START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE holds (
+    id           BIGINT      NOT NULL,
+    book_id      BIGINT      NOT NULL,
+    member_id    BIGINT      NOT NULL,
+    placed_at    TIMESTAMP   NOT NULL,
+    status       VARCHAR(20) NOT NULL,
+    book_copy_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT FK_holds_books FOREIGN KEY (book_id) REFERENCES books (id),
+    CONSTRAINT FK_holds_members FOREIGN KEY (member_id) REFERENCES members (id),
+    CONSTRAINT FK_holds_book_copies FOREIGN KEY (book_copy_id) REFERENCES book_copies (id)
+);
+
+-- A member has at most one active (waiting or ready) hold per book. Like the active loans, the unique index is on a
+-- generated column that is NULL for collected and cancelled holds.
+ALTER TABLE holds
+    ADD COLUMN active_member_id BIGINT
+        GENERATED ALWAYS AS (CASE WHEN status IN ('WAITING', 'READY') THEN member_id END);
+CREATE UNIQUE INDEX uk_holds_book_id_active_member_id ON holds (book_id, active_member_id);
+CREATE INDEX idx_holds_book_id_status_placed_at ON holds (book_id, status, placed_at);
+CREATE INDEX idx_holds_member_id ON holds (member_id);
+CREATE INDEX idx_holds_book_copy_id_status ON holds (book_copy_id, status);
@@ -0,0 +1,20 @@
+-- Memberships past their end date are expired by a scheduled job, which finds them with a range scan of this index in
+-- the order of their end date.
+CREATE INDEX idx_memberships_deleted_end_date ON memberships (deleted, end_date);
+
+-- The progress of batch jobs that run in chunks, one transaction per chunk. The checkpoint of a job is written in the
+-- same transaction as each chunk, so a job that is interrupted resumes after the last chunk that was committed.
+CREATE TABLE job_checkpoints (
+    name          VARCHAR(50) NOT NULL,
+    cutoff_date   DATE        NOT NULL,
+    last_end_date DATE        NOT NULL,
+    last_id       BIGINT      NOT NULL,
+    processed     BIGINT      NOT NULL,
+    detached      BIGINT      NOT NULL,
+    chunks        BIGINT      NOT NULL,
+    completed     BOOLEAN     NOT NULL,
+    started_at    TIMESTAMP   NOT NULL,
+    updated_at    TIMESTAMP   NOT NULL,
+    version       BIGINT      NOT NULL,
+    PRIMARY KEY (name)
+);
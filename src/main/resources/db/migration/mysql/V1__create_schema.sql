@@ -0,0 +1,77 @@
+-- The schema as Hibernate generated it before migrations were introduced.
+
+-- MySQL has no sequences; the pooled ID generators use a table holding the next value instead
+CREATE TABLE book_sequence (next_val BIGINT) ENGINE = InnoDB;
+INSERT INTO book_sequence VALUES (1);
+CREATE TABLE book_copy_sequence (next_val BIGINT) ENGINE = InnoDB;
+INSERT INTO book_copy_sequence VALUES (1);
+CREATE TABLE member_sequence (next_val BIGINT) ENGINE = InnoDB;
+INSERT INTO member_sequence VALUES (1);
+CREATE TABLE membership_sequence (next_val BIGINT) ENGINE = InnoDB;
+INSERT INTO membership_sequence VALUES (1);
+CREATE TABLE membership_type_sequence (next_val BIGINT) ENGINE = InnoDB;
+INSERT INTO membership_type_sequence VALUES (1);
+CREATE TABLE user_sequence (next_val BIGINT) ENGINE = InnoDB;
+INSERT INTO user_sequence VALUES (1);
+
+CREATE TABLE books (
+    id             BIGINT       NOT NULL,
+    author         TEXT         NOT NULL,
+    deleted        BIT,
+    genre          VARCHAR(255) NOT NULL,
+    isbn           VARCHAR(17)  NOT NULL,
+    title          TEXT         NOT NULL,
+    type           VARCHAR(255) NOT NULL,
+    book_value     INTEGER      NOT NULL,
+    year_published SMALLINT     NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE book_copies (
+    id           BIGINT NOT NULL,
+    deleted      BIT,
+    loc_floor    SMALLINT,
+    loc_bookcase SMALLINT,
+    loc_shelve   SMALLINT,
+    book_id      BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT FK_book_copies_books FOREIGN KEY (book_id) REFERENCES books (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE membership_types (
+    id             BIGINT       NOT NULL,
+    cost_per_month INTEGER,
+    type           VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT membership_type_unique UNIQUE (type)
+) ENGINE = InnoDB;
+
+CREATE TABLE memberships (
+    id                 BIGINT NOT NULL,
+    deleted            BIT,
+    end_date           DATE   NOT NULL,
+    start_date         DATE   NOT NULL,
+    membership_type_id BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT FK_memberships_membership_type FOREIGN KEY (membership_type_id) REFERENCES membership_types (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE members (
+    id            BIGINT NOT NULL,
+    birthday      DATE,
+    deleted       BIT,
+    email_address VARCHAR(100),
+    home_address  TEXT,
+    name          TEXT   NOT NULL,
+    membership_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT FK_member_membership FOREIGN KEY (membership_id) REFERENCES memberships (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE users (
+    id       BIGINT       NOT NULL,
+    password VARCHAR(100) NOT NULL,
+    username VARCHAR(25)  NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT username_unique UNIQUE (username)
+) ENGINE = InnoDB;
@@ -0,0 +1,16 @@
+-- Indexes for the lookups and lists that only consider rows that have not been (soft) deleted.
+CREATE INDEX idx_books_deleted_isbn ON books (deleted, isbn);
+CREATE INDEX idx_members_deleted_email_address ON members (deleted, email_address);
+CREATE INDEX idx_book_copies_book_id_deleted ON book_copies (book_id, deleted);
+CREATE INDEX idx_members_membership_id_deleted ON members (membership_id, deleted);
+
+-- ISBNs and email addresses are unique among the rows that have not been deleted. MySQL has no partial indexes, so
+-- the unique indexes are on generated columns that are NULL for deleted rows (a unique index allows any number of
+-- NULLs).
+ALTER TABLE books
+    ADD COLUMN active_isbn VARCHAR(17) AS (CASE WHEN deleted = FALSE THEN isbn END) VIRTUAL;
+CREATE UNIQUE INDEX uk_books_active_isbn ON books (active_isbn);
+
+ALTER TABLE members
+    ADD COLUMN active_email_address VARCHAR(100) AS (CASE WHEN deleted = FALSE THEN email_address END) VIRTUAL;
+CREATE UNIQUE INDEX uk_members_active_email_address ON members (active_email_address);
@@ -0,0 +1,5 @@
+-- Versions for optimistic locking, incremented by every update of a row. Existing rows start at version 0.
+ALTER TABLE books ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE book_copies ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE members ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE memberships ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,26 @@
+-- Loans of book copies to members. A copy is lent by changing its status from AVAILABLE to ON_LOAN with a conditional
+-- update, so that of two concurrent checkouts of the same copy only one changes the row.
+ALTER TABLE book_copies ADD COLUMN status VARCHAR(20) NOT NULL DEFAULT 'AVAILABLE';
+
+-- MySQL has no sequences; like the other pooled ID generators, the loan IDs come from a table
+CREATE TABLE loan_sequence (next_val BIGINT) ENGINE = InnoDB;
+INSERT INTO loan_sequence VALUES (1);
+
+CREATE TABLE loans (
+    id           BIGINT NOT NULL,
+    book_copy_id BIGINT NOT NULL,
+    member_id    BIGINT NOT NULL,
+    loan_date    DATE   NOT NULL,
+    due_date     DATE   NOT NULL,
+    return_date  DATE,
+    PRIMARY KEY (id),
+    CONSTRAINT FK_loans_book_copies FOREIGN KEY (book_copy_id) REFERENCES book_copies (id),
+    CONSTRAINT FK_loans_members FOREIGN KEY (member_id) REFERENCES members (id)
+) ENGINE = InnoDB;
+
+-- A copy has at most one active (not returned) loan. Like the unique ISBNs, the unique index is on a generated column
+-- that is NULL for returned loans.
+ALTER TABLE loans
+    ADD COLUMN active_book_copy_id BIGINT AS (CASE WHEN return_date IS NULL THEN book_copy_id END) VIRTUAL;
+CREATE UNIQUE INDEX uk_loans_active_book_copy_id ON loans (active_book_copy_id);
+CREATE INDEX idx_loans_member_id_return_date ON loans (member_id, return_date);
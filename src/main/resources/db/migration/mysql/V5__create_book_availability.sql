@@ -0,0 +1,16 @@
+-- The number of available (not deleted, not lent) and of all (not deleted) copies per book, so that the availability
+-- of a book is read from one row instead of counted from its copies. The counters are changed together with the
+-- copies, in the same transaction.
+CREATE TABLE book_availability (
+    book_id          BIGINT NOT NULL,
+    available_copies INT    NOT NULL,
+    total_copies     INT    NOT NULL,
+    PRIMARY KEY (book_id),
+    CONSTRAINT FK_book_availability_books FOREIGN KEY (book_id) REFERENCES books (id)
+) ENGINE = InnoDB;
+
+INSERT INTO book_availability (book_id, available_copies, total_copies)
+SELECT b.id,
+       (SELECT COUNT(*) FROM book_copies c WHERE c.book_id = b.id AND c.deleted = false AND c.status = 'AVAILABLE'),
+       (SELECT COUNT(*) FROM book_copies c WHERE c.book_id = b.id AND c.deleted = false)
+FROM books b;
@@ -0,0 +1,21 @@
+-- The number and total value of the copies that have not been deleted, per genre, type and decade of publication of
+-- their book and per floor they are on (-1 for copies without a location), so that the inventory statistics are summed
+-- from these rows instead of from all copies and their books. The rows are changed together with the copies and books,
+-- in the same transaction.
+CREATE TABLE inventory_summary (
+    genre       VARCHAR(255) NOT NULL,
+    type        VARCHAR(255) NOT NULL,
+    decade      SMALLINT     NOT NULL,
+    loc_floor   SMALLINT     NOT NULL,
+    copies      BIGINT       NOT NULL,
+    total_value BIGINT       NOT NULL,
+    PRIMARY KEY (genre, type, decade, loc_floor)
+) ENGINE = InnoDB;
+
+INSERT INTO inventory_summary (genre, type, decade, loc_floor, copies, total_value)
+SELECT b.genre, b.type, FLOOR(b.year_published / 10.0) * 10, COALESCE(c.loc_floor, -1), COUNT(*), SUM(b.book_value)
+FROM book_copies c
+         JOIN books b ON b.id = c.book_id
+WHERE c.deleted = false
+  AND b.deleted = false
+GROUP BY b.genre, b.type, FLOOR(b.year_published / 10.0) * 10, COALESCE(c.loc_floor, -1);
@@ -0,0 +1,4 @@
+-- The expiry job soft deletes memberships that have ended, like a cancellation does, but an expired membership still
+-- counts in the revenue of the dates it was active on. The flag tells the two apart; memberships expired before this
+-- migration cannot be told apart from cancelled ones, and stay left out of the revenue.
+ALTER TABLE memberships ADD COLUMN expired BOOLEAN NOT NULL DEFAULT FALSE;
@@ -0,0 +1,95 @@
+package com.yer.library.benchmark;
+
+import com.yer.library.model.Book;
+import com.yer.library.model.BookCopy;
+import com.yer.library.model.Location;
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import com.yer.library.repository.BookCopyRepository;
+import com.yer.library.repository.BookRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import java.time.Year;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bulk-loads book copies through JPA and reports the insert throughput in rows per second.
+ * <p>
+ * Run with {@code mvn test -P benchmark}; the number of rows can be changed with {@code -Dbenchmark.rows=...}.
+ */
+@Tag("benchmark")
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.jpa.show-sql=false",
+                "spring.jpa.properties.hibernate.generate_statistics=true"
+        }
+)
+class BookCopyBulkLoadBenchmark {
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 1_000_000);
+    private static final int ROWS_PER_TRANSACTION = 10_000;
+    private static final int FLUSH_INTERVAL = 50;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+
+    @Test
+    void bulkLoadBookCopies() {
+        Long bookId = bookRepository.save(new Book(
+                "978-6-3073-8763-1",
+                "The Serpent in the Stars",
+                Year.of(1995),
+                "Tyra Daniels",
+                BookType.NON_FICTION,
+                BookGenre.PHILOSOPHICAL,
+                4200
+        )).getId();
+        long copiesBefore = bookCopyRepository.count();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        long start = System.nanoTime();
+
+        for (int offset = 0; offset < ROWS; offset += ROWS_PER_TRANSACTION) {
+            int rows = Math.min(ROWS_PER_TRANSACTION, ROWS - offset);
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = 0; i < rows; i++) {
+                    if (i % FLUSH_INTERVAL == 0) {
+                        entityManager.flush();
+                        entityManager.clear();
+                    }
+                    Book book = entityManager.getReference(Book.class, bookId);
+                    entityManager.persist(new BookCopy(book, new Location(
+                            (short) (i % 4), (short) (i % 100 + 1), (short) (i % 15 + 1)
+                    )));
+                }
+            });
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(
+                "Loaded %d book copies in %.2f s: %.0f rows/s (%d statements prepared)%n",
+                ROWS, seconds, ROWS / seconds, statistics.getPrepareStatementCount()
+        );
+
+        assertThat(bookCopyRepository.count() - copiesBefore).isEqualTo(ROWS);
+    }
+}
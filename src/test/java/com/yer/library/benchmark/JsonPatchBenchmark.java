@@ -0,0 +1,100 @@
+package com.yer.library.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.yer.library.model.Book;
+import com.yer.library.model.dtos.BookDTO;
+import com.yer.library.model.dtos.jsonviews.View;
+import com.yer.library.model.dtos.mappers.BookMapper;
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import com.yer.library.service.JsonPatchEngine;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.time.Year;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JSON patch pipeline the services used before {@link JsonPatchEngine} (reconfiguring an
+ * {@link ObjectMapper} and converting the whole DTO to a JSON tree and back for every patch) with the engine, in time
+ * and in bytes allocated per patch ({@code gc.alloc.rate.norm}).
+ * <p>
+ * Run with {@code mvn test -P benchmark -Dtest=JsonPatchBenchmark}.
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonPatchBenchmark {
+    private final ObjectMapper mapper = JsonMapper.builder()
+            .findAndAddModules()
+            .build();
+    private final JsonPatchEngine jsonPatchEngine = new JsonPatchEngine();
+
+    private Book book;
+    private JsonPatch replacePatch;
+    private JsonPatch movePatch;
+
+    @Setup
+    public void setUp() throws IOException {
+        book = new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+        book.setId(1L);
+        replacePatch = JsonPatch.fromJson(mapper.readTree("[" +
+                "{\"op\": \"replace\", \"path\": \"/title\", \"value\": \"The Boy in the Veil\"}," +
+                "{\"op\": \"replace\", \"path\": \"/value\", \"value\": 4300}" +
+                "]"));
+        movePatch = JsonPatch.fromJson(mapper.readTree(
+                "[{\"op\": \"move\", \"from\": \"/author\", \"path\": \"/title\"}]"
+        ));
+    }
+
+    @Benchmark
+    public Book reconfiguredMapper() throws Exception {
+        BookDTO bookDTO = BookMapper.INSTANCE.toBookDTO(book);
+        mapper.setConfig(mapper.getDeserializationConfig()
+                .withView(View.PatchView.class));
+        JsonNode patched = replacePatch.apply(mapper.convertValue(bookDTO, JsonNode.class));
+        return BookMapper.INSTANCE.toBook(mapper.treeToValue(patched, BookDTO.class));
+    }
+
+    @Benchmark
+    public Book engine() throws Exception {
+        BookDTO bookDTO = BookMapper.INSTANCE.toBookDTO(book);
+        return BookMapper.INSTANCE.toBook(jsonPatchEngine.apply(replacePatch, bookDTO));
+    }
+
+    @Benchmark
+    public Book engineWholeDocument() throws Exception {
+        BookDTO bookDTO = BookMapper.INSTANCE.toBookDTO(book);
+        return BookMapper.INSTANCE.toBook(jsonPatchEngine.apply(movePatch, bookDTO));
+    }
+
+    @Test
+    void runBenchmarks() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JsonPatchBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+}
@@ -0,0 +1,119 @@
+package com.yer.library.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.yer.library.model.Membership;
+import com.yer.library.model.MembershipType;
+import com.yer.library.model.dtos.ConflictStatistics;
+import com.yer.library.repository.MembershipRepository;
+import com.yer.library.repository.MembershipTypeRepository;
+import com.yer.library.service.ConflictRetryAspect;
+import com.yer.library.service.MembershipService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Lets 64 writers patch the same (hot) membership for 10 seconds, and reports the throughput of successful updates
+ * together with the conflicts and retries it took.
+ * <p>
+ * Run with {@code mvn test -P benchmark}; the number of writers and seconds can be changed with
+ * {@code -Dbenchmark.writers=...} and {@code -Dbenchmark.seconds=...}, and the retry policy with the
+ * {@code library.retry.*} properties (like {@code -Dlibrary.retry.max-attempts=1} to measure without retries).
+ */
+@Tag("benchmark")
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = "spring.jpa.show-sql=false"
+)
+class MembershipContentionBenchmark {
+    private static final int WRITERS = Integer.getInteger("benchmark.writers", 64);
+    private static final int SECONDS = Integer.getInteger("benchmark.seconds", 10);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final LocalDate START_DATE = LocalDate.of(2022, Month.JANUARY, 1);
+
+    @Autowired
+    private MembershipService membershipService;
+    @Autowired
+    private MembershipRepository membershipRepository;
+    @Autowired
+    private MembershipTypeRepository membershipTypeRepository;
+    @Autowired
+    private ConflictRetryAspect conflictRetryAspect;
+
+    @Test
+    void patchHotMembership() throws Exception {
+        MembershipType membershipType = membershipTypeRepository.findAll().get(0);
+        Long membershipId = membershipService.add(
+                new Membership(membershipType, START_DATE, START_DATE.plusYears(1))
+        ).getId();
+        AtomicLong updateNumber = new AtomicLong();
+        LongAdder succeeded = new LongAdder();
+        LongAdder failed = new LongAdder();
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int writer = 0; writer < WRITERS; writer++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                while (System.nanoTime() < end) {
+                    // every update sets another end date, so that no update is a no-op
+                    long days = updateNumber.incrementAndGet() % 1800 + 1;
+                    try {
+                        membershipService.partialUpdate(membershipId, endDateAfter(days));
+                        succeeded.increment();
+                    } catch (ObjectOptimisticLockingFailureException e) {
+                        failed.increment();
+                    }
+                }
+                return null;
+            }));
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(SECONDS + 60, TimeUnit.SECONDS)).isTrue();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        ConflictStatistics statistics = conflictRetryAspect.getStatistics().stream()
+                .filter(operation -> operation.getOperation().equals("MembershipService.partialUpdate"))
+                .findFirst()
+                .orElse(new ConflictStatistics("MembershipService.partialUpdate", 0, 0, 0, 0));
+        System.out.printf(
+                "%d writers on one membership for %.1f s: %.0f updates/s (%d succeeded, %d failed); " +
+                        "%d conflicts, %d retries, %d recovered by a retry%n",
+                WRITERS, seconds, succeeded.sum() / seconds, succeeded.sum(), failed.sum(),
+                statistics.getConflictCount(), statistics.getRetryCount(), statistics.getRecoveredCount()
+        );
+
+        // every successful update increased the version once, so none of them was lost
+        assertThat(membershipRepository.findById(membershipId).get().getVersion()).isEqualTo(succeeded.sum());
+    }
+
+    private static JsonPatch endDateAfter(long days) throws Exception {
+        return JsonPatch.fromJson(MAPPER.readTree(
+                "[{\"op\": \"replace\", \"path\": \"/endDate\", \"value\": \"" + START_DATE.plusDays(days) + "\"}]"
+        ));
+    }
+}
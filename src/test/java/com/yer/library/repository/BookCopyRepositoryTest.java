@@ -3,6 +3,8 @@ package com.yer.library.repository;
 import com.yer.library.model.Book;
 import com.yer.library.model.BookCopy;
 import com.yer.library.model.Location;
+import com.yer.library.model.dtos.BookCopySummary;
+import com.yer.library.model.enums.BookCopyStatus;
 import com.yer.library.model.enums.BookGenre;
 import com.yer.library.model.enums.BookType;
 import org.assertj.core.api.Condition;
@@ -419,4 +421,128 @@ class BookCopyRepositoryTest {
                 .hasSize(2)
                 .containsOnly(bookCopy2, bookCopy4);
     }
-}
\ No newline at end of file
+
+    @Test
+    void listByBookAfterReturnsNextPageInIdOrder() {
+        // given
+        Book book = new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+        BookCopy bookCopy1 = new BookCopy(
+                book,
+                new Location((short) 1, (short) 1, (short) 1)
+        );
+        BookCopy bookCopy2 = new BookCopy(
+                book,
+                new Location((short) 1, (short) 1, (short) 2)
+        );
+        BookCopy bookCopy3 = new BookCopy(
+                book,
+                new Location((short) 1, (short) 2, (short) 1)
+        );
+
+        Long bookId = bookRepository.save(book).getId();
+        underTest.saveAll(Collections.unmodifiableList(Arrays.asList(bookCopy1, bookCopy2, bookCopy3)));
+
+        // when
+        List<BookCopy> firstPage = underTest.listByBookAfter(bookId, 0L, ofSize(2));
+        List<BookCopy> secondPage = underTest.listByBookAfter(bookId, firstPage.get(1).getId(), ofSize(2));
+        List<BookCopy> allCopies = underTest.listAvailableAfter(bookCopy1.getId(), ofSize(10));
+
+        // then
+        assertThat(firstPage).containsExactly(bookCopy1, bookCopy2);
+        assertThat(secondPage).containsExactly(bookCopy3);
+        assertThat(allCopies).containsExactly(bookCopy2, bookCopy3);
+    }
+
+    @Test
+    void softDeleteByBookIdsDeletesCopiesOfGivenBooks() {
+        // given
+        Book book1 = new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+        Book book2 = new Book(
+                "978-0-1011-1658-9",
+                "Legacy Circling",
+                Year.of(2001),
+                "Arla Salgado",
+                BookType.FICTION,
+                BookGenre.ROMANCE,
+                4200
+        );
+
+        BookCopy bookCopy1 = new BookCopy(
+                book1,
+                new Location((short) 1, (short) 1, (short) 1)
+        );
+        BookCopy bookCopy2 = new BookCopy(
+                book1,
+                new Location((short) 2, (short) 1, (short) 1)
+        );
+        BookCopy bookCopy3 = new BookCopy(
+                book2,
+                new Location((short) 3, (short) 1, (short) 1)
+        );
+
+        bookRepository.saveAll(Collections.unmodifiableList(Arrays.asList(book1, book2)));
+        underTest.saveAll(Collections.unmodifiableList(Arrays.asList(bookCopy1, bookCopy2, bookCopy3)));
+
+        // when
+        int deleted = underTest.softDeleteByBookIds(Collections.singletonList(book1.getId()));
+
+        // then
+        assertThat(deleted).isEqualTo(2);
+        assertThat(underTest.listAvailable(ofSize(10))).containsExactly(bookCopy3);
+    }
+
+    @Test
+    void listSummariesAfterIncludesStatus() {
+        // given
+        Book book = new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+        BookCopy bookCopy1 = new BookCopy(
+                book,
+                new Location((short) 1, (short) 1, (short) 1)
+        );
+        BookCopy bookCopy2 = new BookCopy(
+                book,
+                new Location((short) 1, (short) 1, (short) 2)
+        );
+        bookCopy2.setStatus(BookCopyStatus.ON_LOAN);
+
+        Long bookId = bookRepository.save(book).getId();
+        underTest.saveAll(Collections.unmodifiableList(Arrays.asList(bookCopy1, bookCopy2)));
+
+        // when
+        List<BookCopySummary> summaries = underTest.listSummariesAfter(0L, ofSize(10));
+        List<BookCopySummary> summariesByBook = underTest.listSummariesByBookAfter(bookId, 0L, ofSize(10));
+
+        // then
+        assertThat(summaries).extracting(BookCopySummary::getStatus)
+                .containsExactly(BookCopyStatus.AVAILABLE, BookCopyStatus.ON_LOAN);
+        assertThat(summariesByBook).extracting(BookCopySummary::getStatus)
+                .containsExactly(BookCopyStatus.AVAILABLE, BookCopyStatus.ON_LOAN);
+        assertThat(summaries).extracting(BookCopySummary::getVersion)
+                .containsExactly(bookCopy1.getVersion(), bookCopy2.getVersion());
+        assertThat(summaries.get(0).getBook().getVersion()).isEqualTo(book.getVersion());
+    }
+}
@@ -1,6 +1,7 @@
 package com.yer.library.repository;
 
 import com.yer.library.model.Book;
+import com.yer.library.model.dtos.VersionStamp;
 import com.yer.library.model.enums.BookGenre;
 import com.yer.library.model.enums.BookType;
 import org.assertj.core.api.Condition;
@@ -293,4 +294,211 @@ class BookRepositoryTest {
         // at least 3 books of the list "books" appear in actual
         assertThat(actual).hasSize(3).areAtLeast(3, new Condition<>(books::contains, "containsNBooksOf"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void listAvailableAfterReturnsNextPageInIdOrder() {
+        // given
+        Book book1 = new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+        Book book2 = new Book(
+                "978-0-1011-1658-9",
+                "Legacy Circling",
+                Year.of(2001),
+                "Arla Salgado",
+                BookType.FICTION,
+                BookGenre.ROMANCE,
+                4200
+        );
+        book2.setDeleted(true);
+        Book book3 = new Book(
+                "978-0-6967-9461-2",
+                "Case of the Laughing Baboon",
+                Year.of(1945),
+                "Murat McCartney",
+                BookType.FICTION,
+                BookGenre.FOLKLORE,
+                4200
+        );
+        Book book4 = new Book(
+                "978-6-3073-8763-1",
+                "The Serpent in the Stars",
+                Year.of(1995),
+                "Tyra Daniels",
+                BookType.NON_FICTION,
+                BookGenre.PHILOSOPHICAL,
+                4200
+        );
+
+        underTest.saveAll(Collections.unmodifiableList(Arrays.asList(book1, book2, book3, book4)));
+
+        // when
+        List<Book> firstPage = underTest.listAvailableAfter(0L, ofSize(2));
+        List<Book> secondPage = underTest.listAvailableAfter(firstPage.get(1).getId(), ofSize(2));
+
+        // then
+        assertThat(firstPage).containsExactly(book1, book3);
+        assertThat(secondPage).containsExactly(book4);
+    }
+
+    @Test
+    void softDeleteByIdsDeletesOnlyGivenAvailableBooks() {
+        // given
+        Book book1 = new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+        Book book2 = new Book(
+                "978-0-1011-1658-9",
+                "Legacy Circling",
+                Year.of(2001),
+                "Arla Salgado",
+                BookType.FICTION,
+                BookGenre.ROMANCE,
+                4200
+        );
+        book2.setDeleted(true);
+        Book book3 = new Book(
+                "978-0-6967-9461-2",
+                "Case of the Laughing Baboon",
+                Year.of(1945),
+                "Murat McCartney",
+                BookType.FICTION,
+                BookGenre.FOLKLORE,
+                4200
+        );
+
+        underTest.saveAll(Collections.unmodifiableList(Arrays.asList(book1, book2, book3)));
+
+        // when
+        int deleted = underTest.softDeleteByIds(Arrays.asList(book1.getId(), book2.getId()));
+
+        // then
+        assertThat(deleted).isEqualTo(1);
+        assertThat(underTest.listAvailable(ofSize(10))).containsExactly(book3);
+    }
+
+    @Test
+    void findAvailableByIdsSkipsDeletedAndUnknownBooks() {
+        // given
+        Book book1 = new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+        Book book2 = new Book(
+                "978-0-1011-1658-9",
+                "Legacy Circling",
+                Year.of(2001),
+                "Arla Salgado",
+                BookType.FICTION,
+                BookGenre.ROMANCE,
+                4200
+        );
+        book2.setDeleted(true);
+        Book book3 = new Book(
+                "978-0-6967-9461-2",
+                "Case of the Laughing Baboon",
+                Year.of(1945),
+                "Murat McCartney",
+                BookType.FICTION,
+                BookGenre.FOLKLORE,
+                4200
+        );
+
+        underTest.saveAll(Collections.unmodifiableList(Arrays.asList(book1, book2, book3)));
+
+        // when
+        List<Book> books = underTest.findAvailableByIds(
+                Arrays.asList(book3.getId(), book2.getId(), book1.getId(), -1L)
+        );
+
+        // then
+        assertThat(books).containsExactlyInAnyOrder(book1, book3);
+    }
+
+    @Test
+    void findVersionByIdFollowsUpdates() {
+        // given
+        Book book = underTest.saveAndFlush(new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        ));
+        Long versionBeforeUpdate = underTest.findVersionById(book.getId()).get().getVersion();
+        book.setValue(4300);
+        underTest.saveAndFlush(book);
+
+        // when
+        Optional<VersionStamp> actual = underTest.findVersionById(book.getId());
+
+        // then
+        assertThat(versionBeforeUpdate).isZero();
+        assertThat(actual).hasValueSatisfying(versionStamp -> {
+            assertThat(versionStamp.getVersion()).isEqualTo(1L);
+            assertThat(versionStamp.getTag()).isEqualTo("1");
+        });
+    }
+
+    @Test
+    void listVersionsAfterSkipsDeletedBooks() {
+        // given
+        Book book1 = new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+        Book book2 = new Book(
+                "978-0-1011-1658-9",
+                "Legacy Circling",
+                Year.of(2001),
+                "Arla Salgado",
+                BookType.FICTION,
+                BookGenre.ROMANCE,
+                4200
+        );
+        Book book3 = new Book(
+                "978-0-6967-9461-2",
+                "Case of the Laughing Baboon",
+                Year.of(1945),
+                "Murat McCartney",
+                BookType.FICTION,
+                BookGenre.FOLKLORE,
+                4200
+        );
+
+        underTest.saveAll(Collections.unmodifiableList(Arrays.asList(book1, book2, book3)));
+        underTest.softDeleteByIds(Collections.singletonList(book2.getId()));
+
+        // when
+        List<VersionStamp> versions = underTest.listVersionsAfter(0L, ofSize(10));
+
+        // then
+        assertThat(versions)
+                .extracting(VersionStamp::getId)
+                .containsExactly(book1.getId(), book3.getId());
+    }
+}
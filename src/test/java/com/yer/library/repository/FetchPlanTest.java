@@ -0,0 +1,219 @@
+package com.yer.library.repository;
+
+import com.yer.library.model.*;
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import com.yer.library.model.enums.MembershipTypeName;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SessionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.data.domain.PageRequest.ofSize;
+
+/**
+ * Asserts the number of SQL statements each list query issues, so that eager associations loaded one parent row at a
+ * time (N+1 selects) cannot creep back in. Statements are counted once the second-level cache is warm, since the
+ * cached reference data (like membership types) is deliberately not fetched along with the list.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class FetchPlanTest {
+    private static final String[] ISBNS = {"978-2-3915-3957-4", "978-0-1011-1658-9", "978-0-6967-9461-2"};
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private MembershipRepository membershipRepository;
+    @Autowired
+    private MembershipTypeRepository membershipTypeRepository;
+
+    private Long bookId;
+    private final List<Long> bookCopyIds = new ArrayList<>();
+    private final List<Long> memberIds = new ArrayList<>();
+    private final List<Long> membershipIds = new ArrayList<>();
+    private Long membershipId;
+    private Long membershipTypeId;
+
+    @BeforeEach
+    void setUp() {
+        // entities inserted by the transaction of the test itself are never put into the second-level cache, so the
+        // membership types are committed (once) in a separate transaction
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        List<MembershipType> membershipTypes = transactionTemplate.execute(status -> {
+            List<MembershipType> existingMembershipTypes = membershipTypeRepository.findAll();
+            if (!existingMembershipTypes.isEmpty()) {
+                return existingMembershipTypes;
+            }
+            return membershipTypeRepository.saveAll(Arrays.asList(
+                    new MembershipType(MembershipTypeName.CHILD, 0),
+                    new MembershipType(MembershipTypeName.ADULT, 500),
+                    new MembershipType(MembershipTypeName.FAMILY, 1500)
+            ));
+        });
+
+        for (int i = 0; i < ISBNS.length; i++) {
+            Book book = entityManager.persist(new Book(
+                    ISBNS[i],
+                    "The Girl in the Veil " + i,
+                    Year.of(1948),
+                    "Cole Lyons",
+                    BookType.FICTION,
+                    BookGenre.HORROR,
+                    4200
+            ));
+            bookCopyIds.add(entityManager.persist(
+                    new BookCopy(book, new Location((short) 1, (short) 1, (short) 1))
+            ).getId());
+            bookCopyIds.add(entityManager.persist(
+                    new BookCopy(book, new Location((short) 1, (short) 1, (short) 2))
+            ).getId());
+            bookId = book.getId();
+
+            MembershipType membershipType = entityManager.find(MembershipType.class, membershipTypes.get(i).getId());
+            Membership membership = entityManager.persist(new Membership(
+                    membershipType,
+                    LocalDate.of(2020, Month.JUNE, 2),
+                    LocalDate.of(2022, Month.JUNE, 2)
+            ));
+            memberIds.add(entityManager.persist(new Member(
+                    "Iain Carter " + i,
+                    "950 Poplar St.",
+                    "iaincarter" + i + "@hotmail.com",
+                    LocalDate.of(1998, Month.JUNE, 8),
+                    membership
+            )).getId());
+            membershipIds.add(membership.getId());
+            membershipId = membership.getId();
+            membershipTypeId = membershipType.getId();
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void listBookCopiesRunsOneStatement() {
+        assertThat(countStatements(() -> bookCopyRepository.listAvailable(ofSize(10)))).isEqualTo(1);
+        assertThat(countStatements(() -> bookCopyRepository.listAvailableAfter(0L, ofSize(10)))).isEqualTo(1);
+    }
+
+    @Test
+    void listBookCopiesByBookRunsOneStatement() {
+        assertThat(countStatements(() -> bookCopyRepository.listByBook(bookId, ofSize(10)))).isEqualTo(1);
+        assertThat(countStatements(() -> bookCopyRepository.listByBookAfter(bookId, 0L, ofSize(10)))).isEqualTo(1);
+    }
+
+    @Test
+    void listMembersRunsOneStatement() {
+        assertThat(countStatements(() -> memberRepository.listAvailable(ofSize(10)))).isEqualTo(1);
+        assertThat(countStatements(() -> memberRepository.listAvailableAfter(0L, ofSize(10)))).isEqualTo(1);
+    }
+
+    @Test
+    void listMembersByMembershipRunsOneStatement() {
+        assertThat(countStatements(() -> memberRepository.listByMembership(membershipId, ofSize(10)))).isEqualTo(1);
+        assertThat(countStatements(() -> memberRepository.listByMembershipAfter(membershipId, 0L, ofSize(10)))).isEqualTo(1);
+    }
+
+    @Test
+    void findMemberByEmailRunsOneStatement() {
+        assertThat(countStatements(() -> memberRepository.findByEmail("iaincarter0@hotmail.com"))).isEqualTo(1);
+    }
+
+    @Test
+    void listMembershipsRunsOneStatement() {
+        assertThat(countStatements(() -> membershipRepository.listAvailable(ofSize(10)))).isEqualTo(1);
+        assertThat(countStatements(() -> membershipRepository.listAvailableAfter(0L, ofSize(10)))).isEqualTo(1);
+    }
+
+    @Test
+    void listMembershipsByTypeRunsOneStatement() {
+        assertThat(countStatements(() -> membershipRepository.listByMembershipType(membershipTypeId, ofSize(10)))).isEqualTo(1);
+        assertThat(countStatements(() -> membershipRepository.listByMembershipTypeAfter(membershipTypeId, 0L, ofSize(10)))).isEqualTo(1);
+    }
+
+    @Test
+    void findByIdsRunsOneStatement() {
+        assertThat(countStatements(() -> bookCopyRepository.findAvailableByIds(bookCopyIds))).isEqualTo(1);
+        assertThat(countStatements(() -> memberRepository.findAvailableByIds(memberIds))).isEqualTo(1);
+        assertThat(countStatements(() -> membershipRepository.findAvailableByIds(membershipIds))).isEqualTo(1);
+    }
+
+    @Test
+    void listSummariesRunsOneStatement() {
+        assertThat(countStatements(() -> bookRepository.listSummariesAfter(0L, ofSize(10)))).isEqualTo(1);
+        assertThat(countStatements(() -> bookCopyRepository.listSummariesAfter(0L, ofSize(10)))).isEqualTo(1);
+        assertThat(countStatements(() -> bookCopyRepository.listSummariesByBookAfter(bookId, 0L, ofSize(10)))).isEqualTo(1);
+        assertThat(countStatements(() -> memberRepository.listSummariesAfter(0L, ofSize(10)))).isEqualTo(1);
+        assertThat(countStatements(() -> memberRepository.listSummariesByMembershipAfter(membershipId, 0L, ofSize(10)))).isEqualTo(1);
+        assertThat(countStatements(() -> membershipRepository.listSummariesAfter(0L, ofSize(10)))).isEqualTo(1);
+        assertThat(countStatements(() -> membershipRepository.listSummariesByMembershipTypeAfter(membershipTypeId, 0L, ofSize(10)))).isEqualTo(1);
+    }
+
+    @Test
+    void listSummariesManagesNoEntities() {
+        // when
+        bookCopyRepository.listSummariesAfter(0L, ofSize(10));
+        memberRepository.listSummariesAfter(0L, ofSize(10));
+        membershipRepository.listSummariesAfter(0L, ofSize(10));
+
+        // then
+        SessionStatistics statistics = entityManager.getEntityManager().unwrap(Session.class).getStatistics();
+        assertThat(statistics.getEntityCount()).isZero();
+    }
+
+    @Test
+    void findMembershipTypeRunsNoStatement() {
+        assertThat(countStatements(() -> membershipTypeRepository.findById(membershipTypeId))).isZero();
+        // cached query results are only used by transactions started after the membership types were inserted
+        Long findAllStatements = transactionTemplate.execute(
+                status -> countStatements(() -> membershipTypeRepository.findAll())
+        );
+        assertThat(findAllStatements).isZero();
+    }
+
+    private long countStatements(Supplier<?> query) {
+        // warm up the second-level cache
+        query.get();
+        entityManager.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Object result = query.get();
+        if (result instanceof List) {
+            assertThat((List<?>) result).isNotEmpty();
+        }
+
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,166 @@
+package com.yer.library.repository;
+
+import com.yer.library.model.Book;
+import com.yer.library.model.BookCopy;
+import com.yer.library.model.Location;
+import com.yer.library.model.Member;
+import com.yer.library.model.Membership;
+import com.yer.library.model.MembershipType;
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import com.yer.library.model.enums.MembershipTypeName;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Asserts that sparse fieldsets only select the columns (and joins) of the requested fields.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+        "com.yer.library.repository.FieldsetRepositoryTest$RecordingStatementInspector")
+@Import(FieldsetRepository.class)
+class FieldsetRepositoryTest {
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private FieldsetRepository underTest;
+
+    private Book book;
+    private BookCopy bookCopy;
+    private Member memberWithMembership;
+    private Member memberWithoutMembership;
+
+    @BeforeEach
+    void setUp() {
+        book = entityManager.persist(new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        ));
+        bookCopy = entityManager.persist(new BookCopy(book, new Location((short) 1, (short) 2, (short) 3)));
+        MembershipType membershipType = entityManager.persist(new MembershipType(MembershipTypeName.ADULT, 500));
+        Membership membership = entityManager.persist(new Membership(
+                membershipType,
+                LocalDate.of(2019, Month.MARCH, 3),
+                LocalDate.of(2021, Month.MARCH, 3)
+        ));
+        memberWithMembership = entityManager.persist(new Member(
+                "Kaden Dickens",
+                "835 Vincenza Loaf",
+                "k.dickens@gmail.com",
+                LocalDate.of(1953, Month.APRIL, 25),
+                membership
+        ));
+        memberWithoutMembership = entityManager.persist(new Member(
+                "Maya Ward",
+                "12 Wren Street",
+                "m.ward@gmail.com",
+                LocalDate.of(1987, Month.JUNE, 2),
+                null
+        ));
+        entityManager.flush();
+        entityManager.clear();
+        RecordingStatementInspector.STATEMENTS.clear();
+    }
+
+    @Test
+    void listSelectsRequestedColumnsOnly() {
+        // when
+        List<Map<String, Object>> books = underTest.listAvailableAfter(
+                Fieldset.BOOKS, Arrays.asList("title", "author"), 0L, 10
+        );
+
+        // then
+        assertThat(books).singleElement().satisfies(row -> {
+            assertThat(row.keySet()).containsExactly("id", "title", "author");
+            assertThat(row).containsEntry("title", "The Girl in the Veil");
+        });
+        assertThat(RecordingStatementInspector.STATEMENTS).singleElement().asString()
+                .contains("title", "author")
+                .doesNotContain("isbn", "book_value", "genre");
+    }
+
+    @Test
+    void fieldsOfAssociationsAreNested() {
+        // when
+        List<Map<String, Object>> bookCopies = underTest.listAvailableByOwnerAfter(
+                Fieldset.BOOK_COPIES, Collections.singletonList("book.title"), "book", book.getId(), 0L, 10
+        );
+
+        // then
+        assertThat(bookCopies).singleElement().satisfies(row -> {
+            assertThat(row).containsEntry("id", bookCopy.getId());
+            assertThat(row).containsEntry("book", Collections.singletonMap("title", "The Girl in the Veil"));
+        });
+    }
+
+    @Test
+    void idOfAssociationIsSelectedWithoutJoin() {
+        // when
+        List<Map<String, Object>> members = underTest.findAvailableByIds(
+                Fieldset.MEMBERS,
+                Arrays.asList("name", "membership.id"),
+                Arrays.asList(memberWithMembership.getId(), memberWithoutMembership.getId())
+        );
+
+        // then
+        assertThat(members).hasSize(2);
+        assertThat(RecordingStatementInspector.STATEMENTS).singleElement().asString()
+                .doesNotContainIgnoringCase("join")
+                .doesNotContain("start_date");
+    }
+
+    @Test
+    void unsetAssociationIsNull() {
+        // when
+        Map<String, Object> member = underTest.findAvailableById(
+                Fieldset.MEMBERS,
+                Arrays.asList("membership.startDate", "membership.membershipType.type"),
+                memberWithoutMembership.getId()
+        ).get();
+
+        // then
+        assertThat(member).containsEntry("membership", null);
+    }
+
+    @Test
+    void unknownFieldIsRejected() {
+        // when
+        // then
+        assertThatThrownBy(() -> underTest.findAvailableById(
+                Fieldset.BOOKS, Collections.singletonList("deleted"), book.getId()
+        ))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unknown field deleted");
+    }
+
+    public static class RecordingStatementInspector implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.yer.library.repository;
 import com.yer.library.model.Member;
 import com.yer.library.model.Membership;
 import com.yer.library.model.MembershipType;
+import com.yer.library.model.dtos.MemberSummary;
 import com.yer.library.model.enums.MembershipTypeName;
 import org.assertj.core.api.Condition;
 import org.junit.jupiter.api.AfterEach;
@@ -536,4 +537,136 @@ class MemberRepositoryTest {
                 .hasSize(2)
                 .containsOnly(member2, member4);
     }
-}
\ No newline at end of file
+
+    @Test
+    void listByMembershipAfterReturnsNextPageInIdOrder() {
+        // given
+        MembershipType membershipType = new MembershipType(
+                MembershipTypeName.FAMILY, 1500
+        );
+
+        Membership membership = new Membership(
+                membershipType,
+                LocalDate.of(2019, Month.MARCH, 3),
+                LocalDate.of(2021, Month.MARCH, 3)
+        );
+
+        Member member1 = new Member(
+                "Iain Carter",
+                "950 Poplar St.",
+                "iaincarter@hotmail.com",
+                LocalDate.of(1998, Month.JUNE, 8),
+                membership
+        );
+        Member member2 = new Member(
+                "Harry Carter",
+                "950 Poplar St.",
+                "harrycarter@hotmail.com",
+                LocalDate.of(1996, Month.JULY, 4),
+                membership
+        );
+        Member member3 = new Member(
+                "Henrietta Goodwin",
+                "651 Santa Clara Street",
+                "henrigoodwin@gmail.com",
+                LocalDate.of(1961, Month.MARCH, 13),
+                membership
+        );
+
+        membershipTypeRepository.save(membershipType);
+        Long membershipId = membershipRepository.save(membership).getId();
+        underTest.saveAll(Collections.unmodifiableList(Arrays.asList(member1, member2, member3)));
+
+        // when
+        List<Member> firstPage = underTest.listByMembershipAfter(membershipId, 0L, ofSize(2));
+        List<Member> secondPage = underTest.listByMembershipAfter(membershipId, firstPage.get(1).getId(), ofSize(2));
+        List<Member> allMembers = underTest.listAvailableAfter(member2.getId(), ofSize(10));
+
+        // then
+        assertThat(firstPage).containsExactly(member1, member2);
+        assertThat(secondPage).containsExactly(member3);
+        assertThat(allMembers).containsExactly(member3);
+    }
+
+    @Test
+    void detachFromMembershipsRemovesMembersOfGivenMemberships() {
+        // given
+        MembershipType childMembershipType = new MembershipType(MembershipTypeName.CHILD, 0);
+
+        Membership membership1 = new Membership(
+                childMembershipType,
+                LocalDate.of(2019, Month.MARCH, 3),
+                LocalDate.of(2021, Month.MARCH, 3));
+        Membership membership2 = new Membership(
+                childMembershipType,
+                LocalDate.of(2019, Month.MAY, 20),
+                LocalDate.of(2022, Month.MAY, 20));
+
+        Member member1 = new Member(
+                "Kaden Dickens",
+                "835 Vincenza Loaf",
+                "k.dickens@gmail.com",
+                LocalDate.of(1953, Month.APRIL, 25),
+                membership1
+        );
+        Member member2 = new Member(
+                "Iain Carter",
+                "950 Poplar St.",
+                "iaincarter@hotmail.com",
+                LocalDate.of(1998, Month.JUNE, 8),
+                membership2
+        );
+
+        membershipTypeRepository.save(childMembershipType);
+        membershipRepository.saveAll(Arrays.asList(membership1, membership2));
+        underTest.saveAll(Arrays.asList(member1, member2));
+
+        // when
+        int detached = underTest.detachFromMemberships(Collections.singletonList(membership1.getId()));
+
+        // then
+        assertThat(detached).isEqualTo(1);
+        assertThat(underTest.findById(member1.getId()).map(Member::getMembership)).isEmpty();
+        assertThat(underTest.findById(member2.getId()).map(Member::getMembership)).contains(membership2);
+    }
+
+    @Test
+    void listSummariesAfterIncludesMembersWithoutMembership() {
+        // given
+        MembershipType childMembershipType = new MembershipType(MembershipTypeName.CHILD, 0);
+        Membership membership = new Membership(
+                childMembershipType,
+                LocalDate.of(2019, Month.MARCH, 3),
+                LocalDate.of(2021, Month.MARCH, 3));
+        Member member = new Member(
+                "Kaden Dickens",
+                "835 Vincenza Loaf",
+                "k.dickens@gmail.com",
+                LocalDate.of(1953, Month.APRIL, 25),
+                membership
+        );
+        Member memberWithoutMembership = new Member(
+                "Iain Carter",
+                "950 Poplar St.",
+                "iaincarter@hotmail.com",
+                LocalDate.of(1998, Month.JUNE, 8),
+                null
+        );
+
+        membershipTypeRepository.save(childMembershipType);
+        membershipRepository.save(membership);
+        underTest.saveAll(Arrays.asList(member, memberWithoutMembership));
+
+        // when
+        List<MemberSummary> summaries = underTest.listSummariesAfter(0L, ofSize(10));
+
+        // then
+        assertThat(summaries).extracting(MemberSummary::getId)
+                .containsExactly(member.getId(), memberWithoutMembership.getId());
+        assertThat(summaries.get(0).getMembership().getMembershipType().getType()).isEqualTo(MembershipTypeName.CHILD);
+        assertThat(summaries.get(0).getMembership().getStartDate()).isEqualTo(LocalDate.of(2019, Month.MARCH, 3));
+        assertThat(summaries.get(0).getVersion()).isEqualTo(member.getVersion());
+        assertThat(summaries.get(0).getMembership().getVersion()).isEqualTo(membership.getVersion());
+        assertThat(summaries.get(1).getMembership()).isNull();
+    }
+}
@@ -280,4 +280,67 @@ class MembershipRepositoryTest {
                 .hasSize(2)
                 .containsOnly(membership2, membership4);
     }
-}
\ No newline at end of file
+
+    @Test
+    void listByTypeAfterReturnsNextPageInIdOrder() {
+        // given
+        MembershipType adultMembershipType = new MembershipType(MembershipTypeName.ADULT, 500);
+
+        Membership membership1 = new Membership(
+                adultMembershipType,
+                LocalDate.of(2020, Month.JUNE, 2),
+                LocalDate.of(2020, Month.JULY, 2));
+        Membership membership2 = new Membership(
+                adultMembershipType,
+                LocalDate.of(2020, Month.SEPTEMBER, 3),
+                LocalDate.of(2022, Month.SEPTEMBER, 3));
+        membership2.setDeleted(true);
+        Membership membership3 = new Membership(
+                adultMembershipType,
+                LocalDate.of(2020, Month.NOVEMBER, 3),
+                LocalDate.of(2021, Month.FEBRUARY, 3));
+
+        Long membershipTypeId = membershipTypeRepository.save(adultMembershipType).getId();
+        underTest.saveAll(Collections.unmodifiableList(Arrays.asList(membership1, membership2, membership3)));
+
+        // when
+        List<Membership> firstPage = underTest.listByMembershipTypeAfter(membershipTypeId, 0L, ofSize(1));
+        List<Membership> secondPage = underTest.listByMembershipTypeAfter(membershipTypeId, firstPage.get(0).getId(), ofSize(1));
+        List<Membership> allMemberships = underTest.listAvailableAfter(0L, ofSize(10));
+
+        // then
+        assertThat(firstPage).containsExactly(membership1);
+        assertThat(secondPage).containsExactly(membership3);
+        assertThat(allMemberships).containsExactly(membership1, membership3);
+    }
+
+    @Test
+    void softDeleteByIdsDeletesOnlyGivenAvailableMemberships() {
+        // given
+        MembershipType childMembershipType = new MembershipType(MembershipTypeName.CHILD, 0);
+
+        Membership membership1 = new Membership(
+                childMembershipType,
+                LocalDate.of(2019, Month.MARCH, 3),
+                LocalDate.of(2021, Month.MARCH, 3));
+        Membership membership2 = new Membership(
+                childMembershipType,
+                LocalDate.of(2019, Month.MAY, 20),
+                LocalDate.of(2022, Month.MAY, 20));
+        membership2.setDeleted(true);
+        Membership membership3 = new Membership(
+                childMembershipType,
+                LocalDate.of(2020, Month.JUNE, 2),
+                LocalDate.of(2022, Month.JUNE, 2));
+
+        membershipTypeRepository.save(childMembershipType);
+        underTest.saveAll(Arrays.asList(membership1, membership2, membership3));
+
+        // when
+        int deleted = underTest.softDeleteByIds(Arrays.asList(membership1.getId(), membership2.getId()));
+
+        // then
+        assertThat(deleted).isEqualTo(1);
+        assertThat(underTest.listAvailable(ofSize(10))).containsExactly(membership3);
+    }
+}
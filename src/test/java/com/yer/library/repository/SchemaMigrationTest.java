@@ -0,0 +1,146 @@
+package com.yer.library.repository;
+
+import com.yer.library.model.Book;
+import com.yer.library.model.BookCopy;
+import com.yer.library.model.Loan;
+import com.yer.library.model.Location;
+import com.yer.library.model.Member;
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Checks the schema created by the migrations in {@code db/migration}.
+ */
+@DataJpaTest
+class SchemaMigrationTest {
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void softDeleteIndexesExist() {
+        // when
+        @SuppressWarnings("unchecked")
+        List<String> indexNames = entityManager.createNativeQuery(
+                "SELECT LOWER(INDEX_NAME) FROM INFORMATION_SCHEMA.INDEXES"
+        ).getResultList();
+
+        // then
+        assertThat(indexNames).contains(
+                "idx_books_deleted_isbn",
+                "idx_members_deleted_email_address",
+                "idx_book_copies_book_id_deleted",
+                "idx_members_membership_id_deleted",
+                "uk_books_active_isbn",
+                "uk_members_active_email_address",
+                "uk_loans_active_book_copy_id",
+                "idx_loans_member_id_return_date",
+                "uk_holds_book_id_active_member_id",
+                "idx_holds_book_id_status_placed_at",
+                "idx_memberships_deleted_end_date"
+        );
+    }
+
+    @Test
+    void isbnIsUniqueAmongAvailableBooks() {
+        // given
+        bookRepository.saveAndFlush(newBook());
+
+        // when
+        // then
+        assertThatThrownBy(() -> bookRepository.saveAndFlush(newBook()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void isbnOfDeletedBookCanBeReused() {
+        // given
+        Book deletedBook = newBook();
+        deletedBook.setDeleted(true);
+        Book otherDeletedBook = newBook();
+        otherDeletedBook.setDeleted(true);
+        bookRepository.saveAndFlush(deletedBook);
+        bookRepository.saveAndFlush(otherDeletedBook);
+
+        // when
+        Book book = bookRepository.saveAndFlush(newBook());
+
+        // then
+        assertThat(bookRepository.findByIsbn(book.getIsbn())).contains(book);
+    }
+
+    @Test
+    void emailAddressIsUniqueAmongAvailableMembers() {
+        // given
+        Member deletedMember = newMember();
+        deletedMember.setDeleted(true);
+        memberRepository.saveAndFlush(deletedMember);
+        memberRepository.saveAndFlush(newMember());
+
+        // when
+        // then
+        assertThatThrownBy(() -> memberRepository.saveAndFlush(newMember()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void bookCopyHasAtMostOneActiveLoan() {
+        // given
+        BookCopy bookCopy = bookCopyRepository.saveAndFlush(
+                new BookCopy(bookRepository.saveAndFlush(newBook()), new Location((short) 1, (short) 1, (short) 1))
+        );
+        Member member = memberRepository.saveAndFlush(newMember());
+        LocalDate loanDate = LocalDate.of(2022, Month.MARCH, 1);
+        Loan returnedLoan = new Loan(bookCopy, member, loanDate);
+        returnedLoan.setReturnDate(loanDate.plusDays(7));
+        loanRepository.saveAndFlush(returnedLoan);
+        loanRepository.saveAndFlush(new Loan(bookCopy, member, loanDate.plusDays(7)));
+
+        // when
+        // then
+        assertThatThrownBy(() -> loanRepository.saveAndFlush(new Loan(bookCopy, member, loanDate.plusDays(8))))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    private static Book newBook() {
+        return new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+    }
+
+    private static Member newMember() {
+        return new Member(
+                "Kaden Dickens",
+                "835 Vincenza Loaf",
+                "k.dickens@gmail.com",
+                LocalDate.of(1953, Month.APRIL, 25),
+                null
+        );
+    }
+}
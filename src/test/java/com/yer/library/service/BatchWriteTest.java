@@ -0,0 +1,192 @@
+package com.yer.library.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.yer.library.model.Book;
+import com.yer.library.model.BookCopy;
+import com.yer.library.model.Location;
+import com.yer.library.model.dtos.BatchPatch;
+import com.yer.library.model.dtos.BatchReport;
+import com.yer.library.repository.BookCopyRepository;
+import com.yer.library.repository.BookRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.yer.library.model.dtos.BatchReport.Status.FAILED;
+import static com.yer.library.model.dtos.BatchReport.Status.SUCCEEDED;
+import static com.yer.library.service.LibraryFixtures.newBook;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * Writes batches in chunks of two objects, so that both the chunked writes and the one-by-one retries of a failed
+ * chunk are exercised.
+ */
+@SpringBootTest(webEnvironment = NONE, properties = "library.batch.chunk-size=2")
+class BatchWriteTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookCopyService bookCopyService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+
+    @Test
+    void addAllReportsEveryBook() {
+        // given
+        Book invalidBook = newBook(isbn(103));
+        invalidBook.setTitle("");
+        List<Book> books = Arrays.asList(
+                newBook(isbn(101)),
+                newBook(isbn(101)),
+                invalidBook,
+                newBook(isbn(102))
+        );
+
+        // when
+        BatchReport<Book> report = bookService.addAll(books);
+
+        // then
+        assertThat(report.getItems())
+                .extracting(BatchReport.Item::getStatus)
+                .containsExactly(SUCCEEDED, FAILED, FAILED, SUCCEEDED);
+        assertThat(report.getItems().get(1).getErrors()).singleElement().asString().contains("already exists");
+        assertThat(report.getItems().get(2).getErrors()).singleElement().asString().startsWith("title");
+        assertThat(report.getSucceeded()).isEqualTo(2);
+        assertThat(report.getFailed()).isEqualTo(2);
+        assertThat(bookRepository.findByIsbn(isbn(101))).isPresent();
+        assertThat(bookRepository.findByIsbn(isbn(102))).isPresent();
+        assertThat(bookRepository.findByIsbn(isbn(103))).isEmpty();
+    }
+
+    @Test
+    void partialUpdateAllMovesBookCopies() throws Exception {
+        // given
+        Book book = bookService.add(newBook(isbn(201)));
+        List<Long> bookCopyIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            bookCopyIds.add(bookCopyService.add(
+                    new BookCopy(null, new Location((short) 1, (short) 1, (short) 1)), book.getId()
+            ).getId());
+        }
+        List<BatchPatch> patches = Arrays.asList(
+                new BatchPatch(bookCopyIds.get(0), moveTo(2)),
+                new BatchPatch(-1L, moveTo(2)),
+                new BatchPatch(bookCopyIds.get(2), moveTo(3))
+        );
+
+        // when
+        BatchReport<BookCopy> report = bookCopyService.partialUpdateAll(patches);
+
+        // then
+        assertThat(report.getItems())
+                .extracting(BatchReport.Item::getStatus)
+                .containsExactly(SUCCEEDED, FAILED, SUCCEEDED);
+        assertThat(report.getItems().get(1).getErrors()).singleElement().asString().contains("does not exist");
+        assertThat(bookCopyRepository.findById(bookCopyIds.get(0)).get().getLocation().getFloor()).isEqualTo((short) 2);
+        assertThat(bookCopyRepository.findById(bookCopyIds.get(1)).get().getLocation().getFloor()).isEqualTo((short) 1);
+        assertThat(bookCopyRepository.findById(bookCopyIds.get(2)).get().getLocation().getFloor()).isEqualTo((short) 3);
+    }
+
+    @Test
+    void fullUpdateAllRequiresIds() {
+        // given
+        Book book = bookService.add(newBook(isbn(301)));
+        Book updatedBook = newBook(isbn(301));
+        updatedBook.setId(book.getId());
+        updatedBook.setValue(4300);
+
+        // when
+        BatchReport<Book> report = bookService.fullUpdateAll(Arrays.asList(newBook(isbn(302)), updatedBook));
+
+        // then
+        assertThat(report.getItems())
+                .extracting(BatchReport.Item::getStatus)
+                .containsExactly(FAILED, SUCCEEDED);
+        assertThat(report.getItems().get(0).getErrors()).containsExactly("cannot update an object without an ID");
+        assertThat(bookRepository.findById(book.getId()).get().getValue()).isEqualTo(4300);
+    }
+
+    @Test
+    void fullUpdateAllRequiresBooks() {
+        // given
+        Book book = bookService.add(newBook(isbn(501)));
+        BookCopy bookCopy = bookCopyService.add(
+                new BookCopy(null, new Location((short) 1, (short) 1, (short) 1)), book.getId()
+        );
+        BookCopy withoutBook = new BookCopy(null, new Location((short) 2, (short) 1, (short) 1));
+        withoutBook.setId(bookCopy.getId());
+        BookCopy moved = new BookCopy(book, new Location((short) 3, (short) 1, (short) 1));
+        moved.setId(bookCopy.getId());
+
+        // when
+        BatchReport<BookCopy> report = bookCopyService.fullUpdateAll(Arrays.asList(withoutBook, moved));
+
+        // then
+        assertThat(report.getItems())
+                .extracting(BatchReport.Item::getStatus)
+                .containsExactly(FAILED, SUCCEEDED);
+        assertThat(report.getItems().get(0).getErrors()).containsExactly("cannot update a book copy without a book ID");
+        assertThat(bookCopyRepository.findById(bookCopy.getId()).get().getLocation().getFloor()).isEqualTo((short) 3);
+    }
+
+    @Test
+    void concurrentBatchesWithSameIsbnsInReverseOrderDoNotDeadlock() throws Exception {
+        // given
+        List<String> isbns = IntStream.range(0, 40)
+                .mapToObj(i -> isbn(400 + i))
+                .collect(Collectors.toList());
+        List<String> reversedIsbns = new ArrayList<>(isbns);
+        Collections.reverse(reversedIsbns);
+
+        // when
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<BatchReport<Book>> report = executor.submit(() -> bookService.addAll(newBooks(isbns)));
+        Future<BatchReport<Book>> reversedReport = executor.submit(() -> bookService.addAll(newBooks(reversedIsbns)));
+        executor.shutdown();
+
+        // then
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        assertThat(report.get().getSucceeded() + reversedReport.get().getSucceeded()).isEqualTo(isbns.size());
+        assertThat(report.get().getFailed() + reversedReport.get().getFailed()).isEqualTo(isbns.size());
+    }
+
+    private static JsonPatch moveTo(int floor) throws Exception {
+        return JsonPatch.fromJson(MAPPER.readTree(
+                "[{\"op\": \"replace\", \"path\": \"/location\", \"value\": " +
+                        "{\"floor\": " + floor + ", \"bookcase\": 1, \"shelve\": 1}}]"
+        ));
+    }
+
+    /**
+     * Returns a valid ISBN-13 with the given number as its last digits (before the check digit).
+     */
+    private static String isbn(int number) {
+        String digits = String.format("978001%06d", number);
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    private static List<Book> newBooks(List<String> isbns) {
+        return isbns.stream().map(LibraryFixtures::newBook).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,141 @@
+package com.yer.library.service;
+
+import com.yer.library.model.BookAvailability;
+import com.yer.library.model.BookCopy;
+import com.yer.library.model.Location;
+import com.yer.library.model.dtos.BatchResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+
+import static com.yer.library.service.LibraryFixtures.newBook;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * Checks that the availability counters of books follow every change of their copies: adds, deletes, moves to another
+ * book, checkouts and returns.
+ */
+@SpringBootTest(webEnvironment = NONE)
+@Import(LibraryFixtures.class)
+class BookAvailabilityTest {
+    @Autowired
+    private LibraryFixtures fixtures;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookCopyService bookCopyService;
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        // the second-level cache is shared by all application contexts of the test run, and may hold books of other
+        // contexts under the same IDs
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void newBookHasNoCopies() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-040001-7")).getId();
+
+        // when
+        BookAvailability availability = bookService.getAvailability(bookId);
+
+        // then
+        assertThat(availability.getAvailableCopies()).isZero();
+        assertThat(availability.getTotalCopies()).isZero();
+    }
+
+    @Test
+    void countersFollowAddsLoansReturnsAndDeletes() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-040002-4")).getId();
+        Long bookCopyId1 = addBookCopy(bookId);
+        Long bookCopyId2 = addBookCopy(bookId);
+        Long bookCopyId3 = addBookCopy(bookId);
+        Long memberId = fixtures.newBorrower("availability1@example.com");
+        assertAvailability(bookId, 3, 3);
+
+        // when
+        loanService.checkOut(bookCopyId1, memberId);
+        loanService.checkOutAll(Arrays.asList(bookCopyId2, bookCopyId1), memberId);
+
+        // then
+        assertAvailability(bookId, 1, 3);
+
+        // when
+        loanService.returnBookCopy(bookCopyId1);
+        bookCopyService.delete(bookCopyId2);
+        bookCopyService.delete(Arrays.asList(bookCopyId3, bookCopyId2));
+
+        // then
+        assertAvailability(bookId, 1, 1);
+
+        // when
+        // a copy deleted while it is lent is not counted again when it is returned
+        loanService.returnBookCopy(bookCopyId2);
+
+        // then
+        assertAvailability(bookId, 1, 1);
+    }
+
+    @Test
+    void movedCopyIsCountedForItsNewBook() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-040003-1")).getId();
+        Long otherBookId = bookService.add(newBook("978-0-00-040004-8")).getId();
+        Long bookCopyId = addBookCopy(bookId);
+        addBookCopy(bookId);
+
+        // when
+        bookCopyService.fullUpdate(
+                bookCopyId,
+                new BookCopy(null, new Location((short) 2, (short) 2, (short) 2)),
+                otherBookId
+        );
+
+        // then
+        assertAvailability(bookId, 1, 1);
+        assertAvailability(otherBookId, 1, 1);
+    }
+
+    @Test
+    void deletedBookHasNoAvailability() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-040005-5")).getId();
+        Long otherBookId = bookService.add(newBook("978-0-00-040006-2")).getId();
+        addBookCopy(bookId);
+        addBookCopy(otherBookId);
+
+        // when
+        bookService.delete(bookId);
+
+        // then
+        assertThatThrownBy(() -> bookService.getAvailability(bookId))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("book with ID " + bookId + " does not exist");
+        BatchResult<BookAvailability> result = bookService.getAvailability(Arrays.asList(otherBookId, bookId));
+        assertThat(result.getFound()).extracting(BookAvailability::getBookId).containsExactly(otherBookId);
+        assertThat(result.getMissingIds()).containsExactly(bookId);
+    }
+
+    private void assertAvailability(Long bookId, int availableCopies, int totalCopies) {
+        BookAvailability availability = bookService.getAvailability(bookId);
+        assertThat(availability.getAvailableCopies()).isEqualTo(availableCopies);
+        assertThat(availability.getTotalCopies()).isEqualTo(totalCopies);
+    }
+
+    private Long addBookCopy(Long bookId) {
+        return bookCopyService.add(new BookCopy(null, new Location((short) 1, (short) 1, (short) 1)), bookId).getId();
+    }
+}
@@ -10,6 +10,7 @@ import com.yer.library.model.BookCopy;
 import com.yer.library.model.Location;
 import com.yer.library.model.enums.BookGenre;
 import com.yer.library.model.enums.BookType;
+import com.yer.library.repository.BookAvailabilityRepository;
 import com.yer.library.repository.BookCopyRepository;
 import com.yer.library.repository.BookRepository;
 import org.junit.jupiter.api.Test;
@@ -41,9 +42,21 @@ class BookCopyServiceTest {
     @Mock
     private BookRepository bookRepository;
 
+    @Mock
+    private BookAvailabilityRepository bookAvailabilityRepository;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private HoldService holdService;
+
     @Mock
     private Logger logger;
 
+    @Spy
+    private JsonPatchEngine jsonPatchEngine = new JsonPatchEngine();
+
     @InjectMocks
     @Spy
     private BookCopyService underTest;
@@ -200,6 +213,36 @@ class BookCopyServiceTest {
         ));
     }
 
+    @Test
+    void listAfter() {
+        // given
+        Long afterId = 42L;
+        int limit = 100;
+
+        // when
+        underTest.list(afterId, limit);
+
+        // then
+        verify(bookCopyRepository).listAvailableAfter(eq(afterId), argThat(
+                pageable -> pageable.equals(Pageable.ofSize(limit))
+        ));
+    }
+
+    @Test
+    void listByBookAfterFirstPage() {
+        // given
+        Long bookId = 1L;
+        int limit = 100;
+
+        // when
+        underTest.listByBook(bookId, null, limit);
+
+        // then
+        verify(bookCopyRepository).listByBookAfter(eq(bookId), eq(0L), argThat(
+                pageable -> pageable.equals(Pageable.ofSize(limit))
+        ));
+    }
+
     @Test
     void addValidBookCopyWithBook() {
         // given
@@ -388,7 +431,7 @@ class BookCopyServiceTest {
         expectedReturnedBookCopy.setId(bookCopyId);
 
         given(bookCopyRepository.findById(bookCopyId)).willReturn(Optional.of(initialBookCopy));
-        given(bookCopyRepository.save(updatedBookCopy)).willReturn(expectedReturnedBookCopy);
+        given(bookCopyRepository.save(initialBookCopy)).willReturn(expectedReturnedBookCopy);
 
         // when
         BookCopy returnedCopy = underTest.fullUpdate(bookCopyId, updatedBookCopy);
@@ -401,7 +444,9 @@ class BookCopyServiceTest {
         verify(bookCopyRepository).save(bookCopyArgumentCaptor.capture());
         BookCopy capturedBookCopy = bookCopyArgumentCaptor.getValue();
 
-        assertThat(capturedBookCopy).isEqualTo(updatedBookCopy);
+        assertThat(capturedBookCopy).isSameAs(initialBookCopy);
+        assertThat(capturedBookCopy.getId()).isEqualTo(bookCopyId);
+        assertThat(capturedBookCopy.getLocation()).isEqualTo(updatedBookCopy.getLocation());
         assertThat(returnedCopy).isEqualTo(expectedReturnedBookCopy);
     }
 
@@ -0,0 +1,150 @@
+package com.yer.library.service;
+
+import com.yer.library.model.Book;
+import com.yer.library.model.dtos.ImportReport;
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import com.yer.library.repository.BookAvailabilityRepository;
+import com.yer.library.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Year;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class BookImportServiceTest {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookAvailabilityRepository bookAvailabilityRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private BookImportService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new BookImportService(
+                bookRepository,
+                bookAvailabilityRepository,
+                Mockito.mock(BookSearchIndex.class),
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                transactionTemplate
+        );
+    }
+
+    @Test
+    void importValidCsv() throws IOException {
+        // given
+        String csv = "isbn,title,year,author,type,genre,value\n" +
+                "978-2-3915-3957-4,The Girl in the Veil,1948,Cole Lyons,fiction,horror,4200\n" +
+                "978-0-1011-1658-9,\"Legacy Circling, Part One\",2001,Arla Salgado,fiction,romance,4200\n";
+
+        // when
+        ImportReport report = underTest.importBooks(toStream(csv), BookImportService.Format.CSV);
+
+        // then
+        assertThat(report.getRowsRead()).isEqualTo(2);
+        assertThat(report.getImported()).isEqualTo(2);
+        assertThat(report.getErrors()).isEmpty();
+
+        Optional<Book> book = bookRepository.findByIsbn("978-0-1011-1658-9");
+        assertThat(book).isPresent();
+        assertThat(book.get().getTitle()).isEqualTo("Legacy Circling, Part One");
+        assertThat(book.get().getGenre()).isEqualTo(BookGenre.ROMANCE);
+        assertThat(book.get().getYear()).isEqualTo(Year.of(2001));
+    }
+
+    @Test
+    void importCsvReportsInvalidRows() throws IOException {
+        // given
+        String csv = "isbn,title,year,author,type,genre,value\n" +
+                "978-2-3915-3957-4,The Girl in the Veil,1948,Cole Lyons,fiction,horror,4200\n" +
+                "978-2-3915-3957-5,Bad Checksum,1948,Cole Lyons,fiction,horror,4200\n" +
+                "978-0-1011-1658-9,Unknown Genre,2001,Arla Salgado,fiction,cooking,4200\n" +
+                "978-0-6967-9461-2,Too Expensive,1945,Murat McCartney,fiction,folklore,100000\n";
+
+        // when
+        ImportReport report = underTest.importBooks(toStream(csv), BookImportService.Format.CSV);
+
+        // then
+        assertThat(report.getRowsRead()).isEqualTo(4);
+        assertThat(report.getImported()).isEqualTo(1);
+        assertThat(report.getErrors())
+                .extracting(ImportReport.RowError::getRow)
+                .containsExactly(2L, 3L, 4L);
+        assertThat(report.getErrors().get(0).getMessages()).containsExactly("isbn: ISBN must be a valid ISBN 13");
+        assertThat(bookRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void importNdjsonResolvesIsbnConflicts() throws IOException {
+        // given
+        Book existingBook = new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+        Book deletedBook = new Book(
+                "978-0-1011-1658-9",
+                "Legacy Circling",
+                Year.of(2001),
+                "Arla Salgado",
+                BookType.FICTION,
+                BookGenre.ROMANCE,
+                4200
+        );
+        deletedBook.setDeleted(true);
+        bookRepository.save(existingBook);
+        Long deletedBookId = bookRepository.save(deletedBook).getId();
+
+        String ndjson = "{\"isbn\":\"978-2-3915-3957-4\",\"title\":\"Taken\",\"year\":1948,\"type\":\"fiction\",\"genre\":\"horror\",\"value\":1}\n" +
+                "{\"isbn\":\"978-0-1011-1658-9\",\"title\":\"Legacy Circling Revisited\",\"year\":2002,\"author\":\"Arla Salgado\",\"type\":\"fiction\",\"genre\":\"romance\",\"value\":4300}\n" +
+                "\n" +
+                "{\"isbn\":\"978-0-6967-9461-2\",\"title\":\"Case of the Laughing Baboon\",\"year\":1945,\"author\":\"Murat McCartney\",\"type\":\"fiction\",\"genre\":\"folklore\",\"value\":4200}\n" +
+                "{\"isbn\":\"978-0-6967-9461-2\",\"title\":\"Duplicate\",\"year\":1945,\"author\":\"Murat McCartney\",\"type\":\"fiction\",\"genre\":\"folklore\",\"value\":4200}\n" +
+                "{\"isbn\": \"978-6-3073-8763-1\", \"title\": \n";
+
+        // when
+        ImportReport report = underTest.importBooks(toStream(ndjson), BookImportService.Format.NDJSON);
+
+        // then
+        assertThat(report.getRowsRead()).isEqualTo(5);
+        assertThat(report.getImported()).isEqualTo(2);
+
+        List<ImportReport.RowError> errors = report.getErrors();
+        assertThat(errors).extracting(ImportReport.RowError::getRow).containsExactly(1L, 5L, 6L);
+        assertThat(errors.get(0).getMessages()).containsExactly("ISBN 978-2-3915-3957-4 already exists");
+        assertThat(errors.get(1).getMessages()).containsExactly("ISBN 978-0-6967-9461-2 already exists");
+        assertThat(errors.get(2).getIsbn()).isNull();
+
+        Optional<Book> revivedBook = bookRepository.findByIsbn("978-0-1011-1658-9");
+        assertThat(revivedBook).isPresent();
+        assertThat(revivedBook.get().getId()).isEqualTo(deletedBookId);
+        assertThat(revivedBook.get().getTitle()).isEqualTo("Legacy Circling Revisited");
+    }
+
+    private static InputStream toStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
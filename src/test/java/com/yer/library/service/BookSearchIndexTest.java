@@ -0,0 +1,225 @@
+package com.yer.library.service;
+
+import com.yer.library.model.Book;
+import com.yer.library.model.dtos.BookSearchHit;
+import com.yer.library.model.dtos.BookSearchResult;
+import com.yer.library.model.dtos.BookSummary;
+import com.yer.library.model.dtos.ReindexReport;
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import com.yer.library.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * Checks that books are found by the words of their title and author as soon as they are changed, with words that no
+ * book of other tests contains.
+ */
+@SpringBootTest(webEnvironment = NONE)
+class BookSearchIndexTest {
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        // the second-level cache is shared by all application contexts of the test run, and may hold books of other
+        // contexts under the same IDs
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void changesAreSearchableAfterCommit() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-070001-8", "Zephyrine Chronicles", "Odalys Penhallow")).getId();
+
+        // when
+        // then
+        assertThat(searchIds("zephyrine")).containsExactly(bookId);
+        assertThat(searchIds("Penhallow zephyrine")).containsExactly(bookId);
+        assertThat(searchIds("zephyrine quillback")).isEmpty();
+
+        // when
+        bookService.fullUpdate(bookId, newBook("978-0-00-070001-8", "Quillback Chronicles", "Odalys Penhallow"));
+
+        // then
+        assertThat(searchIds("zephyrine")).isEmpty();
+        assertThat(searchIds("quillback")).containsExactly(bookId);
+        assertThat(bookService.search("quillback", null, 10).getHits().get(0).getBook().getTitle())
+                .isEqualTo("Quillback Chronicles");
+        assertThat(bookService.search("quillback", null, 10).getHits().get(0).getBook().getVersion())
+                .isEqualTo(bookService.get(bookId).getVersion());
+
+        // when
+        bookService.delete(bookId);
+
+        // then
+        assertThat(searchIds("quillback")).isEmpty();
+    }
+
+    @Test
+    void titleMatchesRankAboveAuthorMatches() {
+        // given
+        Long authorMatchId = bookService.add(newBook("978-0-00-070002-5", "Nights of Ash", "Ines Marrowglen")).getId();
+        Long titleMatchId = bookService.add(newBook("978-0-00-070003-2", "Marrowglen", "Teodor Vale")).getId();
+
+        // when
+        List<Long> bookIds = searchIds("marrowglen");
+
+        // then
+        assertThat(bookIds).containsExactly(titleMatchId, authorMatchId);
+    }
+
+    @Test
+    void pagesAreReadFromTheSameVersion() {
+        // given
+        List<Long> addedIds = new ArrayList<>();
+        for (String isbn : new String[]{
+                "978-0-00-070004-9", "978-0-00-070005-6", "978-0-00-070006-3", "978-0-00-070007-0", "978-0-00-070008-7"
+        }) {
+            addedIds.add(bookService.add(newBook(isbn, "Brindlewick " + isbn, "Mara Holt")).getId());
+        }
+
+        // when
+        List<Long> foundIds = new ArrayList<>();
+        BookSearchResult page = bookService.search("brindlewick", null, 2);
+        // a book added after the first page is not on the next pages
+        bookService.add(newBook("978-0-00-070009-4", "Brindlewick Brindlewick", "Mara Holt"));
+        while (true) {
+            page.getHits().forEach(hit -> foundIds.add(hit.getBook().getId()));
+            if (page.getNextCursor() == null) {
+                break;
+            }
+            page = bookService.search("brindlewick", page.getNextCursor(), 2);
+        }
+
+        // then
+        assertThat(foundIds).containsExactlyInAnyOrderElementsOf(addedIds);
+        assertThat(searchIds("brindlewick")).hasSize(6);
+    }
+
+    @Test
+    void reindexFindsAllBooks() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-070010-0", "Saltmarrow Tides", "Wren Abernathy")).getId();
+
+        // when
+        ReindexReport report = bookService.reindexSearch();
+
+        // then
+        assertThat(report.getBooks()).isPositive();
+        assertThat(report.getThreads()).isPositive();
+        assertThat(searchIds("saltmarrow")).containsExactly(bookId);
+    }
+
+    @Test
+    void lateWriteOfAnOlderBookDoesNotOverwriteTheNewerBook() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-070011-7", "Thistlemere Hollow", "Anselm Crewe")).getId();
+        Book olderBook = newBook("978-0-00-070011-7", "Thistlemere Hollow", "Anselm Crewe");
+        olderBook.setId(bookId);
+        bookService.fullUpdate(bookId, newBook("978-0-00-070011-7", "Corvantine Hollow", "Anselm Crewe"));
+
+        // when
+        // the write of the first version of the book, after the write of the update of a concurrent transaction
+        bookSearchIndex.indexAfterCommit(olderBook);
+
+        // then
+        assertThat(searchIds("thistlemere")).isEmpty();
+        assertThat(searchIds("corvantine")).containsExactly(bookId);
+    }
+
+    @Test
+    void failedReindexKeepsThePreviousIndex() throws Exception {
+        // given
+        Map<Long, BookSummary> books = new HashMap<>();
+        BookRepository bookRepository = mock(BookRepository.class);
+        when(bookRepository.listSummariesByIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().filter(books::containsKey).map(books::get).collect(Collectors.toList());
+        });
+        BookSearchIndex index = new BookSearchIndex(bookRepository, "", 2);
+        index.open();
+        try {
+            books.put(1L, summary(1L, "Gallowmere Rising"));
+            index.indexAfterCommit(withId(1L));
+            when(bookRepository.findMinId()).thenReturn(1L);
+            when(bookRepository.findMaxId()).thenReturn(20_001L);
+            when(bookRepository.listSummariesBetween(anyLong(), anyLong()))
+                    .thenThrow(new IllegalStateException("connection lost"));
+
+            // when
+            assertThatThrownBy(index::reindex).isInstanceOf(IllegalStateException.class);
+            index.commit();
+            books.put(2L, summary(2L, "Gallowmere Falls"));
+            index.indexAfterCommit(withId(2L));
+
+            // then
+            assertThat(index.search("gallowmere", null, 10).getHits())
+                    .extracting(hit -> hit.getBook().getId())
+                    .containsExactlyInAnyOrder(1L, 2L);
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    void queryWithoutWordsIsRejected() {
+        // when
+        // then
+        assertThatThrownBy(() -> bookService.search(" !? ", null, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<Long> searchIds(String query) {
+        return bookService.search(query, null, 10).getHits().stream()
+                .map(BookSearchHit::getBook)
+                .map(BookSummary::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static BookSummary summary(Long id, String title) {
+        return new BookSummary(id, "978-0-00-070012-4", title, Year.of(1990), "Ysolde Fenn", BookType.FICTION,
+                BookGenre.FANTASY, 1500, 0L);
+    }
+
+    private static Book withId(Long id) {
+        Book book = newBook("978-0-00-070012-4", "Gallowmere", "Ysolde Fenn");
+        book.setId(id);
+        return book;
+    }
+
+    private static Book newBook(String isbn, String title, String author) {
+        return new Book(
+                isbn,
+                title,
+                Year.of(1990),
+                author,
+                BookType.FICTION,
+                BookGenre.FANTASY,
+                1500
+        );
+    }
+}
@@ -6,26 +6,39 @@ import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.github.fge.jsonpatch.JsonPatch;
 import com.github.fge.jsonpatch.JsonPatchException;
 import com.yer.library.model.Book;
+import com.yer.library.model.dtos.BatchResult;
 import com.yer.library.model.enums.BookGenre;
 import com.yer.library.model.enums.BookType;
+import com.yer.library.repository.BookAvailabilityRepository;
+import com.yer.library.repository.BookCopyRepository;
 import com.yer.library.repository.BookRepository;
+import com.yer.library.repository.Fieldset;
+import com.yer.library.repository.FieldsetRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.Logger;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Pageable;
 
 import java.io.IOException;
+import java.sql.SQLException;
 import java.time.Year;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -36,9 +49,32 @@ class BookServiceTest {
     @Mock
     private BookRepository bookRepository;
 
+    @Mock
+    private BookCopyRepository bookCopyRepository;
+
+    @Mock
+    private BookAvailabilityRepository bookAvailabilityRepository;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private HoldService holdService;
+
+    @Mock
+    private BookSearchIndex bookSearchIndex;
+
+    @Mock
+    private FieldsetRepository fieldsetRepository;
+
     @Mock
     private Logger logger;
 
+    @Spy
+    private JsonPatchEngine jsonPatchEngine = new JsonPatchEngine();
+    @Spy
+    private UniqueKeyLocks uniqueKeyLocks = new UniqueKeyLocks();
+
     @InjectMocks
     private BookService underTest;
 
@@ -115,6 +151,81 @@ class BookServiceTest {
         verify(bookRepository, never()).save(any());
     }
 
+    @Test
+    void getAllKeepsRequestedOrderAndReportsMissingIds() {
+        // given
+        Book book1 = new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+        book1.setId(1L);
+        Book book3 = new Book(
+                "978-0-6967-9461-2",
+                "Case of the Laughing Baboon",
+                Year.of(1945),
+                "Murat McCartney",
+                BookType.FICTION,
+                BookGenre.FOLKLORE,
+                4200
+        );
+        book3.setId(3L);
+        List<Long> bookIds = Arrays.asList(3L, 2L, 1L, 3L);
+        given(bookRepository.findAvailableByIds(bookIds)).willReturn(Arrays.asList(book1, book3));
+
+        // when
+        BatchResult<Book> result = underTest.getAll(bookIds);
+
+        // then
+        assertThat(result.getFound()).containsExactly(book3, book1);
+        assertThat(result.getMissingIds()).containsExactly(2L);
+    }
+
+    @Test
+    void getAllWithoutIds() {
+        // when
+        BatchResult<Book> result = underTest.getAll(Collections.emptyList());
+
+        // then
+        assertThat(result.getFound()).isEmpty();
+        assertThat(result.getMissingIds()).isEmpty();
+        verify(bookRepository, never()).findAvailableByIds(any());
+    }
+
+    @Test
+    void getFieldsOfNonExistingBook() {
+        // given
+        Long bookId = 1L;
+        List<String> fields = Arrays.asList("title", "author");
+
+        given(fieldsetRepository.findAvailableById(Fieldset.BOOKS, fields, bookId)).willReturn(Optional.empty());
+
+        // when
+        // then
+        assertThatThrownBy(() -> underTest.get(bookId, fields))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("book with ID " + bookId + " does not exist");
+        verify(bookRepository, never()).findById(any());
+    }
+
+    @Test
+    void listFieldsAfterFirstPage() {
+        // given
+        int limit = 100;
+        List<String> fields = Collections.singletonList("title");
+
+        // when
+        underTest.list(null, limit, fields);
+
+        // then
+        verify(fieldsetRepository).listAvailableAfter(Fieldset.BOOKS, fields, 0L, limit);
+        verify(bookRepository, never()).listAvailableAfter(any(), any());
+    }
+
     @Test
     void list() {
         // given
@@ -129,6 +240,35 @@ class BookServiceTest {
         );
     }
 
+    @Test
+    void listAfter() {
+        // given
+        Long afterId = 42L;
+        int limit = 100;
+
+        // when
+        underTest.list(afterId, limit);
+
+        // then
+        verify(bookRepository).listAvailableAfter(eq(afterId), argThat(
+                pageable -> pageable.equals(Pageable.ofSize(limit))
+        ));
+    }
+
+    @Test
+    void listAfterFirstPage() {
+        // given
+        int limit = 100;
+
+        // when
+        underTest.list(null, limit);
+
+        // then
+        verify(bookRepository).listAvailableAfter(eq(0L), argThat(
+                pageable -> pageable.equals(Pageable.ofSize(limit))
+        ));
+    }
+
     @Test
     void addValidBook() {
         // given
@@ -153,14 +293,14 @@ class BookServiceTest {
                 4200
         );
         expectedReturnedBook.setId(bookId);
-        given(bookRepository.save(book)).willReturn(expectedReturnedBook);
+        given(bookRepository.saveAndFlush(book)).willReturn(expectedReturnedBook);
 
         // when
         Book returnedBook = underTest.add(book);
 
         // then
         ArgumentCaptor<Book> bookArgumentCaptor = ArgumentCaptor.forClass(Book.class);
-        verify(bookRepository).save(bookArgumentCaptor.capture());
+        verify(bookRepository).saveAndFlush(bookArgumentCaptor.capture());
         Book capturedBook = bookArgumentCaptor.getValue();
 
         assertThat(capturedBook).isEqualTo(book);
@@ -197,7 +337,34 @@ class BookServiceTest {
         assertThatThrownBy(() -> underTest.add(book2))
                 .isInstanceOf(IllegalStateException.class)
                 .hasMessageContaining("ISBN " + book2.getIsbn() + " already exists");
-        verify(bookRepository, never()).save(any());
+        verify(bookRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void addBookWithIsbnAddedConcurrently() {
+        // given
+        String isbn = "978-2-3915-3957-4";
+        Book book = new Book(
+                isbn,
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+
+        given(bookRepository.findByIsbn(isbn)).willReturn(Optional.empty());
+        given(bookRepository.saveAndFlush(book)).willThrow(new DataIntegrityViolationException(
+                "could not execute statement",
+                new SQLException("Unique index or primary key violation: \"PUBLIC.UK_BOOKS_ACTIVE_ISBN_INDEX_3\"")
+        ));
+
+        // when
+        // then
+        assertThatThrownBy(() -> underTest.add(book))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("ISBN " + isbn + " already exists");
     }
 
     @Test
@@ -238,7 +405,7 @@ class BookServiceTest {
         );
         expectedReturnedBook.setId(deletedBookInDBId);
 
-        given(bookRepository.save(newBook)).willReturn(expectedReturnedBook);
+        given(bookRepository.saveAndFlush(newBook)).willReturn(expectedReturnedBook);
         given(bookRepository.findByIsbn(isbn)).willReturn(Optional.of(deletedBookInDB));
 
         // when
@@ -246,7 +413,7 @@ class BookServiceTest {
 
         // then
         ArgumentCaptor<Book> bookArgumentCaptor = ArgumentCaptor.forClass(Book.class);
-        verify(bookRepository).save(bookArgumentCaptor.capture());
+        verify(bookRepository).saveAndFlush(bookArgumentCaptor.capture());
         Book capturedBook = bookArgumentCaptor.getValue();
 
         assertThat(capturedBook).isEqualTo(expectedReturnedBook);
@@ -290,7 +457,7 @@ class BookServiceTest {
         );
         expectedReturnedBook.setId(bookId);
         given(bookRepository.findById(bookId)).willReturn(Optional.of(initialBook));
-        given(bookRepository.save(updatedBook)).willReturn(expectedReturnedBook);
+        given(bookRepository.save(initialBook)).willReturn(expectedReturnedBook);
 
         // when
         Book returnedBook = underTest.fullUpdate(bookId, updatedBook);
@@ -304,7 +471,9 @@ class BookServiceTest {
         verify(bookRepository).save(bookArgumentCaptor.capture());
         Book capturedBook = bookArgumentCaptor.getValue();
 
-        assertThat(capturedBook).isEqualTo(updatedBook);
+        assertThat(capturedBook).isSameAs(initialBook);
+        assertThat(capturedBook).usingRecursiveComparison().ignoringFields("id").isEqualTo(updatedBook);
+        assertThat(capturedBook.getId()).isEqualTo(bookId);
         assertThat(returnedBook).isEqualTo(expectedReturnedBook);
     }
 
@@ -346,7 +515,7 @@ class BookServiceTest {
         );
         expectedReturnedBook.setId(bookId);
         given(bookRepository.findById(bookId)).willReturn(Optional.of(initialBook));
-        given(bookRepository.save(updatedBook)).willReturn(expectedReturnedBook);
+        given(bookRepository.save(initialBook)).willReturn(expectedReturnedBook);
 
         // when
         Book returnedBook = underTest.fullUpdate(bookId, updatedBook);
@@ -361,7 +530,9 @@ class BookServiceTest {
         verify(bookRepository).save(bookArgumentCaptor.capture());
         Book capturedBook = bookArgumentCaptor.getValue();
 
-        assertThat(capturedBook).isEqualTo(updatedBook);
+        assertThat(capturedBook).isSameAs(initialBook);
+        assertThat(capturedBook).usingRecursiveComparison().ignoringFields("id").isEqualTo(updatedBook);
+        assertThat(capturedBook.getId()).isEqualTo(bookId);
         assertThat(returnedBook).isEqualTo(expectedReturnedBook);
     }
 
@@ -431,6 +602,44 @@ class BookServiceTest {
         verify(bookRepository, never()).save(any());
     }
 
+    @Test
+    void fullUpdateOutdatedVersionOfBook() {
+        // given
+        Long bookId = 1L;
+
+        Book existingBook = new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+        existingBook.setId(bookId);
+        existingBook.setVersion(2L);
+
+        Book updatedBook = new Book(
+                "978-2-3915-3957-4",
+                "The Girls in the Veils",
+                Year.of(1947),
+                "Cole Lyon",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+        updatedBook.setVersion(1L);
+        given(bookRepository.findById(bookId)).willReturn(Optional.of(existingBook));
+
+        // when
+        // then
+        assertThatThrownBy(() -> underTest.fullUpdate(bookId, updatedBook))
+                .isInstanceOf(OptimisticLockingFailureException.class)
+                .hasMessageContaining("book with ID " + bookId + " has been modified (expected version 1, but is at version 2)");
+        assertThat(existingBook.getTitle()).isEqualTo("The Girl in the Veil");
+        verify(bookRepository, never()).save(any());
+    }
+
     @Test
     void fullUpdateExistingBookNewIsbnExistsForNonDeletedBook() {
         // given
@@ -613,6 +822,35 @@ class BookServiceTest {
         verify(bookRepository, never()).save(any());
     }
 
+    @Test
+    void partialUpdateOutdatedVersionOfBook() throws IOException {
+        // given
+        Long bookId = 1L;
+
+        Book existingBook = new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+        existingBook.setId(bookId);
+        existingBook.setVersion(2L);
+
+        String jsonString = "[{\"op\": \"replace\", \"path\": \"/value\", \"value\": 4300}]";
+        JsonPatch jsonPatch = JsonPatch.fromJson(new ObjectMapper().readTree(jsonString));
+        given(bookRepository.findById(bookId)).willReturn(Optional.of(existingBook));
+
+        // when
+        // then
+        assertThatThrownBy(() -> underTest.partialUpdate(bookId, jsonPatch, 1L))
+                .isInstanceOf(OptimisticLockingFailureException.class)
+                .hasMessageContaining("book with ID " + bookId + " has been modified");
+        verify(bookRepository, never()).save(any());
+    }
+
     @Test
     void partialUpdateExistingBookNewIsbnExistsForNonDeletedBook() throws IOException {
         // given
@@ -0,0 +1,152 @@
+package com.yer.library.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.yer.library.model.Book;
+import com.yer.library.model.BookCopy;
+import com.yer.library.model.Location;
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import com.yer.library.repository.FieldsetRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Year;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Asserts that updates only write the columns that changed, instead of every column of the row.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+        "com.yer.library.service.ColumnUpdateTest$RecordingStatementInspector")
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@Import({
+        BookService.class,
+        BookCopyService.class,
+        JsonPatchEngine.class,
+        UniqueKeyLocks.class,
+        BatchExecutor.class,
+        InventoryService.class,
+        BookSearchIndex.class,
+        HoldService.class,
+        HoldQueues.class,
+        FieldsetRepository.class
+})
+class ColumnUpdateTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookCopyService bookCopyService;
+
+    private Long bookId;
+    private Long bookCopyId;
+
+    @BeforeEach
+    void setUp() {
+        // the second-level cache is shared by all application contexts of the test run, and may hold books of other
+        // contexts under the same IDs
+        entityManagerFactory.getCache().evictAll();
+
+        Book book = entityManager.persist(new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        ));
+        BookCopy bookCopy = entityManager.persist(new BookCopy(book, new Location((short) 1, (short) 1, (short) 1)));
+        bookId = book.getId();
+        bookCopyId = bookCopy.getId();
+        entityManager.flush();
+        entityManager.clear();
+        RecordingStatementInspector.STATEMENTS.clear();
+    }
+
+    @Test
+    void patchLocationUpdatesLocationColumnsOnly() throws Exception {
+        // when
+        bookCopyService.partialUpdate(bookCopyId, toPatch(
+                "[{\"op\": \"replace\", \"path\": \"/location\", \"value\": {\"floor\": 2, \"bookcase\": 3, \"shelve\": 4}}]"
+        ));
+        entityManager.flush();
+
+        // then
+        List<String> updates = updates();
+        assertThat(updates).hasSize(1);
+        assertThat(updates.get(0)).contains("loc_floor", "loc_bookcase", "loc_shelve");
+        assertThat(updates.get(0)).doesNotContain("book_id", "deleted");
+    }
+
+    @Test
+    void patchValueUpdatesValueColumnOnly() throws Exception {
+        // when
+        bookService.partialUpdate(bookId, toPatch("[{\"op\": \"replace\", \"path\": \"/value\", \"value\": 4300}]"));
+        entityManager.flush();
+
+        // then
+        List<String> updates = updates();
+        assertThat(updates).hasSize(1);
+        assertThat(updates.get(0)).contains("book_value");
+        assertThat(updates.get(0)).doesNotContain("title", "author", "isbn");
+    }
+
+    @Test
+    void fullUpdateWithoutChangesUpdatesNothing() {
+        // when
+        bookService.fullUpdate(bookId, new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        ));
+        entityManager.flush();
+
+        // then
+        assertThat(updates()).isEmpty();
+    }
+
+    private static List<String> updates() {
+        return RecordingStatementInspector.STATEMENTS.stream()
+                .filter(sql -> sql.toLowerCase().startsWith("update"))
+                // a move of a copy (or a change of the value of a book) also moves it in the inventory summary
+                .filter(sql -> !sql.toLowerCase().startsWith("update inventory_summary"))
+                .collect(Collectors.toList());
+    }
+
+    private static JsonPatch toPatch(String json) throws Exception {
+        return JsonPatch.fromJson(MAPPER.readTree(json));
+    }
+
+    public static class RecordingStatementInspector implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.yer.library.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.yer.library.model.Membership;
+import com.yer.library.model.MembershipType;
+import com.yer.library.model.dtos.ConflictStatistics;
+import com.yer.library.repository.MembershipRepository;
+import com.yer.library.repository.MembershipTypeRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * Updates one membership from several threads at once, so that the updates conflict on its version and are retried.
+ * Every update sets another end date, so every update that is not lost increases the version.
+ */
+@SpringBootTest(webEnvironment = NONE, properties = "library.retry.max-attempts=100")
+class ConflictRetryTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final LocalDate START_DATE = LocalDate.of(2022, Month.JANUARY, 1);
+    private static final String OPERATION = "MembershipService.partialUpdate";
+
+    @Autowired
+    private MembershipService membershipService;
+    @Autowired
+    private MembershipRepository membershipRepository;
+    @Autowired
+    private MembershipTypeRepository membershipTypeRepository;
+    @Autowired
+    private ConflictRetryAspect conflictRetryAspect;
+
+    @Test
+    void concurrentUpdatesOfOneMembershipAreAllApplied() throws Exception {
+        // given
+        Long membershipId = newMembership().getId();
+        ConflictStatistics statisticsBefore = statistics();
+        int writers = 8;
+        int updatesPerWriter = 5;
+
+        // when
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int writer = 0; writer < writers; writer++) {
+            int firstDay = writer * updatesPerWriter + 1;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int day = firstDay; day < firstDay + updatesPerWriter; day++) {
+                    membershipService.partialUpdate(membershipId, endDateAfter(day));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+
+        // then
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        assertThat(membershipRepository.findById(membershipId).get().getVersion())
+                .isEqualTo((long) writers * updatesPerWriter);
+        ConflictStatistics statisticsAfter = statistics();
+        assertThat(statisticsAfter.getExhaustedCount()).isEqualTo(statisticsBefore.getExhaustedCount());
+        assertThat(statisticsAfter.getRetryCount() - statisticsBefore.getRetryCount())
+                .isEqualTo(statisticsAfter.getConflictCount() - statisticsBefore.getConflictCount());
+    }
+
+    @Test
+    void outdatedExpectedVersionIsNotRetried() throws Exception {
+        // given
+        Long membershipId = newMembership().getId();
+        membershipService.partialUpdate(membershipId, endDateAfter(1));
+        ConflictStatistics statisticsBefore = statistics();
+
+        // when
+        // then
+        assertThatThrownBy(() -> membershipService.partialUpdate(membershipId, endDateAfter(2), 0L))
+                .isInstanceOf(OptimisticLockingFailureException.class)
+                .hasMessageContaining("expected version 0, but is at version 1");
+        assertThat(statistics().getConflictCount()).isEqualTo(statisticsBefore.getConflictCount());
+    }
+
+    private Membership newMembership() {
+        MembershipType membershipType = membershipTypeRepository.findAll().get(0);
+        return membershipService.add(new Membership(membershipType, START_DATE, START_DATE.plusYears(1)));
+    }
+
+    private ConflictStatistics statistics() {
+        return conflictRetryAspect.getStatistics().stream()
+                .filter(statistics -> statistics.getOperation().equals(OPERATION))
+                .findFirst()
+                .orElse(new ConflictStatistics(OPERATION, 0, 0, 0, 0));
+    }
+
+    private static JsonPatch endDateAfter(int days) throws Exception {
+        return JsonPatch.fromJson(MAPPER.readTree(
+                "[{\"op\": \"replace\", \"path\": \"/endDate\", \"value\": \"" + START_DATE.plusDays(days) + "\"}]"
+        ));
+    }
+}
@@ -0,0 +1,166 @@
+package com.yer.library.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.yer.library.model.*;
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import com.yer.library.model.enums.MembershipTypeName;
+import com.yer.library.repository.BookCopyRepository;
+import com.yer.library.repository.BookRepository;
+import com.yer.library.repository.MemberRepository;
+import com.yer.library.repository.MembershipRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class ExportServiceTest {
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private MembershipRepository membershipRepository;
+
+    private ExportService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ExportService(
+                bookRepository,
+                bookCopyRepository,
+                memberRepository,
+                membershipRepository,
+                entityManager.getEntityManager(),
+                MAPPER
+        );
+
+        Book book = entityManager.persist(new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        ));
+        Book deletedBook = new Book(
+                "978-0-1011-1658-9",
+                "Legacy Circling",
+                Year.of(2001),
+                "Arla Salgado",
+                BookType.FICTION,
+                BookGenre.ROMANCE,
+                4200
+        );
+        deletedBook.setDeleted(true);
+        entityManager.persist(deletedBook);
+        entityManager.persist(new BookCopy(book, new Location((short) 1, (short) 1, (short) 1)));
+        entityManager.persist(new BookCopy(deletedBook, new Location((short) 1, (short) 1, (short) 2)));
+
+        MembershipType membershipType = entityManager.persist(new MembershipType(MembershipTypeName.ADULT, 500));
+        Membership membership = entityManager.persist(new Membership(
+                membershipType,
+                LocalDate.of(2020, Month.JUNE, 2),
+                LocalDate.of(2022, Month.JUNE, 2)
+        ));
+        entityManager.persist(new Member(
+                "Iain Carter",
+                "950 Poplar St.",
+                "iaincarter@hotmail.com",
+                LocalDate.of(1998, Month.JUNE, 8),
+                membership
+        ));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void exportBooksSkipsDeletedBooks() throws IOException {
+        // given
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // when
+        long count = underTest.exportBooks(outputStream);
+
+        // then
+        String[] lines = toLines(outputStream);
+        assertThat(count).isEqualTo(1);
+        assertThat(lines).hasSize(1);
+        JsonNode book = MAPPER.readTree(lines[0]);
+        assertThat(book.get("isbn").asText()).isEqualTo("978-2-3915-3957-4");
+        assertThat(book.get("year").asInt()).isEqualTo(1948);
+    }
+
+    @Test
+    void exportBookCopiesSkipsCopiesOfDeletedBooks() throws IOException {
+        // given
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // when
+        long count = underTest.exportBookCopies(outputStream);
+
+        // then
+        String[] lines = toLines(outputStream);
+        assertThat(count).isEqualTo(1);
+        assertThat(MAPPER.readTree(lines[0]).at("/book/isbn").asText()).isEqualTo("978-2-3915-3957-4");
+    }
+
+    @Test
+    void exportMembersIncludesMembership() throws IOException {
+        // given
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // when
+        long count = underTest.exportMembers(outputStream);
+
+        // then
+        String[] lines = toLines(outputStream);
+        assertThat(count).isEqualTo(1);
+        JsonNode member = MAPPER.readTree(lines[0]);
+        assertThat(member.get("emailAddress").asText()).isEqualTo("iaincarter@hotmail.com");
+        assertThat(member.get("birthday").asText()).isEqualTo("1998-06-08");
+        assertThat(member.at("/membership/membershipType/type").asText()).isEqualTo("ADULT");
+    }
+
+    @Test
+    void exportMembershipsWritesOneLinePerMembership() throws IOException {
+        // given
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // when
+        long count = underTest.exportMemberships(outputStream);
+
+        // then
+        assertThat(count).isEqualTo(1);
+        assertThat(toLines(outputStream)).hasSize(1);
+        assertThat(outputStream.toString(StandardCharsets.UTF_8.name())).endsWith("}\n");
+    }
+
+    private static String[] toLines(ByteArrayOutputStream outputStream) throws IOException {
+        return outputStream.toString(StandardCharsets.UTF_8.name()).split("\n");
+    }
+}
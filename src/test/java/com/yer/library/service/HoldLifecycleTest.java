@@ -0,0 +1,338 @@
+package com.yer.library.service;
+
+import com.yer.library.model.BookCopy;
+import com.yer.library.model.Hold;
+import com.yer.library.model.Location;
+import com.yer.library.model.Member;
+import com.yer.library.model.Membership;
+import com.yer.library.model.enums.BookCopyStatus;
+import com.yer.library.model.enums.HoldStatus;
+import com.yer.library.repository.BookCopyRepository;
+import com.yer.library.repository.HoldRepository;
+import com.yer.library.repository.MemberRepository;
+import com.yer.library.repository.MembershipRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.yer.library.service.LibraryFixtures.newBook;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * Checks that returned copies are kept for the holds of their book in the order the holds were placed, that the queues
+ * in memory follow the holds table, and that concurrent placements of the same hold place it once.
+ */
+@SpringBootTest(webEnvironment = NONE)
+@Import(LibraryFixtures.class)
+class HoldLifecycleTest {
+    @Autowired
+    private LibraryFixtures fixtures;
+    @Autowired
+    private HoldService holdService;
+    @Autowired
+    private HoldQueues holdQueues;
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookCopyService bookCopyService;
+    @Autowired
+    private MemberService memberService;
+    @Autowired
+    private MembershipService membershipService;
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+    @Autowired
+    private HoldRepository holdRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private MembershipRepository membershipRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        // the second-level cache is shared by all application contexts of the test run, and may hold books of other
+        // contexts under the same IDs
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void returnedCopyIsKeptForFirstHoldOfMemberThatMayBorrow() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-050001-4")).getId();
+        Long bookCopyId = addBookCopy(bookId);
+        Long borrowerId = fixtures.newBorrower("hold1a@example.com");
+        Long expiredMemberId = fixtures.newBorrower("hold1b@example.com");
+        Long memberId = fixtures.newBorrower("hold1c@example.com");
+        Long lastMemberId = fixtures.newBorrower("hold1d@example.com");
+        loanService.checkOut(bookCopyId, borrowerId);
+        Long expiredHoldId = holdService.place(bookId, expiredMemberId).getId();
+        Long holdId = holdService.place(bookId, memberId).getId();
+        Long lastHoldId = holdService.place(bookId, lastMemberId).getId();
+        endMembership(expiredMemberId);
+
+        // when
+        loanService.returnBookCopy(bookCopyId);
+
+        // then
+        assertThat(holdService.get(holdId).getStatus()).isEqualTo(HoldStatus.READY);
+        assertThat(holdService.get(holdId).getBookCopy().getId()).isEqualTo(bookCopyId);
+        assertThat(holdService.get(expiredHoldId).getStatus()).isEqualTo(HoldStatus.WAITING);
+        assertThat(holdService.get(lastHoldId).getStatus()).isEqualTo(HoldStatus.WAITING);
+        assertThat(bookCopyRepository.findById(bookCopyId).get().getStatus()).isEqualTo(BookCopyStatus.ON_HOLD);
+        assertThat(bookService.getAvailability(bookId).getAvailableCopies()).isZero();
+        assertThat(holdQueues.queue(bookId)).extracting("holdId").containsExactly(expiredHoldId, lastHoldId);
+
+        // when
+        // then
+        assertThatThrownBy(() -> loanService.checkOut(bookCopyId, lastMemberId))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("book copy with ID " + bookCopyId + " is not available");
+        loanService.checkOut(bookCopyId, memberId);
+        assertThat(holdService.get(holdId).getStatus()).isEqualTo(HoldStatus.COLLECTED);
+        assertThat(bookCopyRepository.findById(bookCopyId).get().getStatus()).isEqualTo(BookCopyStatus.ON_LOAN);
+        assertThat(bookService.getAvailability(bookId).getAvailableCopies()).isZero();
+    }
+
+    @Test
+    void copyOfCancelledHoldIsKeptForNextHoldOrPutBack() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-050002-1")).getId();
+        Long bookCopyId = addBookCopy(bookId);
+        Long borrowerId = fixtures.newBorrower("hold2a@example.com");
+        loanService.checkOut(bookCopyId, borrowerId);
+        Long firstHoldId = holdService.place(bookId, fixtures.newBorrower("hold2b@example.com")).getId();
+        Long secondHoldId = holdService.place(bookId, fixtures.newBorrower("hold2c@example.com")).getId();
+        loanService.returnBookCopy(bookCopyId);
+
+        // when
+        holdService.cancel(firstHoldId);
+
+        // then
+        assertThat(holdService.get(firstHoldId).getStatus()).isEqualTo(HoldStatus.CANCELLED);
+        assertThat(holdService.get(secondHoldId).getStatus()).isEqualTo(HoldStatus.READY);
+        assertThat(bookCopyRepository.findById(bookCopyId).get().getStatus()).isEqualTo(BookCopyStatus.ON_HOLD);
+
+        // when
+        holdService.cancel(secondHoldId);
+
+        // then
+        assertThat(bookCopyRepository.findById(bookCopyId).get().getStatus()).isEqualTo(BookCopyStatus.AVAILABLE);
+        assertThat(bookService.getAvailability(bookId).getAvailableCopies()).isEqualTo(1);
+        assertThatThrownBy(() -> holdService.cancel(secondHoldId))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("hold with ID " + secondHoldId + " is not active");
+        assertThatThrownBy(() -> holdService.place(bookId, borrowerId))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("book with ID " + bookId + " has available copies");
+    }
+
+    @Test
+    void holdOfDeletedCopyWaitsForNextCopy() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-050005-2")).getId();
+        Long deletedCopyId = addBookCopy(bookId);
+        Long bookCopyId = addBookCopy(bookId);
+        Long borrowerId = fixtures.newBorrower("hold5a@example.com");
+        Long memberId = fixtures.newBorrower("hold5b@example.com");
+        loanService.checkOut(deletedCopyId, borrowerId);
+        loanService.checkOut(bookCopyId, borrowerId);
+        Long holdId = holdService.place(bookId, memberId).getId();
+        loanService.returnBookCopy(deletedCopyId);
+
+        // when
+        bookCopyService.delete(deletedCopyId);
+
+        // then
+        assertThat(holdService.get(holdId).getStatus()).isEqualTo(HoldStatus.WAITING);
+        assertThat(holdService.get(holdId).getBookCopy()).isNull();
+        assertThat(holdQueues.queue(bookId)).extracting("holdId").containsExactly(holdId);
+
+        // when
+        loanService.returnBookCopy(bookCopyId);
+
+        // then
+        assertThat(holdService.get(holdId).getStatus()).isEqualTo(HoldStatus.READY);
+        loanService.checkOut(bookCopyId, memberId);
+        assertThat(holdService.get(holdId).getStatus()).isEqualTo(HoldStatus.COLLECTED);
+    }
+
+    @Test
+    void holdsOfDeletedBookAreCancelled() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-050006-9")).getId();
+        Long bookCopyId = addBookCopy(bookId);
+        loanService.checkOut(bookCopyId, fixtures.newBorrower("hold6a@example.com"));
+        Long readyHoldId = holdService.place(bookId, fixtures.newBorrower("hold6b@example.com")).getId();
+        Long waitingHoldId = holdService.place(bookId, fixtures.newBorrower("hold6c@example.com")).getId();
+        loanService.returnBookCopy(bookCopyId);
+
+        // when
+        bookService.delete(bookId);
+
+        // then
+        assertThat(holdService.get(readyHoldId).getStatus()).isEqualTo(HoldStatus.CANCELLED);
+        assertThat(holdService.get(waitingHoldId).getStatus()).isEqualTo(HoldStatus.CANCELLED);
+        assertThat(holdQueues.size(bookId)).isZero();
+    }
+
+    @Test
+    void holdsOfDeletedMemberAreCancelled() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-050007-6")).getId();
+        Long otherBookId = bookService.add(newBook("978-0-00-050008-3")).getId();
+        Long bookCopyId = addBookCopy(bookId);
+        Long otherBookCopyId = addBookCopy(otherBookId);
+        Long borrowerId = fixtures.newBorrower("hold7a@example.com");
+        Long memberId = fixtures.newBorrower("hold7b@example.com");
+        Long nextMemberId = fixtures.newBorrower("hold7c@example.com");
+        loanService.checkOut(bookCopyId, borrowerId);
+        loanService.checkOut(otherBookCopyId, borrowerId);
+        Long readyHoldId = holdService.place(bookId, memberId).getId();
+        Long nextHoldId = holdService.place(bookId, nextMemberId).getId();
+        Long waitingHoldId = holdService.place(otherBookId, memberId).getId();
+        loanService.returnBookCopy(bookCopyId);
+
+        // when
+        memberService.delete(memberId);
+
+        // then
+        assertThat(holdService.get(readyHoldId).getStatus()).isEqualTo(HoldStatus.CANCELLED);
+        assertThat(holdService.get(waitingHoldId).getStatus()).isEqualTo(HoldStatus.CANCELLED);
+        assertThat(holdQueues.size(otherBookId)).isZero();
+        // the copy kept for the cancelled hold is kept for the next member in line
+        assertThat(holdService.get(nextHoldId).getStatus()).isEqualTo(HoldStatus.READY);
+        assertThat(holdService.get(nextHoldId).getBookCopy().getId()).isEqualTo(bookCopyId);
+    }
+
+    @Test
+    void holdsOfMembersOfCancelledMembershipAreCancelled() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-050009-0")).getId();
+        Long bookCopyId = addBookCopy(bookId);
+        loanService.checkOut(bookCopyId, fixtures.newBorrower("hold8a@example.com"));
+        Long memberId = fixtures.newBorrower("hold8b@example.com");
+        Long readyHoldId = holdService.place(bookId, memberId).getId();
+        loanService.returnBookCopy(bookCopyId);
+
+        // when
+        membershipService.delete(memberRepository.findById(memberId).get().getMembership().getId());
+
+        // then
+        assertThat(holdService.get(readyHoldId).getStatus()).isEqualTo(HoldStatus.CANCELLED);
+        assertThat(bookCopyRepository.findById(bookCopyId).get().getStatus()).isEqualTo(BookCopyStatus.AVAILABLE);
+        assertThat(bookService.getAvailability(bookId).getAvailableCopies()).isEqualTo(1);
+    }
+
+    @Test
+    void returnedCopyCancelsQueuedHoldOfDeletedMember() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-050010-6")).getId();
+        Long bookCopyId = addBookCopy(bookId);
+        loanService.checkOut(bookCopyId, fixtures.newBorrower("hold9a@example.com"));
+        Long deletedMemberId = fixtures.newBorrower("hold9b@example.com");
+        Long deletedMemberHoldId = holdService.place(bookId, deletedMemberId).getId();
+        Long holdId = holdService.place(bookId, fixtures.newBorrower("hold9c@example.com")).getId();
+        // deleted without the member service, like a member deleted before holds were cancelled with their member
+        Member deletedMember = memberRepository.findById(deletedMemberId).get();
+        deletedMember.setDeleted(true);
+        memberRepository.save(deletedMember);
+
+        // when
+        loanService.returnBookCopy(bookCopyId);
+
+        // then
+        assertThat(holdService.get(deletedMemberHoldId).getStatus()).isEqualTo(HoldStatus.CANCELLED);
+        assertThat(holdService.get(holdId).getStatus()).isEqualTo(HoldStatus.READY);
+        assertThat(holdQueues.size(bookId)).isZero();
+    }
+
+    @Test
+    void queuesAreRebuiltFromDatabase() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-050003-8")).getId();
+        Long bookCopyId = addBookCopy(bookId);
+        loanService.checkOut(bookCopyId, fixtures.newBorrower("hold3a@example.com"));
+        Long cancelledHoldId = holdService.place(bookId, fixtures.newBorrower("hold3b@example.com")).getId();
+        Long firstHoldId = holdService.place(bookId, fixtures.newBorrower("hold3c@example.com")).getId();
+        Long secondHoldId = holdService.place(bookId, fixtures.newBorrower("hold3d@example.com")).getId();
+        holdService.cancel(cancelledHoldId);
+
+        // when
+        holdQueues.clear();
+        holdService.rebuildQueues();
+
+        // then
+        assertThat(holdQueues.queue(bookId)).extracting("holdId").containsExactly(firstHoldId, secondHoldId);
+        assertThat(holdService.listWaitingByBook(bookId, 10)).extracting(Hold::getId)
+                .containsExactly(firstHoldId, secondHoldId);
+    }
+
+    @Test
+    void concurrentPlacementsOfSameHoldPlaceItOnce() throws Exception {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-050004-5")).getId();
+        Long bookCopyId = addBookCopy(bookId);
+        loanService.checkOut(bookCopyId, fixtures.newBorrower("hold4a@example.com"));
+        Long memberId = fixtures.newBorrower("hold4b@example.com");
+        AtomicInteger placed = new AtomicInteger();
+        List<String> errors = new CopyOnWriteArrayList<>();
+
+        // when
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    holdService.place(bookId, memberId);
+                    placed.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    if (!e.getMessage().contains("already holds book")) {
+                        errors.add(e.getMessage());
+                    }
+                } catch (RuntimeException e) {
+                    errors.add(e.toString());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+
+        // then
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        assertThat(errors).isEmpty();
+        assertThat(placed.get()).isEqualTo(1);
+        assertThat(holdQueues.size(bookId)).isEqualTo(1);
+        assertThat(holdRepository.existsActive(bookId, memberId)).isTrue();
+    }
+
+    private Long addBookCopy(Long bookId) {
+        return bookCopyService.add(new BookCopy(null, new Location((short) 1, (short) 1, (short) 1)), bookId).getId();
+    }
+
+    private void endMembership(Long memberId) {
+        Membership membership = memberRepository.findById(memberId).get().getMembership();
+        membership.setEndDate(LocalDate.now().minusDays(1));
+        membershipRepository.save(membership);
+    }
+}
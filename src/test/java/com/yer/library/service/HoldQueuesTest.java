@@ -0,0 +1,59 @@
+package com.yer.library.service;
+
+import com.yer.library.model.dtos.QueuedHold;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HoldQueuesTest {
+    private static final LocalDateTime NOON = LocalDateTime.of(2022, Month.MARCH, 1, 12, 0);
+
+    private final HoldQueues underTest = new HoldQueues();
+
+    @Test
+    void holdsAreQueuedInTheOrderTheyWerePlaced() {
+        // given
+        QueuedHold second = new QueuedHold(1L, 7L, 11L, NOON.plusMinutes(1));
+        QueuedHold first = new QueuedHold(2L, 7L, 12L, NOON);
+        QueuedHold third = new QueuedHold(3L, 7L, 13L, NOON.plusMinutes(1));
+        QueuedHold otherBook = new QueuedHold(4L, 8L, 11L, NOON.minusDays(1));
+
+        // when
+        underTest.addAfterCommit(second);
+        underTest.addAfterCommit(third);
+        underTest.addAfterCommit(first);
+        underTest.addAfterCommit(otherBook);
+
+        // then
+        assertThat(underTest.next(7L)).contains(first);
+        assertThat(underTest.queue(7L)).containsExactly(first, second, third);
+        assertThat(underTest.queue(8L)).containsExactly(otherBook);
+    }
+
+    @Test
+    void removedHoldLeavesTheQueue() {
+        // given
+        QueuedHold first = new QueuedHold(1L, 7L, 11L, NOON);
+        QueuedHold second = new QueuedHold(2L, 7L, 12L, NOON.plusMinutes(1));
+        underTest.addAfterCommit(first);
+        underTest.addAfterCommit(second);
+
+        // when
+        underTest.removeAfterCommit(first);
+
+        // then
+        assertThat(underTest.next(7L)).contains(second);
+        assertThat(underTest.size(7L)).isEqualTo(1);
+
+        // when
+        underTest.removeAfterCommit(second);
+        underTest.removeAfterCommit(second);
+
+        // then
+        assertThat(underTest.next(7L)).isEmpty();
+        assertThat(underTest.queue(7L)).isEmpty();
+    }
+}
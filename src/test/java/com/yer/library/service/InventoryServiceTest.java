@@ -0,0 +1,240 @@
+package com.yer.library.service;
+
+import com.yer.library.model.Book;
+import com.yer.library.model.BookCopy;
+import com.yer.library.model.InventoryKey;
+import com.yer.library.model.InventorySummary;
+import com.yer.library.model.Location;
+import com.yer.library.model.dtos.InventoryLine;
+import com.yer.library.model.dtos.InventoryStatistics;
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import com.yer.library.repository.InventorySummaryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * Checks that the inventory summary follows the changes of copies and books, in decades long before the books of other
+ * tests, and that it equals the summary counted again from the copies.
+ */
+@SpringBootTest(webEnvironment = NONE)
+class InventoryServiceTest {
+    @Autowired
+    private InventoryService inventoryService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookCopyService bookCopyService;
+    @Autowired
+    private InventorySummaryRepository inventorySummaryRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        // the second-level cache is shared by all application contexts of the test run, and may hold books of other
+        // contexts under the same IDs
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void summaryFollowsCopiesAndBooks() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-060001-1", 1853, 1000)).getId();
+        Long firstBookCopyId = addBookCopy(bookId, new Location((short) 1, (short) 1, (short) 1));
+        Long secondBookCopyId = addBookCopy(bookId, new Location((short) 1, (short) 1, (short) 1));
+        addBookCopy(bookId, null);
+
+        // when
+        // then
+        assertThat(decade(1850)).hasValueSatisfying(line -> {
+            assertThat(line.getCopies()).isEqualTo(3);
+            assertThat(line.getValue()).isEqualTo(3000);
+        });
+        assertThat(inventoryService.getStatistics().getFloors()).extracting(InventoryLine::getGroup).contains((Object) null);
+        assertSummaryIsCounted();
+
+        // when
+        bookCopyService.fullUpdate(
+                firstBookCopyId, new BookCopy(null, new Location((short) 2, (short) 1, (short) 1)), bookId
+        );
+
+        // then
+        assertThat(summary(bookId, 1853, (short) 1).getCopies()).isEqualTo(1);
+        assertThat(summary(bookId, 1853, (short) 2).getCopies()).isEqualTo(1);
+        assertSummaryIsCounted();
+
+        // when
+        bookService.fullUpdate(bookId, newBook("978-0-00-060001-1", 1861, 2500));
+
+        // then
+        assertThat(decade(1850)).isEmpty();
+        assertThat(decade(1860)).hasValueSatisfying(line -> {
+            assertThat(line.getCopies()).isEqualTo(3);
+            assertThat(line.getValue()).isEqualTo(7500);
+        });
+        assertSummaryIsCounted();
+
+        // when
+        bookCopyService.delete(Collections.singletonList(secondBookCopyId));
+
+        // then
+        assertThat(decade(1860)).hasValueSatisfying(line -> assertThat(line.getCopies()).isEqualTo(2));
+        assertSummaryIsCounted();
+
+        // when
+        bookService.delete(bookId);
+
+        // then
+        assertThat(decade(1860)).isEmpty();
+        assertSummaryIsCounted();
+    }
+
+    @Test
+    void rebuildCorrectsDriftedSummary() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-060002-8", 1874, 1200)).getId();
+        addBookCopy(bookId, new Location((short) 3, (short) 1, (short) 1));
+        InventorySummary summary = summary(bookId, 1874, (short) 3);
+        summary.setCopies(5);
+        summary.setValue(42);
+        inventorySummaryRepository.save(summary);
+        inventorySummaryRepository.save(new InventorySummary(
+                new InventoryKey(BookGenre.WESTERN, BookType.NON_FICTION, (short) 1820, (short) 0), 1, 1
+        ));
+
+        // when
+        inventoryService.rebuild();
+
+        // then
+        assertThat(decade(1870)).hasValueSatisfying(line -> {
+            assertThat(line.getCopies()).isEqualTo(1);
+            assertThat(line.getValue()).isEqualTo(1200);
+        });
+        assertThat(decade(1820)).isEmpty();
+    }
+
+    @Test
+    void concurrentCopiesUnderNewKeysAreAllCounted() throws Exception {
+        // given
+        List<Long> bookIds = new ArrayList<>();
+        for (String isbn : new String[]{"978-0-00-060003-5", "978-0-00-060004-2", "978-0-00-060005-9", "978-0-00-060006-6"}) {
+            bookIds.add(bookService.add(newBook(isbn, 1795, 100)).getId());
+        }
+
+        // when
+        // every copy is added in its own transaction, and the first copies of both floors are added concurrently
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Long>> bookCopyIds = IntStream.range(0, 40)
+                .mapToObj(i -> executor.submit(() -> addBookCopy(
+                        bookIds.get(i % bookIds.size()), new Location((short) (2 + i / 20), (short) 1, (short) 1)
+                )))
+                .collect(Collectors.toList());
+        executor.shutdown();
+
+        // then
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        for (Future<Long> bookCopyId : bookCopyIds) {
+            assertThat(bookCopyId.get()).isNotNull();
+        }
+        assertThat(summary(bookIds.get(0), 1795, (short) 2).getCopies()).isEqualTo(20);
+        assertThat(summary(bookIds.get(0), 1795, (short) 3).getCopies()).isEqualTo(20);
+        assertSummaryIsCounted();
+    }
+
+    @Test
+    void copiesOfBooksDeletedTogetherAreCountedOut() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-00-060007-3", 1886, 700)).getId();
+        Long otherBookId = bookService.add(newBook("978-0-00-060008-0", 1887, 300)).getId();
+        addBookCopy(bookId, new Location((short) 1, (short) 1, (short) 1));
+        addBookCopy(otherBookId, new Location((short) 1, (short) 1, (short) 1));
+
+        // when
+        int deleted = bookService.delete(Arrays.asList(bookId, otherBookId));
+
+        // then
+        assertThat(deleted).isEqualTo(2);
+        assertThat(decade(1880)).isEmpty();
+        assertSummaryIsCounted();
+    }
+
+    @Test
+    void totalsAreSumsOfGroups() {
+        // when
+        InventoryStatistics statistics = inventoryService.getStatistics();
+
+        // then
+        assertThat(statistics.getCopies()).isPositive();
+        assertThat(statistics.getTypes().stream().mapToLong(InventoryLine::getCopies).sum())
+                .isEqualTo(statistics.getCopies());
+        assertThat(statistics.getDecades().stream().mapToLong(InventoryLine::getValue).sum())
+                .isEqualTo(statistics.getValue());
+        assertThat(statistics.getFloors().stream().mapToLong(InventoryLine::getValue).sum())
+                .isEqualTo(statistics.getValue());
+    }
+
+    /**
+     * Checks that the summary rows with copies are the rows counted again from the copies.
+     */
+    private void assertSummaryIsCounted() {
+        Map<InventoryKey, String> summary = counts();
+        inventoryService.rebuild();
+        assertThat(summary).isEqualTo(counts());
+    }
+
+    private Map<InventoryKey, String> counts() {
+        return inventorySummaryRepository.findAll().stream()
+                .filter(summary -> summary.getCopies() != 0 || summary.getValue() != 0)
+                .collect(Collectors.toMap(InventorySummary::getId, summary -> summary.getCopies() + "/" + summary.getValue()));
+    }
+
+    private Optional<InventoryLine> decade(int decade) {
+        return inventoryService.getStatistics().getDecades().stream()
+                .filter(line -> ((Number) line.getGroup()).intValue() == decade)
+                .findFirst();
+    }
+
+    private InventorySummary summary(Long bookId, int year, short floor) {
+        Book book = bookService.get(bookId);
+        return inventorySummaryRepository.findById(
+                new InventoryKey(book.getGenre(), book.getType(), InventoryKey.decadeOf(Year.of(year)), floor)
+        ).get();
+    }
+
+    private Long addBookCopy(Long bookId, Location location) {
+        return bookCopyService.add(new BookCopy(null, location), bookId).getId();
+    }
+
+    private static Book newBook(String isbn, int year, int value) {
+        return new Book(
+                isbn,
+                "The Girl in the Veil",
+                Year.of(year),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.WESTERN,
+                value
+        );
+    }
+}
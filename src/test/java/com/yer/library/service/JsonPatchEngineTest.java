@@ -0,0 +1,154 @@
+package com.yer.library.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchException;
+import com.yer.library.model.Location;
+import com.yer.library.model.dtos.BookCopyDTO;
+import com.yer.library.model.dtos.BookDTO;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Year;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonPatchEngineTest {
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .findAndAddModules()
+            .build();
+
+    private final JsonPatchEngine underTest = new JsonPatchEngine();
+
+    @Test
+    void replaceAndRemoveTopLevelPropertiesInPlace() throws IOException, JsonPatchException {
+        // given
+        BookDTO bookDTO = newBookDTO();
+        JsonPatch jsonPatch = toPatch("[" +
+                "{\"op\": \"replace\", \"path\": \"/title\", \"value\": \"The Boy in the Veil\"}," +
+                "{\"op\": \"add\", \"path\": \"/year\", \"value\": 1950}," +
+                "{\"op\": \"remove\", \"path\": \"/author\"}" +
+                "]");
+
+        // when
+        BookDTO patchedBookDTO = underTest.apply(jsonPatch, bookDTO);
+
+        // then
+        assertThat(patchedBookDTO).isSameAs(bookDTO);
+        assertThat(patchedBookDTO.getTitle()).isEqualTo("The Boy in the Veil");
+        assertThat(patchedBookDTO.getYear()).isEqualTo(Year.of(1950));
+        assertThat(patchedBookDTO.getAuthor()).isNull();
+        assertThat(patchedBookDTO.getIsbn()).isEqualTo("978-2-3915-3957-4");
+    }
+
+    @Test
+    void replaceIdIsIgnored() throws IOException, JsonPatchException {
+        // given
+        BookDTO bookDTO = newBookDTO();
+        JsonPatch jsonPatch = toPatch("[{\"op\": \"replace\", \"path\": \"/id\", \"value\": 2}]");
+
+        // when
+        BookDTO patchedBookDTO = underTest.apply(jsonPatch, bookDTO);
+
+        // then
+        assertThat(patchedBookDTO.getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void moveIsAppliedToWholeDocument() throws IOException, JsonPatchException {
+        // given
+        BookDTO bookDTO = newBookDTO();
+        JsonPatch jsonPatch = toPatch("[{\"op\": \"move\", \"from\": \"/author\", \"path\": \"/title\"}]");
+
+        // when
+        BookDTO patchedBookDTO = underTest.apply(jsonPatch, bookDTO);
+
+        // then
+        assertThat(patchedBookDTO.getTitle()).isEqualTo("Cole Lyons");
+        assertThat(patchedBookDTO.getAuthor()).isNull();
+        assertThat(patchedBookDTO.getIsbn()).isEqualTo("978-2-3915-3957-4");
+        assertThat(bookDTO.getTitle()).isEqualTo("The Girl in the Veil");
+    }
+
+    @Test
+    void replaceNestedPropertyIsAppliedToWholeDocument() throws IOException, JsonPatchException {
+        // given
+        BookCopyDTO bookCopyDTO = new BookCopyDTO();
+        bookCopyDTO.setBookId(1L);
+        bookCopyDTO.setLocation(new Location((short) 1, (short) 2, (short) 3));
+        JsonPatch jsonPatch = toPatch("[{\"op\": \"replace\", \"path\": \"/location/shelve\", \"value\": 4}]");
+
+        // when
+        BookCopyDTO patchedBookCopyDTO = underTest.apply(jsonPatch, bookCopyDTO);
+
+        // then
+        assertThat(patchedBookCopyDTO.getLocation()).isEqualTo(new Location((short) 1, (short) 2, (short) 4));
+        assertThat(patchedBookCopyDTO.getBookId()).isEqualTo(1L);
+    }
+
+    @Test
+    void replaceNonExistingPropertyFails() throws IOException {
+        // given
+        JsonPatch jsonPatch = toPatch("[{\"op\": \"replace\", \"path\": \"/publisher\", \"value\": \"Penguin\"}]");
+
+        // when
+        // then
+        assertThatThrownBy(() -> underTest.apply(jsonPatch, newBookDTO()))
+                .isInstanceOf(JsonPatchException.class);
+    }
+
+    @Test
+    void concurrentPatchesDoNotInterfere() throws IOException {
+        // given
+        List<JsonPatch> jsonPatches = IntStream.range(0, 1000)
+                .mapToObj(i -> "[{\"op\": \"replace\", \"path\": \"/value\", \"value\": " + i + "}]")
+                .map(JsonPatchEngineTest::toPatchUnchecked)
+                .collect(Collectors.toList());
+
+        // when
+        List<Integer> values = jsonPatches.parallelStream()
+                .map(jsonPatch -> {
+                    try {
+                        return underTest.apply(jsonPatch, newBookDTO()).getValue();
+                    } catch (IOException | JsonPatchException e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .collect(Collectors.toList());
+
+        // then
+        assertThat(values).containsExactlyElementsOf(
+                IntStream.range(0, 1000).boxed().collect(Collectors.toList())
+        );
+    }
+
+    private static BookDTO newBookDTO() {
+        BookDTO bookDTO = new BookDTO();
+        bookDTO.setId(1L);
+        bookDTO.setIsbn("978-2-3915-3957-4");
+        bookDTO.setTitle("The Girl in the Veil");
+        bookDTO.setYear(Year.of(1948));
+        bookDTO.setAuthor("Cole Lyons");
+        bookDTO.setType("fiction");
+        bookDTO.setGenre("horror");
+        bookDTO.setValue(4200);
+        return bookDTO;
+    }
+
+    private static JsonPatch toPatch(String json) throws IOException {
+        return JsonPatch.fromJson(MAPPER.readTree(json));
+    }
+
+    private static JsonPatch toPatchUnchecked(String json) {
+        try {
+            return toPatch(json);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.yer.library.service;
+
+import com.yer.library.model.Book;
+import com.yer.library.model.Member;
+import com.yer.library.model.Membership;
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import com.yer.library.repository.MemberRepository;
+import com.yer.library.repository.MembershipRepository;
+import com.yer.library.repository.MembershipTypeRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.test.context.TestComponent;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+
+/**
+ * Creates the books and members that the service tests need, which differ only in their ISBN or email address.
+ * Tests that save members with it import it with {@code @Import(LibraryFixtures.class)}.
+ */
+@TestComponent
+@RequiredArgsConstructor
+class LibraryFixtures {
+    private final MembershipRepository membershipRepository;
+    private final MembershipTypeRepository membershipTypeRepository;
+    private final MemberRepository memberRepository;
+
+    /**
+     * Saves a membership of the first membership type that started a month ago and ends in eleven months.
+     */
+    Membership newMembership() {
+        return membershipRepository.save(new Membership(
+                membershipTypeRepository.findAll().get(0),
+                LocalDate.now().minusMonths(1),
+                LocalDate.now().plusMonths(11)
+        ));
+    }
+
+    /**
+     * Saves a member that may borrow, with a membership of their own, and returns their ID.
+     */
+    Long newBorrower(String email) {
+        return newBorrower(email, newMembership());
+    }
+
+    /**
+     * Saves a member of the given membership, and returns their ID.
+     */
+    Long newBorrower(String email, Membership membership) {
+        return memberRepository.save(newMember(email, membership)).getId();
+    }
+
+    static Book newBook(String isbn) {
+        return new Book(
+                isbn,
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+    }
+
+    static Member newMember(String email, Membership membership) {
+        return new Member(
+                "Kaden Dickens",
+                "835 Vincenza Loaf",
+                email,
+                LocalDate.of(1953, Month.APRIL, 25),
+                membership
+        );
+    }
+}
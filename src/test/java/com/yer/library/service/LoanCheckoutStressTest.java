@@ -0,0 +1,122 @@
+package com.yer.library.service;
+
+import com.yer.library.model.Book;
+import com.yer.library.model.BookCopy;
+import com.yer.library.model.Location;
+import com.yer.library.model.Membership;
+import com.yer.library.model.enums.BookCopyStatus;
+import com.yer.library.repository.BookCopyRepository;
+import com.yer.library.repository.LoanRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.yer.library.service.LibraryFixtures.newBook;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * Fires hundreds of concurrent checkouts (single book copies and baskets) of the copies of one popular book, and checks
+ * that every copy is lent exactly once, while all other checkouts fail with the usual "is not available" error, and
+ * that the availability counter of the book ends at zero.
+ */
+@SpringBootTest(webEnvironment = NONE)
+@Import(LibraryFixtures.class)
+class LoanCheckoutStressTest {
+    private static final int THREADS = 32;
+    private static final int COPIES = 20;
+    private static final int MEMBERS = 10;
+    private static final int CHECKOUTS = 400;
+
+    @Autowired
+    private LibraryFixtures fixtures;
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookCopyService bookCopyService;
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Test
+    void concurrentCheckoutsOfOneBook() throws Exception {
+        // given
+        Book book = bookService.add(newBook("978-0-00-030000-3"));
+        List<Long> bookCopyIds = new ArrayList<>();
+        for (int i = 0; i < COPIES; i++) {
+            bookCopyIds.add(bookCopyService.add(
+                    new BookCopy(book, new Location((short) 1, (short) 1, (short) 1)), book.getId()
+            ).getId());
+        }
+        Membership membership = fixtures.newMembership();
+        List<Long> memberIds = new ArrayList<>();
+        for (int i = 0; i < MEMBERS; i++) {
+            memberIds.add(fixtures.newBorrower("borrower" + i + "@example.com", membership));
+        }
+        AtomicInteger lent = new AtomicInteger();
+        List<String> errors = new CopyOnWriteArrayList<>();
+
+        // when
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < CHECKOUTS; i++) {
+            int n = i;
+            Long memberId = memberIds.get(n % MEMBERS);
+            futures.add(executor.submit(() -> {
+                start.await();
+                if (n % 2 == 0) {
+                    try {
+                        loanService.checkOut(bookCopyIds.get(n % COPIES), memberId);
+                        lent.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        if (!e.getMessage().contains("is not available")) {
+                            errors.add(e.getMessage());
+                        }
+                    } catch (RuntimeException e) {
+                        errors.add(e.toString());
+                    }
+                } else {
+                    // baskets list their copies in descending order, against the order in which they are lent
+                    List<Long> basket = Arrays.asList(
+                            bookCopyIds.get((n + 2) % COPIES),
+                            bookCopyIds.get((n + 1) % COPIES),
+                            bookCopyIds.get(n % COPIES)
+                    );
+                    try {
+                        lent.addAndGet(loanService.checkOutAll(basket, memberId).getSucceeded());
+                    } catch (RuntimeException e) {
+                        errors.add(e.toString());
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+
+        // then
+        assertThat(executor.awaitTermination(2, TimeUnit.MINUTES)).isTrue();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        assertThat(errors).isEmpty();
+        assertThat(lent.get()).isEqualTo(COPIES);
+        for (Long bookCopyId : bookCopyIds) {
+            assertThat(bookCopyRepository.findById(bookCopyId).get().getStatus()).isEqualTo(BookCopyStatus.ON_LOAN);
+            assertThat(loanRepository.findActiveByBookCopyId(bookCopyId)).isPresent();
+        }
+        assertThat(bookService.getAvailability(book.getId()).getAvailableCopies()).isZero();
+        assertThat(bookService.getAvailability(book.getId()).getTotalCopies()).isEqualTo(COPIES);
+    }
+}
@@ -0,0 +1,205 @@
+package com.yer.library.service;
+
+import com.yer.library.model.Book;
+import com.yer.library.model.BookCopy;
+import com.yer.library.model.Loan;
+import com.yer.library.model.Location;
+import com.yer.library.model.Member;
+import com.yer.library.model.Membership;
+import com.yer.library.model.MembershipType;
+import com.yer.library.model.dtos.BatchReport;
+import com.yer.library.model.enums.BookCopyStatus;
+import com.yer.library.model.enums.BookGenre;
+import com.yer.library.model.enums.BookType;
+import com.yer.library.model.enums.MembershipTypeName;
+import com.yer.library.repository.BookAvailabilityRepository;
+import com.yer.library.repository.BookCopyRepository;
+import com.yer.library.repository.LoanRepository;
+import com.yer.library.repository.MemberRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class LoanServiceTest {
+
+    @Mock
+    private LoanRepository loanRepository;
+
+    @Mock
+    private BookCopyRepository bookCopyRepository;
+
+    @Mock
+    private BookAvailabilityRepository bookAvailabilityRepository;
+
+    @Mock
+    private MemberRepository memberRepository;
+
+    @Mock
+    private HoldService holdService;
+
+    @InjectMocks
+    private LoanService underTest;
+
+    @Test
+    void checkOutAvailableBookCopy() {
+        // given
+        Member member = newMember(LocalDate.now().minusMonths(1));
+        BookCopy bookCopy = newBookCopy(3L);
+        given(memberRepository.findById(member.getId())).willReturn(Optional.of(member));
+        given(bookCopyRepository.checkOut(bookCopy.getId())).willReturn(1);
+        given(bookCopyRepository.findById(bookCopy.getId())).willReturn(Optional.of(bookCopy));
+        willAnswer(invocation -> invocation.getArgument(0)).given(loanRepository).save(any());
+
+        // when
+        Loan loan = underTest.checkOut(bookCopy.getId(), member.getId());
+
+        // then
+        assertThat(loan.getBookCopy()).isEqualTo(bookCopy);
+        assertThat(loan.getMember()).isEqualTo(member);
+        assertThat(loan.getLoanDate()).isEqualTo(LocalDate.now());
+        assertThat(loan.getDueDate()).isEqualTo(LocalDate.now().plus(Loan.LOAN_PERIOD));
+        assertThat(loan.getReturnDate()).isNull();
+    }
+
+    @Test
+    void checkOutUnavailableBookCopy() {
+        // given
+        Member member = newMember(LocalDate.now().minusMonths(1));
+        BookCopy bookCopy = newBookCopy(3L);
+        bookCopy.setStatus(BookCopyStatus.ON_LOAN);
+        given(memberRepository.findById(member.getId())).willReturn(Optional.of(member));
+        given(bookCopyRepository.checkOut(bookCopy.getId())).willReturn(0);
+        given(bookCopyRepository.findById(bookCopy.getId())).willReturn(Optional.of(bookCopy));
+
+        // when
+        // then
+        assertThatThrownBy(() -> underTest.checkOut(bookCopy.getId(), member.getId()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("book copy with ID " + bookCopy.getId() + " is not available");
+        verify(loanRepository, never()).save(any());
+    }
+
+    @Test
+    void checkOutWithoutActiveMembership() {
+        // given
+        Member member = newMember(LocalDate.now().minusYears(2));
+        given(memberRepository.findById(member.getId())).willReturn(Optional.of(member));
+
+        // when
+        // then
+        assertThatThrownBy(() -> underTest.checkOut(3L, member.getId()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("member with ID " + member.getId() + " has no active membership");
+        verify(bookCopyRepository, never()).checkOut(anyLong());
+        verify(loanRepository, never()).save(any());
+    }
+
+    @Test
+    void checkOutBasketWithUnavailableBookCopy() {
+        // given
+        Member member = newMember(LocalDate.now().minusMonths(1));
+        BookCopy availableBookCopy = newBookCopy(3L);
+        BookCopy lentBookCopy = newBookCopy(2L);
+        lentBookCopy.setStatus(BookCopyStatus.ON_LOAN);
+        given(memberRepository.findById(member.getId())).willReturn(Optional.of(member));
+        given(bookCopyRepository.checkOut(3L)).willReturn(1);
+        given(bookCopyRepository.checkOut(2L)).willReturn(0);
+        given(bookCopyRepository.findAllById(any())).willReturn(Arrays.asList(availableBookCopy, lentBookCopy));
+        willAnswer(invocation -> invocation.getArgument(0)).given(loanRepository).save(any());
+
+        // when
+        BatchReport<Loan> report = underTest.checkOutAll(Arrays.asList(3L, 2L, null), member.getId());
+
+        // then
+        assertThat(report.getSucceeded()).isEqualTo(1);
+        assertThat(report.getFailed()).isEqualTo(2);
+        assertThat(report.getItems().get(0).getObject().getBookCopy()).isEqualTo(availableBookCopy);
+        assertThat(report.getItems().get(1).getErrors()).containsExactly("book copy with ID 2 is not available");
+        assertThat(report.getItems().get(2).getErrors()).containsExactly("book copy ID is missing");
+        verify(loanRepository).save(any());
+    }
+
+    @Test
+    void returnBookCopyNotOnLoan() {
+        // given
+        given(loanRepository.findActiveByBookCopyId(3L)).willReturn(Optional.empty());
+
+        // when
+        // then
+        assertThatThrownBy(() -> underTest.returnBookCopy(3L))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("book copy with ID 3 is not on loan");
+        verify(bookCopyRepository, never()).checkIn(anyLong());
+    }
+
+    @Test
+    void returnLentBookCopy() {
+        // given
+        Member member = newMember(LocalDate.now().minusMonths(1));
+        BookCopy bookCopy = newBookCopy(3L);
+        bookCopy.setStatus(BookCopyStatus.ON_LOAN);
+        Loan loan = new Loan(bookCopy, member, LocalDate.now().minusDays(7));
+        loan.setId(5L);
+        given(loanRepository.findActiveByBookCopyId(3L)).willReturn(Optional.of(loan));
+        given(loanRepository.markReturned(5L, LocalDate.now())).willReturn(1);
+
+        // when
+        Loan returnedLoan = underTest.returnBookCopy(3L);
+
+        // then
+        assertThat(returnedLoan.getReturnDate()).isEqualTo(LocalDate.now());
+        assertThat(returnedLoan.getBookCopy().getStatus()).isEqualTo(BookCopyStatus.AVAILABLE);
+        verify(bookCopyRepository).checkIn(3L);
+    }
+
+    private static Member newMember(LocalDate membershipStartDate) {
+        Membership membership = new Membership(
+                new MembershipType(MembershipTypeName.ADULT, 500),
+                membershipStartDate,
+                membershipStartDate.plusYears(1)
+        );
+        Member member = new Member(
+                "Kaden Dickens",
+                "835 Vincenza Loaf",
+                "k.dickens@gmail.com",
+                LocalDate.of(1953, Month.APRIL, 25),
+                membership
+        );
+        member.setId(1L);
+        return member;
+    }
+
+    private static BookCopy newBookCopy(Long bookCopyId) {
+        Book book = new Book(
+                "978-2-3915-3957-4",
+                "The Girl in the Veil",
+                Year.of(1948),
+                "Cole Lyons",
+                BookType.FICTION,
+                BookGenre.HORROR,
+                4200
+        );
+        book.setId(1L);
+        BookCopy bookCopy = new BookCopy(book, new Location((short) 1, (short) 1, (short) 1));
+        bookCopy.setId(bookCopyId);
+        return bookCopy;
+    }
+}
@@ -40,10 +40,17 @@ class MemberServiceTest {
     private MemberRepository memberRepository;
     @Mock
     private MembershipRepository membershipRepository;
+    @Mock
+    private HoldService holdService;
 
     @Mock
     private Logger logger;
 
+    @Spy
+    private JsonPatchEngine jsonPatchEngine = new JsonPatchEngine();
+    @Spy
+    private UniqueKeyLocks uniqueKeyLocks = new UniqueKeyLocks();
+
     @InjectMocks
     @Spy
     private MemberService underTest;
@@ -163,6 +170,36 @@ class MemberServiceTest {
         ));
     }
 
+    @Test
+    void listAfter() {
+        // given
+        Long afterId = 42L;
+        int limit = 100;
+
+        // when
+        underTest.list(afterId, limit);
+
+        // then
+        verify(memberRepository).listAvailableAfter(eq(afterId), argThat(
+                pageable -> pageable.equals(Pageable.ofSize(limit))
+        ));
+    }
+
+    @Test
+    void listByMembershipAfterFirstPage() {
+        // given
+        Long membershipId = 1L;
+        int limit = 100;
+
+        // when
+        underTest.listByMembership(membershipId, null, limit);
+
+        // then
+        verify(memberRepository).listByMembershipAfter(eq(membershipId), eq(0L), argThat(
+                pageable -> pageable.equals(Pageable.ofSize(limit))
+        ));
+    }
+
     @Test
     void addValidMemberWithMembership() {
         // given
@@ -197,14 +234,14 @@ class MemberServiceTest {
         expectedReturnedMember.setId(memberId);
 
 
-        given(memberRepository.save(member)).willReturn(expectedReturnedMember);
+        given(memberRepository.saveAndFlush(member)).willReturn(expectedReturnedMember);
 
         // when
         Member returnedMember = underTest.add(member);
 
         // then
         ArgumentCaptor<Member> memberArgumentCaptor = ArgumentCaptor.forClass(Member.class);
-        verify(memberRepository).save(memberArgumentCaptor.capture());
+        verify(memberRepository).saveAndFlush(memberArgumentCaptor.capture());
         Member capturedMember = memberArgumentCaptor.getValue();
 
         assertThat(capturedMember).isEqualTo(member);
@@ -257,7 +294,7 @@ class MemberServiceTest {
         assertThatThrownBy(() -> underTest.add(member2))
                 .isInstanceOf(IllegalStateException.class)
                 .hasMessageContaining("email " + member2.getEmailAddress() + " already exists");
-        verify(memberRepository, never()).save(any());
+        verify(memberRepository, never()).saveAndFlush(any());
     }
 
     @Test
@@ -311,7 +348,7 @@ class MemberServiceTest {
         );
         expectedReturnedMember.setId(deletedMemberInDBId);
 
-        given(memberRepository.save(newMember)).willReturn(expectedReturnedMember);
+        given(memberRepository.saveAndFlush(newMember)).willReturn(expectedReturnedMember);
         given(memberRepository.findByEmail(email)).willReturn(Optional.of(deletedMemberInDB));
 
         // when
@@ -319,7 +356,7 @@ class MemberServiceTest {
 
         // then
         ArgumentCaptor<Member> memberArgumentCaptor = ArgumentCaptor.forClass(Member.class);
-        verify(memberRepository).save(memberArgumentCaptor.capture());
+        verify(memberRepository).saveAndFlush(memberArgumentCaptor.capture());
         Member capturedMember = memberArgumentCaptor.getValue();
 
         assertThat(capturedMember).isEqualTo(expectedReturnedMember);
@@ -398,7 +435,7 @@ class MemberServiceTest {
         assertThatThrownBy(() -> underTest.add(member, membershipId))
                 .isInstanceOf(IllegalStateException.class)
                 .hasMessageContaining("cannot add member for membership: membership with ID " + membershipId + " does not exist");
-        verify(memberRepository, never()).save(any());
+        verify(memberRepository, never()).saveAndFlush(any());
     }
 
     @Test
@@ -518,7 +555,7 @@ class MemberServiceTest {
         );
         expectedReturnedMember.setId(memberId);
 
-        given(memberRepository.save(updatedMember)).willReturn(expectedReturnedMember);
+        given(memberRepository.save(initialMember)).willReturn(expectedReturnedMember);
         given(memberRepository.findById(memberId)).willReturn(Optional.of(initialMember));
 
         // when
@@ -530,9 +567,9 @@ class MemberServiceTest {
         verify(memberRepository).save(memberArgumentCaptor.capture());
         Member capturedMember = memberArgumentCaptor.getValue();
 
-        assertThat(capturedMember).isSameAs(updatedMember);
+        assertThat(capturedMember).isSameAs(initialMember);
 
-        assertThat(capturedMember.getId()).isEqualTo(updatedMember.getId());
+        assertThat(capturedMember.getId()).isEqualTo(memberId);
         assertThat(capturedMember.getName()).isEqualTo(updatedMember.getName());
         assertThat(capturedMember.getEmailAddress()).isEqualTo(updatedMember.getEmailAddress());
         assertThat(capturedMember.getHomeAddress()).isEqualTo(updatedMember.getHomeAddress());
@@ -581,6 +618,37 @@ class MemberServiceTest {
         verify(memberRepository, never()).save(any());
     }
 
+    @Test
+    void fullUpdateExistingDeletedMember() {
+        // given
+        Long memberId = 1L;
+        Member existingMember = new Member(
+                "Cayden Dickens",
+                "836 Vincenza Loaf",
+                "c.dickens@gmail.com",
+                LocalDate.of(1953, Month.APRIL, 26),
+                null
+        );
+        existingMember.setId(memberId);
+        existingMember.setDeleted(true);
+        Member updatedMember = new Member(
+                "Cayden Dickens",
+                "12 Vincenza Loaf",
+                "c.dickens@gmail.com",
+                LocalDate.of(1953, Month.APRIL, 26),
+                null
+        );
+
+        given(memberRepository.findById(memberId)).willReturn(Optional.of(existingMember));
+
+        // when
+        // then
+        assertThatThrownBy(() -> underTest.fullUpdate(memberId, updatedMember))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("member with ID " + memberId + " has been deleted");
+        verify(memberRepository, never()).save(any());
+    }
+
     @Test
     void fullUpdateExistingMemberNewEmailExistsForNonDeletedMember() {
         Long membershipTypeId = 1L;
@@ -0,0 +1,138 @@
+package com.yer.library.service;
+
+import com.yer.library.model.JobCheckpoint;
+import com.yer.library.model.Member;
+import com.yer.library.model.Membership;
+import com.yer.library.model.dtos.MembershipExpiryStatistics;
+import com.yer.library.repository.JobCheckpointRepository;
+import com.yer.library.repository.MemberRepository;
+import com.yer.library.repository.MembershipRepository;
+import com.yer.library.repository.MembershipTypeRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * Checks that the membership expiry job expires exactly the memberships that ended, in chunks, and that an interrupted
+ * run resumes from its checkpoint.
+ */
+@SpringBootTest(webEnvironment = NONE, properties = "library.membership-expiry.chunk-size=10")
+class MembershipExpiryJobTest {
+    @Autowired
+    private MembershipExpiryJob membershipExpiryJob;
+    @Autowired
+    private MembershipService membershipService;
+    @Autowired
+    private MembershipRepository membershipRepository;
+    @Autowired
+    private MembershipTypeRepository membershipTypeRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private JobCheckpointRepository jobCheckpointRepository;
+
+    @Test
+    void expiresEndedMembershipsAndDetachesTheirMembers() {
+        // given
+        LocalDate today = LocalDate.now();
+        List<Long> endedMembershipIds = new ArrayList<>();
+        List<Long> endedMemberIds = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            Membership membership = newMembership(today.minusDays(1 + i % 7));
+            endedMembershipIds.add(membership.getId());
+            endedMemberIds.add(newMember("expired" + i + "@example.com", membership));
+        }
+        Membership endingToday = newMembership(today);
+        Long activeMemberId = newMember("active@example.com", endingToday);
+        membershipService.get(endedMembershipIds.get(0));
+
+        // when
+        boolean ran = membershipExpiryJob.run(today);
+
+        // then
+        assertThat(ran).isTrue();
+        for (Long membershipId : endedMembershipIds) {
+            assertThat(membershipRepository.findById(membershipId).get().getDeleted()).isTrue();
+            assertThat(membershipRepository.findById(membershipId).get().getExpired()).isTrue();
+        }
+        for (Long memberId : endedMemberIds) {
+            assertThat(memberRepository.findById(memberId).get().getMembership()).isNull();
+        }
+        assertThat(membershipRepository.findById(endingToday.getId()).get().getDeleted()).isFalse();
+        assertThat(memberRepository.findById(activeMemberId).get().getMembership()).isNotNull();
+        // the cached membership was evicted
+        assertThatThrownBy(() -> membershipService.get(endedMembershipIds.get(0)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("has been cancelled, deleted, or expired");
+
+        MembershipExpiryStatistics statistics = membershipExpiryJob.getStatistics();
+        assertThat(statistics.isRunning()).isFalse();
+        assertThat(statistics.getCutoffDate()).isEqualTo(today);
+        assertThat(statistics.getExpiredCount()).isGreaterThanOrEqualTo(25);
+        assertThat(statistics.getDetachedCount()).isGreaterThanOrEqualTo(25);
+        assertThat(statistics.getChunkCount()).isEqualTo((statistics.getExpiredCount() + 9) / 10);
+        assertThat(jobCheckpointRepository.findById(MembershipExpiryJob.NAME).get().isCompleted()).isTrue();
+    }
+
+    @Test
+    void interruptedRunResumesFromItsCheckpoint() {
+        // given
+        LocalDate today = LocalDate.now();
+        membershipExpiryJob.run(today);
+        Membership endedBeforeCheckpoint = newMembership(today.minusDays(20));
+        Membership endedAfterCheckpoint = newMembership(today.minusDays(10));
+        // a run that was interrupted after the memberships that ended 15 days ago
+        JobCheckpoint checkpoint = jobCheckpointRepository.findById(MembershipExpiryJob.NAME).get();
+        checkpoint.restart(today, LocalDateTime.of(2022, Month.MARCH, 1, 2, 30));
+        checkpoint.setLastEndDate(today.minusDays(15));
+        checkpoint.setProcessed(40);
+        jobCheckpointRepository.save(checkpoint);
+
+        // when
+        membershipExpiryJob.run(today);
+
+        // then
+        assertThat(membershipRepository.findById(endedBeforeCheckpoint.getId()).get().getDeleted()).isFalse();
+        assertThat(membershipRepository.findById(endedAfterCheckpoint.getId()).get().getDeleted()).isTrue();
+        JobCheckpoint resumedCheckpoint = jobCheckpointRepository.findById(MembershipExpiryJob.NAME).get();
+        assertThat(resumedCheckpoint.getStartedAt()).isEqualTo(LocalDateTime.of(2022, Month.MARCH, 1, 2, 30));
+        assertThat(resumedCheckpoint.getProcessed()).isEqualTo(41);
+        assertThat(resumedCheckpoint.isCompleted()).isTrue();
+
+        // when
+        // the next run starts from the first membership again
+        membershipExpiryJob.run(today);
+
+        // then
+        assertThat(membershipRepository.findById(endedBeforeCheckpoint.getId()).get().getDeleted()).isTrue();
+        assertThat(jobCheckpointRepository.findById(MembershipExpiryJob.NAME).get().getProcessed()).isEqualTo(1);
+    }
+
+    private Membership newMembership(LocalDate endDate) {
+        return membershipRepository.save(new Membership(
+                membershipTypeRepository.findAll().get(0),
+                endDate.minusYears(1),
+                endDate
+        ));
+    }
+
+    private Long newMember(String email, Membership membership) {
+        return memberRepository.save(new Member(
+                "Kaden Dickens",
+                "835 Vincenza Loaf",
+                email,
+                LocalDate.of(1953, Month.APRIL, 25),
+                membership
+        )).getId();
+    }
+}
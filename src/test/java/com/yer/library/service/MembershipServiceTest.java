@@ -9,6 +9,7 @@ import com.yer.library.model.Member;
 import com.yer.library.model.Membership;
 import com.yer.library.model.MembershipType;
 import com.yer.library.model.enums.MembershipTypeName;
+import com.yer.library.repository.MemberRepository;
 import com.yer.library.repository.MembershipRepository;
 import com.yer.library.repository.MembershipTypeRepository;
 import org.junit.jupiter.api.Test;
@@ -41,12 +42,23 @@ class MembershipServiceTest {
     @Mock
     private MembershipRepository membershipRepository;
 
+    @Mock
+    private MemberRepository memberRepository;
+
     @Mock
     private MembershipTypeRepository membershipTypeRepository;
 
+    @Mock
+    private RevenueReportService revenueReportService;
+    @Mock
+    private HoldService holdService;
+
     @Mock
     private Logger logger;
 
+    @Spy
+    private JsonPatchEngine jsonPatchEngine = new JsonPatchEngine();
+
     @InjectMocks
     @Spy
     private MembershipService underTest;
@@ -155,6 +167,36 @@ class MembershipServiceTest {
         ));
     }
 
+    @Test
+    void listAfter() {
+        // given
+        Long afterId = 42L;
+        int limit = 100;
+
+        // when
+        underTest.list(afterId, limit);
+
+        // then
+        verify(membershipRepository).listAvailableAfter(eq(afterId), argThat(
+                pageable -> pageable.equals(Pageable.ofSize(limit))
+        ));
+    }
+
+    @Test
+    void listByTypeAfterFirstPage() {
+        // given
+        Long membershipTypeId = 1L;
+        int limit = 100;
+
+        // when
+        underTest.listByMembershipType(membershipTypeId, null, limit);
+
+        // then
+        verify(membershipRepository).listByMembershipTypeAfter(eq(membershipTypeId), eq(0L), argThat(
+                pageable -> pageable.equals(Pageable.ofSize(limit))
+        ));
+    }
+
     @Test
     void addValidMembershipWithType() {
         // given
@@ -284,6 +326,12 @@ class MembershipServiceTest {
         membershipType.setId(membershipTypeId);
 
         Long membershipId = 1L;
+        Membership initialMembership = new Membership(
+                membershipType,
+                LocalDate.of(2019, Month.MARCH, 3),
+                LocalDate.of(2020, Month.MARCH, 3)
+        );
+        initialMembership.setId(membershipId);
         Membership updatedMembership = new Membership(
                 membershipType,
                 LocalDate.of(2019, Month.MARCH, 3),
@@ -301,22 +349,22 @@ class MembershipServiceTest {
         );
         expectedReturnedMembership.setId(membershipId);
 
-        given(membershipRepository.existsById(membershipId)).willReturn(true);
-        given(membershipRepository.save(updatedMembership)).willReturn(expectedReturnedMembership);
+        given(membershipRepository.findById(membershipId)).willReturn(Optional.of(initialMembership));
+        given(membershipRepository.save(initialMembership)).willReturn(expectedReturnedMembership);
 
         // when
         Membership returnedMembership = underTest.fullUpdate(membershipId, updatedMembership);
         updatedMembershipCopyWithId.setId(returnedMembership.getId());
 
         // then
-        verify(membershipRepository).existsById(
+        verify(membershipRepository).findById(
                 argThat(id -> id.equals(membershipId))
         );
         ArgumentCaptor<Membership> membershipArgumentCaptor = ArgumentCaptor.forClass(Membership.class);
         verify(membershipRepository).save(membershipArgumentCaptor.capture());
         Membership capturedMembership = membershipArgumentCaptor.getValue();
 
-        assertThat(capturedMembership).isSameAs(updatedMembership);
+        assertThat(capturedMembership).isSameAs(initialMembership);
 
         assertThat(capturedMembership.getId()).isEqualTo(updatedMembershipCopyWithId.getId());
         assertThat(capturedMembership.getMembershipType()).isEqualTo(updatedMembershipCopyWithId.getMembershipType());
@@ -350,19 +398,52 @@ class MembershipServiceTest {
         );
         expectedReturnedMembership.setId(membershipId);
 
-        given(membershipRepository.existsById(membershipId)).willReturn(false);
+        given(membershipRepository.findById(membershipId)).willReturn(Optional.empty());
 
         // when
         // then
         assertThatThrownBy(() -> underTest.fullUpdate(membershipId, updatedMembership))
                 .isInstanceOf(IllegalStateException.class)
                 .hasMessageContaining("membership with ID " + membershipId + " does not exist");
-        verify(membershipRepository).existsById(
+        verify(membershipRepository).findById(
                 argThat(id -> id.equals(membershipId))
         );
         verify(membershipRepository, never()).save(any());
     }
 
+    @Test
+    void fullUpdateExistingDeletedMembership() {
+        // given
+        Long membershipTypeId = 1L;
+        MembershipType membershipType = new MembershipType(
+                MembershipTypeName.CHILD, 0
+        );
+        membershipType.setId(membershipTypeId);
+
+        Long membershipId = 1L;
+        Membership existingMembership = new Membership(
+                membershipType,
+                LocalDate.of(2019, Month.MARCH, 3),
+                LocalDate.of(2021, Month.MARCH, 3)
+        );
+        existingMembership.setId(membershipId);
+        existingMembership.setDeleted(true);
+        Membership updatedMembership = new Membership(
+                membershipType,
+                LocalDate.of(2019, Month.MARCH, 3),
+                LocalDate.of(2022, Month.MARCH, 3)
+        );
+
+        given(membershipRepository.findById(membershipId)).willReturn(Optional.of(existingMembership));
+
+        // when
+        // then
+        assertThatThrownBy(() -> underTest.fullUpdate(membershipId, updatedMembership))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("membership with ID " + membershipId + " has been deleted");
+        verify(membershipRepository, never()).save(any());
+    }
+
     @Test
     void fullUpdateMembershipForNonExistingType() {
         // given
@@ -751,7 +832,7 @@ class MembershipServiceTest {
         );
         assertThat(result).isTrue();
         assertThat(existingMembership.getDeleted()).isTrue();
-        assertThat(existingMembership.getMembers()).allMatch(member -> member.getMembership() == null);
+        verify(memberRepository).detachFromMemberships(Collections.singleton(membershipId));
     }
 
     @Test
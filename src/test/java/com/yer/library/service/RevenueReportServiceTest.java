@@ -0,0 +1,153 @@
+package com.yer.library.service;
+
+import com.yer.library.model.Membership;
+import com.yer.library.model.MembershipType;
+import com.yer.library.model.dtos.RevenueLine;
+import com.yer.library.model.dtos.RevenueReport;
+import com.yer.library.model.enums.MembershipTypeName;
+import com.yer.library.repository.MembershipRepository;
+import com.yer.library.repository.MembershipTypeRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * Checks the revenue reports against memberships long before the memberships of other tests, and that a change of a
+ * membership only evicts the cached reports of the dates it overlaps.
+ */
+@SpringBootTest(webEnvironment = NONE)
+class RevenueReportServiceTest {
+    @Autowired
+    private RevenueReportService revenueReportService;
+    @Autowired
+    private MembershipService membershipService;
+    @Autowired
+    private MembershipExpiryJob membershipExpiryJob;
+    @Autowired
+    private MembershipRepository membershipRepository;
+    @Autowired
+    private MembershipTypeRepository membershipTypeRepository;
+
+    @Test
+    void monthlyReportsMatchReportsOfFirstDays() {
+        // given
+        newMembership(MembershipTypeName.ADULT, LocalDate.of(1990, Month.JANUARY, 1), LocalDate.of(1990, Month.DECEMBER, 31));
+        newMembership(MembershipTypeName.CHILD, LocalDate.of(1990, Month.FEBRUARY, 15), LocalDate.of(1990, Month.APRIL, 1));
+        newMembership(MembershipTypeName.FAMILY, LocalDate.of(1989, Month.JUNE, 1), LocalDate.of(1990, Month.JANUARY, 31));
+        newMembership(MembershipTypeName.ADULT, LocalDate.of(1990, Month.FEBRUARY, 2), LocalDate.of(1990, Month.MARCH, 1));
+        Membership cancelledMembership = newMembership(
+                MembershipTypeName.ADULT, LocalDate.of(1990, Month.JANUARY, 1), LocalDate.of(1990, Month.DECEMBER, 31)
+        );
+        membershipService.delete(cancelledMembership.getId());
+
+        // when
+        List<RevenueReport> reports = revenueReportService.getMonthlyReports(YearMonth.of(1990, Month.JANUARY), 6);
+
+        // then
+        assertThat(reports).extracting(RevenueReport::getDate).containsExactly(
+                LocalDate.of(1990, Month.JANUARY, 1),
+                LocalDate.of(1990, Month.FEBRUARY, 1),
+                LocalDate.of(1990, Month.MARCH, 1),
+                LocalDate.of(1990, Month.APRIL, 1),
+                LocalDate.of(1990, Month.MAY, 1),
+                LocalDate.of(1990, Month.JUNE, 1)
+        );
+        assertThat(reports).extracting(RevenueReport::getMemberships).containsExactly(2L, 1L, 3L, 2L, 1L, 1L);
+        assertThat(line(reports.get(2), MembershipTypeName.ADULT).getMemberships()).isEqualTo(2);
+        assertThat(line(reports.get(2), MembershipTypeName.ADULT).getMonthlyRevenue())
+                .isEqualTo(2L * costPerMonth(MembershipTypeName.ADULT));
+        for (RevenueReport report : reports) {
+            RevenueReport reportOfDate = revenueReportService.getReport(report.getDate());
+            assertThat(reportOfDate.getLines()).usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyElementsOf(report.getLines());
+            assertThat(reportOfDate.getMonthlyRevenue()).isEqualTo(report.getMonthlyRevenue());
+        }
+    }
+
+    @Test
+    void changeOfMembershipOnlyEvictsReportsOfItsPeriod() {
+        // given
+        LocalDate date = LocalDate.of(1995, Month.JUNE, 1);
+        LocalDate otherDate = LocalDate.of(1999, Month.JUNE, 1);
+        RevenueReport report = revenueReportService.getReport(date);
+        RevenueReport otherReport = revenueReportService.getReport(otherDate);
+        List<RevenueReport> monthlyReports = revenueReportService.getMonthlyReports(YearMonth.of(1995, Month.MAY), 2);
+        assertThat(revenueReportService.getReport(date)).isSameAs(report);
+
+        // when
+        MembershipType adult = membershipType(MembershipTypeName.ADULT);
+        Membership membership = membershipService.add(
+                new Membership(null, LocalDate.of(1995, Month.JANUARY, 1), LocalDate.of(1995, Month.DECEMBER, 31)),
+                adult.getId()
+        );
+
+        // then
+        assertThat(revenueReportService.getReport(date).getMemberships()).isEqualTo(report.getMemberships() + 1);
+        assertThat(revenueReportService.getReport(otherDate)).isSameAs(otherReport);
+        assertThat(revenueReportService.getMonthlyReports(YearMonth.of(1995, Month.MAY), 2).get(1).getMonthlyRevenue())
+                .isEqualTo(monthlyReports.get(1).getMonthlyRevenue() + adult.getCostPerMonth());
+
+        // when
+        membershipService.delete(membership.getId());
+
+        // then
+        assertThat(revenueReportService.getReport(date).getMemberships()).isEqualTo(report.getMemberships());
+    }
+
+    @Test
+    void expiryOfMembershipsKeepsPastReports() {
+        // given
+        newMembership(MembershipTypeName.ADULT, LocalDate.of(1985, Month.JANUARY, 1), LocalDate.of(1985, Month.DECEMBER, 31));
+        newMembership(MembershipTypeName.CHILD, LocalDate.of(1985, Month.MARCH, 1), LocalDate.of(1985, Month.MARCH, 31));
+        List<RevenueReport> reports = revenueReportService.getMonthlyReports(YearMonth.of(1985, Month.FEBRUARY), 3);
+
+        // when
+        membershipExpiryJob.run();
+
+        // then
+        // the reports are read again from the memberships, under other months and dates than the cached ones
+        List<RevenueReport> reportsAfterExpiry = revenueReportService.getMonthlyReports(YearMonth.of(1985, Month.JANUARY), 4);
+        assertThat(reportsAfterExpiry.subList(1, 4)).extracting(RevenueReport::getMonthlyRevenue)
+                .containsExactlyElementsOf(reports.stream().map(RevenueReport::getMonthlyRevenue).collect(Collectors.toList()));
+        assertThat(reportsAfterExpiry).extracting(RevenueReport::getMemberships).containsExactly(1L, 1L, 2L, 1L);
+        assertThat(revenueReportService.getReport(LocalDate.of(1985, Month.MARCH, 15)).getMemberships()).isEqualTo(2);
+    }
+
+    @Test
+    void tooManyMonths() {
+        // when
+        // then
+        assertThatThrownBy(() -> revenueReportService.getMonthlyReports(YearMonth.of(1990, Month.JANUARY), 61))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("number of months should be between 1 and 60");
+    }
+
+    private Membership newMembership(MembershipTypeName type, LocalDate startDate, LocalDate endDate) {
+        return membershipRepository.save(new Membership(membershipType(type), startDate, endDate));
+    }
+
+    private MembershipType membershipType(MembershipTypeName type) {
+        return membershipTypeRepository.findAll().stream()
+                .filter(membershipType -> membershipType.getType() == type)
+                .findFirst()
+                .get();
+    }
+
+    private int costPerMonth(MembershipTypeName type) {
+        return membershipType(type).getCostPerMonth();
+    }
+
+    private static RevenueLine line(RevenueReport report, MembershipTypeName type) {
+        return report.getLines().stream().filter(line -> line.getType() == type).findFirst().get();
+    }
+}
@@ -0,0 +1,116 @@
+package com.yer.library.service;
+
+import com.yer.library.model.*;
+import com.yer.library.repository.MembershipTypeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.time.Month;
+
+import static com.yer.library.config.CacheConfig.*;
+import static com.yer.library.service.LibraryFixtures.newBook;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * Checks that the service lookups are cached, and that writes evict the cached entities they affect, including the
+ * entities cached together with them.
+ */
+@SpringBootTest(webEnvironment = NONE)
+class ServiceCacheTest {
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookCopyService bookCopyService;
+    @Autowired
+    private MemberService memberService;
+    @Autowired
+    private MembershipService membershipService;
+    @Autowired
+    private MembershipTypeRepository membershipTypeRepository;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        // the second-level cache is shared by all application contexts of the test run, and may hold books of other
+        // contexts under the same IDs
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void getBookIsCachedUntilUpdated() {
+        // given
+        Long bookId = bookService.add(newBook("978-0-306-40615-7")).getId();
+        bookService.get(bookId);
+
+        // when
+        Book cachedBook = bookService.get(bookId);
+
+        // then
+        assertThat(cacheManager.getCache(BOOKS).get(bookId, Book.class)).isSameAs(cachedBook);
+
+        // when
+        Book updatedBook = newBook("978-0-306-40615-7");
+        updatedBook.setTitle("The Girl in the Veil, Revisited");
+        bookService.fullUpdate(bookId, updatedBook);
+
+        // then
+        assertThat(cacheManager.getCache(BOOKS).get(bookId)).isNull();
+        assertThat(bookService.get(bookId).getTitle()).isEqualTo("The Girl in the Veil, Revisited");
+    }
+
+    @Test
+    void deletingBookFailsGetForItsCachedCopies() {
+        // given
+        Book book = bookService.add(newBook("978-1-86197-876-9"));
+        Long bookCopyId = bookCopyService.add(
+                new BookCopy(book, new Location((short) 1, (short) 1, (short) 1))
+        ).getId();
+        bookCopyService.get(bookCopyId);
+        assertThat(cacheManager.getCache(BOOK_COPIES).get(bookCopyId)).isNotNull();
+
+        // when
+        bookService.delete(book.getId());
+
+        // then
+        assertThatThrownBy(() -> bookService.get(book.getId()))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> bookCopyService.get(bookCopyId))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("has been deleted");
+    }
+
+    @Test
+    void deletingMembershipDetachesCachedMembers() {
+        // given
+        MembershipType membershipType = membershipTypeRepository.findAll().get(0);
+        Membership membership = membershipService.add(new Membership(
+                membershipType,
+                LocalDate.of(2020, Month.JUNE, 2),
+                LocalDate.of(2022, Month.JUNE, 2)
+        ));
+        Long memberId = memberService.add(new Member(
+                "Iain Carter",
+                "950 Poplar St.",
+                "iaincarter.cache@hotmail.com",
+                LocalDate.of(1998, Month.JUNE, 8),
+                null
+        ), membership.getId()).getId();
+        assertThat(memberService.get(memberId).getMembership()).isNotNull();
+
+        // when
+        membershipService.delete(membership.getId());
+
+        // then
+        assertThat(memberService.get(memberId).getMembership()).isNull();
+    }
+}
@@ -0,0 +1,151 @@
+package com.yer.library.service;
+
+import com.yer.library.repository.BookRepository;
+import com.yer.library.repository.MemberRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.yer.library.service.LibraryFixtures.newBook;
+import static com.yer.library.service.LibraryFixtures.newMember;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * Fires thousands of concurrent adds of books and members with the same ISBNs and email addresses, and checks that
+ * exactly one add per ISBN or email address succeeds, while the others fail with the usual "already exists" error.
+ */
+@SpringBootTest(webEnvironment = NONE)
+class UniqueKeyStressTest {
+    private static final int THREADS = 32;
+    private static final int KEYS = 20;
+    private static final int ADDS_PER_KEY = 100;
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private MemberService memberService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @SpyBean
+    private UniqueKeyLocks uniqueKeyLocks;
+
+    @Test
+    void concurrentBookAddsWithSameIsbn() throws InterruptedException {
+        // when
+        Map<String, Long> outcomes = addConcurrently(
+                i -> isbn(100 + i % KEYS),
+                isbn -> bookService.add(newBook(isbn))
+        );
+
+        // then
+        assertThat(outcomes).containsOnlyKeys("added", "already exists");
+        assertThat(outcomes.get("added")).isEqualTo(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            assertThat(bookRepository.findByIsbn(isbn(100 + i))).isPresent();
+        }
+    }
+
+    @Test
+    void concurrentMemberAddsWithSameEmail() throws InterruptedException {
+        // when
+        Map<String, Long> outcomes = addConcurrently(
+                i -> "member" + (i % KEYS) + "@example.com",
+                email -> memberService.add(newMember(email, null))
+        );
+
+        // then
+        assertThat(outcomes).containsOnlyKeys("added", "already exists");
+        assertThat(outcomes.get("added")).isEqualTo(KEYS);
+    }
+
+    @Test
+    void concurrentBookAddsWithSameIsbnWithoutLocks() throws InterruptedException {
+        // given
+        // like adds from different application instances, which only the unique index keeps apart
+        doAnswer(invocation -> ((Supplier<?>) invocation.getArgument(2)).get())
+                .when(uniqueKeyLocks).withLock(anyString(), anyString(), any());
+
+        // when
+        Map<String, Long> outcomes = addConcurrently(
+                i -> isbn(200 + i % KEYS),
+                isbn -> bookService.add(newBook(isbn))
+        );
+
+        // then
+        assertThat(outcomes.get("added")).isEqualTo(KEYS);
+        assertThat(outcomes.get("already exists")).isEqualTo(KEYS * (ADDS_PER_KEY - 1));
+        List<String> isbns = IntStream.range(0, KEYS)
+                .mapToObj(i -> isbn(200 + i))
+                .collect(Collectors.toList());
+        long activeBooks = bookRepository.findAllByIsbnIn(isbns).stream()
+                .filter(book -> !book.getDeleted())
+                .count();
+        assertThat(activeBooks).isEqualTo(KEYS);
+    }
+
+    /**
+     * Adds {@value #KEYS} keys {@value #ADDS_PER_KEY} times each, from {@value #THREADS} threads at once, and counts
+     * the outcomes of the adds.
+     */
+    private Map<String, Long> addConcurrently(Function<Integer, String> key, Function<String, ?> add)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < KEYS * ADDS_PER_KEY; i++) {
+            String k = key.apply(i);
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    add.apply(k);
+                    return "added";
+                } catch (IllegalStateException e) {
+                    return e.getMessage().contains("already exists") ? "already exists" : e.toString();
+                } catch (RuntimeException e) {
+                    return e.toString();
+                }
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(2, TimeUnit.MINUTES)).isTrue();
+
+        return futures.stream()
+                .map(future -> {
+                    try {
+                        return future.get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    }
+
+    /**
+     * Returns a valid ISBN-13 with the given number as its last digits (before the check digit).
+     */
+    private static String isbn(int number) {
+        String digits = String.format("978000%06d", number);
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+}